@@ -1,19 +1,47 @@
 package com.alerts;
 
-import java.util.List;
+import java.time.Duration;
+
 import com.data_management.DataStorage;
+import com.data_management.MeasurementConsumer;
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
+import com.data_management.RecordTypeRegistry;
+import com.data_management.WindowStats;
 
 /**
  * The {@code AlertGenerator} class is responsible for monitoring patient data
  * and generating alerts when certain predefined conditions are met. This class
  * relies on a {@link DataStorage} instance to access patient data and evaluate
  * it against specific health criteria.
+ *
+ * <p>The checks visit the measurements through reusable
+ * {@link MeasurementConsumer}s, so evaluating a patient allocates nothing
+ * unless an alert is triggered. Evaluations are therefore serialised on the
+ * generator.</p>
  */
 public class AlertGenerator {
+    /**
+     * Window over which the mean heart rate is checked for sustained tachycardia
+     * or bradycardia. The check runs only for storages whose
+     * {@link com.data_management.WindowPolicy} maintains this window.
+     */
+    public static final Duration SUSTAINED_HEART_RATE_WINDOW = Duration.ofMinutes(5);
+
     private DataStorage dataStorage;
 
+    // Record type codes resolved once, so evaluation never compares type names
+    private final int heartRateCode;
+    private final int systolicBpCode;
+    private final int temperatureCode;
+    private final int bloodSaturationCode;
+
+    // Checks reused for every evaluation; they report against the patient being evaluated
+    private final MeasurementConsumer heartRateCheck = this::checkHeartRateAlerts;
+    private final MeasurementConsumer bloodPressureCheck = this::checkBloodPressureAlerts;
+    private final MeasurementConsumer temperatureCheck = this::checkTemperatureAlerts;
+    private final MeasurementConsumer bloodSaturationCheck = this::checkBloodSaturationAlerts;
+    private int evaluatedPatientId; // Guarded by this
+
     /**
      * Constructs an {@code AlertGenerator} with a specified {@code DataStorage}.
      * The {@code DataStorage} is used to retrieve patient data that this class
@@ -24,6 +52,11 @@ public class AlertGenerator {
      */
     public AlertGenerator(DataStorage dataStorage) {
         this.dataStorage = dataStorage;
+        RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        this.heartRateCode = registry.codeFor("HeartRate");
+        this.systolicBpCode = registry.codeFor("SystolicBP");
+        this.temperatureCode = registry.codeFor("Temperature");
+        this.bloodSaturationCode = registry.codeFor("BloodSaturation");
     }
 
     /**
@@ -35,131 +68,167 @@ public class AlertGenerator {
      *
      * @param patient the patient data to evaluate for alert conditions
      */
-    public void evaluateData(Patient patient) {
-        // Get all records for the patient
-        List<PatientRecord> records = patient.getRecords(0, Long.MAX_VALUE);
-
+    public synchronized void evaluateData(Patient patient) {
         // Trigger an alert if the patient has no records
-        if (records.isEmpty()) {
+        if (patient.getRecordCount() == 0) {
             triggerAlert(new Alert(String.valueOf(patient.getPatientId()), "No Data", System.currentTimeMillis()));
             return;
         }
+        evaluatedPatientId = patient.getPatientId();
 
         // Check for abnormal heart rate
-        checkHeartRateAlerts(patient, records);
+        patient.forEachRecord(heartRateCode, 0, Long.MAX_VALUE, heartRateCheck);
+        checkSustainedHeartRateAlerts(patient,
+                patient.getWindowStats(heartRateCode, SUSTAINED_HEART_RATE_WINDOW.toMillis()));
 
         // Check for abnormal blood pressure
-        checkBloodPressureAlerts(patient, records);
+        patient.forEachRecord(systolicBpCode, 0, Long.MAX_VALUE, bloodPressureCheck);
 
         // Check for abnormal temperature
-        checkTemperatureAlerts(patient, records);
+        patient.forEachRecord(temperatureCode, 0, Long.MAX_VALUE, temperatureCheck);
 
         // Check for abnormal blood saturation
-        checkBloodSaturationAlerts(patient, records);
+        patient.forEachRecord(bloodSaturationCode, 0, Long.MAX_VALUE, bloodSaturationCheck);
     }
 
     /**
-     * Checks for abnormal heart rate values and triggers alerts if necessary.
-     * 
-     * @param patient the patient to check
-     * @param records the patient's records
+     * Evaluates the data of the patient with the given ID, looked up in the
+     * storage (in the owning shard when the storage is sharded).
+     *
+     * @param patientId the unique identifier of the patient
+     * @return true if the storage holds data for the patient and it was evaluated
      */
-    private void checkHeartRateAlerts(Patient patient, List<PatientRecord> records) {
-        for (PatientRecord record : records) {
-            if ("HeartRate".equals(record.getRecordType())) {
-                double heartRate = record.getMeasurementValue();
-
-                // Alert for bradycardia (low heart rate)
-                if (heartRate < 60) {
-                    triggerAlert(new Alert(String.valueOf(patient.getPatientId()), 
-                                          "Bradycardia: Heart rate " + heartRate + " bpm", 
-                                          record.getTimestamp()));
-                }
-
-                // Alert for tachycardia (high heart rate)
-                if (heartRate > 100) {
-                    triggerAlert(new Alert(String.valueOf(patient.getPatientId()), 
-                                          "Tachycardia: Heart rate " + heartRate + " bpm", 
-                                          record.getTimestamp()));
-                }
-            }
+    public boolean evaluatePatient(int patientId) {
+        Patient patient = dataStorage.getPatient(patientId);
+        if (patient == null) {
+            return false;
         }
+        evaluateData(patient);
+        return true;
     }
 
     /**
-     * Checks for abnormal blood pressure values and triggers alerts if necessary.
-     * 
-     * @param patient the patient to check
-     * @param records the patient's records
+     * Evaluates the data of every patient in the storage.
      */
-    private void checkBloodPressureAlerts(Patient patient, List<PatientRecord> records) {
-        for (PatientRecord record : records) {
-            if ("SystolicBP".equals(record.getRecordType())) {
-                double systolic = record.getMeasurementValue();
-
-                // Alert for hypertension (high blood pressure)
-                if (systolic > 140) {
-                    triggerAlert(new Alert(String.valueOf(patient.getPatientId()), 
-                                          "Hypertension: Systolic BP " + systolic + " mmHg", 
-                                          record.getTimestamp()));
-                }
-
-                // Alert for hypotension (low blood pressure)
-                if (systolic < 90) {
-                    triggerAlert(new Alert(String.valueOf(patient.getPatientId()), 
-                                          "Hypotension: Systolic BP " + systolic + " mmHg", 
-                                          record.getTimestamp()));
-                }
-            }
+    public void evaluateAll() {
+        for (Patient patient : dataStorage.patients()) {
+            evaluateData(patient);
         }
     }
 
     /**
-     * Checks for abnormal temperature values and triggers alerts if necessary.
-     * 
-     * @param patient the patient to check
-     * @param records the patient's records
+     * Checks a heart rate value of the evaluated patient and triggers alerts if
+     * necessary.
+     *
+     * @param timestamp the time of the measurement
+     * @param heartRate the heart rate in bpm
      */
-    private void checkTemperatureAlerts(Patient patient, List<PatientRecord> records) {
-        for (PatientRecord record : records) {
-            if ("Temperature".equals(record.getRecordType())) {
-                double temperature = record.getMeasurementValue();
-
-                // Alert for fever
-                if (temperature > 100.4) {
-                    triggerAlert(new Alert(String.valueOf(patient.getPatientId()), 
-                                          "Fever: Temperature " + temperature + " °F", 
-                                          record.getTimestamp()));
-                }
-
-                // Alert for hypothermia
-                if (temperature < 95.0) {
-                    triggerAlert(new Alert(String.valueOf(patient.getPatientId()), 
-                                          "Hypothermia: Temperature " + temperature + " °F", 
-                                          record.getTimestamp()));
-                }
-            }
+    private void checkHeartRateAlerts(long timestamp, double heartRate) {
+        // Alert for bradycardia (low heart rate)
+        if (heartRate < 60) {
+            triggerAlert(new Alert(String.valueOf(evaluatedPatientId),
+                                  "Bradycardia: Heart rate " + heartRate + " bpm",
+                                  timestamp));
+        }
+
+        // Alert for tachycardia (high heart rate)
+        if (heartRate > 100) {
+            triggerAlert(new Alert(String.valueOf(evaluatedPatientId),
+                                  "Tachycardia: Heart rate " + heartRate + " bpm",
+                                  timestamp));
         }
     }
 
     /**
-     * Checks for abnormal blood saturation values and triggers alerts if necessary.
-     * 
+     * Checks the mean heart rate over the sustained heart rate window, read from
+     * the statistics the patient maintains on insert, and triggers an alert if it
+     * is abnormal.
+     *
      * @param patient the patient to check
-     * @param records the patient's records
+     * @param stats   the heart rate statistics over the window, or null if the
+     *                window is not maintained
+     */
+    private void checkSustainedHeartRateAlerts(Patient patient, WindowStats stats) {
+        if (stats == null || stats.getCount() == 0) {
+            return;
+        }
+        double meanHeartRate = stats.getMean();
+        long minutes = SUSTAINED_HEART_RATE_WINDOW.toMinutes();
+
+        if (meanHeartRate < 60) {
+            triggerAlert(new Alert(String.valueOf(patient.getPatientId()),
+                                  "Sustained Bradycardia: Mean heart rate " + meanHeartRate + " bpm over "
+                                          + minutes + " minutes",
+                                  stats.getEndTime()));
+        }
+
+        if (meanHeartRate > 100) {
+            triggerAlert(new Alert(String.valueOf(patient.getPatientId()),
+                                  "Sustained Tachycardia: Mean heart rate " + meanHeartRate + " bpm over "
+                                          + minutes + " minutes",
+                                  stats.getEndTime()));
+        }
+    }
+
+    /**
+     * Checks a systolic blood pressure value of the evaluated patient and
+     * triggers alerts if necessary.
+     *
+     * @param timestamp the time of the measurement
+     * @param systolic  the systolic blood pressure in mmHg
+     */
+    private void checkBloodPressureAlerts(long timestamp, double systolic) {
+        // Alert for hypertension (high blood pressure)
+        if (systolic > 140) {
+            triggerAlert(new Alert(String.valueOf(evaluatedPatientId),
+                                  "Hypertension: Systolic BP " + systolic + " mmHg",
+                                  timestamp));
+        }
+
+        // Alert for hypotension (low blood pressure)
+        if (systolic < 90) {
+            triggerAlert(new Alert(String.valueOf(evaluatedPatientId),
+                                  "Hypotension: Systolic BP " + systolic + " mmHg",
+                                  timestamp));
+        }
+    }
+
+    /**
+     * Checks a temperature value of the evaluated patient and triggers alerts if
+     * necessary.
+     *
+     * @param timestamp   the time of the measurement
+     * @param temperature the temperature in °F
+     */
+    private void checkTemperatureAlerts(long timestamp, double temperature) {
+        // Alert for fever
+        if (temperature > 100.4) {
+            triggerAlert(new Alert(String.valueOf(evaluatedPatientId),
+                                  "Fever: Temperature " + temperature + " °F",
+                                  timestamp));
+        }
+
+        // Alert for hypothermia
+        if (temperature < 95.0) {
+            triggerAlert(new Alert(String.valueOf(evaluatedPatientId),
+                                  "Hypothermia: Temperature " + temperature + " °F",
+                                  timestamp));
+        }
+    }
+
+    /**
+     * Checks a blood saturation value of the evaluated patient and triggers
+     * alerts if necessary.
+     *
+     * @param timestamp  the time of the measurement
+     * @param saturation the blood oxygen saturation in percent
      */
-    private void checkBloodSaturationAlerts(Patient patient, List<PatientRecord> records) {
-        for (PatientRecord record : records) {
-            if ("BloodSaturation".equals(record.getRecordType())) {
-                double saturation = record.getMeasurementValue();
-
-                // Alert for low blood oxygen
-                if (saturation < 95) {
-                    triggerAlert(new Alert(String.valueOf(patient.getPatientId()), 
-                                          "Low Blood Oxygen: Saturation " + saturation + "%", 
-                                          record.getTimestamp()));
-                }
-            }
+    private void checkBloodSaturationAlerts(long timestamp, double saturation) {
+        // Alert for low blood oxygen
+        if (saturation < 95) {
+            triggerAlert(new Alert(String.valueOf(evaluatedPatientId),
+                                  "Low Blood Oxygen: Saturation " + saturation + "%",
+                                  timestamp));
         }
     }
 
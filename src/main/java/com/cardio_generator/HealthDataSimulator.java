@@ -97,12 +97,14 @@ public class HealthDataSimulator {
                                 Files.createDirectories(outputPath);
                             }
                             outputStrategy = new FileOutputStrategy(baseDirectory);
-                        } else if (outputArg.startsWith("websocket:")) {
+                        } else if (outputArg.startsWith("websocket:") || outputArg.startsWith("websocket-binary:")) {
                             try {
-                                int port = Integer.parseInt(outputArg.substring(10));
+                                boolean binary = outputArg.startsWith("websocket-binary:");
+                                int port = Integer.parseInt(outputArg.substring(outputArg.indexOf(':') + 1));
                                 // Initialize your WebSocket output strategy here
-                                outputStrategy = new WebSocketOutputStrategy(port);
-                                System.out.println("WebSocket output will be on port: " + port);
+                                outputStrategy = new WebSocketOutputStrategy(port, binary);
+                                System.out.println("WebSocket output will be on port: " + port
+                                        + (binary ? " (binary frames)" : ""));
                             } catch (NumberFormatException e) {
                                 System.err.println(
                                         "Invalid port for WebSocket output. Please specify a valid port number.");
@@ -142,6 +144,7 @@ public class HealthDataSimulator {
         System.out.println("                             'console' for console output,");
         System.out.println("                             'file:<directory>' for file output,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
+        System.out.println("                             'websocket-binary:<port>' for WebSocket output in binary frames,");
         System.out.println("                             'tcp:<port>' for TCP socket output.");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
@@ -1,22 +1,42 @@
 package com.cardio_generator.outputs;
 
+import com.data_management.BinaryMeasurementFrame;
 import org.java_websocket.WebSocket;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of the OutputStrategy interface that outputs patient data via WebSocket.
  * This strategy creates a WebSocket server that broadcasts patient data to all connected clients.
  * Clients can connect to the server to receive real-time patient health data.
+ *
+ * <p>By default every measurement is sent as one text message. In binary mode,
+ * measurements are packed into {@link BinaryMeasurementFrame}s of up to
+ * {@link #RECORDS_PER_FRAME} records, which are sent when full and at least
+ * every {@link #FLUSH_INTERVAL_MILLIS} milliseconds. Data that is not a number,
+ * such as alert states, is still sent as text in binary mode.</p>
  */
 public class WebSocketOutputStrategy implements OutputStrategy {
+    /** Largest number of measurements in a binary frame. */
+    public static final int RECORDS_PER_FRAME = 512;
+
+    /** Longest time a measurement waits in a partially filled binary frame. */
+    public static final long FLUSH_INTERVAL_MILLIS = 10;
 
     /**
      * The WebSocket server instance that handles client connections and message broadcasting.
      */
     private WebSocketServer server;
 
+    /**
+     * The frame collecting measurements in binary mode, guarded by itself; null in text mode.
+     */
+    private final BinaryMeasurementFrame frame;
+
     /**
      * Constructs a WebSocketOutputStrategy with the specified port.
      * Creates and starts a WebSocket server that listens for client connections on the given port.
@@ -24,14 +44,37 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      * @param port The port number on which the WebSocket server will listen for connections
      */
     public WebSocketOutputStrategy(int port) {
+        this(port, false);
+    }
+
+    /**
+     * Constructs a WebSocketOutputStrategy with the specified port and wire format.
+     *
+     * @param port   The port number on which the WebSocket server will listen for connections
+     * @param binary Whether to pack measurements into binary frames instead of sending text messages
+     */
+    public WebSocketOutputStrategy(int port, boolean binary) {
         server = new SimpleWebSocketServer(new InetSocketAddress(port));
         System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
         server.start();
+        if (binary) {
+            frame = new BinaryMeasurementFrame(RECORDS_PER_FRAME);
+            ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "websocket-frame-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleAtFixedRate(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            frame = null;
+        }
     }
 
     /**
      * Outputs patient data by broadcasting it to all connected WebSocket clients.
-     * The data is formatted as a comma-separated string containing patient ID, timestamp, label, and the actual data.
+     * The data is formatted as a comma-separated string containing patient ID, timestamp, label, and the actual data,
+     * or added to the current binary frame in binary mode.
      *
      * @param patientId The unique identifier of the patient
      * @param timestamp The time when the data was recorded (in milliseconds since epoch)
@@ -40,6 +83,17 @@ public class WebSocketOutputStrategy implements OutputStrategy {
      */
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        if (frame != null) {
+            synchronized (frame) {
+                if (frame.add(patientId, timestamp, label, data)) {
+                    if (frame.isFull()) {
+                        sendFrame();
+                    }
+                    return;
+                }
+            }
+            // Not a number: fall back to a text message
+        }
         String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
         // Broadcast the message to all connected clients
         for (WebSocket conn : server.getConnections()) {
@@ -47,6 +101,32 @@ public class WebSocketOutputStrategy implements OutputStrategy {
         }
     }
 
+    /**
+     * Sends the measurements collected in the binary frame so far.
+     */
+    private void flush() {
+        try {
+            synchronized (frame) {
+                if (frame.size() > 0) {
+                    sendFrame();
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Error sending binary frame: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Broadcasts the binary frame to all connected clients and clears it. Must hold the frame's lock.
+     */
+    private void sendFrame() {
+        byte[] bytes = frame.encode();
+        frame.clear();
+        for (WebSocket conn : server.getConnections()) {
+            conn.send(bytes);
+        }
+    }
+
     /**
      * A simple implementation of WebSocketServer that handles client connections.
      * This inner class manages the WebSocket lifecycle events such as connection opening,
@@ -0,0 +1,100 @@
+package com.data_management;
+
+/**
+ * Result of an aggregation of one record type over many patients: the number
+ * of aggregated measurements, their minimum, maximum, sum and mean, and the
+ * number of patients that contributed at least one measurement.
+ * Results are returned by {@link DataStorage#aggregate} for ward-level
+ * questions such as the mean saturation of all patients over the last hour.
+ */
+public class AggregateResult {
+    private final long count;
+    private final long patientCount;
+    private final double min;
+    private final double max;
+    private final double sum;
+
+    /**
+     * Constructs an aggregation result.
+     *
+     * @param count        the number of aggregated measurements
+     * @param patientCount the number of patients with at least one aggregated
+     *                     measurement
+     * @param min          the smallest measurement value
+     * @param max          the largest measurement value
+     * @param sum          the sum of the measurement values
+     */
+    public AggregateResult(long count, long patientCount, double min, double max, double sum) {
+        this.count = count;
+        this.patientCount = patientCount;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    /**
+     * Returns the number of aggregated measurements.
+     *
+     * @return the measurement count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of patients with at least one aggregated measurement.
+     *
+     * @return the patient count
+     */
+    public long getPatientCount() {
+        return patientCount;
+    }
+
+    /**
+     * Returns the smallest aggregated measurement value.
+     *
+     * @return the minimum value, or NaN if nothing was aggregated
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the largest aggregated measurement value.
+     *
+     * @return the maximum value, or NaN if nothing was aggregated
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Returns the sum of the aggregated measurement values.
+     *
+     * @return the sum
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the mean of the aggregated measurement values.
+     *
+     * @return the mean value, or NaN if nothing was aggregated
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * Returns a result combining this result with another one over a disjoint
+     * set of measurements.
+     *
+     * @param other the other result
+     * @return the combined result
+     */
+    AggregateResult combine(AggregateResult other) {
+        return new AggregateResult(count + other.count, patientCount + other.patientCount,
+                Math.min(min, other.min), Math.max(max, other.max), sum + other.sum);
+    }
+}
@@ -0,0 +1,234 @@
+package com.data_management;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A binary WebSocket frame packing many measurements in fixed-layout records,
+ * the compact alternative to one {@code patientId,timestamp,label,data} text
+ * message per measurement.
+ *
+ * <p>A frame is self-describing, so frames can be decoded independently and in
+ * any order. All numbers are big-endian:</p>
+ * <pre>
+ * byte    version            {@link #VERSION}
+ * short   type count         n
+ * n times unsigned short length, then the UTF-8 bytes of a label
+ * int     record count       m
+ * m times int patientId, long timestamp, short type, double value
+ * </pre>
+ * <p>The type of a record is the index of its label in the frame's table, so
+ * each label is sent once per frame and each record takes
+ * {@link #RECORD_BYTES} bytes.</p>
+ *
+ * <p>A frame collects measurements until it is full and is then encoded and
+ * cleared for reuse. It is not safe for concurrent use. Received frames are
+ * decoded by {@link #decode(ByteBuffer, RecordTypeRegistry, MeasurementBatch, Runnable)}.</p>
+ */
+public final class BinaryMeasurementFrame {
+    /** Version of the layout, the first byte of every frame. */
+    public static final byte VERSION = 1;
+
+    /** Size of one record: patient ID, timestamp, type and value. */
+    public static final int RECORD_BYTES = Integer.BYTES + Long.BYTES + Short.BYTES + Double.BYTES;
+
+    /** Longest label in bytes; lengths are sent as unsigned shorts. */
+    public static final int MAX_LABEL_BYTES = 0xFFFF;
+
+    private final int[] patientIds;
+    private final long[] timestamps;
+    private final short[] types;
+    private final double[] values;
+    private int size;
+    private final Map<String, Short> typeByLabel = new HashMap<>();
+    private final List<byte[]> labels = new ArrayList<>();
+    private DataValueParser valueParser; // Created by the first add of text data
+
+    /**
+     * Constructs an empty frame.
+     *
+     * @param capacity the maximum number of measurements in the frame
+     */
+    public BinaryMeasurementFrame(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        patientIds = new int[capacity];
+        timestamps = new long[capacity];
+        types = new short[capacity];
+        values = new double[capacity];
+    }
+
+    /**
+     * Adds a measurement. The frame must not be full.
+     *
+     * @param patientId the ID of the patient
+     * @param timestamp the time the data was recorded
+     * @param label     the type of data, e.g., "HeartRate"
+     * @param value     the data value
+     * @throws IllegalStateException    if the frame is full or holds too many labels
+     * @throws IllegalArgumentException if the label is longer than {@link #MAX_LABEL_BYTES}
+     */
+    public void add(int patientId, long timestamp, String label, double value) {
+        if (isFull()) {
+            throw new IllegalStateException("Frame is full: " + size);
+        }
+        Short type = typeByLabel.get(label);
+        if (type == null) {
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_LABEL_BYTES) {
+                throw new IllegalArgumentException("Label too long: " + bytes.length + " bytes");
+            }
+            if (labels.size() == Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many labels in one frame");
+            }
+            type = (short) labels.size();
+            typeByLabel.put(label, type);
+            labels.add(bytes);
+        }
+        patientIds[size] = patientId;
+        timestamps[size] = timestamp;
+        types[size] = type;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Adds a measurement whose data is given as output by a generator, e.g.,
+     * "97%" for a saturation. The frame must not be full.
+     *
+     * @param patientId the ID of the patient
+     * @param timestamp the time the data was recorded
+     * @param label     the type of data, e.g., "Saturation"
+     * @param data      the data value
+     * @return false if the data is not a number, e.g., an alert state such as
+     *         "triggered", and nothing was added
+     * @throws IllegalStateException    if the frame is full or holds too many labels
+     * @throws IllegalArgumentException if the label is longer than {@link #MAX_LABEL_BYTES}
+     */
+    public boolean add(int patientId, long timestamp, String label, String data) {
+        if (valueParser == null) {
+            valueParser = new DataValueParser();
+        }
+        if (!valueParser.parse(data)) {
+            return false;
+        }
+        add(patientId, timestamp, label, valueParser.parsedDouble);
+        return true;
+    }
+
+    /**
+     * Returns the number of measurements in the frame.
+     *
+     * @return the number of measurements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the frame has reached its capacity.
+     *
+     * @return true if no more measurements can be added
+     */
+    public boolean isFull() {
+        return size == patientIds.length;
+    }
+
+    /**
+     * Encodes the frame.
+     *
+     * @return the bytes of the frame
+     */
+    public byte[] encode() {
+        int length = 1 + Short.BYTES + Integer.BYTES + size * RECORD_BYTES;
+        for (byte[] label : labels) {
+            length += Short.BYTES + label.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(VERSION).putShort((short) labels.size());
+        for (byte[] label : labels) {
+            buffer.putShort((short) label.length).put(label);
+        }
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(patientIds[i]).putLong(timestamps[i]).putShort(types[i]).putDouble(values[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Removes every measurement and label from the frame.
+     */
+    public void clear() {
+        size = 0;
+        typeByLabel.clear();
+        labels.clear();
+    }
+
+    /**
+     * Decodes a received frame and adds its measurements to a batch, storing
+     * the batch whenever it fills up. The whole frame is checked before any
+     * measurement is added, so an invalid frame adds nothing.
+     *
+     * @param frame    the frame, read from its position to its limit
+     * @param registry the registry encoding the record types
+     * @param batch    the batch receiving the measurements
+     * @param flush    stores the batch and empties it
+     * @return the number of measurements added, or -1 if the frame is invalid
+     */
+    static int decode(ByteBuffer frame, RecordTypeRegistry registry, MeasurementBatch batch, Runnable flush) {
+        try {
+            ByteBuffer in = frame.duplicate(); // big-endian, whatever the order of the received buffer
+            byte version = in.get();
+            if (version != VERSION) {
+                System.err.println("Unsupported binary frame version: " + version);
+                return -1;
+            }
+            int typeCount = in.getShort();
+            if (typeCount < 0) {
+                System.err.println("Invalid binary frame: " + typeCount + " types");
+                return -1;
+            }
+            int[] typeCodes = new int[typeCount];
+            for (int i = 0; i < typeCount; i++) {
+                byte[] label = new byte[in.getShort() & 0xFFFF];
+                in.get(label);
+                typeCodes[i] = registry.codeFor(new String(label, StandardCharsets.UTF_8));
+            }
+            int count = in.getInt();
+            if (count < 0 || (long) count * RECORD_BYTES != in.remaining()) {
+                System.err.println("Invalid binary frame: " + count + " records in " + in.remaining() + " bytes");
+                return -1;
+            }
+            int start = in.position();
+            int typeOffset = Integer.BYTES + Long.BYTES;
+            for (int i = 0; i < count; i++) {
+                int type = in.getShort(start + i * RECORD_BYTES + typeOffset);
+                if (type < 0 || type >= typeCount) {
+                    System.err.println("Invalid binary frame: record type " + type + " of " + typeCount);
+                    return -1;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                int patientId = in.getInt();
+                long timestamp = in.getLong();
+                int type = in.getShort();
+                double measurementValue = in.getDouble();
+                batch.add(patientId, measurementValue, typeCodes[type], timestamp);
+                if (batch.isFull()) {
+                    flush.run();
+                }
+            }
+            return count;
+        } catch (BufferUnderflowException e) {
+            System.err.println("Invalid binary frame: truncated at " + frame.remaining() + " bytes");
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer multi-consumer queue on a ring buffer.
+ *
+ * <p>Every slot carries a sequence number telling whether it is ready to be
+ * written or read for a given lap around the ring. Producers and consumers
+ * claim a position with a single compare-and-set on the tail or head counter
+ * and then publish the slot by advancing its sequence; nobody ever blocks, and
+ * a full or empty queue is reported instead of waited on. Callers decide what
+ * to do then, see {@link OverflowPolicy}.</p>
+ *
+ * @param <E> the type of the elements
+ */
+final class BoundedRingQueue<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong(); // Next position to read.
+    private final AtomicLong tail = new AtomicLong(); // Next position to write.
+
+    /**
+     * Constructs an empty queue.
+     *
+     * @param capacity the minimum capacity, rounded up to a power of two
+     */
+    BoundedRingQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element unless the queue is full.
+     *
+     * @param element the element, not null
+     * @return true if the element was added, false if the queue is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, element);
+                    sequences.lazySet(slot, position + 1); // publishes the element to consumers
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false; // the slot still holds the element of the previous lap
+            } else {
+                position = tail.get(); // another producer claimed the position
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(slot);
+                    elements.lazySet(slot, null);
+                    sequences.lazySet(slot, position + mask + 1); // frees the slot for the next lap
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null; // the slot has not been written for this lap
+            } else {
+                position = head.get(); // another consumer claimed the position
+            }
+        }
+    }
+
+    /**
+     * Returns the number of elements in the queue. The value is an estimate
+     * while producers or consumers are active.
+     *
+     * @return the number of elements
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Returns the capacity of the queue.
+     *
+     * @return the maximum number of elements
+     */
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,257 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Compresses a block of measurements into a bit stream, following the encoding
+ * of Facebook's Gorilla time series database.
+ *
+ * <p>Timestamps are stored as the difference between consecutive deltas
+ * (delta-of-delta). Measurements taken at a fixed interval therefore cost a
+ * single bit each; jitter costs a short prefix plus 7, 9, 12 or 32 bits, and
+ * anything larger falls back to the full 64 bits.</p>
+ *
+ * <p>Values are stored as the XOR with the previous value. An unchanged value
+ * costs one bit; otherwise only the meaningful bits between the leading and
+ * trailing zeros of the XOR are written, reusing the previous window when it
+ * still fits.</p>
+ *
+ * <p>The stream is packed into a {@code long[]} of exactly the needed length.
+ * Decoding is sequential: readers either decode a block into scratch arrays
+ * before searching it or stream it through a {@link MeasurementConsumer}.</p>
+ */
+final class ChunkCodec {
+    /** Field widths of a non-zero delta-of-delta, selected by a prefix of one to five ones. */
+    private static final int[] DELTA_OF_DELTA_BITS = { 7, 9, 12, 32, 64 };
+
+    private ChunkCodec() {
+    }
+
+    /**
+     * Encodes measurements ordered by timestamp.
+     *
+     * @param timestamps the timestamps, non-decreasing
+     * @param values     the measurement values
+     * @param count      the number of measurements to encode, at least 1
+     * @return the packed bit stream
+     */
+    static long[] encode(long[] timestamps, double[] values, int count) {
+        BitWriter out = new BitWriter(Math.max(4, count / 8));
+        long previousTimestamp = timestamps[0];
+        long previousDelta = 0;
+        long previousBits = Double.doubleToRawLongBits(values[0]);
+        int previousLeading = Integer.MAX_VALUE;
+        int previousTrailing = 0;
+        out.write(previousTimestamp, 64);
+        out.write(previousBits, 64);
+        for (int i = 1; i < count; i++) {
+            long delta = timestamps[i] - previousTimestamp;
+            writeDeltaOfDelta(out, delta - previousDelta);
+            previousTimestamp = timestamps[i];
+            previousDelta = delta;
+
+            long bits = Double.doubleToRawLongBits(values[i]);
+            long xor = bits ^ previousBits;
+            previousBits = bits;
+            if (xor == 0) {
+                out.write(0, 1);
+                continue;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (leading >= previousLeading && trailing >= previousTrailing) {
+                // Meaningful bits fit in the previous window
+                out.write(0b10, 2);
+                out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(meaningful & 63, 6); // 64 meaningful bits are written as 0
+                out.write(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Decodes measurements from a bit stream, stopping after the last measurement
+     * whose timestamp is not after {@code endTime}.
+     *
+     * @param encoded    the packed bit stream
+     * @param count      the number of measurements in the stream
+     * @param endTime    the newest timestamp the caller is interested in
+     * @param timestamps receives the timestamps
+     * @param values     receives the measurement values
+     * @return the number of measurements decoded
+     */
+    static int decode(long[] encoded, int count, long endTime, long[] timestamps, double[] values) {
+        return forEach(encoded, count, Long.MIN_VALUE, endTime, new ArraySink(timestamps, values));
+    }
+
+    /**
+     * Passes the measurements of a bit stream that fall within a time range to a
+     * consumer, without materialising them in arrays. The decoder state lives in
+     * local variables, so streaming a block allocates nothing.
+     *
+     * @param encoded   the packed bit stream
+     * @param count     the number of measurements in the stream
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @param consumer  receives the matching measurements in timestamp order
+     * @return the number of measurements passed to the consumer
+     */
+    static int forEach(long[] encoded, int count, long startTime, long endTime, MeasurementConsumer consumer) {
+        long timestamp = read(encoded, 0, 64);
+        long bits = read(encoded, 64, 64);
+        int position = 128;
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+        int visited = 0;
+        for (int i = 0;;) {
+            if (timestamp > endTime) {
+                break;
+            }
+            if (timestamp >= startTime) {
+                consumer.accept(timestamp, Double.longBitsToDouble(bits));
+                visited++;
+            }
+            if (++i == count) {
+                break;
+            }
+            // Delta-of-delta: a unary prefix of up to five ones selects the field width
+            int prefix = 0;
+            while (prefix < 5 && read(encoded, position++, 1) != 0) {
+                prefix++;
+            }
+            if (prefix > 0) {
+                int width = DELTA_OF_DELTA_BITS[prefix - 1];
+                long deltaOfDelta = read(encoded, position, width);
+                position += width;
+                delta += width == 64 ? deltaOfDelta : signed(deltaOfDelta, width);
+            }
+            timestamp += delta;
+            if (read(encoded, position++, 1) != 0) {
+                if (read(encoded, position++, 1) != 0) {
+                    leading = (int) read(encoded, position, 5);
+                    int meaningful = (int) read(encoded, position + 5, 6);
+                    position += 11;
+                    trailing = 64 - leading - (meaningful == 0 ? 64 : meaningful);
+                }
+                int width = 64 - leading - trailing;
+                bits ^= read(encoded, position, width) << trailing;
+                position += width;
+            }
+        }
+        return visited;
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            out.write(0, 1);
+            return;
+        }
+        for (int i = 0; i < DELTA_OF_DELTA_BITS.length - 1; i++) {
+            int width = DELTA_OF_DELTA_BITS[i];
+            if (fits(deltaOfDelta, width)) {
+                out.write(-2L, i + 2); // i + 1 ones followed by a zero
+                out.write(deltaOfDelta, width);
+                return;
+            }
+        }
+        out.write(-1L, 5);
+        out.write(deltaOfDelta, 64);
+    }
+
+    /** Returns whether a value is representable as a two's complement number of the given width. */
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    /** Sign-extends the low bits of a value. */
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    /**
+     * Appends bit fields, most significant bit first, to a growing array of words.
+     */
+    private static final class BitWriter {
+        private long[] words;
+        private int bitPosition;
+
+        BitWriter(int initialWords) {
+            this.words = new long[initialWords];
+        }
+
+        /** Writes the low {@code bits} bits of a value. */
+        void write(long value, int bits) {
+            if (bits == 0) {
+                return;
+            }
+            if (bits < 64) {
+                value &= (1L << bits) - 1;
+            }
+            int index = bitPosition >>> 6;
+            int used = bitPosition & 63;
+            if (index + 1 >= words.length) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            int free = 64 - used;
+            if (bits <= free) {
+                words[index] |= value << (free - bits);
+            } else {
+                words[index] |= value >>> (bits - free);
+                words[index + 1] |= value << (64 - (bits - free));
+            }
+            bitPosition += bits;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (bitPosition + 63) >>> 6);
+        }
+    }
+
+    /**
+     * Reads {@code count} bits at a bit position as an unsigned value.
+     */
+    private static long read(long[] words, int position, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        int index = position >>> 6;
+        int used = position & 63;
+        int available = 64 - used;
+        if (count <= available) {
+            return words[index] << used >>> (64 - count);
+        }
+        long high = words[index] << used >>> (64 - available);
+        long low = words[index + 1] >>> (64 - (count - available));
+        return (high << (count - available)) | low;
+    }
+
+    /**
+     * Collects decoded measurements into arrays.
+     */
+    private static final class ArraySink implements MeasurementConsumer {
+        private final long[] timestamps;
+        private final double[] values;
+        private int size;
+
+        ArraySink(long[] timestamps, double[] values) {
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of the parsers that turn newline-aligned chunks of a text export into
+ * measurements straight from their bytes.
+ *
+ * <p>Numbers are decoded digit by digit into primitives and record types are
+ * resolved through a small table of the type names seen so far, so a
+ * well-formed line creates no objects. Subclasses recognise the layout of a
+ * line and collect its measurement in the current {@link MeasurementBatch}
+ * through {@link #add(int, double, int, long)}.</p>
+ *
+ * <p>A parser is used by one thread at a time.</p>
+ */
+abstract class ChunkParser {
+    // Powers of ten that are exact doubles, for the fast decimal path
+    private static final double[] POWERS_OF_TEN = new double[23];
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /** The charset of the file, used for record type names and lines outside the fast path. */
+    final Charset charset;
+    final RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+
+    private List<MeasurementBatch> batches;
+    /** The batch receiving the measurements of the line being parsed. */
+    MeasurementBatch batch;
+
+    // Open-addressing table of record type names as bytes, and their codes
+    private byte[][] typeNames = new byte[16][];
+    private int[] typeCodes = new int[16];
+    private int typeCount;
+
+    // Results of the number decoders, valid when they return true
+    long parsedLong;
+    double parsedDouble;
+
+    /**
+     * Constructs a parser.
+     *
+     * @param charset the charset of the file
+     */
+    ChunkParser(Charset charset) {
+        this.charset = charset;
+    }
+
+    /**
+     * Parses every line between position 0 and the limit of a buffer. The
+     * buffer must start at the beginning of a line; its last line does not need
+     * a terminating newline.
+     *
+     * @param buffer the chunk to parse
+     * @return the measurements of the chunk in batches of at most
+     *         {@link FileDataReader#BATCH_SIZE}, in the order of the lines
+     */
+    List<MeasurementBatch> parse(ByteBuffer buffer) {
+        batches = new ArrayList<>();
+        batch = new MeasurementBatch(FileDataReader.BATCH_SIZE);
+        batches.add(batch);
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            parseLine(buffer, lineStart, lineEnd);
+            lineStart = lineEnd + 1;
+        }
+        List<MeasurementBatch> result = batches;
+        batches = null;
+        batch = null;
+        return result;
+    }
+
+    /**
+     * Parses one line and adds its measurement, if any.
+     *
+     * @param buffer    the chunk
+     * @param lineStart the index of the first byte of the line
+     * @param lineEnd   the index of the newline ending the line, or the limit
+     */
+    abstract void parseLine(ByteBuffer buffer, int lineStart, int lineEnd);
+
+    /** Adds a measurement to the current batch, starting a new one when it is full. */
+    final void add(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        batch.add(patientId, measurementValue, recordTypeCode, timestamp);
+        startBatchIfFull();
+    }
+
+    /** Starts a new batch if a measurement was added to the current one from outside {@link #add}. */
+    final void startBatchIfFull() {
+        if (batch.isFull()) {
+            batchFull();
+        }
+    }
+
+    /**
+     * Called when the current batch is full. Collects it in the result of
+     * {@link #parse(ByteBuffer)} and starts a new one; parsers fed line by line
+     * store it instead.
+     */
+    void batchFull() {
+        batch = new MeasurementBatch(FileDataReader.BATCH_SIZE);
+        batches.add(batch);
+    }
+
+    /** Decodes a part of a line into a string, without a trailing carriage return. */
+    final String decode(ByteBuffer buffer, int from, int to) {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--; // part of the line terminator, as for BufferedReader.readLine
+        }
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(from + i);
+        }
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Decodes a signed decimal integer with at most the given number of digits,
+     * surrounded by optional whitespace, into {@link #parsedLong}.
+     */
+    final boolean parseLong(ByteBuffer buffer, int from, int to, int maxDigits) {
+        from = skipLeading(buffer, from, to);
+        to = skipTrailing(buffer, from, to);
+        boolean negative = false;
+        if (from < to && (buffer.get(from) == '-' || buffer.get(from) == '+')) {
+            negative = buffer.get(from) == '-';
+            from++;
+        }
+        int digits = to - from;
+        if (digits == 0 || digits > maxDigits) {
+            return false;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+        parsedLong = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * Decodes a plain decimal number such as {@code -12.375} into
+     * {@link #parsedDouble}. Only numbers whose digits form an integer below
+     * 2^53 with at most 22 decimals are accepted: dividing two exact doubles
+     * rounds correctly, so the result is identical to
+     * {@link Double#parseDouble(String)}.
+     */
+    final boolean parseDouble(ByteBuffer buffer, int from, int to) {
+        from = skipLeading(buffer, from, to);
+        to = skipTrailing(buffer, from, to);
+        boolean negative = false;
+        if (from < to && (buffer.get(from) == '-' || buffer.get(from) == '+')) {
+            negative = buffer.get(from) == '-';
+            from++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digits > 17) {
+                return false;
+            }
+            mantissa = mantissa * 10 + digit;
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0 || mantissa >= MAX_EXACT_MANTISSA || decimals >= POWERS_OF_TEN.length) {
+            return false;
+        }
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        parsedDouble = negative ? -value : value;
+        return true;
+    }
+
+    /**
+     * Decodes the data of a measurement as output by the simulator's generators
+     * into {@link #parsedDouble}. A percent sign after the number, as in
+     * saturation values such as {@code 97.0%}, is dropped. Numbers outside the
+     * fast path, e.g., with an exponent as printed by {@link Double#toString},
+     * are decoded through a string.
+     *
+     * @return false if the data is not a number, e.g., an alert state such as
+     *         {@code triggered}
+     */
+    final boolean parseValue(ByteBuffer buffer, int from, int to) {
+        from = skipLeading(buffer, from, to);
+        to = skipTrailing(buffer, from, to);
+        if (to > from && buffer.get(to - 1) == '%') {
+            to = skipTrailing(buffer, from, to - 1);
+        }
+        if (parseDouble(buffer, from, to)) {
+            return true;
+        }
+        try {
+            parsedDouble = Double.parseDouble(decode(buffer, from, to));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    final int recordTypeCode(ByteBuffer buffer, int from, int to) {
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            hash = hash * 31 + buffer.get(i);
+        }
+        int mask = typeNames.length - 1;
+        int slot = hash & mask;
+        byte[] name;
+        while ((name = typeNames[slot]) != null) {
+            if (matches(name, buffer, from, to)) {
+                return typeCodes[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        name = new byte[to - from];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(from + i);
+        }
+        int code = registry.codeFor(new String(name, charset));
+        typeNames[slot] = name;
+        typeCodes[slot] = code;
+        if (++typeCount * 2 > typeNames.length) {
+            growTypes();
+        }
+        return code;
+    }
+
+    private static boolean matches(byte[] name, ByteBuffer buffer, int from, int to) {
+        if (name.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growTypes() {
+        byte[][] oldNames = typeNames;
+        int[] oldCodes = typeCodes;
+        typeNames = new byte[oldNames.length * 2][];
+        typeCodes = new int[oldNames.length * 2];
+        int mask = typeNames.length - 1;
+        for (int i = 0; i < oldNames.length; i++) {
+            byte[] name = oldNames[i];
+            if (name != null) {
+                int hash = 0;
+                for (byte b : name) {
+                    hash = hash * 31 + b;
+                }
+                int slot = hash & mask;
+                while (typeNames[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                typeNames[slot] = name;
+                typeCodes[slot] = oldCodes[i];
+            }
+        }
+    }
+
+    /** Skips whitespace as {@link String#trim()} does. */
+    static int skipLeading(ByteBuffer buffer, int from, int to) {
+        while (from < to && (buffer.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    static int skipTrailing(ByteBuffer buffer, int from, int to) {
+        while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,81 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses newline-aligned chunks of a
+ * {@code patientId,measurementValue,recordType,timestamp} file straight from
+ * their bytes, for the parallel path of the {@link FileDataReader}.
+ *
+ * <p>Any line outside the common form, e.g., with an exponent, an overflowing
+ * number or a malformed field, is decoded into a string and handled by
+ * {@link FileDataReader#parseLine(String, RecordTypeRegistry, MeasurementBatch)},
+ * so results and error messages match the line-by-line reader exactly.</p>
+ */
+final class CsvChunkParser extends ChunkParser {
+    /**
+     * Constructs a parser.
+     *
+     * @param charset the charset of the file, used for record type names and for
+     *                lines outside the fast path
+     */
+    CsvChunkParser(Charset charset) {
+        super(charset);
+    }
+
+    @Override
+    void parseLine(ByteBuffer buffer, int lineStart, int lineEnd) {
+        int firstComma = -1;
+        int secondComma = -1;
+        int thirdComma = -1;
+        int commas = 0;
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buffer.get(i) == ',') {
+                commas++;
+                if (commas == 1) {
+                    firstComma = i;
+                } else if (commas == 2) {
+                    secondComma = i;
+                } else if (commas == 3) {
+                    thirdComma = i;
+                }
+            }
+        }
+        if (commas != 3 || !parseFields(buffer, lineStart, firstComma, secondComma, thirdComma, lineEnd)) {
+            parseSlowly(buffer, lineStart, lineEnd);
+        }
+    }
+
+    private boolean parseFields(ByteBuffer buffer, int lineStart, int firstComma, int secondComma, int thirdComma,
+            int lineEnd) {
+        if (!parseLong(buffer, lineStart, firstComma, 10)
+                || parsedLong < Integer.MIN_VALUE || parsedLong > Integer.MAX_VALUE) {
+            return false;
+        }
+        int patientId = (int) parsedLong;
+        if (!parseDouble(buffer, firstComma + 1, secondComma)) {
+            return false;
+        }
+        double measurementValue = parsedDouble;
+        if (!parseLong(buffer, thirdComma + 1, lineEnd, 18)) {
+            return false;
+        }
+        int typeStart = skipLeading(buffer, secondComma + 1, thirdComma);
+        int typeEnd = skipTrailing(buffer, typeStart, thirdComma);
+        int recordTypeCode = recordTypeCode(buffer, typeStart, typeEnd);
+
+        add(patientId, measurementValue, recordTypeCode, parsedLong);
+        return true;
+    }
+
+    /** Hands a line outside the fast path to the string-based parser. */
+    private void parseSlowly(ByteBuffer buffer, int lineStart, int lineEnd) {
+        String line = decode(buffer, lineStart, lineEnd);
+        if (line.trim().isEmpty()) {
+            return;
+        }
+        FileDataReader.parseLine(line, registry, batch);
+        startBatchIfFull();
+    }
+}
@@ -1,9 +1,18 @@
 package com.data_management;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.DoublePredicate;
 import com.alerts.AlertGenerator;
 
 /**
@@ -11,17 +20,63 @@ import com.alerts.AlertGenerator;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ *
+ * <p>The storage is safe for concurrent use by readers such as the
+ * {@link WebSocketDataReader}, file loads and the alert loop. Patients are held
+ * in a concurrent {@link PatientDirectory} keyed by the primitive patient ID,
+ * and each patient serialises only its own writes, so
+ * ingestion for different patients never contends. Queries read consistent
+ * snapshots without taking any lock.</p>
+ *
+ * <p>Subclasses may partition the patients by ID across several directories,
+ * see {@link #DataStorage(int)}; lookups route to the directory owning the ID
+ * and {@link #patients()} spans all of them.</p>
+ *
+ * <p>A secondary {@link RecordTypeIndex} lists the patients holding each record
+ * type, so cross-patient queries on one type, such as
+ * {@link #getRecordsByType(String, long, long)} and the aggregates, only visit
+ * patients with matching data.</p>
  */
 public class DataStorage {
     private static DataStorage instance;
-    private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final PatientDirectory<Patient>[] patientMaps; // Patients by ID, the partition owning ID i at floorMod(i, length).
+    private final RetentionPolicy retentionPolicy = new RetentionPolicy();
+    private final EvictionStats evictionStats = new EvictionStats();
+    private final WindowPolicy windowPolicy = new WindowPolicy();
+    private final RecordTypeIndex typeIndex = new RecordTypeIndex();
+    private final Collection<Patient> patientView; // Read-only live view of the patients.
+    private volatile StoragePersistence persistence; // Null while the storage is purely in memory.
+    private volatile QueryCache queryCache; // Null unless query caching is enabled.
 
     /**
      * Constructs a new instance of DataStorage, initializing the underlying storage
-     * structure.
+     * structure. Besides the shared instance returned by {@link #getInstance()},
+     * independent storages may be created, e.g., in tests.
      */
-    private DataStorage() {
-        this.patientMap = new HashMap<>();
+    public DataStorage() {
+        this(1);
+    }
+
+    /**
+     * Constructs a storage whose patients are partitioned by ID, for subclasses
+     * that manage each partition separately, such as {@link ShardedDataStorage}.
+     * The patients whose ID is congruent to {@code i} modulo the partition count
+     * are held in partition {@code i}.
+     *
+     * @param partitions the number of partitions
+     */
+    protected DataStorage(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("At least one partition is required: " + partitions);
+        }
+        @SuppressWarnings("unchecked")
+        PatientDirectory<Patient>[] maps = (PatientDirectory<Patient>[]) new PatientDirectory<?>[partitions];
+        for (int i = 0; i < partitions; i++) {
+            maps[i] = new PatientDirectory<>(partitions, i);
+        }
+        this.patientMaps = maps;
+        this.patientView = partitions == 1 ? Collections.unmodifiableCollection(maps[0].values())
+                : new AllPatients();
     }
 
     /**
@@ -51,12 +106,118 @@ public class DataStorage {
      *                         milliseconds since the Unix epoch
      */
     public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, RecordTypeRegistry.getInstance().codeFor(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data whose record type has already been encoded by the
+     * {@link RecordTypeRegistry}. Readers encode the record type once per
+     * measurement and call this method, so storage never handles type names.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void addPatientData(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        Patient patient = getOrCreatePatient(patientId);
+        StoragePersistence currentPersistence = persistence;
+        if (currentPersistence == null) {
+            patient.addRecord(measurementValue, recordTypeCode, timestamp);
+        } else {
+            patient.addLoggedRecord(measurementValue, recordTypeCode, timestamp, currentPersistence.getLog());
+        }
+        QueryCache cache = queryCache;
+        if (cache != null) {
+            cache.afterWrite(patient, recordTypeCode, timestamp, measurementValue);
+        }
+    }
+
+    /**
+     * Adds a batch of measurements, as if each was passed to
+     * {@link #addPatientData(int, double, int, long)}; the measurements of each
+     * patient are added in batch order. The batch
+     * is grouped by patient first, so the patient lookup, the patient's lock and
+     * the write-ahead log's lock are paid once per patient rather than once per
+     * measurement. Readers should prefer this method for bulk and streaming
+     * ingestion. The batch is not modified and may be reused afterwards.
+     *
+     * @param batch the measurements to add
+     */
+    public void addPatientData(MeasurementBatch batch) {
+        int[] order = batch.orderByPatient();
+        StoragePersistence currentPersistence = persistence;
+        QueryCache cache = queryCache;
+        int start = 0;
+        while (start < order.length) {
+            int patientId = batch.patientIds[order[start]];
+            int end = start + 1;
+            while (end < order.length && batch.patientIds[order[end]] == patientId) {
+                end++;
+            }
+            Patient patient = getOrCreatePatient(patientId);
+            if (currentPersistence == null) {
+                patient.addRecords(batch, order, start, end);
+            } else {
+                patient.addLoggedRecords(batch, order, start, end, currentPersistence.getLog());
+            }
+            if (cache != null) {
+                for (int k = start; k < end; k++) {
+                    int i = order[k];
+                    cache.afterWrite(patient, batch.recordTypeCodes[i], batch.timestamps[i], batch.values[i]);
+                }
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Returns the patient with the given ID, creating it if it doesn't exist yet.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the patient
+     */
+    Patient getOrCreatePatient(int patientId) {
+        PatientDirectory<Patient> patientMap = patientMap(patientId);
         Patient patient = patientMap.get(patientId);
         if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+            patient = patientMap.computeIfAbsent(patientId,
+                    id -> new Patient(id, retentionPolicy, evictionStats, windowPolicy, typeIndex));
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
+        return patient;
+    }
+
+    /**
+     * Returns the directory of the partition owning a patient ID.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the patient directory
+     */
+    private PatientDirectory<Patient> patientMap(int patientId) {
+        PatientDirectory<Patient>[] maps = patientMaps;
+        return maps.length == 1 ? maps[0] : maps[Math.floorMod(patientId, maps.length)];
+    }
+
+    /**
+     * Returns the directory of the patients of one partition.
+     *
+     * @param partition the partition index, see {@link #DataStorage(int)}
+     * @return the patient directory
+     */
+    PatientDirectory<Patient> partitionPatients(int partition) {
+        return patientMaps[partition];
+    }
+
+    /**
+     * Returns the patient with the given ID. All queries by patient ID look the
+     * patient up through this method.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the patient, or null if the storage holds no data for it
+     */
+    public Patient getPatient(int patientId) {
+        return patientMap(patientId).get(patientId);
     }
 
     /**
@@ -73,20 +234,423 @@ public class DataStorage {
      *         range
      */
     public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
-        Patient patient = patientMap.get(patientId);
+        Patient patient = getPatient(patientId);
         if (patient != null) {
-            return patient.getRecords(startTime, endTime);
+            QueryCache cache = queryCache;
+            return cache == null ? patient.getRecords(startTime, endTime)
+                    : cache.getRecords(patient, startTime, endTime);
         }
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Passes a patient's measurements of one record type within a time range to
+     * a consumer, in timestamp order. Nothing is allocated per call, so readers
+     * that poll the storage, such as alert evaluation, produce no garbage.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param consumer   receives the matching measurements
+     * @return the number of measurements passed to the consumer
+     */
+    public int forEachRecord(int patientId, String recordType, long startTime, long endTime,
+            MeasurementConsumer consumer) {
+        return forEachRecord(patientId, RecordTypeRegistry.getInstance().lookup(recordType), startTime, endTime,
+                consumer);
+    }
+
+    /**
+     * Passes a patient's measurements of one record type, given by its
+     * {@link RecordTypeRegistry} code, within a time range to a consumer.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the registry code of the record type
+     * @param startTime      the start of the time range, in milliseconds since
+     *                       the Unix epoch
+     * @param endTime        the end of the time range, in milliseconds since the
+     *                       Unix epoch
+     * @param consumer       receives the matching measurements
+     * @return the number of measurements passed to the consumer
+     */
+    public int forEachRecord(int patientId, int recordTypeCode, long startTime, long endTime,
+            MeasurementConsumer consumer) {
+        Patient patient = getPatient(patientId);
+        return patient == null ? 0 : patient.forEachRecord(recordTypeCode, startTime, endTime, consumer);
+    }
+
+    /**
+     * Returns a patient's newest measurement of a record type from the
+     * latest-value index, without reading the patient's history.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @return the newest measurement, or null if there is none
+     */
+    public PatientRecord getLatestRecord(int patientId, String recordType) {
+        Patient patient = getPatient(patientId);
+        int recordTypeCode = RecordTypeRegistry.getInstance().lookup(recordType);
+        if (patient == null || recordTypeCode < 0) {
+            return null;
+        }
+        return patient.getLatestRecord(recordTypeCode);
+    }
+
+    /**
+     * Returns a patient's running statistics of a record type over a sliding
+     * window, e.g., the mean heart rate over the last 5 minutes, maintained on
+     * insert rather than computed from the raw measurements. The window must
+     * have been configured in the {@link #getWindowPolicy() window policy}.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param window     the length of the window
+     * @return the statistics, or null if the patient has no measurements of that
+     *         type or no such window is configured
+     */
+    public WindowStats getWindowStats(int patientId, String recordType, Duration window) {
+        Patient patient = getPatient(patientId);
+        int recordTypeCode = RecordTypeRegistry.getInstance().lookup(recordType);
+        if (patient == null || recordTypeCode < 0) {
+            return null;
+        }
+        return patient.getWindowStats(recordTypeCode, window.toMillis());
+    }
+
+    /**
+     * Takes a snapshot of the latest value of the given record types for all
+     * patients, e.g., for a ward dashboard. The snapshot is built in a single pass
+     * over the latest-value index of each patient; no history is read.
+     *
+     * @param recordTypes the record types to include, e.g., "HeartRate"
+     * @return the latest values, one row per patient
+     */
+    public LatestVitals getLatestVitals(String... recordTypes) {
+        RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        int[] codes = new int[recordTypes.length];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = registry.lookup(recordTypes[i]);
+        }
+        Collection<Patient> all = patients();
+        int capacity = Math.max(16, all.size());
+        int[] patientIds = new int[capacity];
+        long[] timestamps = new long[capacity * codes.length];
+        double[] values = new double[capacity * codes.length];
+        int rows = 0;
+        for (Patient patient : all) {
+            if (rows == capacity) { // patients were added while iterating
+                capacity *= 2;
+                patientIds = Arrays.copyOf(patientIds, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity * codes.length);
+                values = Arrays.copyOf(values, capacity * codes.length);
+            }
+            patientIds[rows] = patient.getPatientId();
+            patient.readLatest(codes, timestamps, values, rows * codes.length);
+            rows++;
+        }
+        return new LatestVitals(recordTypes.clone(), patientIds, timestamps, values, rows);
+    }
+
+    /**
+     * Retrieves downsampled summaries of one record type of a patient for trend
+     * views over long time ranges. The summaries come from the coarsest rollup
+     * tier that still satisfies the requested resolution, so a week of 1 Hz data
+     * at one-hour resolution reads 168 buckets rather than 600,000 records.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param recordType       the type of record, e.g., "ECG"
+     * @param startTime        the start of the time range, in milliseconds since
+     *                         the Unix epoch
+     * @param endTime          the end of the time range, in milliseconds since
+     *                         the Unix epoch
+     * @param resolutionMillis the width of the finest detail the caller needs,
+     *                         in milliseconds
+     * @return the buckets overlapping the range, oldest first
+     */
+    public List<RollupBucket> getRollups(int patientId, String recordType, long startTime, long endTime,
+            long resolutionMillis) {
+        Patient patient = getPatient(patientId);
+        int recordTypeCode = RecordTypeRegistry.getInstance().lookup(recordType);
+        if (patient == null || recordTypeCode < 0) {
+            return new ArrayList<>();
+        }
+        return patient.getRollups(recordTypeCode, startTime, endTime, resolutionMillis);
+    }
+
+    /**
+     * Aggregates one record type over all patients within a time range, e.g., the
+     * mean saturation of the ward over the last hour. The patients are split
+     * across the common fork-join pool and scanned in parallel.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return the count, minimum, maximum, sum and mean of the measurements
+     */
+    public AggregateResult aggregate(String recordType, long startTime, long endTime) {
+        return aggregate(recordType, startTime, endTime, null);
+    }
+
+    /**
+     * Aggregates the measurements of one record type over all patients that
+     * satisfy a condition. Counting is included: for instance,
+     * {@code aggregate("HeartRate", start, end, v -> v > 120).getPatientCount()}
+     * is the number of patients with a heart rate above 120 in the range.
+     *
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param condition  the condition a measurement value must satisfy to be
+     *                   aggregated, or null to aggregate every measurement
+     * @return the count, minimum, maximum, sum and mean of the matching
+     *         measurements, and the number of patients having any
+     */
+    public AggregateResult aggregate(String recordType, long startTime, long endTime, DoublePredicate condition) {
+        int recordTypeCode = RecordTypeRegistry.getInstance().lookup(recordType);
+        if (recordTypeCode < 0) {
+            return new AggregateResult(0, 0, Double.NaN, Double.NaN, 0);
+        }
+        QueryCache cache = queryCache;
+        if (cache != null && condition == null) {
+            return cache.getTypeResult(QueryCache.Key.AGGREGATE, recordTypeCode, startTime, endTime, 0,
+                    () -> newAggregation(recordTypeCode, startTime, endTime).summarise(null));
+        }
+        return newAggregation(recordTypeCode, startTime, endTime).summarise(condition);
+    }
+
+    /**
+     * Computes a percentile of one record type over all patients within a time
+     * range, using the nearest-rank method. The values are gathered in parallel
+     * and held in memory while they are sorted.
+     *
+     * @param recordType the type of record, e.g., "Saturation"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at the percentile, or NaN if there are no measurements
+     */
+    public double percentile(String recordType, long startTime, long endTime, double percentile) {
+        int recordTypeCode = RecordTypeRegistry.getInstance().lookup(recordType);
+        if (recordTypeCode < 0) {
+            return Double.NaN;
+        }
+        QueryCache cache = queryCache;
+        if (cache != null) {
+            return cache.getTypeResult(QueryCache.Key.PERCENTILE, recordTypeCode, startTime, endTime, percentile,
+                    () -> newAggregation(recordTypeCode, startTime, endTime).percentile(percentile));
+        }
+        return newAggregation(recordTypeCode, startTime, endTime).percentile(percentile);
+    }
+
+    private ParallelAggregation newAggregation(int recordTypeCode, long startTime, long endTime) {
+        return new ParallelAggregation(ForkJoinPool.commonPool(),
+                typeIndex.patients(recordTypeCode, startTime, endTime), recordTypeCode, startTime, endTime);
+    }
+
+    /**
+     * Retrieves the records of one record type across all patients within a time
+     * range, e.g., all Cholesterol records of the ward. Only patients with
+     * measurements of that type overlapping the range are visited, found through
+     * the record type index.
+     *
+     * @param recordType the type of record, e.g., "Cholesterol"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return the matching records, grouped by patient and ordered by timestamp
+     *         within each patient
+     */
+    public List<PatientRecord> getRecordsByType(String recordType, long startTime, long endTime) {
+        List<PatientRecord> records = new ArrayList<>();
+        int recordTypeCode = RecordTypeRegistry.getInstance().lookup(recordType);
+        if (recordTypeCode >= 0) {
+            typeIndex.forEach(recordTypeCode, startTime, endTime, (patientId, timestamp, value) -> records
+                    .add(new PatientRecord(patientId, value, recordType, timestamp)));
+        }
+        return records;
+    }
+
+    /**
+     * Passes the measurements of one record type across all patients within a
+     * time range to a consumer, without creating a record object per
+     * measurement. Only patients with measurements of that type overlapping the
+     * range are visited.
+     *
+     * @param recordType the type of record, e.g., "Cholesterol"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param consumer   receives the matching measurements, patient by patient
+     * @return the number of measurements passed to the consumer
+     */
+    public int forEachRecordByType(String recordType, long startTime, long endTime,
+            PatientMeasurementConsumer consumer) {
+        int recordTypeCode = RecordTypeRegistry.getInstance().lookup(recordType);
+        return recordTypeCode < 0 ? 0 : typeIndex.forEach(recordTypeCode, startTime, endTime, consumer);
+    }
+
+    /**
+     * Returns the secondary index of patients by record type, shared by every
+     * patient of this storage.
+     *
+     * @return the record type index
+     */
+    RecordTypeIndex typeIndex() {
+        return typeIndex;
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
      * @return a list of all patients
      */
     public List<Patient> getAllPatients() {
-        return new ArrayList<>(patientMap.values());
+        return new ArrayList<>(patients());
+    }
+
+    /**
+     * Returns a live, read-only view of all patients. Unlike
+     * {@link #getAllPatients()} nothing is copied; iteration reflects patients
+     * added concurrently and never throws ConcurrentModificationException.
+     *
+     * @return the patients of this storage
+     */
+    public Collection<Patient> patients() {
+        return patientView;
+    }
+
+    /**
+     * Returns the retention policy of this storage. Changes to the returned policy
+     * apply to subsequent inserts of all patients.
+     *
+     * @return the retention policy
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Returns the sliding-window policy of this storage. Windows added to the
+     * returned policy are maintained by all patients from their next insert of
+     * the record type on.
+     *
+     * @return the window policy
+     */
+    public WindowPolicy getWindowPolicy() {
+        return windowPolicy;
+    }
+
+    /**
+     * Caches the results of {@link #getRecords(int, long, long)}, of
+     * unconditional aggregates and of percentiles, for dashboards that poll the
+     * same windows repeatedly. Adding data only updates the cached results whose
+     * time range contains the new measurement: records of the same patient are
+     * extended when the measurement is the newest in the result and invalidated
+     * otherwise, aggregates of the same record type are invalidated. Enabling the
+     * cache again replaces it with an empty one.
+     *
+     * @param maxRecords the maximum number of records held by cached results; an
+     *                   aggregate counts as one record
+     */
+    public synchronized void enableQueryCache(long maxRecords) {
+        if (maxRecords < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one record: " + maxRecords);
+        }
+        disableQueryCache();
+        queryCache = new QueryCache(maxRecords);
+    }
+
+    /**
+     * Stops caching query results and drops the cached results.
+     */
+    public synchronized void disableQueryCache() {
+        QueryCache cache = queryCache;
+        if (cache != null) {
+            queryCache = null;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the hit, miss, eviction, invalidation and extension counters of the
+     * query cache.
+     *
+     * @return the counters, or null if the query cache is not enabled
+     */
+    public QueryCacheStats getQueryCacheStats() {
+        QueryCache cache = queryCache;
+        return cache == null ? null : cache.getStats();
+    }
+
+    /**
+     * Returns the counters of measurements evicted by the retention policy.
+     *
+     * @return the eviction counters
+     */
+    public EvictionStats getEvictionStats() {
+        return evictionStats;
+    }
+
+    /**
+     * Makes this storage durable. The latest snapshot in the directory is loaded
+     * and the write-ahead log written after it is replayed; from then on every
+     * measurement added is logged, and a snapshot is taken periodically so that
+     * the next restart only has to replay a short log tail.
+     * Must be called before any data is added.
+     *
+     * @param directory        the directory holding snapshots and log segments
+     * @param snapshotInterval how often to take a snapshot, or null to take them
+     *                         only through {@link #snapshot()}
+     * @throws IOException           if the directory cannot be read or written
+     * @throws IllegalStateException if persistence is already enabled or the
+     *                               storage already holds patients
+     */
+    public synchronized void enablePersistence(Path directory, Duration snapshotInterval) throws IOException {
+        if (persistence != null) {
+            throw new IllegalStateException("Persistence is already enabled");
+        }
+        if (!patients().isEmpty()) {
+            throw new IllegalStateException("Persistence must be enabled before any data is added");
+        }
+        persistence = StoragePersistence.open(this, directory, snapshotInterval);
+    }
+
+    /**
+     * Writes a snapshot of all patients now and discards the log it makes
+     * redundant.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        StoragePersistence currentPersistence = persistence;
+        if (currentPersistence == null) {
+            throw new IllegalStateException("Persistence is not enabled");
+        }
+        currentPersistence.snapshot();
+    }
+
+    /**
+     * Flushes and closes the write-ahead log. Data added afterwards is kept in
+     * memory only.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void disablePersistence() throws IOException {
+        if (persistence != null) {
+            persistence.close();
+            persistence = null;
+        }
     }
 
     /**
@@ -104,6 +668,7 @@ public class DataStorage {
         };
 
         DataStorage storage = DataStorage.getInstance();
+        storage.getWindowPolicy().addWindow("HeartRate", AlertGenerator.SUSTAINED_HEART_RATE_WINDOW);
 
         // Read data into the storage
         try {
@@ -125,8 +690,45 @@ public class DataStorage {
         AlertGenerator alertGenerator = new AlertGenerator(storage);
 
         // Evaluate all patients' data to check for conditions that may trigger alerts
-        for (Patient patient : storage.getAllPatients()) {
-            alertGenerator.evaluateData(patient);
+        alertGenerator.evaluateAll();
+    }
+
+    /**
+     * Read-only view of the patients of all partitions, one partition after the
+     * other.
+     */
+    private final class AllPatients extends AbstractCollection<Patient> {
+        @Override
+        public Iterator<Patient> iterator() {
+            return new Iterator<Patient>() {
+                private int partition;
+                private Iterator<Patient> current = patientMaps[0].values().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && partition + 1 < patientMaps.length) {
+                        current = patientMaps[++partition].values().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public Patient next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (PatientDirectory<Patient> patientMap : patientMaps) {
+                size += patientMap.size();
+            }
+            return size;
         }
     }
 }
@@ -0,0 +1,40 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the data of a single measurement given as a string, such as the last
+ * field of a WebSocket text frame, with the same rules as the chunk parsers:
+ * each line is one value, decoded by {@link ChunkParser#parseValue}.
+ *
+ * <p>A parser is used by one thread at a time.</p>
+ */
+final class DataValueParser extends ChunkParser {
+    private boolean valid;
+
+    /**
+     * Constructs a parser of UTF-8 data.
+     */
+    DataValueParser() {
+        super(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void parseLine(ByteBuffer buffer, int lineStart, int lineEnd) {
+        valid = parseValue(buffer, lineStart, lineEnd);
+    }
+
+    /**
+     * Parses the data of a measurement into {@link #parsedDouble}.
+     *
+     * @param data the data as output by a generator, e.g., "97%"
+     * @return false if the data is not a number, e.g., an alert state such as
+     *         "triggered"
+     */
+    boolean parse(String data) {
+        byte[] bytes = data.getBytes(charset);
+        parseLine(ByteBuffer.wrap(bytes), 0, bytes.length);
+        return valid;
+    }
+}
@@ -0,0 +1,142 @@
+package com.data_management;
+
+/**
+ * Connection state and throughput counters of one endpoint of a
+ * {@link MultiEndpointWebSocketReader}. The counters are cumulative and safe
+ * to read while data is being received; throughput is their difference
+ * between two reads divided by the time in between.
+ */
+public final class EndpointStats {
+    private final String url;
+
+    // Written by the endpoint's I/O thread only
+    private volatile boolean connected;
+    private volatile long messages;
+    private volatile long bytes;
+    private volatile long connections;
+    private volatile long failures;
+    private volatile long backoffMillis;
+    private volatile String lastError;
+
+    /**
+     * Constructs the counters of an endpoint.
+     *
+     * @param url the URL of the endpoint
+     */
+    EndpointStats(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Records a completed handshake.
+     */
+    void recordConnected() {
+        connected = true;
+        connections++;
+        backoffMillis = 0;
+    }
+
+    /**
+     * Records a failed connection attempt or a lost connection.
+     *
+     * @param error         why the connection failed or was lost
+     * @param backoffMillis the delay before the next attempt
+     */
+    void recordFailure(String error, long backoffMillis) {
+        connected = false;
+        failures++;
+        lastError = error;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Records that the connection was closed by the reader.
+     */
+    void recordClosed() {
+        connected = false;
+        backoffMillis = 0;
+    }
+
+    /**
+     * Records a received message.
+     *
+     * @param payloadBytes the size of its payload
+     */
+    void recordMessage(int payloadBytes) {
+        messages++;
+        bytes += payloadBytes;
+    }
+
+    /**
+     * Returns the URL of the endpoint.
+     *
+     * @return the URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns whether the endpoint is connected and its handshake completed.
+     *
+     * @return true if data can be received from the endpoint
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Returns the number of messages received from the endpoint.
+     *
+     * @return the number of messages
+     */
+    public long getMessages() {
+        return messages;
+    }
+
+    /**
+     * Returns the number of payload bytes received from the endpoint.
+     *
+     * @return the number of bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of successful connections, including reconnections.
+     *
+     * @return the number of connections
+     */
+    public long getConnections() {
+        return connections;
+    }
+
+    /**
+     * Returns the number of failed connection attempts and lost connections.
+     *
+     * @return the number of failures
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * Returns the delay before the pending reconnection, which grows with every
+     * consecutive failure.
+     *
+     * @return the delay in milliseconds, or 0 if no reconnection is pending
+     */
+    public long getBackoffMillis() {
+        return backoffMillis;
+    }
+
+    /**
+     * Returns why the last connection failed or was lost.
+     *
+     * @return the last error, or null if there was none
+     */
+    public String getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,81 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the data evicted by a {@link DataStorage} under its
+ * {@link RetentionPolicy}. The counters are cumulative and safe to read while
+ * ingestion is running, which makes them suitable for sizing heaps.
+ */
+public class EvictionStats {
+    private final LongAdder chunksEvicted = new LongAdder();
+    private final LongAdder recordsEvictedByAge = new LongAdder();
+    private final LongAdder recordsEvictedByCapacity = new LongAdder();
+
+    /**
+     * Records the eviction of a chunk because its measurements expired.
+     *
+     * @param records the number of measurements in the chunk
+     */
+    void recordAgeEviction(int records) {
+        chunksEvicted.increment();
+        recordsEvictedByAge.add(records);
+    }
+
+    /**
+     * Records the eviction of a chunk because a patient exceeded its memory cap.
+     *
+     * @param records the number of measurements in the chunk
+     */
+    void recordCapacityEviction(int records) {
+        chunksEvicted.increment();
+        recordsEvictedByCapacity.add(records);
+    }
+
+    /**
+     * Returns the number of chunks evicted for any reason.
+     *
+     * @return the number of evicted chunks
+     */
+    public long getChunksEvicted() {
+        return chunksEvicted.sum();
+    }
+
+    /**
+     * Returns the number of measurements evicted because they expired.
+     *
+     * @return the number of measurements evicted by age
+     */
+    public long getRecordsEvictedByAge() {
+        return recordsEvictedByAge.sum();
+    }
+
+    /**
+     * Returns the number of measurements evicted to respect the per-patient
+     * memory cap.
+     *
+     * @return the number of measurements evicted by capacity
+     */
+    public long getRecordsEvictedByCapacity() {
+        return recordsEvictedByCapacity.sum();
+    }
+
+    /**
+     * Returns the total number of measurements evicted.
+     *
+     * @return the number of evicted measurements
+     */
+    public long getRecordsEvicted() {
+        return getRecordsEvictedByAge() + getRecordsEvictedByCapacity();
+    }
+
+    /**
+     * Returns the total heap bytes released by eviction, as accounted by
+     * {@link RetentionPolicy#BYTES_PER_MEASUREMENT}.
+     *
+     * @return the number of bytes released
+     */
+    public long getBytesEvicted() {
+        return getRecordsEvicted() * RetentionPolicy.BYTES_PER_MEASUREMENT;
+    }
+}
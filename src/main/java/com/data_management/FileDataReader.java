@@ -3,14 +3,48 @@ package com.data_management;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Implementation of the DataReader interface that reads patient data from a file.
  * The file should contain patient data in a specific format:
  * patientId,measurementValue,recordType,timestamp
+ *
+ * <p>Regular files are memory-mapped and split into newline-aligned chunks of
+ * about {@link #DEFAULT_CHUNK_SIZE} bytes, which are parsed in parallel on the
+ * common fork-join pool by {@link CsvChunkParser}s. The calling thread hands the
+ * parsed measurements to {@link DataStorage#addPatientData(MeasurementBatch)}
+ * in batches of {@link #BATCH_SIZE}, in the order of the file:
+ * storing chunks concurrently would turn a time-ordered export into
+ * out-of-order inserts for every patient, which cost far more than they save.
+ * Only a few chunks ahead of the one being stored are parsed at any time, so
+ * memory use does not grow with the size of the file. Other files, such as
+ * pipes, are read line by line.</p>
  */
 public class FileDataReader implements DataReader {
+    /** Size in bytes of the chunks parsed in parallel. */
+    static final int DEFAULT_CHUNK_SIZE = 32 << 20;
+
+    /** Number of measurements handed to the storage at a time. */
+    static final int BATCH_SIZE = 4096;
+
+    private static final int BOUNDARY_SCAN_SIZE = 4096;
+
     private String filePath;
+    private final int chunkSize;
 
     /**
      * Constructs a FileDataReader with the specified file path.
@@ -18,7 +52,22 @@ public class FileDataReader implements DataReader {
      * @param filePath the path to the file containing patient data
      */
     public FileDataReader(String filePath) {
+        this(filePath, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a FileDataReader that splits the file into chunks of the given
+     * size.
+     *
+     * @param filePath  the path to the file containing patient data
+     * @param chunkSize the approximate size in bytes of a chunk
+     */
+    FileDataReader(String filePath, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
         this.filePath = filePath;
+        this.chunkSize = chunkSize;
     }
 
     /**
@@ -30,31 +79,181 @@ public class FileDataReader implements DataReader {
      */
     @Override
     public void readData(DataStorage dataStorage) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                // Skip empty lines
-                if (line.trim().isEmpty()) {
-                    continue;
-                }
-                
-                // Parse the line and add data to storage
-                String[] parts = line.split(",");
-                if (parts.length == 4) {
-                    try {
-                        int patientId = Integer.parseInt(parts[0].trim());
-                        double measurementValue = Double.parseDouble(parts[1].trim());
-                        String recordType = parts[2].trim();
-                        long timestamp = Long.parseLong(parts[3].trim());
-                        
-                        dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
-                    } catch (NumberFormatException e) {
-                        System.err.println("Error parsing line: " + line + " - " + e.getMessage());
+        Path path = Paths.get(filePath);
+        if (!Files.isRegularFile(path)) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+                readLines(reader, dataStorage);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] boundaries = chunkBoundaries(channel, chunkSize);
+            int chunks = boundaries.length - 1;
+            if (chunks == 1) {
+                store(parseChunk(channel, boundaries[0], boundaries[1]), dataStorage);
+                return;
+            }
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            int ahead = pool.getParallelism() + 1;
+            Deque<Future<List<MeasurementBatch>>> parsing = new ArrayDeque<>();
+            try {
+                for (int i = 0; i < chunks; i++) {
+                    long start = boundaries[i];
+                    long end = boundaries[i + 1];
+                    parsing.addLast(pool.submit(() -> parseChunk(channel, start, end)));
+                    if (parsing.size() > ahead) {
+                        store(await(parsing.removeFirst()), dataStorage);
                     }
-                } else {
-                    System.err.println("Invalid line format: " + line);
                 }
+                while (!parsing.isEmpty()) {
+                    store(await(parsing.removeFirst()), dataStorage);
+                }
+            } finally {
+                for (Future<List<MeasurementBatch>> chunk : parsing) {
+                    chunk.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads patient data line by line. Used for files that cannot be mapped.
+     *
+     * @param reader      the source of the lines
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if there is an error reading the lines
+     */
+    static void readLines(BufferedReader reader, DataStorage dataStorage) throws IOException {
+        RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        MeasurementBatch batch = new MeasurementBatch(BATCH_SIZE);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            // Skip empty lines
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            parseLine(line, registry, batch);
+            if (batch.isFull()) {
+                dataStorage.addPatientData(batch);
+                batch.clear();
+            }
+        }
+        dataStorage.addPatientData(batch);
+    }
+
+    /**
+     * Parses one non-empty line and appends its measurement to a batch, or
+     * reports the line on standard error if it is malformed.
+     *
+     * @param line     the line, without its terminator
+     * @param registry the registry encoding the record type
+     * @param batch    the batch receiving the measurement, which must not be full
+     */
+    static void parseLine(String line, RecordTypeRegistry registry, MeasurementBatch batch) {
+        String[] parts = line.split(",");
+        if (parts.length == 4) {
+            try {
+                int patientId = Integer.parseInt(parts[0].trim());
+                double measurementValue = Double.parseDouble(parts[1].trim());
+                long timestamp = Long.parseLong(parts[3].trim());
+                int recordTypeCode = registry.codeFor(parts[2].trim());
+
+                batch.add(patientId, measurementValue, recordTypeCode, timestamp);
+            } catch (NumberFormatException e) {
+                System.err.println("Error parsing line: " + line + " - " + e.getMessage());
+            }
+        } else {
+            System.err.println("Invalid line format: " + line);
+        }
+    }
+
+    private static List<MeasurementBatch> parseChunk(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        return new CsvChunkParser(Charset.defaultCharset()).parse(chunk);
+    }
+
+    private static void store(List<MeasurementBatch> batches, DataStorage dataStorage) {
+        for (MeasurementBatch batch : batches) {
+            dataStorage.addPatientData(batch);
+        }
+    }
+
+    /**
+     * Splits a file into chunks of at least the given size, each extended to the
+     * end of its last line.
+     *
+     * @param channel   the file
+     * @param chunkSize the minimum size in bytes of a chunk
+     * @return the start of every chunk followed by the size of the file
+     * @throws IOException if the file cannot be read
+     */
+    static long[] chunkBoundaries(FileChannel channel, int chunkSize) throws IOException {
+        long size = channel.size();
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+        long position = chunkSize;
+        while (position < size) {
+            long lineStart = nextLineStart(channel, position, size, scan);
+            if (lineStart >= size) {
+                break;
+            }
+            boundaries.add(lineStart);
+            position = lineStart + chunkSize;
+        }
+        boundaries.add(size);
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /** Returns the start of the first line beginning at or after a position. */
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer scan)
+            throws IOException {
+        long offset = position - 1; // a newline just before the position makes it a line start
+        while (offset < size) {
+            scan.clear();
+            int read = channel.read(scan, offset);
+            if (read <= 0) {
+                return size;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    /**
+     * Waits for a task reading data and returns its result, rethrowing its
+     * failure.
+     *
+     * @param task the task
+     * @param <T>  the type of the result
+     * @return the result of the task
+     * @throws IOException if the task failed to read, or the wait was interrupted
+     */
+    static <T> T await(Future<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading data", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw new IOException(cause);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,317 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The staged ingest pipeline behind the WebSocket readers, so that slow storage
+ * never stalls a socket.
+ *
+ * <p>I/O threads only put the raw frames onto a bounded lock-free
+ * {@link BoundedRingQueue}. A pool of worker threads takes them off, parses
+ * them and collects the measurements in a {@link MeasurementBatch} per worker,
+ * which is handed to {@link DataStorage#addPatientData(MeasurementBatch)} when
+ * it is full or when the queue runs empty. When the queue is full, the
+ * {@link OverflowPolicy} decides whether the I/O thread waits or a frame is
+ * dropped. Frames are text messages of the form
+ * {@code patientId,timestamp,label,data} or binary
+ * {@link BinaryMeasurementFrame}s.</p>
+ *
+ * <p>With {@link #enableReordering(Duration)} the batches go through a
+ * {@link ReorderBuffer} instead, which hands them to the storage in timestamp
+ * order. Workers that find the queue empty then also release the held
+ * measurements of patients that went quiet for the allowed lateness, and
+ * {@link #stop()} releases the rest.</p>
+ */
+final class IngestPipeline {
+    /** Number of measurements a worker collects before handing them to the storage. */
+    static final int BATCH_SIZE = 512;
+
+    // Idle workers and blocked producers poll with a growing pause, up to these bounds
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    private final DataStorage dataStorage;
+    private final BoundedRingQueue<Object> frames; // Text frames as String, binary as ByteBuffer
+    private final OverflowPolicy overflowPolicy;
+    private final IngestStats ingestStats;
+    private final Thread[] workers;
+    private volatile boolean stopping; // Set once; workers drain the queue and exit.
+    private volatile ReorderBuffer reorderBuffer; // Null while batches go straight to the storage.
+    private final AtomicLong nextIdleFlush = new AtomicLong(System.nanoTime());
+    private boolean workersStarted; // Guarded by this.
+
+    /**
+     * Constructs a pipeline; its workers are started by {@link #start()}.
+     *
+     * @param dataStorage    the storage receiving the measurements
+     * @param name           the prefix of the worker threads' names
+     * @param workers        the number of worker threads parsing and storing frames
+     * @param queueCapacity  the number of frames queued for the workers, rounded up
+     *                       to a power of two
+     * @param overflowPolicy what to do with a received frame when the queue is full
+     */
+    IngestPipeline(DataStorage dataStorage, String name, int workers, int queueCapacity,
+            OverflowPolicy overflowPolicy) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("At least one worker is required: " + workers);
+        }
+        this.dataStorage = dataStorage;
+        this.frames = new BoundedRingQueue<>(queueCapacity);
+        this.overflowPolicy = overflowPolicy;
+        this.ingestStats = new IngestStats(frames);
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            this.workers[i] = new Thread(new IngestWorker(), name + "-" + i);
+            this.workers[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * Returns the counters of the pipeline.
+     *
+     * @return the ingest counters
+     */
+    IngestStats getIngestStats() {
+        return ingestStats;
+    }
+
+    /**
+     * Puts a {@link ReorderBuffer} between the workers and the storage, once;
+     * called before {@link #start()}.
+     *
+     * @param allowedLateness how far behind the latest measurement of a patient
+     *                        another one may arrive and still be put in order
+     * @return the reorder buffer, for its watermarks and counters
+     */
+    synchronized ReorderBuffer enableReordering(Duration allowedLateness) {
+        if (reorderBuffer == null) {
+            reorderBuffer = new ReorderBuffer(dataStorage, allowedLateness);
+        }
+        return reorderBuffer;
+    }
+
+    /**
+     * Returns the reorder buffer between the workers and the storage.
+     *
+     * @return the reorder buffer, or null if reordering is not enabled
+     */
+    ReorderBuffer getReorderBuffer() {
+        return reorderBuffer;
+    }
+
+    /**
+     * Starts the workers, once.
+     */
+    synchronized void start() {
+        if (!workersStarted) {
+            workersStarted = true;
+            for (Thread worker : workers) {
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Waits until the workers have stored the frames already queued and lets
+     * them exit, then releases the measurements held for reordering. Frames
+     * offered afterwards are dropped.
+     *
+     * <p>An I/O thread that saw the pipeline running just before it stopped
+     * may queue its frame after the last worker found the queue empty; the
+     * calling thread stores such frames itself once the workers are gone.</p>
+     */
+    synchronized void stop() {
+        stopping = true;
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        new IngestWorker().run(); // drains the queue and returns, since stopping is set
+        ReorderBuffer reorder = reorderBuffer;
+        if (reorder != null) {
+            reorder.flush();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Releases the held measurements of patients that went quiet, at most every
+     * half allowed lateness across all workers.
+     *
+     * @param reorder the reorder buffer
+     */
+    private void flushIdlePatients(ReorderBuffer reorder) {
+        long now = System.nanoTime();
+        long due = nextIdleFlush.get();
+        long idleNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(reorder.getAllowedLatenessMillis()),
+                TimeUnit.MILLISECONDS.toNanos(1));
+        if (now - due >= 0 && nextIdleFlush.compareAndSet(due, now + idleNanos / 2)) {
+            reorder.flushIdle(Duration.ofNanos(idleNanos));
+        }
+    }
+
+    /**
+     * Hands a received text frame to the workers, applying the overflow policy
+     * when the queue is full. Called on an I/O thread.
+     *
+     * @param frame the received frame
+     */
+    void enqueue(String frame) {
+        enqueueFrame(frame);
+    }
+
+    /**
+     * Hands a received binary frame to the workers, applying the overflow policy
+     * when the queue is full. Called on an I/O thread. The
+     * buffer is queued as is and must not be reused by the caller.
+     *
+     * @param frame the received frame
+     */
+    void enqueue(ByteBuffer frame) {
+        enqueueFrame(frame);
+    }
+
+    private void enqueueFrame(Object frame) {
+        ingestStats.recordReceived();
+        if (stopping) {
+            ingestStats.recordDropped(); // the workers have exited or are exiting
+            return;
+        }
+        if (frames.offer(frame)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                ingestStats.recordDropped();
+                return;
+            case DROP_OLDEST:
+                do {
+                    if (frames.poll() != null) {
+                        ingestStats.recordDropped();
+                    }
+                } while (!frames.offer(frame));
+                return;
+            default:
+                ingestStats.recordBlocked();
+                while (!frames.offer(frame)) {
+                    if (stopping) {
+                        ingestStats.recordDropped(); // stopped: nobody will make room
+                        return;
+                    }
+                    LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+                }
+        }
+    }
+
+    /**
+     * Parses a text frame of the form {@code patientId,timestamp,label,data} and
+     * adds its measurement to a batch.
+     *
+     * @param message  the frame
+     * @param registry the registry encoding the record type
+     * @param values   the parser of the data
+     * @param batch    the batch receiving the measurement, which must not be full
+     * @return true if the frame held a valid measurement
+     */
+    static boolean parseMessage(String message, RecordTypeRegistry registry, DataValueParser values,
+            MeasurementBatch batch) {
+        try {
+            String[] parts = message.split(",");
+            if (parts.length == 4) {
+                int patientId = Integer.parseInt(parts[0]);
+                long timestamp = Long.parseLong(parts[1]);
+                if (!values.parse(parts[3])) {
+                    System.err.println("Error parsing numeric values in message: " + message);
+                    return false;
+                }
+                int recordTypeCode = registry.codeFor(parts[2]);
+
+                batch.add(patientId, values.parsedDouble, recordTypeCode, timestamp);
+                return true;
+            } else {
+                System.err.println("Invalid message format: " + message);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Error parsing numeric values in message: " + message);
+            e.printStackTrace();
+        } catch (Exception e) {
+            System.err.println("Error processing message: " + message);
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * Takes frames off the queue, parses them and stores them in batches until
+     * the pipeline is stopped and the queue is drained.
+     */
+    private final class IngestWorker implements Runnable {
+        private final RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        private final DataValueParser values = new DataValueParser();
+        private final MeasurementBatch batch = new MeasurementBatch(BATCH_SIZE);
+
+        @Override
+        public void run() {
+            long idleParkNanos = 1;
+            while (true) {
+                Object frame = frames.poll();
+                if (frame != null) {
+                    idleParkNanos = 1;
+                    boolean valid = frame instanceof ByteBuffer
+                            ? BinaryMeasurementFrame.decode((ByteBuffer) frame, registry, batch, this::flush) >= 0
+                            : parseMessage((String) frame, registry, values, batch);
+                    if (!valid) {
+                        ingestStats.recordRejected();
+                    }
+                    if (batch.isFull()) {
+                        flush();
+                    }
+                    continue;
+                }
+                // The queue ran empty: store what was collected rather than wait for a full batch
+                flush();
+                ReorderBuffer reorder = reorderBuffer;
+                if (reorder != null) {
+                    flushIdlePatients(reorder);
+                }
+                if (stopping && frames.size() == 0) {
+                    return;
+                }
+                LockSupport.parkNanos(idleParkNanos);
+                idleParkNanos = Math.min(idleParkNanos * 2, MAX_IDLE_PARK_NANOS);
+            }
+        }
+
+        private void flush() {
+            int size = batch.size();
+            if (size == 0) {
+                return;
+            }
+            try {
+                ReorderBuffer reorder = reorderBuffer;
+                if (reorder != null) {
+                    reorder.add(batch);
+                } else {
+                    dataStorage.addPatientData(batch);
+                }
+                ingestStats.recordMeasurements(size);
+            } catch (RuntimeException e) {
+                System.err.println("Error storing received data: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
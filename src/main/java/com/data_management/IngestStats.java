@@ -0,0 +1,129 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the ingest pipeline of a {@link WebSocketDataReader}:
+ * frames received by the I/O thread, queued for the workers, dropped by the
+ * {@link OverflowPolicy} and turned into measurements. The counters are
+ * cumulative and safe to read while data is being received.
+ */
+public class IngestStats {
+    private final BoundedRingQueue<?> queue;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder measurements = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Constructs the counters of a pipeline.
+     *
+     * @param queue the queue between the I/O thread and the workers
+     */
+    IngestStats(BoundedRingQueue<?> queue) {
+        this.queue = queue;
+    }
+
+    /**
+     * Records a frame received from the network.
+     */
+    void recordReceived() {
+        received.increment();
+    }
+
+    /**
+     * Records a frame discarded because the queue was full.
+     */
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    /**
+     * Records a frame that had to wait for room in the queue.
+     */
+    void recordBlocked() {
+        blocked.increment();
+    }
+
+    /**
+     * Records measurements parsed by a worker.
+     *
+     * @param count the number of measurements
+     */
+    void recordMeasurements(int count) {
+        measurements.add(count);
+    }
+
+    /**
+     * Records a frame a worker could not parse.
+     */
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Returns the number of frames currently waiting for a worker.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of frames the queue holds before the overflow policy
+     * applies.
+     *
+     * @return the queue capacity
+     */
+    public int getQueueCapacity() {
+        return queue.capacity();
+    }
+
+    /**
+     * Returns the number of frames received from the network.
+     *
+     * @return the number of received frames
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Returns the number of frames discarded because the queue was full.
+     *
+     * @return the number of dropped frames
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of frames for which the I/O thread had to wait for room
+     * in the queue, under {@link OverflowPolicy#BLOCK}.
+     *
+     * @return the number of blocked frames
+     */
+    public long getBlocked() {
+        return blocked.sum();
+    }
+
+    /**
+     * Returns the number of measurements parsed and handed to the storage.
+     *
+     * @return the number of measurements
+     */
+    public long getMeasurements() {
+        return measurements.sum();
+    }
+
+    /**
+     * Returns the number of frames that could not be parsed.
+     *
+     * @return the number of rejected frames
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
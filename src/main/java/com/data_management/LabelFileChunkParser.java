@@ -0,0 +1,125 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses newline-aligned chunks of a label file written by the simulator's
+ * {@code FileOutputStrategy}, whose lines read
+ * {@code Patient ID: <id>, Timestamp: <timestamp>, Label: <label>, Data: <data>}.
+ *
+ * <p>The fixed parts of the layout are matched byte by byte and the fields in
+ * between are decoded in place, without regular expressions or splitting the
+ * line. Data that is not a number, such as the alert states
+ * {@code triggered} and {@code resolved}, cannot be stored as a measurement;
+ * such lines are counted by {@link #getNonNumeric()}. Lines that do not follow
+ * the layout are reported on standard error.</p>
+ */
+final class LabelFileChunkParser extends ChunkParser {
+    private static final byte[] PATIENT_ID = "Patient ID: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = ", Timestamp: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LABEL = ", Label: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA = ", Data: ".getBytes(StandardCharsets.US_ASCII);
+
+    private long nonNumeric;
+
+    /**
+     * Constructs a parser.
+     *
+     * @param charset the charset of the file, used for labels and for data
+     *                outside the fast path
+     */
+    LabelFileChunkParser(Charset charset) {
+        super(charset);
+    }
+
+    /**
+     * Returns whether a chunk follows the label file layout, judged by the start
+     * of its first line, so that readers of either format can pick the parser.
+     *
+     * @param chunk the chunk, from its position to its limit
+     * @return true if the first line starts like a line of a label file
+     */
+    static boolean isLabelFormat(ByteBuffer chunk) {
+        int start = skipLeading(chunk, chunk.position(), chunk.limit());
+        return startsWith(chunk, start, chunk.limit(), PATIENT_ID);
+    }
+
+    /**
+     * Returns the number of well-formed lines skipped so far because their data
+     * is not a number.
+     *
+     * @return the number of skipped lines
+     */
+    long getNonNumeric() {
+        return nonNumeric;
+    }
+
+    @Override
+    void parseLine(ByteBuffer buffer, int lineStart, int lineEnd) {
+        int end = skipTrailing(buffer, lineStart, lineEnd);
+        if (end == lineStart) {
+            return; // empty line
+        }
+        if (!parseFields(buffer, lineStart, end)) {
+            System.err.println("Invalid line format: " + decode(buffer, lineStart, lineEnd));
+        }
+    }
+
+    private boolean parseFields(ByteBuffer buffer, int lineStart, int lineEnd) {
+        if (!startsWith(buffer, lineStart, lineEnd, PATIENT_ID)) {
+            return false;
+        }
+        int idStart = lineStart + PATIENT_ID.length;
+        int idEnd = indexOf(buffer, idStart, lineEnd, ',');
+        if (idEnd < 0 || !parseLong(buffer, idStart, idEnd, 10)
+                || parsedLong < Integer.MIN_VALUE || parsedLong > Integer.MAX_VALUE
+                || !startsWith(buffer, idEnd, lineEnd, TIMESTAMP)) {
+            return false;
+        }
+        int patientId = (int) parsedLong;
+        int timestampStart = idEnd + TIMESTAMP.length;
+        int timestampEnd = indexOf(buffer, timestampStart, lineEnd, ',');
+        if (timestampEnd < 0 || !parseLong(buffer, timestampStart, timestampEnd, 18)
+                || !startsWith(buffer, timestampEnd, lineEnd, LABEL)) {
+            return false;
+        }
+        long timestamp = parsedLong;
+        int labelStart = timestampEnd + LABEL.length;
+        int labelEnd = labelStart;
+        while (labelEnd < lineEnd && !startsWith(buffer, labelEnd, lineEnd, DATA)) {
+            labelEnd++;
+        }
+        if (labelEnd == lineEnd) {
+            return false;
+        }
+        if (!parseValue(buffer, labelEnd + DATA.length, lineEnd)) {
+            nonNumeric++;
+            return true;
+        }
+        add(patientId, parsedDouble, recordTypeCode(buffer, labelStart, labelEnd), timestamp);
+        return true;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(from + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,131 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of the DataReader interface that loads a directory written by
+ * the simulator's {@code FileOutputStrategy}: one {@code <label>.txt} file per
+ * signal, with lines of the form
+ * {@code Patient ID: <id>, Timestamp: <timestamp>, Label: <label>, Data: <data>}.
+ *
+ * <p>Every label file is read by its own worker thread. A worker maps its file
+ * in chunks of {@link FileDataReader#DEFAULT_CHUNK_SIZE} bytes, parses them
+ * with a {@link LabelFileChunkParser} and hands the measurements to
+ * {@link DataStorage#addPatientData(MeasurementBatch)} in batches of
+ * {@link FileDataReader#BATCH_SIZE}, in the order of the file. Since each file
+ * holds a single record type, the workers store into different series of each
+ * patient.</p>
+ *
+ * <p>Lines whose data is not a number, such as those of {@code Alert.txt}, are
+ * skipped and counted per file.</p>
+ */
+public class LabelFileDataReader implements DataReader {
+    /** Suffix of the files written by the output strategy. */
+    static final String LABEL_FILE_SUFFIX = ".txt";
+
+    private final String directory;
+    private final int chunkSize;
+
+    /**
+     * Constructs a LabelFileDataReader for an output directory.
+     *
+     * @param directory the directory containing the label files
+     */
+    public LabelFileDataReader(String directory) {
+        this(directory, FileDataReader.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a LabelFileDataReader that maps the files in chunks of the given
+     * size.
+     *
+     * @param directory the directory containing the label files
+     * @param chunkSize the approximate size in bytes of a chunk
+     */
+    LabelFileDataReader(String directory, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Reads every label file of the directory in parallel and stores the data in
+     * the provided DataStorage.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if the directory or one of its files cannot be read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        List<Path> files = listLabelFiles(Paths.get(directory));
+        if (files.isEmpty()) {
+            return;
+        }
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(files.size(), runnable -> {
+            Thread thread = new Thread(runnable, "label-file-reader-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> reading = new ArrayList<>();
+            for (Path file : files) {
+                reading.add(workers.submit(() -> {
+                    readFile(file, dataStorage);
+                    return null;
+                }));
+            }
+            for (Future<Void> file : reading) {
+                FileDataReader.await(file);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void readFile(Path file, DataStorage dataStorage) throws IOException {
+        LabelFileChunkParser parser = new LabelFileChunkParser(Charset.defaultCharset());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = FileDataReader.chunkBoundaries(channel, chunkSize);
+            for (int i = 0; i + 1 < boundaries.length; i++) {
+                ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, boundaries[i],
+                        boundaries[i + 1] - boundaries[i]);
+                for (MeasurementBatch batch : parser.parse(chunk)) {
+                    dataStorage.addPatientData(batch);
+                }
+            }
+        }
+        if (parser.getNonNumeric() > 0) {
+            System.out.println("Skipped " + parser.getNonNumeric() + " lines without a numeric value in " + file);
+        }
+    }
+
+    private static List<Path> listLabelFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + LABEL_FILE_SUFFIX)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+}
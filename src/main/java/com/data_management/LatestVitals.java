@@ -0,0 +1,105 @@
+package com.data_management;
+
+/**
+ * Snapshot of the latest value of a few record types for every patient, as
+ * returned by {@link DataStorage#getLatestVitals}. Rows are patients and
+ * columns are the requested record types; the values are held in flat
+ * primitive arrays.
+ *
+ * <pre>
+ * LatestVitals vitals = storage.getLatestVitals("HeartRate", "Saturation");
+ * for (int row = 0; row &lt; vitals.getPatientCount(); row++) {
+ *     if (vitals.hasValue(row, 1)) {
+ *         double saturation = vitals.getValue(row, 1);
+ *     }
+ * }
+ * </pre>
+ */
+public class LatestVitals {
+    private final String[] recordTypes;
+    private final int[] patientIds;
+    private final long[] timestamps;
+    private final double[] values;
+    private final int patientCount;
+
+    /**
+     * Constructs a snapshot from row-major arrays of {@code patientCount} rows by
+     * {@code recordTypes.length} columns.
+     *
+     * @param recordTypes  the record types of the columns
+     * @param patientIds   the patient of each row
+     * @param timestamps   the timestamps, Long.MIN_VALUE where there is no value
+     * @param values       the values, NaN where there is no value
+     * @param patientCount the number of rows
+     */
+    LatestVitals(String[] recordTypes, int[] patientIds, long[] timestamps, double[] values, int patientCount) {
+        this.recordTypes = recordTypes;
+        this.patientIds = patientIds;
+        this.timestamps = timestamps;
+        this.values = values;
+        this.patientCount = patientCount;
+    }
+
+    /**
+     * Returns the record types of the columns, in the order they were requested.
+     *
+     * @return a copy of the record types
+     */
+    public String[] getRecordTypes() {
+        return recordTypes.clone();
+    }
+
+    /**
+     * Returns the number of patients in the snapshot.
+     *
+     * @return the number of rows
+     */
+    public int getPatientCount() {
+        return patientCount;
+    }
+
+    /**
+     * Returns the ID of the patient of a row.
+     *
+     * @param row the row, between 0 and {@link #getPatientCount()} - 1
+     * @return the patient ID
+     */
+    public int getPatientId(int row) {
+        return patientIds[row];
+    }
+
+    /**
+     * Returns whether the patient of a row has any measurement of a record type.
+     *
+     * @param row    the row
+     * @param column the index of the record type in {@link #getRecordTypes()}
+     * @return true if there is a latest value
+     */
+    public boolean hasValue(int row, int column) {
+        return timestamps[row * recordTypes.length + column] != Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the latest value of a record type for the patient of a row.
+     *
+     * @param row    the row
+     * @param column the index of the record type in {@link #getRecordTypes()}
+     * @return the value, or NaN if there is none
+     */
+    public double getValue(int row, int column) {
+        return values[row * recordTypes.length + column];
+    }
+
+    /**
+     * Returns the timestamp of the latest value of a record type for the patient
+     * of a row.
+     *
+     * @param row    the row
+     * @param column the index of the record type in {@link #getRecordTypes()}
+     * @return the timestamp in milliseconds since UNIX epoch, or Long.MIN_VALUE
+     *         if there is no value
+     */
+    public long getTimestamp(int row, int column) {
+        return timestamps[row * recordTypes.length + column];
+    }
+}
@@ -0,0 +1,157 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * A batch of measurements in primitive columns: the i-th measurement is made of
+ * the i-th element of every column. Readers collect measurements in a batch and
+ * hand it to {@link DataStorage#addPatientData(MeasurementBatch)}, which pays the
+ * patient lookup and locking once per patient rather than once per
+ * measurement. A batch can be cleared and reused; it is not safe for
+ * concurrent use.
+ */
+public final class MeasurementBatch {
+    final int[] patientIds;
+    final double[] values;
+    final int[] recordTypeCodes;
+    final long[] timestamps;
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param capacity the maximum number of measurements in the batch
+     */
+    public MeasurementBatch(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        patientIds = new int[capacity];
+        values = new double[capacity];
+        recordTypeCodes = new int[capacity];
+        timestamps = new long[capacity];
+    }
+
+    /**
+     * Appends a measurement. The batch must not be full.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the measurement value
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time of the measurement
+     * @throws IllegalStateException if the batch is full
+     */
+    public void add(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        if (size == patientIds.length) {
+            throw new IllegalStateException("Measurement batch is full: " + size);
+        }
+        patientIds[size] = patientId;
+        values[size] = measurementValue;
+        recordTypeCodes[size] = recordTypeCode;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Returns the number of measurements in the batch.
+     *
+     * @return the number of measurements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the batch has reached its capacity.
+     *
+     * @return true if no more measurements can be added
+     */
+    public boolean isFull() {
+        return size == patientIds.length;
+    }
+
+    /**
+     * Removes every measurement from the batch.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the patient ID of a measurement.
+     *
+     * @param index the position of the measurement in the batch
+     * @return the patient ID
+     */
+    public int getPatientId(int index) {
+        return patientIds[checkIndex(index)];
+    }
+
+    /**
+     * Returns the value of a measurement.
+     *
+     * @param index the position of the measurement in the batch
+     * @return the measurement value
+     */
+    public double getMeasurementValue(int index) {
+        return values[checkIndex(index)];
+    }
+
+    /**
+     * Returns the record type code of a measurement.
+     *
+     * @param index the position of the measurement in the batch
+     * @return the registry code of the record type
+     */
+    public int getRecordTypeCode(int index) {
+        return recordTypeCodes[checkIndex(index)];
+    }
+
+    /**
+     * Returns the timestamp of a measurement.
+     *
+     * @param index the position of the measurement in the batch
+     * @return the time of the measurement
+     */
+    public long getTimestamp(int index) {
+        return timestamps[checkIndex(index)];
+    }
+
+    /**
+     * Returns the positions of the measurements grouped by patient: the
+     * measurements of each patient are contiguous and keep their order within
+     * the batch. Patients follow each other in ascending ID order.
+     *
+     * @return the positions of all measurements in the batch
+     */
+    int[] orderByPatient() {
+        int[] order = new int[size];
+        boolean grouped = true;
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            if (i > 0 && patientIds[i] < patientIds[i - 1]) {
+                grouped = false;
+            }
+        }
+        if (grouped) {
+            return order;
+        }
+        // The position in the low bits keeps the sort stable within a patient
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = (long) patientIds[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < size; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for batch of " + size);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,18 @@
+package com.data_management;
+
+/**
+ * Receives measurements of a single record type from the storage as primitive
+ * values, so that visiting records does not create any objects.
+ *
+ * @see DataStorage#forEachRecord(int, String, long, long, MeasurementConsumer)
+ */
+@FunctionalInterface
+public interface MeasurementConsumer {
+    /**
+     * Called for each visited measurement, in timestamp order.
+     *
+     * @param timestamp the time of the measurement, in milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    void accept(long timestamp, double value);
+}
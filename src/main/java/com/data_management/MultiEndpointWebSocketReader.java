@@ -0,0 +1,271 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of DataReader that receives data from many WebSocket servers,
+ * e.g., one per simulator instance, into a single {@link DataStorage}.
+ *
+ * <p>A {@link WebSocketDataReader} takes a blocking client with a reader and a
+ * writer thread per server. Here the connections are instead spread over a few
+ * I/O threads, each running a selector over its share of non-blocking
+ * {@link WebSocketEndpoint}s, so the number of threads does not grow with the
+ * number of servers. All endpoints feed one {@link IngestPipeline} whose
+ * workers parse the text and binary frames and store them in batches.</p>
+ *
+ * <p>Every endpoint reconnects on its own with an exponential backoff, and
+ * keeps its own {@link EndpointStats}: whether it is connected, how many
+ * messages and bytes it delivered, and how often it failed.</p>
+ */
+public class MultiEndpointWebSocketReader implements DataReader, Closeable {
+    /** Default number of I/O threads serving the connections. */
+    public static final int DEFAULT_IO_THREADS = 2;
+
+    /** Default delay before reconnecting after a first failure. */
+    public static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(500);
+
+    /** Default longest delay before reconnecting. */
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final List<WebSocketEndpoint> endpoints = new ArrayList<>();
+    private final List<EndpointStats> endpointStats = new ArrayList<>();
+    private final IoLoop[] loops;
+    private final IngestPipeline pipeline;
+    private boolean started; // Guarded by this
+    private boolean closed; // Guarded by this
+
+    /**
+     * Constructs a reader with {@link #DEFAULT_IO_THREADS} I/O threads and an
+     * ingest pipeline of {@link WebSocketDataReader#DEFAULT_WORKERS} workers and
+     * {@link WebSocketDataReader#DEFAULT_QUEUE_CAPACITY} frames, which makes the
+     * I/O threads wait when it is full.
+     *
+     * @param serverUrls  the {@code ws://} URLs of the servers
+     * @param dataStorage the storage receiving the data of all servers
+     * @throws IllegalArgumentException if no URL is given or one is not a valid
+     *                                  {@code ws://} URL
+     */
+    public MultiEndpointWebSocketReader(List<String> serverUrls, DataStorage dataStorage) {
+        this(serverUrls, dataStorage, DEFAULT_IO_THREADS, WebSocketDataReader.DEFAULT_WORKERS,
+                WebSocketDataReader.DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK, DEFAULT_INITIAL_BACKOFF,
+                DEFAULT_MAX_BACKOFF);
+    }
+
+    /**
+     * Constructs a reader with a configured number of threads, ingest pipeline
+     * and backoff.
+     *
+     * @param serverUrls     the {@code ws://} URLs of the servers
+     * @param dataStorage    the storage receiving the data of all servers
+     * @param ioThreads      the number of I/O threads, at most one per server is used
+     * @param workers        the number of worker threads parsing and storing frames
+     * @param queueCapacity  the number of frames queued for the workers, rounded up
+     *                       to a power of two
+     * @param overflowPolicy what to do with a received frame when the queue is full
+     * @param initialBackoff the delay before reconnecting after a first failure
+     * @param maxBackoff     the longest delay before reconnecting
+     * @throws IllegalArgumentException if no URL is given, one is not a valid
+     *                                  {@code ws://} URL, or a count is not positive
+     */
+    public MultiEndpointWebSocketReader(List<String> serverUrls, DataStorage dataStorage, int ioThreads,
+            int workers, int queueCapacity, OverflowPolicy overflowPolicy, Duration initialBackoff,
+            Duration maxBackoff) {
+        if (serverUrls.isEmpty()) {
+            throw new IllegalArgumentException("At least one server URL is required");
+        }
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("At least one I/O thread is required: " + ioThreads);
+        }
+        this.pipeline = new IngestPipeline(dataStorage, "websocket-ingest", workers, queueCapacity, overflowPolicy);
+        for (String url : serverUrls) {
+            WebSocketEndpoint endpoint = new WebSocketEndpoint(url, pipeline, initialBackoff.toNanos(),
+                    maxBackoff.toNanos());
+            endpoints.add(endpoint);
+            endpointStats.add(endpoint.getStats());
+        }
+        this.loops = new IoLoop[Math.min(ioThreads, endpoints.size())];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new IoLoop("websocket-io-" + i);
+        }
+        for (int i = 0; i < endpoints.size(); i++) {
+            loops[i % loops.length].endpoints.add(endpoints.get(i));
+        }
+    }
+
+    /**
+     * Starts connecting to all servers and storing the data they send. Returns
+     * immediately; servers that cannot be reached yet are retried in the
+     * background until {@link #close()} is called. The data is stored in the
+     * storage given to the constructor.
+     *
+     * @param dataStorage ignored, the storage given to the constructor is used
+     * @throws IOException if a selector cannot be opened or the reader is closed
+     */
+    @Override
+    public synchronized void readData(DataStorage dataStorage) throws IOException {
+        if (closed) {
+            throw new IOException("Reader is closed");
+        }
+        if (started) {
+            return;
+        }
+        for (IoLoop loop : loops) {
+            loop.selector = Selector.open();
+        }
+        started = true;
+        pipeline.start();
+        for (IoLoop loop : loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * Closes the connections to all servers and waits until the data already
+     * received is stored.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (!started) {
+                return;
+            }
+        }
+        boolean interrupted = false;
+        for (IoLoop loop : loops) {
+            loop.stopping = true;
+            loop.selector.wakeup();
+            while (loop.thread.isAlive()) {
+                try {
+                    loop.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        pipeline.stop();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the connection state and counters of every server, in the order of
+     * the URLs given to the constructor.
+     *
+     * @return the stats of the endpoints
+     */
+    public List<EndpointStats> getEndpointStats() {
+        return Collections.unmodifiableList(endpointStats);
+    }
+
+    /**
+     * Returns the counters of the ingest pipeline shared by all servers.
+     *
+     * @return the ingest counters
+     */
+    public IngestStats getIngestStats() {
+        return pipeline.getIngestStats();
+    }
+
+    /**
+     * Puts a {@link ReorderBuffer} between the ingest workers and the storage,
+     * so that each patient's measurements are stored in timestamp order without
+     * exact duplicates, and returns it for its watermarks. Must be called before
+     * data is received; later calls return the same buffer.
+     *
+     * @param allowedLateness how far behind the latest measurement of a patient
+     *                        another one may arrive and still be put in order
+     * @return the reorder buffer
+     */
+    public ReorderBuffer enableReordering(Duration allowedLateness) {
+        return pipeline.enableReordering(allowedLateness);
+    }
+
+    /**
+     * Returns the number of servers currently connected.
+     *
+     * @return the number of connected endpoints
+     */
+    public int getConnectedEndpoints() {
+        int connected = 0;
+        for (EndpointStats stats : endpointStats) {
+            if (stats.isConnected()) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    /** An I/O thread and the selector over its share of the endpoints. */
+    private static final class IoLoop implements Runnable {
+        final List<WebSocketEndpoint> endpoints = new ArrayList<>();
+        final Thread thread;
+        Selector selector; // Set before the thread starts
+        volatile boolean stopping;
+
+        IoLoop(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopping) {
+                    selector.select(TimeUnit.NANOSECONDS.toMillis(runTimers()));
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid()) {
+                            ((WebSocketEndpoint) key.attachment()).onReady(key);
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("WebSocket I/O thread " + thread.getName() + " stopped: " + e.getMessage());
+            } finally {
+                for (WebSocketEndpoint endpoint : endpoints) {
+                    endpoint.close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing selector: " + e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * Reconnects the endpoints and expires the handshakes that are due.
+         *
+         * @return the nanoseconds until the next endpoint is due, or 0 if none is
+         */
+        private long runTimers() {
+            long now = System.nanoTime();
+            long wait = Long.MAX_VALUE;
+            for (WebSocketEndpoint endpoint : endpoints) {
+                endpoint.onTimer(selector, now);
+                long next = endpoint.nextTimer();
+                if (next != Long.MAX_VALUE) {
+                    wait = Math.min(wait, Math.max(next - now, 0));
+                }
+            }
+            // select(0) would wait forever, so never round a pending timer down to it
+            return wait == Long.MAX_VALUE ? 0 : Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.data_management;
+
+/**
+ * What a reader does with a received frame when its ingest queue is full,
+ * i.e., when storage cannot keep up with the network.
+ */
+public enum OverflowPolicy {
+    /**
+     * Waits until a worker has made room. Nothing is lost; the reader's I/O
+     * thread stops reading, so the sender is slowed down by TCP flow control.
+     */
+    BLOCK,
+
+    /**
+     * Discards the received frame. The I/O thread never waits and the data
+     * already queued is kept.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discards the oldest queued frame to make room for the received one. The
+     * I/O thread never waits and the freshest data is kept.
+     */
+    DROP_OLDEST
+}
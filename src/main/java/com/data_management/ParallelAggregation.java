@@ -0,0 +1,197 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoublePredicate;
+
+/**
+ * Aggregates one record type over a set of patients on a fork-join pool.
+ *
+ * <p>The patients are split in halves recursively until a slice holds at most
+ * {@link #PATIENTS_PER_TASK} patients. Each leaf visits its patients through
+ * {@link Patient#forEachRecord} with itself as the consumer, so scanning
+ * allocates nothing per patient, and partial results are combined on the way
+ * back up. Work stealing balances patients with very different amounts of
+ * data across the workers.</p>
+ */
+final class ParallelAggregation {
+    /** Largest number of patients scanned by a single task. */
+    static final int PATIENTS_PER_TASK = 32;
+
+    private final ForkJoinPool pool;
+    private final Patient[] patients;
+    private final int recordTypeCode;
+    private final long startTime;
+    private final long endTime;
+
+    /**
+     * Constructs an aggregation of a record type over a time range.
+     *
+     * @param pool           the pool to run the aggregation on
+     * @param patients       the patients to aggregate over
+     * @param recordTypeCode the registry code of the record type
+     * @param startTime      the start of the time range, inclusive
+     * @param endTime        the end of the time range, inclusive
+     */
+    ParallelAggregation(ForkJoinPool pool, Patient[] patients, int recordTypeCode, long startTime, long endTime) {
+        this.pool = pool;
+        this.patients = patients;
+        this.recordTypeCode = recordTypeCode;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Computes the count, minimum, maximum, sum and mean of the measurements
+     * that satisfy a condition.
+     *
+     * @param condition the condition a measurement value must satisfy, or null
+     *                  to aggregate every measurement
+     * @return the aggregation result
+     */
+    AggregateResult summarise(DoublePredicate condition) {
+        return pool.invoke(new SummaryTask(0, patients.length, condition));
+    }
+
+    /**
+     * Computes a percentile of the measurement values using the nearest-rank
+     * method. All matching values are gathered in memory and sorted in parallel.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at the percentile, or NaN if there are no measurements
+     */
+    double percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+        }
+        if (patients.length == 0) {
+            return Double.NaN;
+        }
+        int leaves = (patients.length + PATIENTS_PER_TASK - 1) / PATIENTS_PER_TASK;
+        double[][] leafValues = new double[leaves][];
+        int[] leafSizes = new int[leaves];
+        pool.invoke(new CollectTask(0, patients.length, leafValues, leafSizes));
+        int total = 0;
+        for (int size : leafSizes) {
+            total += size;
+        }
+        if (total == 0) {
+            return Double.NaN;
+        }
+        double[] values = new double[total];
+        int offset = 0;
+        for (int i = 0; i < leaves; i++) {
+            System.arraycopy(leafValues[i], 0, values, offset, leafSizes[i]);
+            offset += leafSizes[i];
+        }
+        // Arrays.parallelSort runs on the common pool regardless of the pool given
+        Arrays.parallelSort(values);
+        int rank = (int) Math.ceil(percentile / 100.0 * total);
+        return values[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Aggregates a slice of the patients, splitting it while it is too large.
+     */
+    private final class SummaryTask extends RecursiveTask<AggregateResult> implements MeasurementConsumer {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final DoublePredicate condition;
+        private long count;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double sum;
+
+        SummaryTask(int from, int to, DoublePredicate condition) {
+            this.from = from;
+            this.to = to;
+            this.condition = condition;
+        }
+
+        @Override
+        protected AggregateResult compute() {
+            if (to - from > PATIENTS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                SummaryTask upper = new SummaryTask(middle, to, condition);
+                upper.fork();
+                AggregateResult lower = new SummaryTask(from, middle, condition).compute();
+                return lower.combine(upper.join());
+            }
+            long patientCount = 0;
+            for (int i = from; i < to; i++) {
+                long before = count;
+                patients[i].forEachRecord(recordTypeCode, startTime, endTime, this);
+                if (count > before) {
+                    patientCount++;
+                }
+            }
+            return new AggregateResult(count, patientCount, min, max, sum);
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            if (condition != null && !condition.test(value)) {
+                return;
+            }
+            count++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+        }
+    }
+
+    /**
+     * Gathers the values of a slice of the patients into per-leaf arrays.
+     */
+    private final class CollectTask extends RecursiveAction implements MeasurementConsumer {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final double[][] leafValues;
+        private final int[] leafSizes;
+        private double[] values;
+        private int size;
+
+        CollectTask(int from, int to, double[][] leafValues, int[] leafSizes) {
+            this.from = from;
+            this.to = to;
+            this.leafValues = leafValues;
+            this.leafSizes = leafSizes;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PATIENTS_PER_TASK) {
+                // Split on leaf boundaries so every leaf owns one slot of the result arrays
+                int leaves = (to - from + PATIENTS_PER_TASK - 1) / PATIENTS_PER_TASK;
+                int middle = from + (leaves / 2) * PATIENTS_PER_TASK;
+                invokeAll(new CollectTask(from, middle, leafValues, leafSizes),
+                        new CollectTask(middle, to, leafValues, leafSizes));
+                return;
+            }
+            values = new double[64];
+            for (int i = from; i < to; i++) {
+                patients[i].forEachRecord(recordTypeCode, startTime, endTime, this);
+            }
+            leafValues[from / PATIENTS_PER_TASK] = values;
+            leafSizes[from / PATIENTS_PER_TASK] = size;
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
@@ -1,27 +1,94 @@
 package com.data_management;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.StampedLock;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ *
+ * <p>Records may be added and queried from different threads. Writes to one
+ * patient are serialised by the patient's own lock, so writers to different
+ * patients never contend. Reads do not take the lock; they work on a snapshot
+ * of the columnar series and never block ingestion.</p>
+ *
+ * <p>Old measurements are evicted on insert according to the patient's
+ * {@link RetentionPolicy}.</p>
+ *
+ * <p>The newest value of every record type is also kept in a small latest-value
+ * index, so "what is the current heart rate" is answered in O(1) without
+ * touching the history. Readers of the index use optimistic reads and only
+ * fall back to a read lock when an insert raced with them.</p>
+ *
+ * <p>Running statistics over the sliding windows of the patient's
+ * {@link WindowPolicy} are likewise maintained on insert, see
+ * {@link #getWindowStats(int, long)}.</p>
  */
 public class Patient {
-    private int patientId;
-    private List<PatientRecord> patientRecords;
+    private final int patientId;
+    private volatile TimeSeries[] seriesByCode; // Columnar measurements indexed by record type code.
+    private volatile TimeSeries[] allSeries; // The same series in creation order, replaced on change.
+    private final RetentionPolicy retentionPolicy;
+    private final EvictionStats evictionStats;
+    private final WindowPolicy windowPolicy;
+    private final RecordTypeIndex typeIndex; // Null for patients outside a storage.
+    private long recordCount; // Retained measurements across all series, guarded by this.
+    private long lastLsn = -1; // LSN of the last measurement logged for this patient, guarded by this.
+    private volatile boolean cachedQueries; // Whether a QueryCache holds results depending on this patient.
+
+    // Latest-value index by record type code, written under this and latestLock.
+    // A timestamp of Long.MIN_VALUE marks a type without measurements.
+    private final StampedLock latestLock = new StampedLock();
+    private long[] latestTimestamps = new long[0];
+    private double[] latestValues = new double[0];
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of per-record-type series that are kept forever.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, new RetentionPolicy(), new EvictionStats());
+    }
+
+    /**
+     * Constructs a new Patient whose measurements are evicted according to a
+     * retention policy.
+     *
+     * @param patientId       the unique identifier for the patient
+     * @param retentionPolicy the policy deciding which measurements are evicted
+     * @param evictionStats   the counters updated when measurements are evicted
+     */
+    Patient(int patientId, RetentionPolicy retentionPolicy, EvictionStats evictionStats) {
+        this(patientId, retentionPolicy, evictionStats, new WindowPolicy(), null);
+    }
+
+    /**
+     * Constructs a new Patient whose measurements are evicted according to a
+     * retention policy, summarised over the windows of a window policy and
+     * listed in a storage's record type index.
+     *
+     * @param patientId       the unique identifier for the patient
+     * @param retentionPolicy the policy deciding which measurements are evicted
+     * @param evictionStats   the counters updated when measurements are evicted
+     * @param windowPolicy    the sliding windows to maintain statistics over
+     * @param typeIndex       the storage's index of patients by record type,
+     *                        notified of every new series, or null
+     */
+    Patient(int patientId, RetentionPolicy retentionPolicy, EvictionStats evictionStats,
+            WindowPolicy windowPolicy, RecordTypeIndex typeIndex) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.seriesByCode = new TimeSeries[0];
+        this.allSeries = new TimeSeries[0];
+        this.retentionPolicy = retentionPolicy;
+        this.evictionStats = evictionStats;
+        this.windowPolicy = windowPolicy;
+        this.typeIndex = typeIndex;
     }
 
     /**
@@ -34,9 +101,10 @@ public class Patient {
     }
 
     /**
-     * Adds a new record to this patient's list of medical records.
-     * The record is created with the specified measurement value, record type, and
-     * timestamp.
+     * Adds a new record to this patient's medical records.
+     * The measurement is inserted in timestamp order into the columnar series of
+     * its record type; no {@link PatientRecord} object is created. Late
+     * measurements are accepted and placed at their correct position.
      *
      * @param measurementValue the measurement value to store in the record
      * @param recordType       the type of record, e.g., "HeartRate",
@@ -45,14 +113,305 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, RecordTypeRegistry.getInstance().codeFor(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record whose record type has already been encoded by the
+     * {@link RecordTypeRegistry}. This is the ingest path used by
+     * {@link DataStorage}; it involves no string handling.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     */
+    public synchronized void addRecord(double measurementValue, int recordTypeCode, long timestamp) {
+        TimeSeries[] byCode = seriesByCode;
+        TimeSeries series = recordTypeCode < byCode.length ? byCode[recordTypeCode] : null;
+        if (series == null) {
+            series = new TimeSeries(recordTypeCode);
+            byCode = Arrays.copyOf(byCode, Math.max(byCode.length, recordTypeCode + 1));
+            byCode[recordTypeCode] = series;
+            seriesByCode = byCode;
+            TimeSeries[] grown = Arrays.copyOf(allSeries, allSeries.length + 1);
+            grown[allSeries.length] = series;
+            allSeries = grown;
+            if (typeIndex != null) {
+                typeIndex.register(this, series);
+            }
+        }
+        series.insert(timestamp, measurementValue);
+        series.updateWindows(windowPolicy.getWindowMillis(recordTypeCode), timestamp, measurementValue);
+        updateLatest(recordTypeCode, timestamp, measurementValue);
+        recordCount++;
+        evictExpired(series, retentionPolicy.getMaxAgeMillis(recordTypeCode));
+        if (recordCount > retentionPolicy.getMaxRecordsPerPatient()) {
+            evictForCapacity(retentionPolicy.getMaxRecordsPerPatient());
+        }
+    }
+
+    /**
+     * Adds a run of measurements of this patient from a batch under a single
+     * acquisition of the patient's lock.
+     *
+     * @param batch the batch holding the measurements
+     * @param order positions in the batch, see {@link MeasurementBatch#orderByPatient()}
+     * @param from  the first position in {@code order} to add, inclusive
+     * @param to    the last position in {@code order} to add, exclusive
+     */
+    synchronized void addRecords(MeasurementBatch batch, int[] order, int from, int to) {
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            addRecord(batch.values[i], batch.recordTypeCodes[i], batch.timestamps[i]);
+        }
+    }
+
+    /**
+     * Records a measurement in the latest-value index unless a newer one of the
+     * same type is already there. Of two measurements with the same timestamp
+     * the later arrival wins.
+     */
+    private void updateLatest(int recordTypeCode, long timestamp, double measurementValue) {
+        if (recordTypeCode < latestTimestamps.length && timestamp < latestTimestamps[recordTypeCode]) {
+            return;
+        }
+        long stamp = latestLock.writeLock();
+        try {
+            if (recordTypeCode >= latestTimestamps.length) {
+                int length = latestTimestamps.length;
+                latestTimestamps = Arrays.copyOf(latestTimestamps, recordTypeCode + 1);
+                latestValues = Arrays.copyOf(latestValues, recordTypeCode + 1);
+                Arrays.fill(latestTimestamps, length, latestTimestamps.length, Long.MIN_VALUE);
+                Arrays.fill(latestValues, length, latestValues.length, Double.NaN);
+            }
+            latestTimestamps[recordTypeCode] = timestamp;
+            latestValues[recordTypeCode] = measurementValue;
+        } finally {
+            latestLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of measurements this patient currently retains across
+     * all record types, without visiting them.
+     *
+     * @return the number of retained measurements
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the newest measurement of a record type, looked up in the
+     * latest-value index in constant time. The index keeps the value even after
+     * the measurement itself has been evicted from the history.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @return the newest measurement, or null if the patient has none of that type
+     */
+    public PatientRecord getLatestRecord(int recordTypeCode) {
+        long[] timestamps = new long[1];
+        double[] values = new double[1];
+        readLatest(new int[] { recordTypeCode }, timestamps, values, 0);
+        if (timestamps[0] == Long.MIN_VALUE) {
+            return null;
+        }
+        return new PatientRecord(patientId, values[0], RecordTypeRegistry.getInstance().nameOf(recordTypeCode),
+                timestamps[0]);
+    }
+
+    /**
+     * Returns the running statistics of a record type over a sliding window
+     * configured in the patient's {@link WindowPolicy}, in constant time. The
+     * window ends at the newest measurement of that type.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @param windowMillis   the length of the window in milliseconds
+     * @return the statistics, or null if the patient has no measurements of that
+     *         type or no such window is configured
+     */
+    public WindowStats getWindowStats(int recordTypeCode, long windowMillis) {
+        TimeSeries series = getSeries(recordTypeCode);
+        SlidingWindows windows = series == null ? null : series.windows();
+        return windows == null ? null : windows.get(windowMillis);
+    }
+
+    /**
+     * Copies the latest values of several record types out of the index, as one
+     * consistent view of this patient.
+     *
+     * @param recordTypeCodes the registry codes of the record types, -1 for an
+     *                        unknown type
+     * @param timestamps      receives the timestamps, Long.MIN_VALUE for types
+     *                        without measurements
+     * @param values          receives the values, NaN for types without
+     *                        measurements
+     * @param offset          the position in the output arrays of the first type
+     */
+    void readLatest(int[] recordTypeCodes, long[] timestamps, double[] values, int offset) {
+        long stamp = latestLock.tryOptimisticRead();
+        if (stamp != 0) {
+            copyLatest(recordTypeCodes, timestamps, values, offset);
+            if (latestLock.validate(stamp)) {
+                return;
+            }
+        }
+        stamp = latestLock.readLock();
+        try {
+            copyLatest(recordTypeCodes, timestamps, values, offset);
+        } finally {
+            latestLock.unlockRead(stamp);
+        }
+    }
+
+    private void copyLatest(int[] recordTypeCodes, long[] timestamps, double[] values, int offset) {
+        long[] currentTimestamps = latestTimestamps;
+        double[] currentValues = latestValues;
+        int length = Math.min(currentTimestamps.length, currentValues.length); // may be mid-resize
+        for (int i = 0; i < recordTypeCodes.length; i++) {
+            int code = recordTypeCodes[i];
+            boolean known = code >= 0 && code < length;
+            timestamps[offset + i] = known ? currentTimestamps[code] : Long.MIN_VALUE;
+            values[offset + i] = known ? currentValues[code] : Double.NaN;
+        }
+    }
+
+    /**
+     * Logs a measurement to the write-ahead log and adds it, atomically with
+     * respect to other writes and snapshots of this patient.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time at which the measurement was taken
+     * @param log              the log to append the measurement to
+     */
+    synchronized void addLoggedRecord(double measurementValue, int recordTypeCode, long timestamp,
+            WriteAheadLog log) {
+        lastLsn = log.append(patientId, recordTypeCode, timestamp, measurementValue);
+        addRecord(measurementValue, recordTypeCode, timestamp);
+    }
+
+    /**
+     * Logs a run of measurements of this patient from a batch to the
+     * write-ahead log and adds them, atomically with respect to other writes and
+     * snapshots of this patient.
+     *
+     * @param batch the batch holding the measurements
+     * @param order positions in the batch, see {@link MeasurementBatch#orderByPatient()}
+     * @param from  the first position in {@code order} to add, inclusive
+     * @param to    the last position in {@code order} to add, exclusive
+     * @param log   the log to append the measurements to
+     */
+    synchronized void addLoggedRecords(MeasurementBatch batch, int[] order, int from, int to, WriteAheadLog log) {
+        lastLsn = log.append(patientId, batch, order, from, to);
+        addRecords(batch, order, from, to);
+    }
+
+    /**
+     * Re-applies a measurement read back from the write-ahead log during
+     * recovery, unless the snapshot the patient was loaded from already
+     * contains it.
+     *
+     * @param lsn              the LSN of the measurement
+     * @param measurementValue the measurement value
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time at which the measurement was taken
+     */
+    synchronized void replayRecord(long lsn, double measurementValue, int recordTypeCode, long timestamp) {
+        if (lsn > lastLsn) {
+            addRecord(measurementValue, recordTypeCode, timestamp);
+            lastLsn = lsn;
+        }
+    }
+
+    /**
+     * Sets the LSN of the last logged measurement contained in this patient's
+     * data, after it has been loaded from a snapshot.
+     *
+     * @param lsn the LSN
+     */
+    synchronized void setLastLsn(long lsn) {
+        this.lastLsn = lsn;
+    }
+
+    /**
+     * Captures a consistent view of every series of this patient for a snapshot,
+     * together with the LSN of the last logged measurement it contains.
+     *
+     * @param cursors receives one cursor over the full history of each series
+     * @return the LSN of the last logged measurement, or -1 if none was logged
+     */
+    synchronized long captureSeries(List<RecordCursor> cursors) {
+        for (TimeSeries series : allSeries) {
+            cursors.add(new RecordCursor(new TimeSeries[] { series }, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        return lastLsn;
+    }
+
+    /**
+     * Returns whether a query cache holds results, pending or computed, that
+     * depend on this patient's records.
+     *
+     * @return true if writes to this patient must be reported to the cache
+     */
+    boolean hasCachedQueries() {
+        return cachedQueries;
+    }
+
+    /**
+     * Marks whether a query cache holds results that depend on this patient's
+     * records.
+     *
+     * @param cachedQueries true while such results exist
+     */
+    void setCachedQueries(boolean cachedQueries) {
+        this.cachedQueries = cachedQueries;
+    }
+
+    /**
+     * Drops the oldest chunks of a series while all of their measurements are
+     * older than the maximum age, measured from the newest measurement.
+     */
+    private void evictExpired(TimeSeries series, long maxAgeMillis) {
+        if (maxAgeMillis == Long.MAX_VALUE) {
+            return;
+        }
+        long newest = series.newestTimestamp();
+        while (!series.isEmpty() && newest - series.oldestChunkEnd() > maxAgeMillis) {
+            int dropped = series.evictOldestChunk();
+            recordCount -= dropped;
+            evictionStats.recordAgeEviction(dropped);
+        }
+    }
+
+    /**
+     * Drops the oldest chunk across all series until the patient is within its
+     * memory cap.
+     */
+    private void evictForCapacity(long maxRecords) {
+        while (recordCount > maxRecords) {
+            TimeSeries oldest = null;
+            for (TimeSeries candidate : allSeries) {
+                if (!candidate.isEmpty()
+                        && (oldest == null || candidate.oldestChunkEnd() < oldest.oldestChunkEnd())) {
+                    oldest = candidate;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            int dropped = oldest.evictOldestChunk();
+            recordCount -= dropped;
+            evictionStats.recordCapacityEviction(dropped);
+        }
     }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
-     * specified time range.
-     * The method filters records based on the start and end times provided.
+     * specified time range, ordered by timestamp.
+     * The bounds of the range are located by binary search, so the cost depends
+     * on the number of matching records rather than on the length of the history.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
@@ -62,11 +421,157 @@ public class Patient {
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
         List<PatientRecord> filteredRecords = new ArrayList<>();
-        for (PatientRecord record : patientRecords) {
-            if (record.getTimestamp() >= startTime && record.getTimestamp() <= endTime) {
-                filteredRecords.add(record);
-            }
+        RecordCursor cursor = getCursor(startTime, endTime);
+        while (cursor.next()) {
+            filteredRecords.add(new PatientRecord(patientId, cursor.getMeasurementValue(),
+                    cursor.getRecordType(), cursor.getTimestamp()));
         }
         return filteredRecords;
     }
+
+    /**
+     * Returns a cursor over all of this patient's measurements that fall within a
+     * specified time range. Unlike {@link #getRecords(long, long)}, the cursor
+     * reads the columnar storage directly and does not build PatientRecord objects.
+     *
+     * @param startTime the start of the time range, in milliseconds since UNIX
+     *                  epoch
+     * @param endTime   the end of the time range, in milliseconds since UNIX epoch
+     * @return a cursor positioned before the first matching measurement
+     */
+    public RecordCursor getCursor(long startTime, long endTime) {
+        return new RecordCursor(allSeries, startTime, endTime);
+    }
+
+    /**
+     * Returns a cursor over this patient's measurements of a single record type
+     * that fall within a specified time range.
+     *
+     * @param recordType the type of record to iterate, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a cursor positioned before the first matching measurement
+     */
+    public RecordCursor getCursor(String recordType, long startTime, long endTime) {
+        return getCursor(RecordTypeRegistry.getInstance().lookup(recordType), startTime, endTime);
+    }
+
+    /**
+     * Returns a cursor over this patient's measurements of a single record type,
+     * given by its {@link RecordTypeRegistry} code, that fall within a specified
+     * time range.
+     *
+     * @param recordTypeCode the registry code of the record type to iterate
+     * @param startTime      the start of the time range, in milliseconds since
+     *                       UNIX epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @return a cursor positioned before the first matching measurement
+     */
+    public RecordCursor getCursor(int recordTypeCode, long startTime, long endTime) {
+        TimeSeries series = getSeries(recordTypeCode);
+        TimeSeries[] selected = series == null ? new TimeSeries[0] : new TimeSeries[] { series };
+        return new RecordCursor(selected, startTime, endTime);
+    }
+
+    /**
+     * Passes this patient's measurements of a single record type that fall within
+     * a specified time range to a consumer, in timestamp order. Unlike a cursor,
+     * visiting allocates nothing, which suits readers that query repeatedly.
+     *
+     * @param recordTypeCode the registry code of the record type to visit
+     * @param startTime      the start of the time range, in milliseconds since
+     *                       UNIX epoch
+     * @param endTime        the end of the time range, in milliseconds since UNIX
+     *                       epoch
+     * @param consumer       receives the matching measurements
+     * @return the number of measurements passed to the consumer
+     */
+    public int forEachRecord(int recordTypeCode, long startTime, long endTime, MeasurementConsumer consumer) {
+        TimeSeries series = getSeries(recordTypeCode);
+        return series == null ? 0 : series.forEach(startTime, endTime, consumer);
+    }
+
+    /**
+     * Returns summaries of this patient's measurements of one record type over a
+     * time range, at no finer than the requested resolution. The coarsest
+     * rollup tier (1 second, 1 minute or 1 hour) whose buckets are not wider
+     * than the resolution is read directly, after being built from the retained
+     * measurements on its first use; for resolutions below one
+     * second the raw measurements are summarised into buckets of the requested
+     * width instead.
+     *
+     * @param recordTypeCode   the registry code of the record type
+     * @param startTime        the start of the time range, in milliseconds since
+     *                         UNIX epoch
+     * @param endTime          the end of the time range, in milliseconds since
+     *                         UNIX epoch
+     * @param resolutionMillis the width of the finest detail the caller needs
+     * @return the buckets overlapping the range, oldest first
+     */
+    public List<RollupBucket> getRollups(int recordTypeCode, long startTime, long endTime, long resolutionMillis) {
+        TimeSeries series = getSeries(recordTypeCode);
+        if (series == null) {
+            return new ArrayList<>();
+        }
+        int tier = Rollups.tierFor(resolutionMillis);
+        if (tier >= 0) {
+            Rollups rollups = series.rollups();
+            if (!rollups.isEnabled(tier)) {
+                synchronized (this) { // Built from the series while no insert runs
+                    rollups.enable(tier, series);
+                }
+            }
+            return rollups.query(tier, startTime, endTime);
+        }
+        return summarise(series, startTime, endTime, Math.max(1, resolutionMillis));
+    }
+
+    /**
+     * Summarises raw measurements into buckets of the given width.
+     */
+    private List<RollupBucket> summarise(TimeSeries series, long startTime, long endTime, long width) {
+        List<RollupBucket> buckets = new ArrayList<>();
+        RecordCursor cursor = new RecordCursor(new TimeSeries[] { series }, startTime, endTime);
+        long bucketStart = 0;
+        long count = 0;
+        double min = 0;
+        double max = 0;
+        double sum = 0;
+        while (cursor.next()) {
+            long start = Math.floorDiv(cursor.getTimestamp(), width) * width;
+            double value = cursor.getMeasurementValue();
+            if (count > 0 && start != bucketStart) {
+                buckets.add(new RollupBucket(bucketStart, width, count, min, max, sum));
+                count = 0;
+            }
+            if (count == 0) {
+                bucketStart = start;
+                min = value;
+                max = value;
+                sum = 0;
+            }
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        if (count > 0) {
+            buckets.add(new RollupBucket(bucketStart, width, count, min, max, sum));
+        }
+        return buckets;
+    }
+
+    /**
+     * Returns the series of a record type, or null if the patient has no
+     * measurements of that type.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @return the series, or null
+     */
+    TimeSeries getSeries(int recordTypeCode) {
+        TimeSeries[] byCode = seriesByCode;
+        return recordTypeCode >= 0 && recordTypeCode < byCode.length ? byCode[recordTypeCode] : null;
+    }
 }
@@ -0,0 +1,288 @@
+package com.data_management;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Concurrent directory of per-patient values keyed by the primitive int patient
+ * ID, used by {@link DataStorage} for its {@link Patient}s and by
+ * {@link ReorderBuffer} for its held measurements instead of a
+ * {@code Map<Integer, V>}, so that the lookup on every ingested measurement
+ * neither boxes the ID nor hashes an {@link Integer}.
+ *
+ * <p>Patient IDs handed out by the simulator are small dense integers, so IDs
+ * in {@code [0, DENSE_LIMIT)} are stored directly at their index in an array
+ * that grows on demand. Any other ID goes to an open-addressing hash table with
+ * linear probing over a primitive key array. Since no such ID is 0, a key of 0
+ * marks an empty slot.</p>
+ *
+ * <p>A directory holding one shard of the IDs, those congruent to a residue
+ * modulo a stride, indexes its dense array by {@code id / stride} instead, so
+ * that the array stays fully occupied and iteration does not scan the slots of
+ * the other shards' patients.</p>
+ *
+ * <p>Lookups take no lock: they read the current arrays through volatile
+ * loads. Insertions are serialised by the directory's lock and store a value
+ * before its key, so a reader that finds a key always finds its value. A
+ * resize builds a larger copy and publishes it, so readers still probing the
+ * old arrays keep finding every value that was already present. Values are
+ * never removed.</p>
+ *
+ * @param <V> the type of the per-patient values
+ */
+final class PatientDirectory<V> {
+    /** Largest number of patients stored by index rather than hashed. */
+    static final int DENSE_LIMIT = 1 << 21;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int stride;
+    private final int residue;
+
+    private volatile AtomicReferenceArray<V> dense = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private volatile Table<V> table = new Table<>(INITIAL_CAPACITY);
+    private int tableSize; // guarded by this
+    private volatile int size;
+
+    /**
+     * Constructs a directory for any patient IDs.
+     */
+    PatientDirectory() {
+        this(1, 0);
+    }
+
+    /**
+     * Constructs a directory for the shard of patient IDs congruent to a residue
+     * modulo a stride. IDs of other shards are accepted but hashed.
+     *
+     * @param stride  the number of shards
+     * @param residue the shard's index, {@code floorMod(id, stride)} of its IDs
+     */
+    PatientDirectory(int stride, int residue) {
+        this.stride = stride;
+        this.residue = residue;
+    }
+
+    /**
+     * Returns the slot of an ID in the dense array.
+     *
+     * @return the slot, or -1 if the ID is hashed
+     */
+    private int denseIndex(int patientId) {
+        if (patientId < 0 || patientId % stride != residue) {
+            return -1;
+        }
+        int index = patientId / stride;
+        return index < DENSE_LIMIT ? index : -1;
+    }
+
+    /**
+     * Returns the value of the patient with the given ID.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the value, or null if the patient is not in the directory
+     */
+    V get(int patientId) {
+        int index = denseIndex(patientId);
+        if (index >= 0) {
+            AtomicReferenceArray<V> slots = dense;
+            return index < slots.length() ? slots.get(index) : null;
+        }
+        Table<V> current = table;
+        int mask = current.keys.length() - 1;
+        for (int i = hash(patientId) & mask;; i = (i + 1) & mask) {
+            int key = current.keys.get(i);
+            if (key == patientId) {
+                return current.values.get(i);
+            }
+            if (key == 0) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the patient with the given ID, creating and adding it
+     * if the patient is not in the directory yet. The factory runs at most once
+     * per ID.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param factory   creates the value for an ID
+     * @return the existing or created value
+     */
+    V computeIfAbsent(int patientId, IntFunction<? extends V> factory) {
+        V value = get(patientId);
+        return value != null ? value : insert(patientId, factory);
+    }
+
+    private synchronized V insert(int patientId, IntFunction<? extends V> factory) {
+        V value = get(patientId);
+        if (value != null) {
+            return value;
+        }
+        value = factory.apply(patientId);
+        int index = denseIndex(patientId);
+        if (index >= 0) {
+            AtomicReferenceArray<V> slots = dense;
+            if (index >= slots.length()) {
+                int capacity = slots.length();
+                while (capacity <= index) {
+                    capacity *= 2;
+                }
+                slots = copyDense(slots, Math.min(capacity, DENSE_LIMIT));
+                dense = slots;
+            }
+            slots.set(index, value);
+        } else {
+            if ((tableSize + 1) * 2 > table.keys.length()) {
+                table = table.resize(table.keys.length() * 2);
+            }
+            table.put(patientId, value);
+            tableSize++;
+        }
+        size++;
+        return value;
+    }
+
+    /**
+     * Returns the number of patients in the directory.
+     *
+     * @return the number of patients
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of slots of the dense array, occupied or not.
+     *
+     * @return the dense capacity
+     */
+    int denseCapacity() {
+        return dense.length();
+    }
+
+    /**
+     * Returns a live, read-only view of the values. Iteration is weakly
+     * consistent: it sees every value added before it started and may or may
+     * not see values added concurrently.
+     *
+     * @return the values
+     */
+    Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator<>(dense, table);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static <V> AtomicReferenceArray<V> copyDense(AtomicReferenceArray<V> slots, int capacity) {
+        AtomicReferenceArray<V> grown = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < slots.length(); i++) {
+            grown.lazySet(i, slots.get(i));
+        }
+        return grown;
+    }
+
+    /**
+     * Spreads the bits of an ID so that clustered IDs do not collide in the low
+     * bits used for the slot index (the finaliser of MurmurHash3).
+     */
+    private static int hash(int patientId) {
+        int h = patientId;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Open-addressing table of the IDs outside the dense range: parallel arrays
+     * of keys and values.
+     */
+    private static final class Table<V> {
+        final AtomicIntegerArray keys;
+        final AtomicReferenceArray<V> values;
+
+        Table(int capacity) {
+            this.keys = new AtomicIntegerArray(capacity);
+            this.values = new AtomicReferenceArray<>(capacity);
+        }
+
+        /** Stores a value in the first free slot of its key's probe sequence. */
+        void put(int patientId, V value) {
+            int mask = keys.length() - 1;
+            int i = hash(patientId) & mask;
+            while (keys.get(i) != 0) {
+                i = (i + 1) & mask;
+            }
+            values.set(i, value);
+            keys.set(i, patientId); // publishes the value
+        }
+
+        /** Returns an unpublished copy with the given capacity. */
+        Table<V> resize(int capacity) {
+            Table<V> grown = new Table<>(capacity);
+            for (int i = 0; i < values.length(); i++) {
+                V value = values.get(i);
+                if (value != null) {
+                    grown.put(keys.get(i), value);
+                }
+            }
+            return grown;
+        }
+    }
+
+    /**
+     * Iterates over the non-empty slots of the dense array, then of the table.
+     */
+    private static final class ValueIterator<V> implements Iterator<V> {
+        private final AtomicReferenceArray<V> dense;
+        private final AtomicReferenceArray<V> table;
+        private int index;
+        private V next;
+
+        ValueIterator(AtomicReferenceArray<V> dense, Table<V> table) {
+            this.dense = dense;
+            this.table = table.values;
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public V next() {
+            V current = next;
+            if (current == null) {
+                throw new NoSuchElementException();
+            }
+            advance();
+            return current;
+        }
+
+        private void advance() {
+            next = null;
+            int denseLength = dense.length();
+            while (next == null && index < denseLength + table.length()) {
+                next = index < denseLength ? dense.get(index) : table.get(index - denseLength);
+                index++;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.data_management;
+
+/**
+ * Receives measurements of a single record type across patients as primitive
+ * values, so that cross-patient queries do not create an object per record.
+ *
+ * @see DataStorage#forEachRecordByType(String, long, long, PatientMeasurementConsumer)
+ */
+@FunctionalInterface
+public interface PatientMeasurementConsumer {
+    /**
+     * Called for each visited measurement. Measurements of one patient are
+     * passed consecutively, in timestamp order.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param timestamp the time of the measurement, in milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    void accept(int patientId, long timestamp, double value);
+}
@@ -0,0 +1,368 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of query results in front of a {@link DataStorage}, for
+ * dashboards that poll the same windows many times per second.
+ *
+ * <p>Results of {@code getRecords(patientId, start, end)}, of unconditional
+ * aggregates and of percentiles are cached under their arguments. The cache is
+ * bounded by the total number of records it holds (an aggregate counts as one)
+ * and drops the least recently used results first.</p>
+ *
+ * <p>Writes keep cached results consistent without flushing the cache. A
+ * measurement only affects the results whose time range contains it: the
+ * records of that patient, or the aggregates of that record type. A
+ * measurement newer than everything in a cached record list is appended to
+ * it; any other affected result is invalidated. Writes to patients and record
+ * types without cached results only pay for a volatile read.</p>
+ *
+ * <p>A result is registered as pending before it is computed, so that a write
+ * racing with the computation invalidates it and it is never cached stale.
+ * Bookkeeping is serialised by the cache's lock; results are computed outside
+ * of it. Measurements evicted by the {@link RetentionPolicy} may be served from
+ * the cache until the result is invalidated or dropped.</p>
+ */
+final class QueryCache {
+    private final long maxRecords;
+    private final QueryCacheStats stats = new QueryCacheStats();
+
+    // Guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, List<Entry>> entriesByPatient = new HashMap<>();
+    private final Map<Integer, List<Entry>> entriesByType = new HashMap<>();
+    private long cachedRecords;
+
+    // Number of pending or cached aggregates per record type code, replaced on change
+    private volatile int[] watchedTypes = new int[0];
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxRecords the maximum number of records held by cached results
+     */
+    QueryCache(long maxRecords) {
+        this.maxRecords = maxRecords;
+    }
+
+    /**
+     * Returns the counters of this cache.
+     *
+     * @return the cache counters
+     */
+    QueryCacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns a patient's records within a time range from the cache, computing
+     * and caching them on a miss.
+     *
+     * @param patient   the patient
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @return a new list of the matching records, ordered by timestamp
+     */
+    List<PatientRecord> getRecords(Patient patient, long startTime, long endTime) {
+        Key key = new Key(Key.RECORDS, patient.getPatientId(), startTime, endTime, 0);
+        Entry entry;
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                stats.recordHit();
+                return new ArrayList<>(cached.records);
+            }
+            stats.recordMiss();
+            entry = new Entry(key, patient);
+            watch(entry);
+        }
+        List<PatientRecord> records = patient.getRecords(startTime, endTime);
+        synchronized (this) {
+            entry.records = new ArrayList<>(records);
+            entry.lastTimestamp = records.isEmpty() ? Long.MIN_VALUE : records.get(records.size() - 1).getTimestamp();
+            complete(entry, records.size() + 1);
+        }
+        return records;
+    }
+
+    /**
+     * Returns a cross-patient result for one record type from the cache,
+     * computing and caching it on a miss.
+     *
+     * @param kind           {@link Key#AGGREGATE} or {@link Key#PERCENTILE}
+     * @param recordTypeCode the registry code of the record type
+     * @param startTime      the start of the time range, inclusive
+     * @param endTime        the end of the time range, inclusive
+     * @param parameter      the percentile, 0 for aggregates
+     * @param compute        computes the result on a miss
+     * @return the result
+     */
+    <T> T getTypeResult(int kind, int recordTypeCode, long startTime, long endTime, double parameter,
+            Supplier<T> compute) {
+        Key key = new Key(kind, recordTypeCode, startTime, endTime, parameter);
+        Entry entry;
+        synchronized (this) {
+            Entry cached = entries.get(key);
+            if (cached != null) {
+                stats.recordHit();
+                @SuppressWarnings("unchecked")
+                T value = (T) cached.value;
+                return value;
+            }
+            stats.recordMiss();
+            entry = new Entry(key, null);
+            watch(entry);
+        }
+        T value = compute.get();
+        synchronized (this) {
+            entry.value = value;
+            complete(entry, 1);
+        }
+        return value;
+    }
+
+    /**
+     * Updates the results affected by a measurement that has just been stored.
+     * Must be called after the measurement is visible to queries.
+     *
+     * @param patient          the patient the measurement was added to
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time of the measurement
+     * @param measurementValue the measurement value
+     */
+    void afterWrite(Patient patient, int recordTypeCode, long timestamp, double measurementValue) {
+        int[] types = watchedTypes;
+        boolean typeWatched = recordTypeCode < types.length && types[recordTypeCode] > 0;
+        if (!patient.hasCachedQueries() && !typeWatched) {
+            return;
+        }
+        synchronized (this) {
+            List<Entry> byPatient = entriesByPatient.get(patient.getPatientId());
+            if (byPatient != null) {
+                for (Entry entry : new ArrayList<>(byPatient)) {
+                    // Extending an earlier entry may have evicted this one
+                    if (!entry.invalidated && entry.covers(timestamp)) {
+                        extendOrInvalidate(entry, patient, recordTypeCode, timestamp, measurementValue);
+                    }
+                }
+            }
+            List<Entry> byType = entriesByType.get(recordTypeCode);
+            if (byType != null) {
+                for (Entry entry : new ArrayList<>(byType)) {
+                    if (!entry.invalidated && entry.covers(timestamp)) {
+                        invalidate(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    private void extendOrInvalidate(Entry entry, Patient patient, int recordTypeCode, long timestamp,
+            double measurementValue) {
+        // Equal timestamps are not extended: their order in a fresh result depends on the record type
+        if (!entry.cached || timestamp <= entry.lastTimestamp) {
+            invalidate(entry);
+            return;
+        }
+        entry.records.add(new PatientRecord(patient.getPatientId(), measurementValue,
+                RecordTypeRegistry.getInstance().nameOf(recordTypeCode), timestamp));
+        entry.lastTimestamp = timestamp;
+        entry.weight++;
+        cachedRecords++;
+        stats.recordExtension();
+        evictToBound();
+    }
+
+    /**
+     * Drops every cached result and stops tracking patients, when the cache is
+     * replaced or disabled. Pending results are no longer cached.
+     */
+    synchronized void clear() {
+        for (List<Entry> list : entriesByPatient.values()) {
+            for (Entry entry : list) {
+                entry.invalidated = true;
+                entry.patient.setCachedQueries(false);
+            }
+        }
+        for (List<Entry> list : entriesByType.values()) {
+            for (Entry entry : list) {
+                entry.invalidated = true;
+            }
+        }
+        entries.clear();
+        entriesByPatient.clear();
+        entriesByType.clear();
+        cachedRecords = 0;
+        watchedTypes = new int[0];
+    }
+
+    /**
+     * Returns the number of results currently cached.
+     *
+     * @return the number of cached results
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of records held by the cached results.
+     *
+     * @return the number of cached records
+     */
+    synchronized long cachedRecords() {
+        return cachedRecords;
+    }
+
+    /** Caches a computed result unless a write invalidated it in the meantime. */
+    private void complete(Entry entry, long weight) {
+        if (entry.invalidated) {
+            return;
+        }
+        Entry previous = entries.remove(entry.key);
+        if (previous != null) {
+            remove(previous); // a concurrent miss on the same key finished first
+        }
+        entry.cached = true;
+        entry.weight = weight;
+        entries.put(entry.key, entry);
+        cachedRecords += weight;
+        evictToBound();
+    }
+
+    private void evictToBound() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (cachedRecords > maxRecords && eldest.hasNext()) {
+            Entry entry = eldest.next();
+            eldest.remove();
+            entry.invalidated = true; // no longer counted, so never extended or invalidated again
+            entry.cached = false;
+            cachedRecords -= entry.weight;
+            unwatch(entry);
+            stats.recordEviction();
+        }
+    }
+
+    private void invalidate(Entry entry) {
+        entry.invalidated = true;
+        if (entry.cached) {
+            entries.remove(entry.key);
+            cachedRecords -= entry.weight;
+            stats.recordInvalidation();
+        }
+        unwatch(entry);
+    }
+
+    private void remove(Entry entry) {
+        cachedRecords -= entry.weight;
+        unwatch(entry);
+    }
+
+    private void watch(Entry entry) {
+        if (entry.patient != null) {
+            entriesByPatient.computeIfAbsent(entry.key.id, id -> new ArrayList<>()).add(entry);
+            entry.patient.setCachedQueries(true);
+        } else {
+            entriesByType.computeIfAbsent(entry.key.id, code -> new ArrayList<>()).add(entry);
+            updateWatchedType(entry.key.id, 1);
+        }
+    }
+
+    private void unwatch(Entry entry) {
+        if (entry.patient != null) {
+            List<Entry> list = entriesByPatient.get(entry.key.id);
+            if (list != null && list.remove(entry) && list.isEmpty()) {
+                entriesByPatient.remove(entry.key.id);
+                entry.patient.setCachedQueries(false);
+            }
+        } else {
+            List<Entry> list = entriesByType.get(entry.key.id);
+            if (list != null && list.remove(entry)) {
+                if (list.isEmpty()) {
+                    entriesByType.remove(entry.key.id);
+                }
+                updateWatchedType(entry.key.id, -1);
+            }
+        }
+    }
+
+    private void updateWatchedType(int recordTypeCode, int delta) {
+        int[] current = watchedTypes;
+        int[] updated = Arrays.copyOf(current, Math.max(current.length, recordTypeCode + 1));
+        updated[recordTypeCode] += delta;
+        watchedTypes = updated;
+    }
+
+    /**
+     * Identifies a cached query: its kind, the patient ID or record type code it
+     * reads, its time range and, for percentiles, the percentile.
+     */
+    static final class Key {
+        static final int RECORDS = 0;
+        static final int AGGREGATE = 1;
+        static final int PERCENTILE = 2;
+
+        final int kind;
+        final int id;
+        final long startTime;
+        final long endTime;
+        final double parameter;
+
+        Key(int kind, int id, long startTime, long endTime, double parameter) {
+            this.kind = kind;
+            this.id = id;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.parameter = parameter;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return kind == key.kind && id == key.id && startTime == key.startTime && endTime == key.endTime
+                    && Double.compare(parameter, key.parameter) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = kind * 31 + id;
+            hash = hash * 31 + Long.hashCode(startTime);
+            hash = hash * 31 + Long.hashCode(endTime);
+            return hash * 31 + Double.hashCode(parameter);
+        }
+    }
+
+    /**
+     * A pending or cached result together with what it depends on.
+     */
+    private static final class Entry {
+        final Key key;
+        final Patient patient; // Null for cross-patient results.
+        List<PatientRecord> records;
+        Object value;
+        long lastTimestamp;
+        long weight;
+        boolean cached;
+        boolean invalidated;
+
+        Entry(Key key, Patient patient) {
+            this.key = key;
+            this.patient = patient;
+        }
+
+        boolean covers(long timestamp) {
+            return timestamp >= key.startTime && timestamp <= key.endTime;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.data_management;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing the effectiveness of the query cache of a
+ * {@link DataStorage}. The counters are cumulative and safe to read while
+ * queries and ingestion are running.
+ */
+public class QueryCacheStats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder extensions = new LongAdder();
+
+    /**
+     * Records a query answered from the cache.
+     */
+    void recordHit() {
+        hits.increment();
+    }
+
+    /**
+     * Records a cacheable query that had to be computed.
+     */
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Records a result dropped to respect the size bound.
+     */
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    /**
+     * Records a result dropped because a measurement was added within its range.
+     */
+    void recordInvalidation() {
+        invalidations.increment();
+    }
+
+    /**
+     * Records a measurement appended to a cached result.
+     */
+    void recordExtension() {
+        extensions.increment();
+    }
+
+    /**
+     * Returns the number of queries answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of cacheable queries that had to be computed.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the fraction of cacheable queries answered from the cache.
+     *
+     * @return the hit rate between 0 and 1, or NaN before the first query
+     */
+    public double getHitRate() {
+        long hitCount = getHits();
+        long total = hitCount + getMisses();
+        return total == 0 ? Double.NaN : (double) hitCount / total;
+    }
+
+    /**
+     * Returns the number of results dropped to stay within the cache's size
+     * bound, least recently used first.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of results dropped because a measurement was added
+     * within their time range.
+     *
+     * @return the number of invalidations
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Returns the number of measurements appended to cached results instead of
+     * invalidating them.
+     *
+     * @return the number of extensions
+     */
+    public long getExtensions() {
+        return extensions.sum();
+    }
+}
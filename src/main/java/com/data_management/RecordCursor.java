@@ -0,0 +1,201 @@
+package com.data_management;
+
+/**
+ * Forward-only cursor over the measurements of a patient.
+ * The cursor reads directly from the columnar storage of the patient and exposes
+ * the current measurement through primitive getters, so iterating does not
+ * create any {@link PatientRecord} objects.
+ *
+ * <p>Measurements are returned in timestamp order. When the cursor spans several
+ * record types their series are merged on the fly. The start and end of the
+ * range are located by binary search in every series. Sealed chunks are
+ * decoded one at a time into scratch arrays owned by the cursor when the
+ * iteration enters them; raw chunks are read in place.</p>
+ *
+ * <p>The cursor works on a snapshot of each series taken when it is created, so
+ * it is safe to use while other threads keep adding measurements; those are not
+ * visible through an existing cursor.</p>
+ *
+ * <pre>
+ * RecordCursor cursor = patient.getCursor(startTime, endTime);
+ * while (cursor.next()) {
+ *     double value = cursor.getMeasurementValue();
+ * }
+ * </pre>
+ */
+public final class RecordCursor {
+    private final TimeSeries[] series;
+    private final TimeSeries.Chunk[][] chunks;
+    private final int[] lastSize;
+    private final long endTime;
+
+    // Per-series iteration state; a chunk index of -1 marks an exhausted series.
+    private final int[] chunkIndex;
+    private final int[] position;
+    private final int[] limit;
+    private final long[][] timestamps; // arrays of the current chunk, raw or decoded
+    private final double[][] values;
+    private final long[][] decodedTimestamps; // scratch for sealed chunks, allocated on first use
+    private final double[][] decodedValues;
+
+    private int current = -1;
+    private boolean started;
+
+    /**
+     * Constructs a cursor over the given series, limited to a time range.
+     *
+     * @param series    the series to iterate, one per record type
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     */
+    RecordCursor(TimeSeries[] series, long startTime, long endTime) {
+        int count = series.length;
+        this.series = series;
+        this.chunks = new TimeSeries.Chunk[count][];
+        this.lastSize = new int[count];
+        this.endTime = endTime;
+        this.chunkIndex = new int[count];
+        this.position = new int[count];
+        this.limit = new int[count];
+        this.timestamps = new long[count][];
+        this.values = new double[count][];
+        this.decodedTimestamps = new long[count][];
+        this.decodedValues = new double[count][];
+        for (int i = 0; i < count; i++) {
+            TimeSeries.Chunk[] snapshot = this.series[i].chunks();
+            chunks[i] = snapshot;
+            lastSize[i] = snapshot.length == 0 ? 0 : snapshot[snapshot.length - 1].size();
+            seek(i, startTime);
+        }
+    }
+
+    /**
+     * Advances the cursor to the next measurement within the time range.
+     *
+     * @return true if the cursor is positioned on a measurement, false if there
+     *         are no more measurements
+     */
+    public boolean next() {
+        if (started && current >= 0) {
+            advance(current);
+        }
+        started = true;
+        current = -1;
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < series.length; i++) {
+            if (chunkIndex[i] < 0) {
+                continue;
+            }
+            long timestamp = timestamps[i][position[i]];
+            if (current < 0 || timestamp < earliest) {
+                earliest = timestamp;
+                current = i;
+            }
+        }
+        return current >= 0;
+    }
+
+    /**
+     * Returns the timestamp of the current measurement.
+     *
+     * @return the timestamp in milliseconds since UNIX epoch
+     */
+    public long getTimestamp() {
+        return timestamps[current][position[current]];
+    }
+
+    /**
+     * Returns the value of the current measurement.
+     *
+     * @return the measurement value
+     */
+    public double getMeasurementValue() {
+        return values[current][position[current]];
+    }
+
+    /**
+     * Returns the record type of the current measurement.
+     *
+     * @return the record type
+     */
+    public String getRecordType() {
+        return RecordTypeRegistry.getInstance().nameOf(getRecordTypeCode());
+    }
+
+    /**
+     * Returns the {@link RecordTypeRegistry} code of the record type of the
+     * current measurement.
+     *
+     * @return the record type code
+     */
+    public int getRecordTypeCode() {
+        return series[current].getRecordTypeCode();
+    }
+
+    /**
+     * Positions a series on its first measurement at or after the start time.
+     */
+    private void seek(int i, long startTime) {
+        int chunk = TimeSeries.firstChunkFrom(chunks[i], lastSize[i], startTime);
+        if (chunk == chunks[i].length) {
+            chunkIndex[i] = -1;
+            return;
+        }
+        enterChunk(i, chunk, startTime);
+    }
+
+    /**
+     * Moves a series to its next measurement, crossing into the next chunk when
+     * the current one is exhausted.
+     */
+    private void advance(int i) {
+        if (++position[i] < limit[i]) {
+            return;
+        }
+        int next = chunkIndex[i] + 1;
+        if (limit[i] < sizeOf(i, chunkIndex[i]) || next == chunks[i].length) {
+            chunkIndex[i] = -1; // the end of the range was reached inside the current chunk
+            return;
+        }
+        enterChunk(i, next, Long.MIN_VALUE);
+    }
+
+    /**
+     * Positions a series on the first measurement of a chunk at or after the
+     * start time and computes, by binary search, where the range ends within
+     * that chunk. A sealed chunk is decoded no further than the end of the range.
+     */
+    private void enterChunk(int i, int chunk, long startTime) {
+        TimeSeries.Chunk data = chunks[i][chunk];
+        int size = sizeOf(i, chunk);
+        int end;
+        if (data.isSealed()) {
+            if (decodedTimestamps[i] == null) {
+                decodedTimestamps[i] = new long[TimeSeries.CHUNK_CAPACITY];
+                decodedValues[i] = new double[TimeSeries.CHUNK_CAPACITY];
+            }
+            timestamps[i] = decodedTimestamps[i];
+            values[i] = decodedValues[i];
+            end = data.decode(endTime, timestamps[i], values[i]);
+        } else {
+            timestamps[i] = data.timestamps;
+            values[i] = data.values;
+            end = timestamps[i][size - 1] <= endTime ? size : TimeSeries.upperBound(timestamps[i], size, endTime);
+        }
+        int start = startTime == Long.MIN_VALUE ? 0 : TimeSeries.lowerBound(timestamps[i], end, startTime);
+        if (start >= end) {
+            chunkIndex[i] = -1;
+            return;
+        }
+        chunkIndex[i] = chunk;
+        position[i] = start;
+        limit[i] = end;
+    }
+
+    /**
+     * Returns the number of measurements of a chunk as seen by this cursor.
+     */
+    private int sizeOf(int i, int chunk) {
+        return chunk == chunks[i].length - 1 ? lastSize[i] : chunks[i][chunk].size();
+    }
+}
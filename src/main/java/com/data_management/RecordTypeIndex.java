@@ -0,0 +1,157 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Secondary index of a {@link DataStorage} from record type to the patients
+ * holding measurements of that type, so that cross-patient queries on one
+ * signal, such as all Cholesterol records of the ward in a time range, only
+ * visit the series of that type instead of walking every patient.
+ *
+ * <p>Each record type has a posting list of the patients with a series of that
+ * type, in the order the series were created, alongside the series themselves.
+ * A patient is registered once, when its first measurement of the type is
+ * stored; later inserts do not touch the index. Queries prune the posting list
+ * by time: a series whose oldest and newest measurements do not overlap the
+ * requested range is skipped without being read, and the matching series are
+ * then searched by their chunk bounds.</p>
+ *
+ * <p>Registrations are serialised by the index's lock. Readers take no lock: a
+ * posting list publishes its arrays before its size, so a reader that sees a
+ * size also sees every entry below it.</p>
+ */
+final class RecordTypeIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private volatile Postings[] postingsByCode = new Postings[0];
+
+    /**
+     * Registers the series of a record type that has just been created for a
+     * patient. Called once per patient and record type.
+     *
+     * @param patient the patient owning the series
+     * @param series  the new series
+     */
+    synchronized void register(Patient patient, TimeSeries series) {
+        int recordTypeCode = series.getRecordTypeCode();
+        Postings[] byCode = postingsByCode;
+        if (recordTypeCode >= byCode.length) {
+            byCode = Arrays.copyOf(byCode, recordTypeCode + 1);
+            postingsByCode = byCode;
+        }
+        if (byCode[recordTypeCode] == null) {
+            byCode[recordTypeCode] = new Postings();
+            postingsByCode = byCode; // republish so readers see the new posting list
+        }
+        byCode[recordTypeCode].add(patient, series);
+    }
+
+    /**
+     * Returns the patients with measurements of a record type that may fall
+     * within a time range.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @param startTime      the start of the time range, inclusive
+     * @param endTime        the end of the time range, inclusive
+     * @return the patients whose series of that type overlaps the range
+     */
+    Patient[] patients(int recordTypeCode, long startTime, long endTime) {
+        Postings postings = postings(recordTypeCode);
+        if (postings == null) {
+            return new Patient[0];
+        }
+        int size = postings.size;
+        Patient[] patients = postings.patients;
+        TimeSeries[] series = postings.series;
+        Patient[] matching = new Patient[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (series[i].overlaps(startTime, endTime)) {
+                matching[count++] = patients[i];
+            }
+        }
+        return count == size ? matching : Arrays.copyOf(matching, count);
+    }
+
+    /**
+     * Passes the measurements of a record type within a time range to a
+     * consumer, patient by patient.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @param startTime      the start of the time range, inclusive
+     * @param endTime        the end of the time range, inclusive
+     * @param consumer       receives the matching measurements
+     * @return the number of measurements passed to the consumer
+     */
+    int forEach(int recordTypeCode, long startTime, long endTime, PatientMeasurementConsumer consumer) {
+        Postings postings = postings(recordTypeCode);
+        if (postings == null) {
+            return 0;
+        }
+        int size = postings.size;
+        Patient[] patients = postings.patients;
+        TimeSeries[] series = postings.series;
+        PatientAdapter adapter = new PatientAdapter(consumer);
+        int visited = 0;
+        for (int i = 0; i < size; i++) {
+            if (series[i].overlaps(startTime, endTime)) {
+                adapter.patientId = patients[i].getPatientId();
+                visited += series[i].forEach(startTime, endTime, adapter);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Returns the number of patients with measurements of a record type.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @return the number of indexed patients
+     */
+    int patientCount(int recordTypeCode) {
+        Postings postings = postings(recordTypeCode);
+        return postings == null ? 0 : postings.size;
+    }
+
+    private Postings postings(int recordTypeCode) {
+        Postings[] byCode = postingsByCode;
+        return recordTypeCode >= 0 && recordTypeCode < byCode.length ? byCode[recordTypeCode] : null;
+    }
+
+    /**
+     * The posting list of one record type: parallel arrays of patients and their
+     * series of that type, grown by publishing larger copies.
+     */
+    private static final class Postings {
+        volatile Patient[] patients = new Patient[INITIAL_CAPACITY];
+        volatile TimeSeries[] series = new TimeSeries[INITIAL_CAPACITY];
+        volatile int size;
+
+        void add(Patient patient, TimeSeries added) {
+            if (size == patients.length) {
+                series = Arrays.copyOf(series, size * 2);
+                patients = Arrays.copyOf(patients, size * 2);
+            }
+            patients[size] = patient;
+            series[size] = added;
+            size++; // publishes the entry
+        }
+    }
+
+    /**
+     * Tags the measurements of one series with the ID of its patient.
+     */
+    private static final class PatientAdapter implements MeasurementConsumer {
+        private final PatientMeasurementConsumer consumer;
+        int patientId;
+
+        PatientAdapter(PatientMeasurementConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            consumer.accept(patientId, timestamp, value);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary that maps record type names, e.g., "HeartRate", to compact integer
+ * codes. Codes are assigned on first use, are dense and start at 0, so they can
+ * index arrays directly.
+ *
+ * <p>Record types are encoded once at ingest time; storage and alert evaluation
+ * then work on codes only, and the name is resolved at the API edge when a
+ * {@link PatientRecord} is built. The registry is shared by all storages and
+ * readers of a process and is safe for concurrent use.</p>
+ */
+public final class RecordTypeRegistry {
+    private static RecordTypeRegistry instance;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[0];
+
+    private RecordTypeRegistry() {
+    }
+
+    /**
+     * Returns the singleton instance of the registry, creating it if it doesn't
+     * already exist.
+     *
+     * @return the singleton instance of RecordTypeRegistry
+     */
+    public static synchronized RecordTypeRegistry getInstance() {
+        if (instance == null) {
+            instance = new RecordTypeRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the code of a record type, registering the type if it has not been
+     * seen before.
+     *
+     * @param recordType the record type name
+     * @return the code of the record type
+     */
+    public int codeFor(String recordType) {
+        Integer code = codes.get(recordType);
+        if (code != null) {
+            return code;
+        }
+        return register(recordType);
+    }
+
+    /**
+     * Returns the code of a record type without registering it.
+     *
+     * @param recordType the record type name
+     * @return the code of the record type, or -1 if the type is unknown
+     */
+    public int lookup(String recordType) {
+        Integer code = codes.get(recordType);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the name of a record type code.
+     *
+     * @param code a code previously returned by {@link #codeFor(String)}
+     * @return the record type name
+     * @throws IllegalArgumentException if the code has not been assigned
+     */
+    public String nameOf(int code) {
+        String[] current = names;
+        if (code < 0 || code >= current.length) {
+            throw new IllegalArgumentException("Unknown record type code: " + code);
+        }
+        return current[code];
+    }
+
+    /**
+     * Returns the number of registered record types. Valid codes range from 0 to
+     * this value minus one.
+     *
+     * @return the number of registered record types
+     */
+    public int size() {
+        return names.length;
+    }
+
+    private synchronized int register(String recordType) {
+        Integer existing = codes.get(recordType);
+        if (existing != null) {
+            return existing;
+        }
+        int code = names.length;
+        String[] grown = Arrays.copyOf(names, code + 1);
+        grown[code] = recordType;
+        // Publish the name before the code so that any code handed out can be resolved
+        names = grown;
+        codes.put(recordType, code);
+        return code;
+    }
+}
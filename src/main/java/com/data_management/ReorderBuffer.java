@@ -0,0 +1,508 @@
+package com.data_management;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A stage between streaming readers and a {@link DataStorage} that puts every
+ * patient's measurements back into timestamp order and drops exact duplicates,
+ * such as those received again after a reconnection or from two feeds.
+ *
+ * <p>Measurements are held per patient for a configurable allowed lateness: a
+ * patient's watermark is the latest timestamp received for it minus the
+ * lateness, and a held measurement is released to the storage once the
+ * watermark reaches its timestamp. Measurements therefore reach the storage in
+ * timestamp order and take the series' append path. When the watermark
+ * advances, every {@link WatermarkListener} is told that the patient's
+ * measurements up to it are complete, so windows ending there can be evaluated
+ * without re-sorting the storage. A storage that stores asynchronously, such
+ * as a {@link ShardedDataStorage}, may still be applying them.</p>
+ *
+ * <p>A measurement arriving at or behind its patient's watermark is late. It
+ * is still stored, but consumers may have evaluated its window already. To
+ * drop late duplicates without reading the storage, which may not show the
+ * released measurements yet, each patient remembers what it released down to
+ * its watermark minus the allowed lateness; a late measurement further behind
+ * is stored without that check. Measurements are exact duplicates when
+ * patient, record type, timestamp and value are all equal.
+ * Held measurements are stored when {@link #flush()} is called or, for
+ * patients that stop sending, by {@link #flushIdle(Duration)}.</p>
+ *
+ * <p>The buffer is safe for concurrent use; each patient's measurements are
+ * stored by one thread at a time.</p>
+ */
+public class ReorderBuffer {
+    /** Number of a patient's measurements handed to the storage at once. */
+    static final int BATCH_SIZE = 64;
+
+    private final DataStorage dataStorage;
+    private final long allowedLatenessMillis;
+    private final PatientDirectory<PatientBuffer> buffers = new PatientDirectory<>();
+    private final List<WatermarkListener> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder late = new LongAdder();
+
+    /**
+     * Constructs a reorder buffer in front of a storage.
+     *
+     * @param dataStorage      the storage receiving the ordered measurements
+     * @param allowedLateness  how far behind the latest measurement of a patient
+     *                         another one may arrive and still be put in order
+     * @throws IllegalArgumentException if the allowed lateness is negative
+     */
+    public ReorderBuffer(DataStorage dataStorage, Duration allowedLateness) {
+        if (allowedLateness.isNegative()) {
+            throw new IllegalArgumentException("Allowed lateness must not be negative: " + allowedLateness);
+        }
+        this.dataStorage = dataStorage;
+        this.allowedLatenessMillis = allowedLateness.toMillis();
+    }
+
+    /**
+     * Returns the allowed lateness.
+     *
+     * @return the allowed lateness in milliseconds
+     */
+    public long getAllowedLatenessMillis() {
+        return allowedLatenessMillis;
+    }
+
+    /**
+     * Registers a listener told whenever the watermark of a patient advances.
+     *
+     * @param listener the listener
+     */
+    public void addWatermarkListener(WatermarkListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with {@link #addWatermarkListener}.
+     *
+     * @param listener the listener
+     */
+    public void removeWatermarkListener(WatermarkListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Adds a measurement, storing the measurements of its patient that the
+     * advanced watermark releases.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the measurement value
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time of the measurement
+     */
+    public void add(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        buffer(patientId).add(measurementValue, recordTypeCode, timestamp);
+    }
+
+    /**
+     * Adds a batch of measurements, storing those that the advanced watermarks
+     * release. Like {@link DataStorage#addPatientData(MeasurementBatch)} the
+     * batch is grouped by patient first, so each patient's lock is taken once.
+     * The batch is not modified and may be reused afterwards.
+     *
+     * @param batch the measurements to add
+     */
+    public void add(MeasurementBatch batch) {
+        int[] order = batch.orderByPatient();
+        int start = 0;
+        while (start < order.length) {
+            int patientId = batch.patientIds[order[start]];
+            int end = start + 1;
+            while (end < order.length && batch.patientIds[order[end]] == patientId) {
+                end++;
+            }
+            buffer(patientId).add(batch, order, start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * Stores every held measurement and advances each patient's watermark to
+     * its latest timestamp. Readers call this when they stop.
+     */
+    public void flush() {
+        for (PatientBuffer buffer : buffers.values()) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Stores the held measurements of the patients from whom nothing arrived
+     * for a while, so that a patient whose feed stops does not keep its last
+     * measurements back, and advances their watermarks to their latest
+     * timestamps.
+     *
+     * @param idleTimeout how long nothing must have arrived for a patient
+     * @return the number of measurements stored
+     */
+    public int flushIdle(Duration idleTimeout) {
+        long idleSince = System.nanoTime() - idleTimeout.toNanos();
+        int flushed = 0;
+        for (PatientBuffer buffer : buffers.values()) {
+            flushed += buffer.flushIfIdle(idleSince);
+        }
+        return flushed;
+    }
+
+    /**
+     * Returns the watermark of a patient: all of its measurements up to this
+     * timestamp, inclusive, have been released to the storage, except late ones
+     * still to come. A storage that stores asynchronously, such as a
+     * {@link ShardedDataStorage}, may not show them yet; wait for
+     * {@link ShardedDataStorage#awaitIngested()} before reading them from it.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the watermark, or {@link Long#MIN_VALUE} if nothing was released
+     *         for the patient yet
+     */
+    public long getWatermark(int patientId) {
+        PatientBuffer buffer = buffers.get(patientId);
+        return buffer != null ? buffer.watermark : Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the number of measurements held back, waiting for their watermark.
+     *
+     * @return the number of held measurements
+     */
+    public long getBuffered() {
+        return buffered.sum();
+    }
+
+    /**
+     * Returns the number of measurements handed to the storage, late ones included.
+     *
+     * @return the number of stored measurements
+     */
+    public long getStored() {
+        return stored.sum();
+    }
+
+    /**
+     * Returns the number of measurements dropped as exact duplicates.
+     *
+     * @return the number of duplicates
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Returns the number of measurements that arrived at or behind their
+     * patient's watermark, duplicates among them included.
+     *
+     * @return the number of late measurements
+     */
+    public long getLate() {
+        return late.sum();
+    }
+
+    private PatientBuffer buffer(int patientId) {
+        return buffers.computeIfAbsent(patientId, PatientBuffer::new);
+    }
+
+    /**
+     * The held measurements of one patient in a binary min-heap over primitive
+     * columns, ordered by timestamp, record type and value so that exact
+     * duplicates leave the heap one after the other, and the keys of the
+     * measurements released recently, sorted by timestamp, to recognise late
+     * duplicates.
+     */
+    private final class PatientBuffer {
+        private final int patientId;
+        private long[] timestamps = new long[16];
+        private int[] recordTypeCodes = new int[16];
+        private double[] values = new double[16];
+        private int size;
+        private long maxTimestamp = Long.MIN_VALUE;
+        private volatile long watermark = Long.MIN_VALUE;
+        private long lastArrivalNanos;
+        // The last measurement released from the heap; exact duplicates leave it right after
+        private boolean hasLast;
+        private long lastTimestamp;
+        private int lastRecordTypeCode;
+        private long lastValueBits;
+        // Keys of the released measurements in [releasedStart, releasedEnd), sorted by timestamp
+        private long[] releasedTimestamps = new long[16];
+        private int[] releasedRecordTypeCodes = new int[16];
+        private long[] releasedValueBits = new long[16];
+        private int releasedStart;
+        private int releasedEnd;
+        private MeasurementBatch out; // Released measurements not stored yet, created on first use
+
+        PatientBuffer(int patientId) {
+            this.patientId = patientId;
+        }
+
+        synchronized void add(MeasurementBatch batch, int[] order, int from, int to) {
+            lastArrivalNanos = System.nanoTime();
+            for (int k = from; k < to; k++) {
+                int i = order[k];
+                receive(batch.values[i], batch.recordTypeCodes[i], batch.timestamps[i]);
+            }
+            advance();
+        }
+
+        synchronized void add(double value, int recordTypeCode, long timestamp) {
+            lastArrivalNanos = System.nanoTime();
+            receive(value, recordTypeCode, timestamp);
+            advance();
+        }
+
+        /** Stores everything held; returns the number of measurements released. */
+        synchronized int flush() {
+            if (maxTimestamp == Long.MIN_VALUE || watermark >= maxTimestamp) {
+                return 0;
+            }
+            int held = size;
+            release(maxTimestamp);
+            return held;
+        }
+
+        /** Stores everything held if nothing arrived since the given {@link System#nanoTime()}. */
+        synchronized int flushIfIdle(long idleSince) {
+            return lastArrivalNanos - idleSince > 0 ? 0 : flush();
+        }
+
+        private void receive(double value, int recordTypeCode, long timestamp) {
+            if (timestamp <= watermark) {
+                addLate(value, recordTypeCode, timestamp);
+            } else {
+                push(timestamp, recordTypeCode, value);
+                maxTimestamp = Math.max(maxTimestamp, timestamp);
+            }
+        }
+
+        /** Releases what the latest timestamp lets the watermark pass, and stores late measurements. */
+        private void advance() {
+            long next = maxTimestamp - allowedLatenessMillis;
+            if (maxTimestamp != Long.MIN_VALUE && next > watermark) {
+                release(next);
+            } else {
+                store();
+            }
+        }
+
+        private void addLate(double value, int recordTypeCode, long timestamp) {
+            late.increment();
+            if (isReleased(timestamp, recordTypeCode, Double.doubleToLongBits(value))) {
+                duplicates.increment();
+                return;
+            }
+            append(value, recordTypeCode, timestamp);
+        }
+
+        /** Whether an identical measurement was released and is still remembered. */
+        private boolean isReleased(long timestamp, int recordTypeCode, long valueBits) {
+            for (int i = releasedIndex(timestamp); i < releasedEnd && releasedTimestamps[i] == timestamp; i++) {
+                if (releasedRecordTypeCodes[i] == recordTypeCode && releasedValueBits[i] == valueBits) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Returns the first position of a remembered key not older than a timestamp. */
+        private int releasedIndex(long timestamp) {
+            int low = releasedStart;
+            int high = releasedEnd;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (releasedTimestamps[mid] < timestamp) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Remembers the key of a released measurement, unless it is already too
+         * far behind the watermark to be checked.
+         */
+        private void remember(long timestamp, int recordTypeCode, long valueBits) {
+            if (timestamp < rememberedFrom(watermark)) {
+                return;
+            }
+            if (releasedEnd == releasedTimestamps.length) {
+                int count = releasedEnd - releasedStart;
+                if (count * 2 > releasedTimestamps.length) {
+                    int capacity = releasedTimestamps.length * 2;
+                    releasedTimestamps = Arrays.copyOf(releasedTimestamps, capacity);
+                    releasedRecordTypeCodes = Arrays.copyOf(releasedRecordTypeCodes, capacity);
+                    releasedValueBits = Arrays.copyOf(releasedValueBits, capacity);
+                }
+                // Move the remembered keys to the front
+                System.arraycopy(releasedTimestamps, releasedStart, releasedTimestamps, 0, count);
+                System.arraycopy(releasedRecordTypeCodes, releasedStart, releasedRecordTypeCodes, 0, count);
+                System.arraycopy(releasedValueBits, releasedStart, releasedValueBits, 0, count);
+                releasedStart = 0;
+                releasedEnd = count;
+            }
+            // Released measurements come in timestamp order; only late ones are inserted further back
+            int i = releasedEnd;
+            if (i > releasedStart && releasedTimestamps[i - 1] > timestamp) {
+                i = releasedIndex(timestamp + 1);
+                System.arraycopy(releasedTimestamps, i, releasedTimestamps, i + 1, releasedEnd - i);
+                System.arraycopy(releasedRecordTypeCodes, i, releasedRecordTypeCodes, i + 1, releasedEnd - i);
+                System.arraycopy(releasedValueBits, i, releasedValueBits, i + 1, releasedEnd - i);
+            }
+            releasedTimestamps[i] = timestamp;
+            releasedRecordTypeCodes[i] = recordTypeCode;
+            releasedValueBits[i] = valueBits;
+            releasedEnd++;
+        }
+
+        /** Returns the oldest timestamp remembered at a watermark, without overflowing. */
+        private long rememberedFrom(long mark) {
+            long from = mark - allowedLatenessMillis;
+            return from > mark ? Long.MIN_VALUE : from;
+        }
+
+        /** Forgets the keys of released measurements older than a timestamp. */
+        private void forgetBefore(long timestamp) {
+            while (releasedStart < releasedEnd && releasedTimestamps[releasedStart] < timestamp) {
+                releasedStart++;
+            }
+            if (releasedStart == releasedEnd) {
+                releasedStart = 0;
+                releasedEnd = 0;
+            }
+        }
+
+        /** Stores the held measurements up to a new watermark and tells the listeners. */
+        private void release(long newWatermark) {
+            while (size > 0 && timestamps[0] <= newWatermark) {
+                long timestamp = timestamps[0];
+                int recordTypeCode = recordTypeCodes[0];
+                double value = values[0];
+                long bits = Double.doubleToLongBits(value);
+                pop();
+                if (hasLast && timestamp == lastTimestamp && recordTypeCode == lastRecordTypeCode
+                        && bits == lastValueBits) {
+                    duplicates.increment();
+                    continue;
+                }
+                hasLast = true;
+                lastTimestamp = timestamp;
+                lastRecordTypeCode = recordTypeCode;
+                lastValueBits = bits;
+                append(value, recordTypeCode, timestamp);
+            }
+            store();
+            watermark = newWatermark;
+            forgetBefore(rememberedFrom(newWatermark));
+            for (WatermarkListener listener : listeners) {
+                try {
+                    listener.onWatermark(patientId, newWatermark);
+                } catch (RuntimeException e) {
+                    System.err.println("Error in watermark listener: " + e.getMessage());
+                }
+            }
+        }
+
+        private void append(double value, int recordTypeCode, long timestamp) {
+            if (out == null) {
+                out = new MeasurementBatch(BATCH_SIZE);
+            } else if (out.isFull()) {
+                store();
+            }
+            out.add(patientId, value, recordTypeCode, timestamp);
+            remember(timestamp, recordTypeCode, Double.doubleToLongBits(value));
+        }
+
+        private void store() {
+            int count = out == null ? 0 : out.size();
+            if (count == 0) {
+                return;
+            }
+            try {
+                dataStorage.addPatientData(out);
+                stored.add(count);
+            } finally {
+                out.clear();
+            }
+        }
+
+        private void push(long timestamp, int recordTypeCode, double value) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                recordTypeCodes = Arrays.copyOf(recordTypeCodes, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            int i = size++;
+            buffered.increment();
+            // Sift up
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (compare(timestamp, recordTypeCode, value, parent) >= 0) {
+                    break;
+                }
+                set(i, timestamps[parent], recordTypeCodes[parent], values[parent]);
+                i = parent;
+            }
+            set(i, timestamp, recordTypeCode, value);
+        }
+
+        /** Removes the head of the heap. */
+        private void pop() {
+            size--;
+            buffered.decrement();
+            if (size == 0) {
+                return;
+            }
+            long timestamp = timestamps[size];
+            int recordTypeCode = recordTypeCodes[size];
+            double value = values[size];
+            // Sift the last element down from the root
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && compareAt(child + 1, child) < 0) {
+                    child++;
+                }
+                if (compare(timestamp, recordTypeCode, value, child) <= 0) {
+                    break;
+                }
+                set(i, timestamps[child], recordTypeCodes[child], values[child]);
+                i = child;
+            }
+            set(i, timestamp, recordTypeCode, value);
+        }
+
+        private int compare(long timestamp, int recordTypeCode, double value, int j) {
+            int c = Long.compare(timestamp, timestamps[j]);
+            if (c == 0) {
+                c = Integer.compare(recordTypeCode, recordTypeCodes[j]);
+            }
+            if (c == 0) {
+                c = Long.compare(Double.doubleToLongBits(value), Double.doubleToLongBits(values[j]));
+            }
+            return c;
+        }
+
+        private int compareAt(int i, int j) {
+            return compare(timestamps[i], recordTypeCodes[i], values[i], j);
+        }
+
+        private void set(int i, long timestamp, int recordTypeCode, double value) {
+            timestamps[i] = timestamp;
+            recordTypeCodes[i] = recordTypeCode;
+            values[i] = value;
+        }
+    }
+}
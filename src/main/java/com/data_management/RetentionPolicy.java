@@ -0,0 +1,99 @@
+package com.data_management;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Configures how long measurements are kept by a {@link DataStorage}.
+ *
+ * <p>Two limits are supported:</p>
+ * <ul>
+ *   <li>a maximum age per record type, e.g., 24 hours of ECG and 30 days of
+ *   blood pressure. Age is measured against the newest measurement of the same
+ *   type of the same patient, so replayed or late data is judged by data time
+ *   rather than wall-clock time;</li>
+ *   <li>a memory cap per patient. When a patient exceeds it, the oldest data of
+ *   the patient, across all record types, is evicted first.</li>
+ * </ul>
+ *
+ * <p>Eviction drops whole chunks of {@link TimeSeries#CHUNK_CAPACITY}
+ * measurements from the old end of a series, so it costs O(1) per chunk and
+ * never copies retained measurements. As a consequence, limits are enforced at
+ * chunk granularity: up to one chunk of data older than the age limit may
+ * remain visible until the whole chunk has expired.</p>
+ *
+ * <p>The policy may be changed while data is being ingested; new limits apply to
+ * subsequent inserts.</p>
+ */
+public class RetentionPolicy {
+    /** Heap bytes accounted for each retained measurement: one long and one double. */
+    public static final int BYTES_PER_MEASUREMENT = Long.BYTES + Double.BYTES;
+
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    private volatile long defaultMaxAgeMillis = UNLIMITED;
+    private volatile long[] maxAgeMillisByCode = new long[0];
+    private volatile long maxRecordsPerPatient = UNLIMITED;
+
+    /**
+     * Sets the maximum age of measurements of one record type.
+     *
+     * @param recordType the record type, e.g., "ECG"
+     * @param maxAge     how long measurements of this type are kept
+     */
+    public synchronized void setMaxAge(String recordType, Duration maxAge) {
+        int code = RecordTypeRegistry.getInstance().codeFor(recordType);
+        long[] current = maxAgeMillisByCode;
+        long[] updated = Arrays.copyOf(current, Math.max(current.length, code + 1));
+        for (int i = current.length; i < updated.length; i++) {
+            updated[i] = -1; // falls back to the default
+        }
+        updated[code] = maxAge.toMillis();
+        maxAgeMillisByCode = updated;
+    }
+
+    /**
+     * Sets the maximum age of measurements of record types without a specific
+     * limit. By default measurements are kept forever.
+     *
+     * @param maxAge how long measurements are kept
+     */
+    public void setDefaultMaxAge(Duration maxAge) {
+        this.defaultMaxAgeMillis = maxAge.toMillis();
+    }
+
+    /**
+     * Sets the memory cap of a single patient, in bytes of retained measurements
+     * as accounted by {@link #BYTES_PER_MEASUREMENT}. By default there is no cap.
+     *
+     * @param maxBytes the maximum number of bytes per patient
+     */
+    public void setMaxBytesPerPatient(long maxBytes) {
+        this.maxRecordsPerPatient = Math.max(1, maxBytes / BYTES_PER_MEASUREMENT);
+    }
+
+    /**
+     * Returns the maximum age of measurements of a record type.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @return the maximum age in milliseconds, or {@link Long#MAX_VALUE} if
+     *         measurements are kept forever
+     */
+    long getMaxAgeMillis(int recordTypeCode) {
+        long[] byCode = maxAgeMillisByCode;
+        if (recordTypeCode < byCode.length && byCode[recordTypeCode] >= 0) {
+            return byCode[recordTypeCode];
+        }
+        return defaultMaxAgeMillis;
+    }
+
+    /**
+     * Returns the maximum number of measurements kept for one patient.
+     *
+     * @return the maximum number of measurements, or {@link Long#MAX_VALUE} if
+     *         there is no cap
+     */
+    long getMaxRecordsPerPatient() {
+        return maxRecordsPerPatient;
+    }
+}
@@ -0,0 +1,98 @@
+package com.data_management;
+
+/**
+ * Summary of the measurements of one record type of one patient that fall in a
+ * fixed time bucket: their count, minimum, maximum, sum and mean.
+ * Buckets are returned by {@link DataStorage#getRollups} for trend views over
+ * long time ranges.
+ */
+public class RollupBucket {
+    private final long startTime;
+    private final long width;
+    private final long count;
+    private final double min;
+    private final double max;
+    private final double sum;
+
+    /**
+     * Constructs a bucket summary.
+     *
+     * @param startTime the start of the bucket, in milliseconds since epoch
+     * @param width     the length of the bucket, in milliseconds
+     * @param count     the number of measurements in the bucket
+     * @param min       the smallest measurement value
+     * @param max       the largest measurement value
+     * @param sum       the sum of the measurement values
+     */
+    public RollupBucket(long startTime, long width, long count, double min, double max, double sum) {
+        this.startTime = startTime;
+        this.width = width;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+    }
+
+    /**
+     * Returns the start of the bucket, inclusive.
+     *
+     * @return the start time in milliseconds since epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the end of the bucket, exclusive.
+     *
+     * @return the end time in milliseconds since epoch
+     */
+    public long getEndTime() {
+        return startTime + width;
+    }
+
+    /**
+     * Returns the number of measurements summarised by the bucket.
+     *
+     * @return the measurement count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest measurement value in the bucket.
+     *
+     * @return the minimum value
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the largest measurement value in the bucket.
+     *
+     * @return the maximum value
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the sum of the measurement values in the bucket.
+     *
+     * @return the sum
+     */
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the mean of the measurement values in the bucket.
+     *
+     * @return the mean value
+     */
+    public double getMean() {
+        return sum / count;
+    }
+}
@@ -0,0 +1,334 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Downsampled summaries of one {@link TimeSeries}, maintained incrementally on
+ * insert. Measurements are folded into 1 second, 1 minute and 1 hour buckets
+ * holding their count, minimum, maximum and sum, so that long-range trend
+ * queries read thousands of buckets instead of millions of raw measurements.
+ *
+ * <p>A tier is created only when it is first queried, from the measurements
+ * the series still holds, so series nobody reads trends of pay nothing for it.
+ * Each tier is a ring buffer of primitive columns with its own horizon; once
+ * full, appending a bucket overwrites the oldest one in O(1). When the series
+ * evicts chunks under its {@link RetentionPolicy}, the buckets that only
+ * covered evicted measurements are dropped as well and the tier shrinks, so the
+ * summaries never outlive the raw data.</p>
+ *
+ * <p>The single writer of the series updates the tiers under a write stamp.
+ * Readers first try an optimistic read and only fall back to a read lock when a
+ * concurrent insert invalidated it.</p>
+ */
+final class Rollups {
+    /** Bucket widths of the tiers, from finest to coarsest, in milliseconds. */
+    static final long[] TIER_WIDTHS = { 1_000L, 60_000L, 3_600_000L };
+
+    /** Number of buckets kept per tier: one hour, seven days and one year. */
+    static final int[] TIER_BUCKETS = { 3_600, 7 * 24 * 60, 365 * 24 };
+
+    private final Tier[] tiers = new Tier[TIER_WIDTHS.length]; // Null until first queried
+    private volatile int enabledTiers; // Bit i set once tiers[i] exists
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Folds a measurement into every created tier. Late measurements update the
+     * bucket they belong to; measurements older than a tier's horizon are
+     * ignored by that tier. Callers must not invoke this method concurrently.
+     *
+     * @param timestamp the time of the measurement
+     * @param value     the measurement value
+     */
+    void add(long timestamp, double value) {
+        if (enabledTiers == 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            for (Tier tier : tiers) {
+                if (tier != null) {
+                    tier.add(timestamp, value);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns whether a tier has been created.
+     *
+     * @param tierIndex the tier, see {@link #tierFor(long)}
+     * @return true if the tier is maintained on insert
+     */
+    boolean isEnabled(int tierIndex) {
+        return (enabledTiers & 1 << tierIndex) != 0;
+    }
+
+    /**
+     * Creates a tier from the measurements the series holds, unless it exists
+     * already. Must not run concurrently with writes to the series.
+     *
+     * @param tierIndex the tier, see {@link #tierFor(long)}
+     * @param series    the series these rollups summarise
+     */
+    void enable(int tierIndex, TimeSeries series) {
+        if (isEnabled(tierIndex)) {
+            return;
+        }
+        Tier tier = new Tier(TIER_WIDTHS[tierIndex], TIER_BUCKETS[tierIndex]);
+        series.forEach(Long.MIN_VALUE, Long.MAX_VALUE, tier::add);
+        long stamp = lock.writeLock();
+        try {
+            tiers[tierIndex] = tier;
+            enabledTiers |= 1 << tierIndex;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drops the buckets that end at or before the oldest measurement the series
+     * still retains. Callers must not invoke this method concurrently with
+     * {@link #add(long, double)}.
+     *
+     * @param oldestRetained the oldest retained timestamp, or
+     *                       {@link Long#MAX_VALUE} if the series is empty
+     */
+    void evictBefore(long oldestRetained) {
+        if (enabledTiers == 0) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            for (Tier tier : tiers) {
+                if (tier != null) {
+                    tier.evictBefore(oldestRetained);
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the index of the coarsest tier whose buckets are not wider than the
+     * requested resolution.
+     *
+     * @param resolutionMillis the requested resolution in milliseconds
+     * @return the tier index, or -1 if even the finest tier is too coarse
+     */
+    static int tierFor(long resolutionMillis) {
+        for (int i = TIER_WIDTHS.length - 1; i >= 0; i--) {
+            if (TIER_WIDTHS[i] <= resolutionMillis) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the buckets of a tier that overlap a time range, oldest first.
+     *
+     * @param tierIndex the tier to read, see {@link #tierFor(long)}
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @return the overlapping buckets
+     */
+    List<RollupBucket> query(int tierIndex, long startTime, long endTime) {
+        List<RollupBucket> buckets = new ArrayList<>();
+        if (!isEnabled(tierIndex)) {
+            return buckets;
+        }
+        Tier tier = tiers[tierIndex];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                tier.collect(startTime, endTime, buckets);
+                if (lock.validate(stamp)) {
+                    return buckets;
+                }
+            } catch (RuntimeException e) {
+                // A concurrent insert resized the tier mid-read; retry under the read lock
+            }
+            buckets.clear();
+        }
+        stamp = lock.readLock();
+        try {
+            tier.collect(startTime, endTime, buckets);
+            return buckets;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * One tier: a ring buffer of buckets ordered by start time. Physical slot of
+     * the logical bucket {@code i} (0 being the oldest) is
+     * {@code (head + i) & (capacity - 1)}.
+     */
+    private static final class Tier {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private final long width;
+        private final int maxBuckets;
+        private long[] starts = new long[INITIAL_CAPACITY];
+        private long[] counts = new long[INITIAL_CAPACITY];
+        private double[] mins = new double[INITIAL_CAPACITY];
+        private double[] maxs = new double[INITIAL_CAPACITY];
+        private double[] sums = new double[INITIAL_CAPACITY];
+        private int head;
+        private int size;
+
+        Tier(long width, int maxBuckets) {
+            this.width = width;
+            this.maxBuckets = maxBuckets;
+        }
+
+        void add(long timestamp, double value) {
+            long start = Math.floorDiv(timestamp, width) * width;
+            if (size > 0) {
+                int last = slot(size - 1);
+                if (starts[last] == start) {
+                    update(last, value);
+                    return;
+                }
+                if (starts[last] > start) {
+                    addLate(start, value);
+                    return;
+                }
+            }
+            insertAt(size, start, value);
+        }
+
+        private void addLate(long start, double value) {
+            int index = lowerBound(start);
+            if (index < size && starts[slot(index)] == start) {
+                update(slot(index), value);
+            } else if (index > 0 || size < maxBuckets) {
+                insertAt(index, start, value);
+            } // otherwise the bucket is older than anything this tier still keeps
+        }
+
+        /**
+         * Inserts a new bucket before the logical index, evicting the oldest bucket
+         * when the tier is at its horizon.
+         */
+        private void insertAt(int index, long start, double value) {
+            if (size == maxBuckets) {
+                head = (head + 1) & (starts.length - 1);
+                size--;
+                index--;
+            } else if (size == starts.length) {
+                grow();
+            }
+            for (int i = size; i > index; i--) {
+                int to = slot(i);
+                int from = slot(i - 1);
+                starts[to] = starts[from];
+                counts[to] = counts[from];
+                mins[to] = mins[from];
+                maxs[to] = maxs[from];
+                sums[to] = sums[from];
+            }
+            int target = slot(index);
+            starts[target] = start;
+            counts[target] = 1;
+            mins[target] = value;
+            maxs[target] = value;
+            sums[target] = value;
+            size++;
+        }
+
+        /** Drops the oldest buckets while they end at or before the given time, then shrinks. */
+        void evictBefore(long oldestRetained) {
+            while (size > 0 && starts[head] <= oldestRetained - width) {
+                head = (head + 1) & (starts.length - 1);
+                size--;
+            }
+            if (size == 0) {
+                head = 0;
+            }
+            int capacity = starts.length;
+            while (capacity > INITIAL_CAPACITY && size <= capacity / 4) {
+                capacity /= 2;
+            }
+            if (capacity < starts.length) {
+                resize(capacity);
+            }
+        }
+
+        private void update(int slot, double value) {
+            counts[slot]++;
+            sums[slot] += value;
+            if (value < mins[slot]) {
+                mins[slot] = value;
+            }
+            if (value > maxs[slot]) {
+                maxs[slot] = value;
+            }
+        }
+
+        private void grow() {
+            resize(starts.length * 2);
+        }
+
+        private void resize(int capacity) {
+            long[] newStarts = new long[capacity];
+            long[] newCounts = new long[capacity];
+            double[] newMins = new double[capacity];
+            double[] newMaxs = new double[capacity];
+            double[] newSums = new double[capacity];
+            for (int i = 0; i < size; i++) {
+                int from = slot(i);
+                newStarts[i] = starts[from];
+                newCounts[i] = counts[from];
+                newMins[i] = mins[from];
+                newMaxs[i] = maxs[from];
+                newSums[i] = sums[from];
+            }
+            starts = newStarts;
+            counts = newCounts;
+            mins = newMins;
+            maxs = newMaxs;
+            sums = newSums;
+            head = 0;
+        }
+
+        void collect(long startTime, long endTime, List<RollupBucket> out) {
+            // First bucket whose end is after the start of the range
+            long firstStart = startTime - width + 1;
+            for (int i = lowerBound(firstStart > startTime ? Long.MIN_VALUE : firstStart); i < size; i++) {
+                int slot = slot(i);
+                if (starts[slot] > endTime) {
+                    break;
+                }
+                out.add(new RollupBucket(starts[slot], width, counts[slot], mins[slot], maxs[slot], sums[slot]));
+            }
+        }
+
+        /**
+         * Returns the logical index of the first bucket starting at or after the
+         * given time.
+         */
+        private int lowerBound(long start) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[slot(mid)] < start) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int slot(int index) {
+            return (head + index) & (starts.length - 1);
+        }
+    }
+}
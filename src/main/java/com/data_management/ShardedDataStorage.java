@@ -0,0 +1,153 @@
+package com.data_management;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * A {@link DataStorage} that partitions patients across independent shards by
+ * patient ID, so that ingestion scales with the number of cores instead of
+ * funnelling every measurement through one store.
+ *
+ * <p>Each shard owns the patients whose ID maps to it, held in the storage
+ * partition of the same index, and has a single ingest thread.
+ * {@link #addPatientData(int, double, int, long)} only appends the measurement
+ * to the owning shard's buffer and returns; the shard's thread stores the
+ * buffered measurements as one batch, grouped by patient. A
+ * patient is therefore only ever written by one thread, and shards never share
+ * a lock on the ingest path.</p>
+ *
+ * <p>Everything else is inherited unchanged: queries, aggregates, the alert
+ * loop and persistence look patients up through {@link #getPatient(int)} and
+ * {@link #patients()}, which route to the owning partition. Ingestion is
+ * asynchronous, so a measurement becomes visible to queries shortly after
+ * {@code addPatientData} returns; call {@link #awaitIngested()} to wait for
+ * everything added so far.</p>
+ *
+ * <pre>
+ * try (ShardedDataStorage storage = new ShardedDataStorage(Runtime.getRuntime().availableProcessors())) {
+ *     reader.readData(storage);
+ *     storage.awaitIngested();
+ *     List&lt;PatientRecord&gt; records = storage.getRecords(1, start, end);
+ * }
+ * </pre>
+ */
+public class ShardedDataStorage extends DataStorage implements AutoCloseable {
+    private final StorageShard[] shards;
+
+    /**
+     * Constructs a storage with the given number of shards and starts their
+     * ingest threads.
+     *
+     * @param shardCount the number of shards, typically the number of cores
+     */
+    public ShardedDataStorage(int shardCount) {
+        super(shardCount);
+        this.shards = new StorageShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            // The shard owns the IDs congruent to i, see shardOf
+            shards[i] = new StorageShard("storage-shard-" + i, partitionPatients(i), this::applyPatientData);
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the shard that owns a patient. Consecutive IDs go to consecutive
+     * shards, which spreads the simulator's dense IDs evenly.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the shard index, between 0 and {@link #getShardCount()} - 1
+     */
+    public int shardOf(int patientId) {
+        return Math.floorMod(patientId, shards.length);
+    }
+
+    /**
+     * Returns a live, read-only view of the patients owned by one shard, e.g., to
+     * evaluate alerts with one thread per shard.
+     *
+     * @param shard the shard index
+     * @return the patients of the shard
+     */
+    public Collection<Patient> getShardPatients(int shard) {
+        return Collections.unmodifiableCollection(shards[shard].patients().values());
+    }
+
+    /**
+     * Queues a measurement for the ingest thread of the shard owning the
+     * patient. Blocks only while that shard's buffer is full.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    @Override
+    public void addPatientData(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        shards[shardOf(patientId)].enqueue(patientId, measurementValue, recordTypeCode, timestamp);
+    }
+
+    /**
+     * Queues a batch of measurements for the ingest threads of the shards owning
+     * the patients, taking each shard's lock once per patient in the batch.
+     *
+     * @param batch the measurements to add
+     */
+    @Override
+    public void addPatientData(MeasurementBatch batch) {
+        int[] order = batch.orderByPatient();
+        int start = 0;
+        while (start < order.length) {
+            int patientId = batch.patientIds[order[start]];
+            int end = start + 1;
+            while (end < order.length && batch.patientIds[order[end]] == patientId) {
+                end++;
+            }
+            shards[shardOf(patientId)].enqueue(batch, order, start, end);
+            start = end;
+        }
+    }
+
+    /**
+     * Waits until every measurement added before this call is visible to
+     * queries.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitIngested() throws InterruptedException {
+        for (StorageShard shard : shards) {
+            shard.awaitApplied();
+        }
+    }
+
+    /**
+     * Stores the measurements still queued and stops the ingest threads. Adding
+     * data afterwards fails; queries keep working.
+     */
+    @Override
+    public void close() {
+        try {
+            for (StorageShard shard : shards) {
+                shard.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stores a batch of measurements on the ingest thread of their shard, through
+     * the regular write path so that persistence, when enabled, logs them.
+     */
+    private void applyPatientData(MeasurementBatch batch) {
+        super.addPatientData(batch);
+    }
+}
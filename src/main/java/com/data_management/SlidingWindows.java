@@ -0,0 +1,280 @@
+package com.data_management;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Running statistics of one {@link TimeSeries} over the sliding windows
+ * configured by a {@link WindowPolicy}, maintained incrementally on insert so
+ * that rolling means and noise floors never rescan the raw measurements.
+ *
+ * <p>Each window keeps the measurements it covers in a ring buffer of primitive
+ * columns. Mean and sum of squared deviations are updated with Welford's method
+ * as measurements enter and leave the window, which stays accurate when the
+ * level of the signal shifts, and are recomputed from the ring once per
+ * window's worth of evictions so that rounding error does not build up.
+ * Minimum and maximum come from
+ * monotonic deques: the front of the min deque is the smallest value in the
+ * window, and a value is dropped from the back as soon as a smaller one
+ * arrives, since it can never be the minimum again. Every measurement is pushed
+ * and popped at most once, so an insert costs amortised O(1) per window.</p>
+ *
+ * <p>Measurements arriving in timestamp order slide the windows forward. A late
+ * measurement that still falls within a window refills that window from the
+ * series, which costs O(window) but is rare; older late measurements do not
+ * affect any window. NaN values are not counted.</p>
+ *
+ * <p>As with {@link Rollups}, the single writer of the series updates the windows
+ * under a write stamp, and readers try an optimistic read first.</p>
+ */
+final class SlidingWindows {
+    private static final Window[] NO_WINDOWS = new Window[0];
+
+    private final StampedLock lock = new StampedLock();
+    private long[] configured; // The policy's window lengths the windows were built for.
+    private Window[] windows = NO_WINDOWS;
+    private long newestTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Folds a measurement that has just been inserted into the series into every
+     * window, first rebuilding the windows from the series if their
+     * configuration changed. Callers must not invoke this method concurrently.
+     *
+     * @param windowMillis the window lengths currently configured for the series
+     * @param series       the series the measurement was inserted into
+     * @param timestamp    the time of the measurement
+     * @param value        the measurement value
+     */
+    void add(long[] windowMillis, TimeSeries series, long timestamp, double value) {
+        long stamp = lock.writeLock();
+        try {
+            if (windowMillis != configured) {
+                configure(windowMillis, series);
+            } else if (timestamp >= newestTimestamp) {
+                newestTimestamp = timestamp;
+                for (Window window : windows) {
+                    window.add(timestamp, value);
+                }
+            } else {
+                for (Window window : windows) {
+                    if (timestamp > newestTimestamp - window.millis) {
+                        window.refill(series, newestTimestamp);
+                    }
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void configure(long[] windowMillis, TimeSeries series) {
+        configured = windowMillis;
+        newestTimestamp = series.newestTimestamp();
+        Window[] rebuilt = new Window[windowMillis.length];
+        for (int i = 0; i < rebuilt.length; i++) {
+            rebuilt[i] = new Window(windowMillis[i]);
+            rebuilt[i].refill(series, newestTimestamp);
+        }
+        windows = rebuilt;
+    }
+
+    /**
+     * Returns the statistics of the window of the given length.
+     *
+     * @param windowMillis the length of the window in milliseconds
+     * @return the statistics, or null if no such window is maintained
+     */
+    WindowStats get(long windowMillis) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                WindowStats stats = read(windowMillis);
+                if (lock.validate(stamp)) {
+                    return stats;
+                }
+            } catch (RuntimeException e) {
+                // A concurrent insert grew a window mid-read; retry under the read lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return read(windowMillis);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private WindowStats read(long windowMillis) {
+        for (Window window : windows) {
+            if (window.millis == windowMillis) {
+                return window.stats(newestTimestamp);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One window: the measurements it covers in a ring buffer whose capacity is a
+     * power of two, and the monotonic min and max deques. Measurements are
+     * addressed by a sequence number; the measurement with sequence number
+     * {@code s} lives in slot {@code s & mask}, and the deques hold sequence
+     * numbers in rings of the same capacity.
+     */
+    private static final class Window {
+        private static final int INITIAL_CAPACITY = 16;
+
+        final long millis;
+        private long[] timestamps = new long[INITIAL_CAPACITY];
+        private double[] values = new double[INITIAL_CAPACITY];
+        private long headSequence; // Sequence number of the oldest measurement.
+        private int size;
+
+        private long[] minQueue = new long[INITIAL_CAPACITY];
+        private int minHead;
+        private int minSize;
+        private long[] maxQueue = new long[INITIAL_CAPACITY];
+        private int maxHead;
+        private int maxSize;
+
+        private double mean;
+        private double squaredDeviations; // Sum of squared deviations from the mean.
+        private int evictionsSinceRecompute;
+
+        Window(long millis) {
+            this.millis = millis;
+        }
+
+        void add(long timestamp, double value) {
+            evictUpTo(timestamp - millis);
+            if (Double.isNaN(value)) {
+                return;
+            }
+            if (size == timestamps.length) {
+                grow();
+            }
+            int mask = timestamps.length - 1;
+            long sequence = headSequence + size;
+            timestamps[(int) sequence & mask] = timestamp;
+            values[(int) sequence & mask] = value;
+            size++;
+            double deviation = value - mean;
+            mean += deviation / size;
+            squaredDeviations += deviation * (value - mean);
+
+            while (minSize > 0 && values[(int) minQueue[(minHead + minSize - 1) & mask] & mask] > value) {
+                minSize--;
+            }
+            minQueue[(minHead + minSize++) & mask] = sequence;
+            while (maxSize > 0 && values[(int) maxQueue[(maxHead + maxSize - 1) & mask] & mask] < value) {
+                maxSize--;
+            }
+            maxQueue[(maxHead + maxSize++) & mask] = sequence;
+        }
+
+        /** Drops the measurements whose timestamp is not after the given time. */
+        private void evictUpTo(long limit) {
+            int mask = timestamps.length - 1;
+            while (size > 0 && timestamps[(int) headSequence & mask] <= limit) {
+                if (minQueue[minHead] == headSequence) {
+                    minHead = (minHead + 1) & mask;
+                    minSize--;
+                }
+                if (maxQueue[maxHead] == headSequence) {
+                    maxHead = (maxHead + 1) & mask;
+                    maxSize--;
+                }
+                double value = values[(int) headSequence & mask];
+                headSequence++;
+                size--;
+                if (size == 0) {
+                    mean = 0;
+                    squaredDeviations = 0;
+                } else {
+                    double deviation = value - mean;
+                    mean -= deviation / size;
+                    squaredDeviations -= deviation * (value - mean);
+                }
+                evictionsSinceRecompute++;
+            }
+            if (evictionsSinceRecompute > Math.max(size, INITIAL_CAPACITY)) {
+                recomputeMoments();
+            }
+        }
+
+        /**
+         * Recomputes mean and squared deviations from the ring in two passes,
+         * discarding the rounding error accumulated by removing evicted values.
+         */
+        private void recomputeMoments() {
+            evictionsSinceRecompute = 0;
+            if (size == 0) {
+                return;
+            }
+            int mask = timestamps.length - 1;
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += values[(int) (headSequence + i) & mask];
+            }
+            mean = sum / size;
+            squaredDeviations = 0;
+            for (int i = 0; i < size; i++) {
+                double deviation = values[(int) (headSequence + i) & mask] - mean;
+                squaredDeviations += deviation * deviation;
+            }
+        }
+
+        /** Doubles the capacity, moving every slot to its position under the new mask. */
+        private void grow() {
+            int oldMask = timestamps.length - 1;
+            int capacity = timestamps.length * 2;
+            int mask = capacity - 1;
+            long[] newTimestamps = new long[capacity];
+            double[] newValues = new double[capacity];
+            for (int i = 0; i < size; i++) {
+                long sequence = headSequence + i;
+                newTimestamps[(int) sequence & mask] = timestamps[(int) sequence & oldMask];
+                newValues[(int) sequence & mask] = values[(int) sequence & oldMask];
+            }
+            long[] newMinQueue = new long[capacity];
+            for (int i = 0; i < minSize; i++) {
+                newMinQueue[i] = minQueue[(minHead + i) & oldMask];
+            }
+            long[] newMaxQueue = new long[capacity];
+            for (int i = 0; i < maxSize; i++) {
+                newMaxQueue[i] = maxQueue[(maxHead + i) & oldMask];
+            }
+            timestamps = newTimestamps;
+            values = newValues;
+            minQueue = newMinQueue;
+            minHead = 0;
+            maxQueue = newMaxQueue;
+            maxHead = 0;
+        }
+
+        /** Empties the window and fills it with the measurements of the series it covers. */
+        void refill(TimeSeries series, long newestTimestamp) {
+            size = 0;
+            minSize = 0;
+            maxSize = 0;
+            mean = 0;
+            squaredDeviations = 0;
+            evictionsSinceRecompute = 0;
+            if (series.isEmpty()) {
+                return;
+            }
+            long start = newestTimestamp - millis;
+            series.forEach(start < newestTimestamp ? start + 1 : Long.MIN_VALUE, newestTimestamp, this::add);
+        }
+
+        WindowStats stats(long endTime) {
+            int mask = timestamps.length - 1;
+            int count = size;
+            if (count == 0) {
+                return new WindowStats(millis, endTime, 0, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            }
+            double variance = Math.max(0, squaredDeviations / count);
+            double min = values[(int) minQueue[minHead] & mask];
+            double max = values[(int) maxQueue[maxHead] & mask];
+            return new WindowStats(millis, endTime, count, mean, variance, min, max);
+        }
+    }
+}
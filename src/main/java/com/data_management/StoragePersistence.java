@@ -0,0 +1,338 @@
+package com.data_management;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes a {@link DataStorage} survive restarts by combining a
+ * {@link WriteAheadLog} with periodic compact snapshots.
+ *
+ * <p>A snapshot file {@code snapshot-<lsn>.bin} holds the measurements of all
+ * patients as raw timestamp/value columns. It is written while ingestion
+ * continues: each patient is captured atomically together with the LSN of its
+ * last logged measurement, so on recovery the WAL tail is replayed from the
+ * snapshot's starting LSN and measurements already contained in the snapshot
+ * are skipped per patient.</p>
+ *
+ * <p>A snapshot is forced to disk before it is renamed into place, and the
+ * directory after the rename. The previous snapshot and the segments written
+ * since it are kept as a fallback; older snapshots and the segments they
+ * cover are deleted.</p>
+ *
+ * <p>Startup therefore loads the latest snapshot and replays only the WAL tail
+ * written after it, instead of re-ingesting the complete history. If the
+ * latest snapshot cannot be read, the previous one is loaded and the WAL is
+ * replayed from there.</p>
+ */
+public class StoragePersistence implements Closeable {
+    /** Size after which the WAL starts a new segment. */
+    static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    /** Group commit interval of the WAL. */
+    static final long FLUSH_INTERVAL_MILLIS = 10;
+
+    private static final int SNAPSHOT_MAGIC = 0x50445331; // "PDS1"
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int BLOCK_SIZE = TimeSeries.CHUNK_CAPACITY;
+
+    private final DataStorage storage;
+    private final Path directory;
+    private final WriteAheadLog log;
+    private final ScheduledExecutorService snapshotScheduler;
+
+    private StoragePersistence(DataStorage storage, Path directory, WriteAheadLog log,
+            ScheduledExecutorService snapshotScheduler) {
+        this.storage = storage;
+        this.directory = directory;
+        this.log = log;
+        this.snapshotScheduler = snapshotScheduler;
+    }
+
+    /**
+     * Recovers the storage from a directory and starts logging new measurements
+     * to it. The storage should be empty and must not receive data until this
+     * method returns.
+     *
+     * @param storage          the storage to recover into and log from
+     * @param directory        the directory holding snapshots and WAL segments
+     * @param snapshotInterval how often to take a snapshot, or null to take them
+     *                         only on request
+     * @return the persistence attached to the storage
+     * @throws IOException if the directory cannot be read or written
+     */
+    static StoragePersistence open(DataStorage storage, Path directory, Duration snapshotInterval)
+            throws IOException {
+        Files.createDirectories(directory);
+        long nextLsn = recover(storage, directory);
+        WriteAheadLog log = new WriteAheadLog(directory, nextLsn, SEGMENT_BYTES, FLUSH_INTERVAL_MILLIS);
+        ScheduledExecutorService scheduler = null;
+        if (snapshotInterval != null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "storage-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        StoragePersistence persistence = new StoragePersistence(storage, directory, log, scheduler);
+        if (scheduler != null) {
+            long period = snapshotInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(persistence::snapshotQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+        return persistence;
+    }
+
+    /**
+     * Returns the log new measurements are appended to.
+     *
+     * @return the write-ahead log
+     */
+    WriteAheadLog getLog() {
+        return log;
+    }
+
+    /**
+     * Writes a snapshot of all patients and deletes the snapshots and WAL
+     * segments older than the previous snapshot, which is kept as a fallback.
+     * Ingestion continues while the snapshot is written.
+     *
+     * @return the path of the snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized Path snapshot() throws IOException {
+        log.rollSegment();
+        log.flush();
+        long startLsn = log.getNextLsn();
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, startLsn, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(startLsn);
+            int types = registry.size();
+            out.writeInt(types);
+            for (int code = 0; code < types; code++) {
+                out.writeUTF(registry.nameOf(code));
+            }
+            List<RecordCursor> cursors = new ArrayList<>();
+            for (Patient patient : storage.patients()) {
+                cursors.clear();
+                long lastLsn = patient.captureSeries(cursors);
+                out.writeBoolean(true);
+                out.writeInt(patient.getPatientId());
+                out.writeLong(lastLsn);
+                out.writeInt(cursors.size());
+                for (RecordCursor cursor : cursors) {
+                    writeSeries(out, cursor);
+                }
+            }
+            out.writeBoolean(false);
+            out.flush();
+            channel.force(true); // the snapshot must be on disk before it replaces anything
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+        // Keep the previous snapshot and the log written since it, in case this one is lost
+        List<Path> snapshots = listSnapshots(directory);
+        int previous = snapshots.indexOf(target) - 1;
+        if (previous >= 0) {
+            for (int i = 0; i < previous; i++) {
+                Files.deleteIfExists(snapshots.get(i));
+            }
+            log.deleteSegmentsBefore(snapshotLsn(snapshots.get(previous)));
+        }
+        return target;
+    }
+
+    /**
+     * Forces a directory's entries, such as a rename, to disk. Platforms that
+     * cannot open a directory, e.g., Windows, persist renames on their own.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return;
+        }
+        try (FileChannel dir = channel) {
+            dir.force(true);
+        }
+    }
+
+    private static long snapshotLsn(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    /**
+     * Stops taking snapshots, flushes the WAL and closes it.
+     *
+     * @throws IOException if the WAL cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+        }
+        log.close();
+    }
+
+    /**
+     * Writes one series as its type code followed by blocks of timestamp/value
+     * pairs, each prefixed with its length and the last one being empty.
+     */
+    private static void writeSeries(DataOutputStream out, RecordCursor cursor) throws IOException {
+        long[] timestamps = new long[BLOCK_SIZE];
+        double[] values = new double[BLOCK_SIZE];
+        boolean first = true;
+        int count = 0;
+        while (cursor.next()) {
+            if (first) {
+                out.writeInt(cursor.getRecordTypeCode());
+                first = false;
+            }
+            timestamps[count] = cursor.getTimestamp();
+            values[count] = cursor.getMeasurementValue();
+            if (++count == BLOCK_SIZE) {
+                writeBlock(out, timestamps, values, count);
+                count = 0;
+            }
+        }
+        if (first) {
+            out.writeInt(-1); // empty series, e.g., fully evicted
+            return;
+        }
+        if (count > 0) {
+            writeBlock(out, timestamps, values, count);
+        }
+        out.writeInt(0);
+    }
+
+    private static void writeBlock(DataOutputStream out, long[] timestamps, double[] values, int count)
+            throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeLong(timestamps[i]);
+            out.writeDouble(values[i]);
+        }
+    }
+
+    /**
+     * Loads the latest readable snapshot, if any, and replays the WAL written
+     * after it. A snapshot is read through once before it is loaded, so that an
+     * unreadable one leaves the storage empty for the previous snapshot.
+     *
+     * @return the LSN the log should continue with
+     * @throws IOException if no snapshot can be read although the log they
+     *                     replaced may be gone, or the log cannot be read
+     */
+    private static long recover(DataStorage storage, Path directory) throws IOException {
+        long startLsn = 0;
+        List<Path> snapshots = listSnapshots(directory);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path snapshot = snapshots.get(i);
+            try {
+                readSnapshot(null, snapshot);
+            } catch (IOException | RuntimeException e) { // e.g., a truncated or garbled file
+                System.err.println("Skipping unreadable snapshot " + snapshot + ": " + e);
+                if (i == 0 && snapshots.size() > 1) {
+                    throw new IOException("No readable snapshot in " + directory, e);
+                }
+                continue; // a lone first snapshot replaced no log, which is replayed from the start
+            }
+            startLsn = readSnapshot(storage, snapshot);
+            break;
+        }
+        return WriteAheadLog.replay(directory, startLsn, (lsn, patientId, recordTypeCode, timestamp, value) ->
+                storage.getOrCreatePatient(patientId).replayRecord(lsn, value, recordTypeCode, timestamp));
+    }
+
+    /**
+     * Reads a snapshot into a storage, or only checks that it can be read if the
+     * storage is null.
+     *
+     * @return the starting LSN of the snapshot
+     */
+    private static long readSnapshot(DataStorage storage, Path file) throws IOException {
+        RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a storage snapshot: " + file);
+            }
+            long startLsn = in.readLong();
+            int[] codes = new int[in.readInt()];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = registry.codeFor(in.readUTF());
+            }
+            while (in.readBoolean()) {
+                int patientId = in.readInt();
+                Patient patient = storage != null ? storage.getOrCreatePatient(patientId) : null;
+                long lastLsn = in.readLong();
+                int seriesCount = in.readInt();
+                for (int s = 0; s < seriesCount; s++) {
+                    int loggedCode = in.readInt();
+                    if (loggedCode < 0) {
+                        continue;
+                    }
+                    if (loggedCode >= codes.length) {
+                        throw new IOException("Unknown record type " + loggedCode + " in " + file);
+                    }
+                    int code = codes[loggedCode];
+                    for (int count = in.readInt(); count > 0; count = in.readInt()) {
+                        for (int i = 0; i < count; i++) {
+                            long timestamp = in.readLong();
+                            double value = in.readDouble();
+                            if (patient != null) {
+                                patient.addRecord(value, code, timestamp);
+                            }
+                        }
+                    }
+                }
+                if (patient != null) {
+                    patient.setLastLsn(lastLsn);
+                }
+            }
+            return startLsn;
+        }
+    }
+
+    private static List<Path> listSnapshots(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path path : stream) {
+                snapshots.add(path);
+            }
+        }
+        snapshots.sort(null); // zero-padded LSNs sort numerically
+        return snapshots;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Error writing storage snapshot: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.data_management;
+
+/**
+ * One partition of a {@link ShardedDataStorage}: the directory of the patients
+ * it owns and the single thread that ingests their measurements.
+ *
+ * <p>Producers append measurements to a buffer of primitive columns; the ingest
+ * thread swaps it for an empty one and applies the whole batch without holding
+ * the shard's lock, so producers only contend with each other for the few
+ * nanoseconds of an append. A full buffer blocks producers until the ingest
+ * thread has caught up.</p>
+ */
+final class StorageShard {
+    /** Number of measurements a buffer holds before producers block. */
+    static final int BUFFER_CAPACITY = 8192;
+
+    private final PatientDirectory<Patient> patients;
+    private final Sink sink;
+    private final Thread ingestThread;
+
+    // Guarded by this
+    private MeasurementBatch active = new MeasurementBatch(BUFFER_CAPACITY);
+    private MeasurementBatch draining = new MeasurementBatch(BUFFER_CAPACITY);
+    private long enqueued;
+    private long applied;
+    private boolean running = true;
+
+    /**
+     * Applies ingested measurements to the storage.
+     */
+    interface Sink {
+        /**
+         * Stores a batch of measurements. Called only from the shard's ingest
+         * thread.
+         *
+         * @param batch the measurements taken from the buffer
+         */
+        void apply(MeasurementBatch batch);
+    }
+
+    /**
+     * Constructs a shard and starts its ingest thread.
+     *
+     * @param name     the name of the ingest thread
+     * @param patients the directory of the patients owned by the shard
+     * @param sink     applies the measurements taken from the buffer
+     */
+    StorageShard(String name, PatientDirectory<Patient> patients, Sink sink) {
+        this.patients = patients;
+        this.sink = sink;
+        this.ingestThread = new Thread(this::runIngest, name);
+        ingestThread.setDaemon(true);
+        ingestThread.start();
+    }
+
+    /**
+     * Returns the directory of the patients owned by this shard.
+     *
+     * @return the patient directory
+     */
+    PatientDirectory<Patient> patients() {
+        return patients;
+    }
+
+    /**
+     * Queues a measurement for the ingest thread, blocking while the buffer is
+     * full.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the measurement value
+     * @param recordTypeCode   the registry code of the record type
+     * @param timestamp        the time of the measurement
+     * @throws IllegalStateException if the shard has been closed
+     */
+    synchronized void enqueue(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+        awaitSpace();
+        active.add(patientId, measurementValue, recordTypeCode, timestamp);
+        enqueued++;
+        if (active.size() == 1) {
+            notifyAll(); // the ingest thread may be waiting for data
+        }
+    }
+
+    /**
+     * Queues a run of measurements from a batch for the ingest thread, taking
+     * the shard's lock once for as many measurements as the buffer has room for.
+     *
+     * @param batch the batch holding the measurements
+     * @param order positions in the batch, see {@link MeasurementBatch#orderByPatient()}
+     * @param from  the first position in {@code order} to queue, inclusive
+     * @param to    the last position in {@code order} to queue, exclusive
+     * @throws IllegalStateException if the shard has been closed
+     */
+    synchronized void enqueue(MeasurementBatch batch, int[] order, int from, int to) {
+        int k = from;
+        while (k < to) {
+            awaitSpace();
+            boolean wasEmpty = active.size() == 0;
+            while (k < to && !active.isFull()) {
+                int i = order[k++];
+                active.add(batch.patientIds[i], batch.values[i], batch.recordTypeCodes[i], batch.timestamps[i]);
+                enqueued++;
+            }
+            if (wasEmpty) {
+                notifyAll(); // the ingest thread may be waiting for data
+            }
+        }
+    }
+
+    /** Blocks while the buffer is full. Must hold this. */
+    private void awaitSpace() {
+        boolean interrupted = false;
+        while (running && active.isFull()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (!running) {
+            throw new IllegalStateException("Storage shard is closed");
+        }
+    }
+
+    /**
+     * Waits until every measurement queued before this call has been stored.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    synchronized void awaitApplied() throws InterruptedException {
+        long target = enqueued;
+        while (applied < target) {
+            wait();
+        }
+    }
+
+    /**
+     * Stores the remaining queued measurements and stops the ingest thread.
+     *
+     * @throws InterruptedException if interrupted while waiting for the thread
+     */
+    void close() throws InterruptedException {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        ingestThread.join();
+    }
+
+    private void runIngest() {
+        while (true) {
+            MeasurementBatch batch;
+            synchronized (this) {
+                while (active.size() == 0 && running) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() stops the ingest thread
+                    }
+                }
+                if (active.size() == 0) {
+                    return;
+                }
+                batch = active;
+                active = draining;
+                draining = batch;
+                notifyAll(); // producers blocked on a full buffer
+            }
+            try {
+                sink.apply(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Error storing " + batch.size() + " measurements: " + e.getMessage());
+            }
+            synchronized (this) {
+                applied += batch.size();
+                batch.clear();
+                notifyAll(); // callers of awaitApplied
+            }
+        }
+    }
+}
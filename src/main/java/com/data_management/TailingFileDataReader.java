@@ -0,0 +1,408 @@
+package com.data_management;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A DataReader that follows a growing file, or every file in a directory, and
+ * ingests only what was appended since the last read. Files may be in the
+ * {@code patientId,measurementValue,recordType,timestamp} format of the
+ * {@link FileDataReader} or in the label format written by the simulator's
+ * {@code FileOutputStrategy} and read by the {@link LabelFileDataReader}; the
+ * format is recognised from the first line of every chunk read. Label lines
+ * whose data is not a number, such as alert states, are skipped.
+ *
+ * <p>For every file the reader keeps a checkpoint: the identity of the file
+ * (its file key, e.g., device and inode), the offset just past the last
+ * complete line ingested, and a checksum of the file's first bytes. A partial
+ * last line is left for the next poll. The checkpoints are saved to a file
+ * after the data of every poll has been stored, so a restarted reader resumes
+ * where it stopped instead of re-reading the whole file; if it stops between
+ * storing and saving, the measurements of that poll are ingested again.</p>
+ *
+ * <p>The reader polls the sizes of the files. A file whose size shrinks below
+ * its offset or whose first bytes change was truncated or replaced and is read
+ * from the start. A file rotated away, i.e., renamed or deleted and replaced by
+ * a new file under the same name, is first read to its end through the channel
+ * still open on it, then the new file is read from the start. In a directory,
+ * a renamed file keeps its checkpoint, and files are read oldest first.</p>
+ *
+ * <p>{@link #readData(DataStorage)} catches up and then keeps polling in the
+ * background until the reader is closed; {@link #poll(DataStorage)} reads the
+ * appended data once.</p>
+ */
+public class TailingFileDataReader implements DataReader, Closeable {
+    /** Default time between two polls of the followed files. */
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(1);
+
+    /** Number of leading bytes whose checksum identifies the content of a file. */
+    static final int FINGERPRINT_BYTES = 256;
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final String CHECKPOINT_HEADER = "tail-checkpoint 1";
+
+    private final Path path;
+    private final Path checkpointFile;
+    private final Duration pollInterval;
+    private final CsvChunkParser csvParser = new CsvChunkParser(Charset.defaultCharset());
+    private final LabelFileChunkParser labelParser = new LabelFileChunkParser(Charset.defaultCharset());
+    private ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    // Followed files by identity, guarded by this
+    private Map<String, FollowedFile> files;
+    private ScheduledExecutorService poller;
+    private boolean closed;
+
+    /**
+     * Constructs a reader polling every {@link #DEFAULT_POLL_INTERVAL}.
+     *
+     * @param path           the file, or directory of files, to follow
+     * @param checkpointFile the file holding the offsets read so far; created if missing
+     */
+    public TailingFileDataReader(String path, Path checkpointFile) {
+        this(path, checkpointFile, DEFAULT_POLL_INTERVAL);
+    }
+
+    /**
+     * Constructs a reader.
+     *
+     * @param path           the file, or directory of files, to follow
+     * @param checkpointFile the file holding the offsets read so far; created if missing
+     * @param pollInterval   the time between two polls of the followed files
+     */
+    public TailingFileDataReader(String path, Path checkpointFile, Duration pollInterval) {
+        if (pollInterval.isNegative() || pollInterval.isZero()) {
+            throw new IllegalArgumentException("Poll interval must be positive: " + pollInterval);
+        }
+        this.path = Paths.get(path);
+        this.checkpointFile = checkpointFile;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Ingests everything appended since the checkpoint, then keeps following the
+     * files on a background thread until {@link #close()} is called.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if the files or the checkpoint cannot be read
+     */
+    @Override
+    public synchronized void readData(DataStorage dataStorage) throws IOException {
+        if (closed) {
+            throw new IOException("Reader is closed");
+        }
+        if (poller != null) {
+            return;
+        }
+        poll(dataStorage);
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-tail-" + path.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = pollInterval.toMillis();
+        poller.scheduleWithFixedDelay(() -> pollQuietly(dataStorage), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ingests the complete lines appended to the followed files since the last
+     * poll and saves the checkpoint.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @return the number of bytes ingested
+     * @throws IOException if the files or the checkpoint cannot be read or written
+     */
+    public synchronized long poll(DataStorage dataStorage) throws IOException {
+        if (files == null) {
+            files = loadCheckpoint();
+        }
+        List<Path> current = listFiles();
+        Map<String, Path> currentByKey = new HashMap<>();
+        Map<Path, String> keys = new HashMap<>();
+        for (Path file : current) {
+            String key = fileKey(file);
+            if (key != null) {
+                currentByKey.put(key, file);
+                keys.put(file, key);
+            }
+        }
+        long ingested = 0;
+        // Finish files rotated away first: their data is older than anything in their successors
+        for (Iterator<Map.Entry<String, FollowedFile>> it = files.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, FollowedFile> entry = it.next();
+            if (!currentByKey.containsKey(entry.getKey())) {
+                FollowedFile gone = entry.getValue();
+                if (gone.channel != null) {
+                    ingested += read(gone, dataStorage);
+                    gone.channel.close();
+                }
+                it.remove();
+            }
+        }
+        for (Path file : current) {
+            String key = keys.get(file);
+            if (key == null) {
+                continue; // vanished while listing
+            }
+            FollowedFile followed = files.get(key);
+            if (followed == null) {
+                followed = new FollowedFile(file);
+                files.put(key, followed);
+            }
+            followed.path = file;
+            try {
+                if (followed.channel == null) {
+                    followed.channel = FileChannel.open(file, StandardOpenOption.READ);
+                }
+                if (followed.offset > followed.channel.size() || !headMatches(followed)) {
+                    System.out.println("File " + file + " was truncated or replaced; reading it from the start");
+                    followed.offset = 0;
+                    followed.headLength = 0;
+                }
+            } catch (NoSuchFileException e) {
+                continue; // rotated away between listing and opening; picked up next poll
+            }
+            ingested += read(followed, dataStorage);
+        }
+        saveCheckpoint();
+        return ingested;
+    }
+
+    /**
+     * Stops following the files and closes them. The checkpoint of the last
+     * poll stays on disk.
+     *
+     * @throws IOException if a file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            closed = true;
+            stopped = poller;
+        }
+        if (stopped != null) {
+            stopped.shutdown();
+            try {
+                stopped.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (files != null) {
+                for (FollowedFile followed : files.values()) {
+                    if (followed.channel != null) {
+                        followed.channel.close();
+                        followed.channel = null;
+                    }
+                }
+            }
+        }
+    }
+
+    private void pollQuietly(DataStorage dataStorage) {
+        try {
+            poll(dataStorage);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error following " + path + ": " + e.getMessage());
+        }
+    }
+
+    /** Reads the complete lines between the offset of a file and its end. */
+    private long read(FollowedFile followed, DataStorage dataStorage) throws IOException {
+        FileChannel channel = followed.channel;
+        long start = followed.offset;
+        buffer.clear();
+        while (true) {
+            int read = channel.read(buffer, followed.offset + buffer.position());
+            int lastNewline = lastNewline(buffer);
+            if (lastNewline >= 0) {
+                ByteBuffer lines = buffer.duplicate();
+                lines.position(0).limit(lastNewline + 1);
+                ChunkParser parser = LabelFileChunkParser.isLabelFormat(lines) ? labelParser : csvParser;
+                for (MeasurementBatch batch : parser.parse(lines.slice())) {
+                    dataStorage.addPatientData(batch);
+                }
+                followed.offset += lastNewline + 1;
+                buffer.limit(buffer.position()).position(lastNewline + 1);
+                buffer.compact();
+            } else if (!buffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2); // a line longer than the buffer
+                buffer.flip();
+                buffer = larger.put(buffer);
+            }
+            if (read < 0) {
+                break; // a partial last line stays for the next poll
+            }
+        }
+        if (followed.headLength < FINGERPRINT_BYTES && followed.offset > followed.headLength) {
+            followed.headLength = (int) Math.min(followed.offset, FINGERPRINT_BYTES);
+            followed.headChecksum = headChecksum(channel, followed.headLength);
+        }
+        return followed.offset - start;
+    }
+
+    private static int lastNewline(ByteBuffer buffer) {
+        for (int i = buffer.position() - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean headMatches(FollowedFile followed) throws IOException {
+        return followed.headLength == 0
+                || headChecksum(followed.channel, followed.headLength) == followed.headChecksum;
+    }
+
+    private static long headChecksum(FileChannel channel, int length) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(length);
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // keep reading
+        }
+        head.flip();
+        CRC32 crc = new CRC32();
+        crc.update(head);
+        return crc.getValue();
+    }
+
+    /** Lists the followed files, oldest first. */
+    private List<Path> listFiles() throws IOException {
+        List<Path> result = new ArrayList<>();
+        if (!Files.isDirectory(path)) {
+            if (Files.isRegularFile(path)) {
+                result.add(path);
+            }
+            return result;
+        }
+        Map<Path, Long> modified = new HashMap<>();
+        Path checkpointName = checkpointFile.toAbsolutePath().normalize();
+        Path checkpointTemp = temporaryCheckpoint().toAbsolutePath().normalize();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path file : stream) {
+                Path absolute = file.toAbsolutePath().normalize();
+                if (absolute.equals(checkpointName) || absolute.equals(checkpointTemp)) {
+                    continue;
+                }
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        modified.put(file, attributes.lastModifiedTime().toMillis());
+                        result.add(file);
+                    }
+                } catch (NoSuchFileException e) {
+                    // deleted while listing
+                }
+            }
+        }
+        result.sort(Comparator.comparing((Path file) -> modified.get(file)).thenComparing(Path::toString));
+        return result;
+    }
+
+    /**
+     * Returns the identity of a file, or null if it no longer exists. Without a
+     * file key, e.g., on some platforms, the path stands in for it.
+     */
+    private static String fileKey(Path file) throws IOException {
+        try {
+            Object key = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+            return key != null ? key.toString() : file.toAbsolutePath().toString();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Loads the checkpoint, one file per line:
+     * {@code offset headLength headChecksum fileKey path}, separated by tabs.
+     */
+    private Map<String, FollowedFile> loadCheckpoint() throws IOException {
+        Map<String, FollowedFile> result = new HashMap<>();
+        if (!Files.exists(checkpointFile)) {
+            return result;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (!CHECKPOINT_HEADER.equals(header)) {
+                throw new IOException("Not a checkpoint file: " + checkpointFile);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    throw new IOException("Corrupt checkpoint line: " + line);
+                }
+                try {
+                    FollowedFile followed = new FollowedFile(Paths.get(fields[4]));
+                    followed.offset = Long.parseLong(fields[0]);
+                    followed.headLength = Integer.parseInt(fields[1]);
+                    followed.headChecksum = Long.parseLong(fields[2]);
+                    result.put(fields[3], followed);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Corrupt checkpoint line: " + line, e);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Replaces the checkpoint file atomically, so a crash leaves the old or the new one. */
+    private void saveCheckpoint() throws IOException {
+        Path temp = temporaryCheckpoint();
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(CHECKPOINT_HEADER);
+            writer.newLine();
+            for (Map.Entry<String, FollowedFile> entry : files.entrySet()) {
+                FollowedFile followed = entry.getValue();
+                writer.write(followed.offset + "\t" + followed.headLength + "\t" + followed.headChecksum + "\t"
+                        + entry.getKey() + "\t" + followed.path);
+                writer.newLine();
+            }
+        }
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path temporaryCheckpoint() {
+        return checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    }
+
+    /** The read position in one followed file. */
+    private static final class FollowedFile {
+        Path path;
+        FileChannel channel; // null until opened in this process
+        long offset;
+        int headLength;
+        long headChecksum;
+
+        FollowedFile(Path path) {
+            this.path = path;
+        }
+    }
+}
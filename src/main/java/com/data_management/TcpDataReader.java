@@ -0,0 +1,366 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of DataReader that connects to one or many simulator
+ * {@code TcpOutputStrategy} endpoints and stores the
+ * {@code patientId,timestamp,label,data} lines they send.
+ *
+ * <p>All endpoints are served by a single selector thread with non-blocking
+ * channels, so one reader can absorb dozens of feeds. Each endpoint reads into
+ * its own direct buffer of {@link #BUFFER_SIZE} bytes. Lines are framed in
+ * place: every complete line is parsed straight from the buffer by a
+ * {@link TcpLineParser}, without creating a string, and only the bytes of a
+ * partial last line are moved to the front of the buffer to be completed by
+ * the next read. A line longer than the buffer is skipped. The measurements of
+ * all endpoints are handed to
+ * {@link DataStorage#addPatientData(MeasurementBatch)} in batches, at the
+ * latest after each round of reads.</p>
+ *
+ * <p>An endpoint that cannot be reached or closes the connection is reconnected
+ * after a delay; the partial line it was sending is lost.</p>
+ */
+public class TcpDataReader implements DataReader, Closeable {
+    /** Size in bytes of the receive buffer of each endpoint. */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Default time before an unreachable or closed endpoint is connected again. */
+    public static final Duration DEFAULT_RECONNECTION_DELAY = Duration.ofSeconds(5);
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final long reconnectionDelayNanos;
+
+    private Selector selector;
+    private volatile TcpLineParser parser;
+    private Thread selectorThread; // Guarded by this
+    private volatile boolean closed;
+    private volatile long bytesReceived; // Written by the selector thread only
+    private volatile int connected; // Written by the selector thread only
+
+    /**
+     * Constructs a reader for a single endpoint.
+     *
+     * @param host the host of the simulator
+     * @param port the port of its TCP output
+     */
+    public TcpDataReader(String host, int port) {
+        this(Collections.singletonList(new InetSocketAddress(host, port)));
+    }
+
+    /**
+     * Constructs a reader for several endpoints, reconnecting after
+     * {@link #DEFAULT_RECONNECTION_DELAY}.
+     *
+     * @param endpoints the addresses of the simulators' TCP outputs
+     */
+    public TcpDataReader(List<InetSocketAddress> endpoints) {
+        this(endpoints, DEFAULT_RECONNECTION_DELAY);
+    }
+
+    /**
+     * Constructs a reader for several endpoints.
+     *
+     * @param endpoints         the addresses of the simulators' TCP outputs
+     * @param reconnectionDelay the time before an unreachable or closed endpoint
+     *                          is connected again
+     */
+    public TcpDataReader(List<InetSocketAddress> endpoints, Duration reconnectionDelay) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required");
+        }
+        for (InetSocketAddress address : endpoints) {
+            this.endpoints.add(new Endpoint(address));
+        }
+        this.reconnectionDelayNanos = reconnectionDelay.toNanos();
+    }
+
+    /**
+     * Connects to the endpoints and starts storing the data they send in the
+     * provided storage. Returns immediately; the data is received on a
+     * background thread until {@link #close()} is called.
+     *
+     * @param dataStorage the storage where data will be stored
+     * @throws IOException if the selector cannot be opened or the reader is closed
+     */
+    @Override
+    public synchronized void readData(DataStorage dataStorage) throws IOException {
+        if (closed) {
+            throw new IOException("Reader is closed");
+        }
+        if (selectorThread != null) {
+            return;
+        }
+        selector = Selector.open();
+        parser = new TcpLineParser(Charset.defaultCharset(), dataStorage);
+        selectorThread = new Thread(this::run, "tcp-ingest-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Disconnects from all endpoints and waits until the data already received
+     * is stored.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            closed = true;
+            thread = selectorThread;
+        }
+        if (thread == null) {
+            return;
+        }
+        selector.wakeup();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of measurements handed to the storage.
+     *
+     * @return the number of stored measurements
+     */
+    public long getMeasurements() {
+        TcpLineParser current = parser;
+        return current != null ? current.getMeasurements() : 0;
+    }
+
+    /**
+     * Returns the number of lines that could not be parsed or whose data is not
+     * a number.
+     *
+     * @return the number of rejected lines
+     */
+    public long getRejected() {
+        TcpLineParser current = parser;
+        return current != null ? current.getRejected() + current.getNonNumeric() : 0;
+    }
+
+    /**
+     * Returns the number of bytes received from all endpoints.
+     *
+     * @return the number of received bytes
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the number of endpoints currently connected.
+     *
+     * @return the number of connected endpoints
+     */
+    public int getConnectedEndpoints() {
+        return connected;
+    }
+
+    private void run() {
+        try {
+            for (Endpoint endpoint : endpoints) {
+                endpoint.connect();
+            }
+            while (!closed) {
+                selector.select(TimeUnit.NANOSECONDS.toMillis(reconnectIfDue()));
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Endpoint endpoint = (Endpoint) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isConnectable()) {
+                        endpoint.finishConnect(key);
+                    } else if (key.isReadable()) {
+                        endpoint.read();
+                    }
+                }
+                // Store what this round received rather than wait for a full batch
+                parser.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("TCP reader stopped: " + e.getMessage());
+        } finally {
+            parser.flush();
+            for (Endpoint endpoint : endpoints) {
+                endpoint.closeChannel();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Connects the endpoints whose reconnection delay has passed.
+     *
+     * @return the nanoseconds until the next endpoint is due, or 0 if none is waiting
+     */
+    private long reconnectIfDue() {
+        long now = System.nanoTime();
+        long wait = 0;
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.channel != null) {
+                continue;
+            }
+            if (endpoint.reconnectAt - now <= 0) {
+                endpoint.connect();
+                if (endpoint.channel != null) {
+                    continue;
+                }
+                // Failed at once, e.g., on an unresolvable host: its next attempt is due later
+            }
+            long remaining = Math.max(endpoint.reconnectAt - now, 1);
+            if (wait == 0 || remaining < wait) {
+                wait = remaining;
+            }
+        }
+        // select(0) would wait forever, so never round a pending reconnection down to it
+        return wait == 0 ? 0 : Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    /** The connection to one endpoint and its receive buffer. Used by the selector thread only. */
+    private final class Endpoint {
+        final InetSocketAddress address;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        SocketChannel channel; // null while waiting to reconnect
+        long reconnectAt;
+        boolean isConnected;
+        int scanned; // bytes at the front of the buffer already searched for a newline
+        boolean discarding; // skipping the rest of a line longer than the buffer
+
+        Endpoint(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void connect() {
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                if (channel.connect(address)) {
+                    channel.register(selector, SelectionKey.OP_READ, this);
+                    connected();
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException e) {
+                disconnect("connection failed: " + e.getMessage());
+            } catch (UnresolvedAddressException e) {
+                disconnect("cannot resolve " + address.getHostString());
+            }
+        }
+
+        void finishConnect(SelectionKey key) {
+            try {
+                if (channel.finishConnect()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    connected();
+                }
+            } catch (IOException e) {
+                disconnect("connection failed: " + e.getMessage());
+            }
+        }
+
+        private void connected() {
+            isConnected = true;
+            connected++;
+            System.out.println("Connected to TCP endpoint " + address);
+        }
+
+        void read() {
+            int read;
+            try {
+                read = channel.read(buffer);
+            } catch (IOException e) {
+                disconnect(e.getMessage());
+                return;
+            }
+            if (read < 0) {
+                disconnect("closed by the server");
+                return;
+            }
+            bytesReceived += read;
+            frameLines();
+        }
+
+        /** Parses every complete line in the buffer and keeps the partial last one. */
+        private void frameLines() {
+            int limit = buffer.position();
+            int lineStart = 0;
+            for (int i = scanned; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    if (discarding) {
+                        discarding = false;
+                    } else {
+                        parser.parseLine(buffer, lineStart, i);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart == 0 && limit == buffer.capacity()) {
+                if (!discarding) {
+                    System.err.println("Skipping a line longer than " + BUFFER_SIZE + " bytes from " + address);
+                    discarding = true;
+                }
+                buffer.clear();
+                scanned = 0;
+                return;
+            }
+            buffer.limit(limit).position(lineStart);
+            buffer.compact();
+            scanned = buffer.position();
+        }
+
+        void disconnect(String reason) {
+            closeChannel();
+            System.err.println("TCP endpoint " + address + " disconnected (" + reason + "), reconnecting in "
+                    + TimeUnit.NANOSECONDS.toMillis(reconnectionDelayNanos) + " ms");
+            reconnectAt = System.nanoTime() + reconnectionDelayNanos;
+        }
+
+        void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing connection to " + address + ": " + e.getMessage());
+                }
+                channel = null;
+            }
+            if (isConnected) {
+                isConnected = false;
+                connected--;
+            }
+            buffer.clear();
+            scanned = 0;
+            discarding = false;
+        }
+    }
+}
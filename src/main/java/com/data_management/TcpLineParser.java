@@ -0,0 +1,134 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Parses the {@code patientId,timestamp,label,data} lines sent by the
+ * simulator's {@code TcpOutputStrategy} straight from a receive buffer, for
+ * the {@link TcpDataReader}.
+ *
+ * <p>Lines are fed one at a time as they are framed, and the measurements are
+ * collected in a single batch that is handed to the storage whenever it fills
+ * up and on {@link #flush()}. Data that is not a number, such as alert states,
+ * is skipped and counted; lines that do not follow the layout are reported on
+ * standard error and counted as rejected.</p>
+ */
+final class TcpLineParser extends ChunkParser {
+    private final DataStorage dataStorage;
+    // Written by the parsing thread only, read by any
+    private volatile long measurements;
+    private volatile long nonNumeric;
+    private volatile long rejected;
+
+    /**
+     * Constructs a parser storing into the given storage.
+     *
+     * @param charset     the charset of the stream, used for labels and for data
+     *                    outside the fast path
+     * @param dataStorage the storage receiving the batches
+     */
+    TcpLineParser(Charset charset, DataStorage dataStorage) {
+        super(charset);
+        this.dataStorage = dataStorage;
+        this.batch = new MeasurementBatch(FileDataReader.BATCH_SIZE);
+    }
+
+    @Override
+    void parseLine(ByteBuffer buffer, int lineStart, int lineEnd) {
+        int end = skipTrailing(buffer, lineStart, lineEnd);
+        if (end == lineStart) {
+            return; // empty line
+        }
+        int firstComma = -1;
+        int secondComma = -1;
+        int thirdComma = -1;
+        int commas = 0;
+        for (int i = lineStart; i < end; i++) {
+            if (buffer.get(i) == ',') {
+                commas++;
+                if (commas == 1) {
+                    firstComma = i;
+                } else if (commas == 2) {
+                    secondComma = i;
+                } else if (commas == 3) {
+                    thirdComma = i;
+                }
+            }
+        }
+        if (commas != 3 || !parseLong(buffer, lineStart, firstComma, 10)
+                || parsedLong < Integer.MIN_VALUE || parsedLong > Integer.MAX_VALUE) {
+            reject(buffer, lineStart, lineEnd);
+            return;
+        }
+        int patientId = (int) parsedLong;
+        if (!parseLong(buffer, firstComma + 1, secondComma, 18)) {
+            reject(buffer, lineStart, lineEnd);
+            return;
+        }
+        long timestamp = parsedLong;
+        if (!parseValue(buffer, thirdComma + 1, end)) {
+            nonNumeric++;
+            return;
+        }
+        int labelStart = skipLeading(buffer, secondComma + 1, thirdComma);
+        int labelEnd = skipTrailing(buffer, labelStart, thirdComma);
+        add(patientId, parsedDouble, recordTypeCode(buffer, labelStart, labelEnd), timestamp);
+    }
+
+    private void reject(ByteBuffer buffer, int lineStart, int lineEnd) {
+        rejected++;
+        System.err.println("Invalid message format: " + decode(buffer, lineStart, lineEnd));
+    }
+
+    @Override
+    void batchFull() {
+        flush();
+    }
+
+    /**
+     * Hands the measurements collected so far to the storage.
+     */
+    void flush() {
+        int size = batch.size();
+        if (size == 0) {
+            return;
+        }
+        try {
+            dataStorage.addPatientData(batch);
+            measurements += size;
+        } catch (RuntimeException e) {
+            System.err.println("Error storing received data: " + e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Returns the number of measurements handed to the storage.
+     *
+     * @return the number of stored measurements
+     */
+    long getMeasurements() {
+        return measurements;
+    }
+
+    /**
+     * Returns the number of well-formed lines skipped because their data is not
+     * a number.
+     *
+     * @return the number of skipped lines
+     */
+    long getNonNumeric() {
+        return nonNumeric;
+    }
+
+    /**
+     * Returns the number of lines that did not follow the layout.
+     *
+     * @return the number of rejected lines
+     */
+    long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,578 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Columnar storage for the measurements of a single record type of one patient.
+ * Timestamps and measurement values are kept in parallel primitive arrays that
+ * are split into fixed-size chunks, so storing a measurement never allocates a
+ * per-measurement object.
+ *
+ * <p>Measurements are kept in timestamp order across all chunks, which lets
+ * range queries locate their bounds by binary search instead of scanning the
+ * whole history.</p>
+ *
+ * <p>A series has a single writer at a time (the owning {@link Patient}
+ * serialises writes) and any number of lock-free readers. Readers take a
+ * {@link #chunks() snapshot} of the chunk array and the size of its last chunk.
+ * Every chunk except the last is never modified once published, and the last
+ * chunk only grows at its end, so a snapshot stays consistent while ingestion
+ * continues. Writes that would move published measurements, or outgrow a
+ * chunk's arrays, replace the affected chunk with a modified copy instead.</p>
+ *
+ * <p>Only the newest {@link #UNCOMPRESSED_CHUNKS} chunks are kept as raw arrays.
+ * Older chunks are sealed: their measurements are compressed with
+ * {@link ChunkCodec} and decoded on the fly by readers, which for regular
+ * series shrinks them to a small fraction of their raw size while queries over
+ * recent data keep reading plain arrays.</p>
+ */
+final class TimeSeries {
+    /** Number of measurements held by a full chunk. */
+    static final int CHUNK_CAPACITY = 1024;
+    /** Number of newest chunks that are never compressed. */
+    static final int UNCOMPRESSED_CHUNKS = 2;
+    private static final int INITIAL_CHUNK_CAPACITY = 16;
+    private static final Chunk[] NO_CHUNKS = new Chunk[0];
+
+    private final int recordTypeCode;
+    private final Rollups rollups = new Rollups();
+    private volatile SlidingWindows windows; // Null until a window is configured for the type.
+    private volatile Chunk[] chunks = NO_CHUNKS;
+    private volatile int size;
+
+    /**
+     * Constructs an empty series for the given record type.
+     *
+     * @param recordTypeCode the {@link RecordTypeRegistry} code of the type of
+     *                       record stored in this series
+     */
+    TimeSeries(int recordTypeCode) {
+        this.recordTypeCode = recordTypeCode;
+    }
+
+    /**
+     * Returns the code of the record type stored in this series.
+     *
+     * @return the record type code
+     */
+    int getRecordTypeCode() {
+        return recordTypeCode;
+    }
+
+    /**
+     * Returns the downsampled summaries of this series.
+     *
+     * @return the rollup tiers
+     */
+    Rollups rollups() {
+        return rollups;
+    }
+
+    /**
+     * Returns the sliding-window statistics of this series.
+     *
+     * @return the windows, or null if no window has been configured for the
+     *         record type
+     */
+    SlidingWindows windows() {
+        return windows;
+    }
+
+    /**
+     * Folds a measurement that has just been inserted into the sliding windows.
+     * Series of record types without configured windows skip this entirely.
+     * Callers must not invoke this method concurrently.
+     *
+     * @param windowMillis the window lengths configured for the record type
+     * @param timestamp    the time of the measurement
+     * @param value        the measurement value
+     */
+    void updateWindows(long[] windowMillis, long timestamp, double value) {
+        SlidingWindows current = windows;
+        if (current == null) {
+            if (windowMillis.length == 0) {
+                return;
+            }
+            current = new SlidingWindows();
+            windows = current;
+        }
+        current.add(windowMillis, this, timestamp, value);
+    }
+
+    /**
+     * Inserts a measurement, keeping the series ordered by timestamp.
+     * Measurements that arrive in order are appended to the last chunk; late
+     * measurements take the out-of-order path of {@link #insertLate}. The
+     * measurement is also folded into the {@link #rollups() rollup tiers}.
+     * Callers must not invoke this method concurrently.
+     *
+     * @param timestamp the time of the measurement, in milliseconds since UNIX epoch
+     * @param value     the measurement value
+     */
+    void insert(long timestamp, double value) {
+        Chunk[] current = chunks;
+        if (current.length == 0 || timestamp >= lastTimestamp(current)) {
+            append(current, timestamp, value);
+        } else {
+            insertLate(current, timestamp, value);
+        }
+        size++;
+        rollups.add(timestamp, value);
+    }
+
+    /**
+     * Appends a measurement to the end of the series.
+     * The first chunk starts small and grows up to {@link #CHUNK_CAPACITY} so
+     * that sparse series do not pay for a full chunk; later chunks are allocated
+     * at full capacity. Starting a new chunk seals the chunk that thereby leaves
+     * the uncompressed tail. The new size is published only after the measurement
+     * has been written.
+     */
+    private void append(Chunk[] current, long timestamp, double value) {
+        Chunk last = current.length == 0 ? null : current[current.length - 1];
+        if (last == null || last.size == CHUNK_CAPACITY) {
+            last = new Chunk(current.length == 0 ? INITIAL_CHUNK_CAPACITY : CHUNK_CAPACITY);
+            last.timestamps[0] = timestamp;
+            last.values[0] = value;
+            last.size = 1;
+            Chunk[] grown = withChunk(current, current.length, last);
+            sealIfOld(grown, grown.length - 1 - UNCOMPRESSED_CHUNKS);
+            chunks = grown;
+            return;
+        }
+        int position = last.size;
+        if (position == last.timestamps.length) {
+            // Grow by publishing a larger copy so readers never see arrays change under them
+            Chunk grown = last.copyOf(0, position, Math.min(position * 2, CHUNK_CAPACITY));
+            grown.timestamps[position] = timestamp;
+            grown.values[position] = value;
+            grown.size = position + 1;
+            Chunk[] replaced = current.clone();
+            replaced[current.length - 1] = grown;
+            chunks = replaced;
+            return;
+        }
+        last.timestamps[position] = timestamp;
+        last.values[position] = value;
+        last.size = position + 1;
+    }
+
+    /**
+     * Inserts a measurement that is older than the newest one in the series.
+     * The owning chunk is located by binary search and replaced by a copy with
+     * the measurement shifted into place; a full chunk is split in two, so a late
+     * insert never copies more than one chunk worth of data. A sealed chunk is
+     * decoded first and its replacements are sealed again. Measurements with
+     * equal timestamps keep their arrival order.
+     */
+    private void insertLate(Chunk[] current, long timestamp, double value) {
+        int index = chunkIndexFor(current, timestamp);
+        Chunk chunk = current[index].isSealed() ? current[index].unseal() : current[index];
+        int position = upperBound(chunk.timestamps, chunk.size, timestamp);
+        if (chunk.size < CHUNK_CAPACITY) {
+            Chunk[] replaced = current.clone();
+            replaced[index] = chunk.copyWith(position, timestamp, value, 0, chunk.size);
+            sealIfOld(replaced, index);
+            chunks = replaced;
+            return;
+        }
+        int half = chunk.size / 2;
+        Chunk lower;
+        Chunk upper;
+        if (position <= half) {
+            lower = chunk.copyWith(position, timestamp, value, 0, half);
+            upper = chunk.copyOf(half, chunk.size, CHUNK_CAPACITY);
+        } else {
+            lower = chunk.copyOf(0, half, CHUNK_CAPACITY);
+            upper = chunk.copyWith(position, timestamp, value, half, chunk.size);
+        }
+        Chunk[] split = withChunk(current, index + 1, upper);
+        split[index] = lower;
+        sealIfOld(split, index);
+        sealIfOld(split, index + 1);
+        sealIfOld(split, split.length - 1 - UNCOMPRESSED_CHUNKS); // pushed out of the tail by the split
+        chunks = split;
+    }
+
+    /**
+     * Seals the chunk at the given index of an unpublished chunk array unless it
+     * belongs to the uncompressed tail or is already sealed.
+     */
+    private static void sealIfOld(Chunk[] chunks, int index) {
+        if (index >= 0 && index < chunks.length - UNCOMPRESSED_CHUNKS && !chunks[index].isSealed()) {
+            chunks[index] = chunks[index].seal();
+        }
+    }
+
+    /**
+     * Returns a copy of the chunk array with a chunk inserted at the given index.
+     */
+    private static Chunk[] withChunk(Chunk[] current, int index, Chunk chunk) {
+        Chunk[] grown = new Chunk[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, index);
+        System.arraycopy(current, index, grown, index + 1, current.length - index);
+        grown[index] = chunk;
+        return grown;
+    }
+
+    /**
+     * Returns the index of the last chunk whose first timestamp is not after the
+     * given timestamp, or 0 if every chunk starts later.
+     */
+    private static int chunkIndexFor(Chunk[] chunks, long timestamp) {
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunks[mid].firstTimestamp() <= timestamp) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the timestamp of the newest measurement. Must only be called by the
+     * writer on a non-empty series.
+     *
+     * @return the newest timestamp
+     */
+    long newestTimestamp() {
+        return lastTimestamp(chunks);
+    }
+
+    /**
+     * Returns the newest timestamp of the oldest chunk, i.e., the time after which
+     * the whole oldest chunk may be evicted. Must only be called by the writer on
+     * a non-empty series.
+     *
+     * @return the last timestamp of the first chunk
+     */
+    long oldestChunkEnd() {
+        Chunk first = chunks[0];
+        return first.lastTimestamp(first.size);
+    }
+
+    /**
+     * Returns whether any measurement of the series may fall within a time range,
+     * judged by the oldest and newest timestamps of a snapshot. Safe to call
+     * concurrently with the writer.
+     *
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @return false if the series is empty or entirely outside the range
+     */
+    boolean overlaps(long startTime, long endTime) {
+        Chunk[] snapshot = chunks;
+        if (snapshot.length == 0) {
+            return false;
+        }
+        Chunk last = snapshot[snapshot.length - 1];
+        return snapshot[0].firstTimestamp() <= endTime && last.lastTimestamp(last.size()) >= startTime;
+    }
+
+    /**
+     * Returns whether the series currently holds no chunks.
+     *
+     * @return true if the series is empty
+     */
+    boolean isEmpty() {
+        return chunks.length == 0;
+    }
+
+    /**
+     * Drops the oldest chunk of the series, and the rollup buckets that only
+     * summarised it. Only chunk references are copied; the
+     * retained measurements are not touched, and readers holding an older
+     * snapshot keep seeing the dropped chunk until they finish.
+     * Callers must not invoke this method concurrently with other writes.
+     *
+     * @return the number of measurements dropped, 0 if the series was empty
+     */
+    int evictOldestChunk() {
+        Chunk[] current = chunks;
+        if (current.length == 0) {
+            return 0;
+        }
+        int dropped = current[0].size;
+        chunks = current.length == 1 ? NO_CHUNKS : Arrays.copyOfRange(current, 1, current.length);
+        size -= dropped;
+        rollups.evictBefore(current.length == 1 ? Long.MAX_VALUE : current[1].firstTimestamp());
+        return dropped;
+    }
+
+    private static long lastTimestamp(Chunk[] chunks) {
+        Chunk last = chunks[chunks.length - 1];
+        return last.timestamps[last.size - 1]; // the last chunk is never sealed
+    }
+
+    /**
+     * Returns a snapshot of the chunk array. Chunks are ordered by timestamp and
+     * only the last one may still grow; readers should capture its
+     * {@link Chunk#size()} once and ignore anything appended afterwards.
+     *
+     * @return the current chunks, never null
+     */
+    Chunk[] chunks() {
+        return chunks;
+    }
+
+    /**
+     * Returns the total number of measurements in the series.
+     *
+     * @return the number of measurements
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Passes every measurement within a time range to a consumer, in timestamp
+     * order. Works on a snapshot like {@link RecordCursor} but keeps all
+     * iteration state on the stack: raw chunks are read in place and sealed
+     * chunks are streamed through the decoder, so no objects are retained.
+     *
+     * @param startTime the start of the time range, inclusive
+     * @param endTime   the end of the time range, inclusive
+     * @param consumer  receives the matching measurements
+     * @return the number of measurements passed to the consumer
+     */
+    int forEach(long startTime, long endTime, MeasurementConsumer consumer) {
+        Chunk[] snapshot = chunks;
+        if (snapshot.length == 0) {
+            return 0;
+        }
+        int lastSize = snapshot[snapshot.length - 1].size();
+        int visited = 0;
+        for (int index = firstChunkFrom(snapshot, lastSize, startTime); index < snapshot.length; index++) {
+            Chunk chunk = snapshot[index];
+            if (chunk.firstTimestamp() > endTime) {
+                break;
+            }
+            int chunkSize = index == snapshot.length - 1 ? lastSize : chunk.size;
+            if (chunk.isSealed()) {
+                visited += ChunkCodec.forEach(chunk.encoded, chunkSize, startTime, endTime, consumer);
+                continue;
+            }
+            long[] timestamps = chunk.timestamps;
+            double[] values = chunk.values;
+            int end = timestamps[chunkSize - 1] <= endTime ? chunkSize : upperBound(timestamps, chunkSize, endTime);
+            for (int i = lowerBound(timestamps, end, startTime); i < end; i++) {
+                consumer.accept(timestamps[i], values[i]);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Returns the index of the first chunk of a snapshot that may contain
+     * measurements at or after the given timestamp, found by binary search over
+     * the chunk bounds.
+     *
+     * @param chunks    the snapshot to search
+     * @param lastSize  the captured size of the last chunk of the snapshot
+     * @param startTime the start of the requested range
+     * @return the chunk index, or the number of chunks if all measurements are older
+     */
+    static int firstChunkFrom(Chunk[] chunks, int lastSize, long startTime) {
+        int low = 0;
+        int high = chunks.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Chunk chunk = chunks[mid];
+            int chunkSize = mid == chunks.length - 1 ? lastSize : chunk.size;
+            if (chunk.lastTimestamp(chunkSize) < startTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of the first measurement whose timestamp is at or
+     * after the given time.
+     *
+     * @param timestamps the timestamps of a raw or decoded chunk
+     * @param size       the number of measurements of the chunk to consider
+     * @param timestamp  the lower bound
+     * @return the position, or {@code size} if there is none
+     */
+    static int lowerBound(long[] timestamps, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position of the first measurement whose timestamp is after the
+     * given time.
+     *
+     * @param timestamps the timestamps of a raw or decoded chunk
+     * @param size       the number of measurements of the chunk to consider
+     * @param timestamp  the upper bound
+     * @return the position, or {@code size} if there is none
+     */
+    static int upperBound(long[] timestamps, int size, long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A block of consecutive measurements, either raw or sealed. A raw chunk
+     * stores two parallel primitive arrays; its size is volatile and always
+     * written after the measurement it covers, so a reader that reads the size
+     * first sees fully written data below it. A sealed chunk is immutable and
+     * only holds the {@link ChunkCodec} stream and its time bounds.
+     */
+    static final class Chunk {
+        final long[] timestamps; // null once sealed
+        final double[] values; // null once sealed
+        final long[] encoded; // null while raw
+        private final long sealedFirst;
+        private final long sealedLast;
+        volatile int size;
+
+        Chunk(int capacity) {
+            this.timestamps = new long[capacity];
+            this.values = new double[capacity];
+            this.encoded = null;
+            this.sealedFirst = 0;
+            this.sealedLast = 0;
+        }
+
+        private Chunk(long[] encoded, long first, long last, int size) {
+            this.timestamps = null;
+            this.values = null;
+            this.encoded = encoded;
+            this.sealedFirst = first;
+            this.sealedLast = last;
+            this.size = size;
+        }
+
+        /**
+         * Returns whether the measurements of this chunk are compressed.
+         *
+         * @return true if the chunk is sealed
+         */
+        boolean isSealed() {
+            return encoded != null;
+        }
+
+        /**
+         * Returns the oldest timestamp of a non-empty chunk.
+         *
+         * @return the first timestamp
+         */
+        long firstTimestamp() {
+            return encoded != null ? sealedFirst : timestamps[0];
+        }
+
+        /**
+         * Returns the newest timestamp among the first {@code size} measurements.
+         *
+         * @param size the captured size of the chunk, at least 1
+         * @return the last timestamp
+         */
+        long lastTimestamp(int size) {
+            return encoded != null ? sealedLast : timestamps[size - 1];
+        }
+
+        /**
+         * Returns a sealed copy of this raw chunk.
+         *
+         * @return the sealed chunk
+         */
+        Chunk seal() {
+            int count = size;
+            return new Chunk(ChunkCodec.encode(timestamps, values, count), timestamps[0],
+                    timestamps[count - 1], count);
+        }
+
+        /**
+         * Returns a raw copy of this sealed chunk with room for one more
+         * measurement, so that it can be modified by a late insert.
+         *
+         * @return the raw chunk
+         */
+        Chunk unseal() {
+            Chunk raw = new Chunk(CHUNK_CAPACITY);
+            raw.size = decode(Long.MAX_VALUE, raw.timestamps, raw.values);
+            return raw;
+        }
+
+        /**
+         * Decodes the measurements of this sealed chunk up to a time bound.
+         *
+         * @param endTime    the newest timestamp of interest
+         * @param timestamps receives the timestamps, at least {@link #CHUNK_CAPACITY} long
+         * @param values     receives the values, at least {@link #CHUNK_CAPACITY} long
+         * @return the number of decoded measurements, all with a timestamp not
+         *         after {@code endTime}
+         */
+        int decode(long endTime, long[] timestamps, double[] values) {
+            return ChunkCodec.decode(encoded, size, endTime, timestamps, values);
+        }
+
+        /**
+         * Returns the published number of measurements; read it before the arrays.
+         *
+         * @return the number of measurements
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns a new chunk of the given capacity holding the measurements in
+         * {@code [from, to)}.
+         */
+        Chunk copyOf(int from, int to, int capacity) {
+            Chunk copy = new Chunk(capacity);
+            System.arraycopy(timestamps, from, copy.timestamps, 0, to - from);
+            System.arraycopy(values, from, copy.values, 0, to - from);
+            copy.size = to - from;
+            return copy;
+        }
+
+        /**
+         * Returns a new chunk holding the measurements in {@code [from, to)} with
+         * one extra measurement inserted before the given position.
+         */
+        Chunk copyWith(int position, long timestamp, double value, int from, int to) {
+            int count = to - from + 1;
+            Chunk copy = new Chunk(count <= timestamps.length ? timestamps.length
+                    : Math.min(timestamps.length * 2, CHUNK_CAPACITY));
+            int head = position - from;
+            System.arraycopy(timestamps, from, copy.timestamps, 0, head);
+            System.arraycopy(values, from, copy.values, 0, head);
+            copy.timestamps[head] = timestamp;
+            copy.values[head] = value;
+            System.arraycopy(timestamps, position, copy.timestamps, head + 1, to - position);
+            System.arraycopy(values, position, copy.values, head + 1, to - position);
+            copy.size = count;
+            return copy;
+        }
+    }
+}
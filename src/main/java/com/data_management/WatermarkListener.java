@@ -0,0 +1,27 @@
+package com.data_management;
+
+/**
+ * Is told when the watermark of a patient advances in a {@link ReorderBuffer},
+ * i.e. when all of the patient's measurements up to a timestamp have been
+ * released to the storage. A consumer such as alert evaluation can then
+ * evaluate the windows ending at or before the watermark knowing they are
+ * complete. A {@link ShardedDataStorage} applies them on its shards' threads,
+ * so a consumer reading them back from it must wait for
+ * {@link ShardedDataStorage#awaitIngested()} first.
+ *
+ * @see ReorderBuffer#addWatermarkListener(WatermarkListener)
+ */
+@FunctionalInterface
+public interface WatermarkListener {
+    /**
+     * Called after the measurements up to the watermark have been handed to the
+     * storage, on the thread that handed them over and while the patient's
+     * measurements are held back, so it should return quickly.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param watermark the timestamp up to which, inclusive, the patient's
+     *                  measurements have been released to the storage, in
+     *                  milliseconds since UNIX epoch
+     */
+    void onWatermark(int patientId, long watermark);
+}
@@ -6,6 +6,8 @@ import org.java_websocket.handshake.ServerHandshake;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -16,33 +18,95 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Implementation of DataReader that connects to a WebSocket server to receive real-time patient data.
  * This class establishes a connection to a WebSocket server, processes incoming messages,
  * and stores the data in the DataStorage system.
+ *
+ * <p>Receiving is a staged {@link IngestPipeline}, so that slow storage never
+ * stalls the socket. The WebSocket client's I/O thread only puts the raw
+ * frames onto a bounded lock-free queue. A pool of worker threads takes them
+ * off, parses them and hands the measurements to
+ * {@link DataStorage#addPatientData(MeasurementBatch)} in batches. When the
+ * queue is full, the reader's {@link OverflowPolicy} decides whether the I/O
+ * thread waits or a frame is dropped. Queue depth, drops and throughput are
+ * reported by {@link #getIngestStats()}.</p>
+ *
+ * <p>The server may send each measurement as a text message or many of them in
+ * a binary {@link BinaryMeasurementFrame}; both are accepted on the same
+ * connection.</p>
  */
 public class WebSocketDataReader implements DataReader {
     private final String serverUrl;
     private WebSocketConnection client;
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
-    private final DataStorage dataStorage;
     private final ScheduledExecutorService reconnectionExecutor;
     private static final int RECONNECTION_DELAY_SECONDS = 5;
     private static final int CONNECTION_TIMEOUT_SECONDS = 10;
 
+    /** Default number of worker threads parsing and storing frames. */
+    public static final int DEFAULT_WORKERS = 2;
+
+    /** Default number of frames queued between the I/O thread and the workers. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+
+    private final IngestPipeline pipeline;
+
     /**
      * Constructs a WebSocketDataReader with the specified server URL and data storage.
+     * Received frames are processed by {@link #DEFAULT_WORKERS} workers through a
+     * queue of {@link #DEFAULT_QUEUE_CAPACITY} frames; when the queue is full,
+     * the I/O thread waits.
      *
      * @param serverUrl    the URL of the WebSocket server to connect to
      * @param dataStorage  the data storage instance to store received data
      */
     public WebSocketDataReader(String serverUrl, DataStorage dataStorage) {
+        this(serverUrl, dataStorage, DEFAULT_WORKERS, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Constructs a WebSocketDataReader with a configured ingest pipeline.
+     *
+     * @param serverUrl      the URL of the WebSocket server to connect to
+     * @param dataStorage    the data storage instance to store received data
+     * @param workers        the number of worker threads parsing and storing frames
+     * @param queueCapacity  the number of frames queued for the workers, rounded up
+     *                       to a power of two
+     * @param overflowPolicy what to do with a received frame when the queue is full
+     */
+    public WebSocketDataReader(String serverUrl, DataStorage dataStorage, int workers, int queueCapacity,
+            OverflowPolicy overflowPolicy) {
+        this.pipeline = new IngestPipeline(dataStorage, "websocket-ingest", workers, queueCapacity, overflowPolicy);
         this.serverUrl = serverUrl;
-        this.dataStorage = dataStorage;
         this.reconnectionExecutor = new ScheduledThreadPoolExecutor(1);
     }
 
     /**
-     * Reads data from the WebSocket server and stores it in the provided data storage.
+     * Returns the counters of the ingest pipeline.
+     *
+     * @return the ingest counters
+     */
+    public IngestStats getIngestStats() {
+        return pipeline.getIngestStats();
+    }
+
+    /**
+     * Puts a {@link ReorderBuffer} between the ingest workers and the storage,
+     * so that each patient's measurements are stored in timestamp order without
+     * exact duplicates, and returns it for its watermarks. Must be called before
+     * data is received; later calls return the same buffer.
+     *
+     * @param allowedLateness how far behind the latest measurement of a patient
+     *                        another one may arrive and still be put in order
+     * @return the reorder buffer
+     */
+    public ReorderBuffer enableReordering(Duration allowedLateness) {
+        return pipeline.enableReordering(allowedLateness);
+    }
+
+    /**
+     * Reads data from the WebSocket server and stores it in the data storage given
+     * to the constructor, which the ingest workers were built around.
      * This method establishes a connection to the WebSocket server and starts receiving data.
      *
-     * @param dataStorage the storage where data will be stored
+     * @param dataStorage ignored, the storage given to the constructor is used
      * @throws IOException if there is an error reading the data
      */
     @Override
@@ -68,7 +132,7 @@ public class WebSocketDataReader implements DataReader {
     private void connectToWebSocket() throws Exception {
         CountDownLatch connectionLatch = new CountDownLatch(1);
         try {
-            client = new WebSocketConnection(new URI(serverUrl), dataStorage, connectionLatch, this::handleReconnection);
+            client = new WebSocketConnection(new URI(serverUrl), this, connectionLatch, this::handleReconnection);
             client.connect();
 
             // Wait for connection with timeout
@@ -102,22 +166,46 @@ public class WebSocketDataReader implements DataReader {
 
     /**
      * Starts receiving data from the WebSocket server.
-     * This method sets the running flag to true.
+     * This method sets the running flag to true and starts the ingest workers.
      */
-    public void startReceivingData() {
+    public synchronized void startReceivingData() {
         isRunning.set(true);
+        pipeline.start();
     }
 
     /**
      * Stops receiving data from the WebSocket server.
-     * This method sets the running flag to false and closes the WebSocket connection.
+     * This method sets the running flag to false, closes the WebSocket connection
+     * and waits until the workers have stored the frames already queued.
      */
-    public void stopReceivingData() {
+    public synchronized void stopReceivingData() {
         isRunning.set(false);
         if (client != null) {
             client.close();
         }
         reconnectionExecutor.shutdown();
+        pipeline.stop();
+    }
+
+    /**
+     * Hands a received text frame to the workers, applying the overflow policy
+     * when the queue is full. Called on the WebSocket client's I/O thread.
+     *
+     * @param frame the received frame
+     */
+    void enqueue(String frame) {
+        pipeline.enqueue(frame);
+    }
+
+    /**
+     * Hands a received binary frame to the workers, applying the overflow policy
+     * when the queue is full. Called on the WebSocket client's I/O thread. The
+     * buffer is queued as is and must not be reused by the caller.
+     *
+     * @param frame the received frame
+     */
+    void enqueue(ByteBuffer frame) {
+        pipeline.enqueue(frame);
     }
 
     /**
@@ -125,21 +213,21 @@ public class WebSocketDataReader implements DataReader {
      * This class processes incoming messages and stores the data in the DataStorage system.
      */
     private static class WebSocketConnection extends WebSocketClient {
-        private final DataStorage dataStorage;
+        private final WebSocketDataReader reader;
         private final CountDownLatch connectionLatch;
         private final Runnable reconnectionHandler;
 
         /**
-         * Constructs a WebSocketConnection with the specified server URI, data storage, and connection latch.
+         * Constructs a WebSocketConnection with the specified server URI, reader, and connection latch.
          *
          * @param serverUri          the URI of the WebSocket server
-         * @param dataStorage        the data storage instance to store received data
+         * @param reader             the reader queuing every message for its ingest workers
          * @param connectionLatch    a latch to signal when the connection is established
          * @param reconnectionHandler a handler to call when reconnection is needed
          */
-        public WebSocketConnection(URI serverUri, DataStorage dataStorage, CountDownLatch connectionLatch, Runnable reconnectionHandler) {
+        public WebSocketConnection(URI serverUri, WebSocketDataReader reader, CountDownLatch connectionLatch, Runnable reconnectionHandler) {
             super(serverUri);
-            this.dataStorage = dataStorage;
+            this.reader = reader;
             this.connectionLatch = connectionLatch;
             this.reconnectionHandler = reconnectionHandler;
         }
@@ -158,31 +246,24 @@ public class WebSocketDataReader implements DataReader {
 
         /**
          * Called when a message is received from the WebSocket server.
-         * This method parses the message and stores the data in the DataStorage system.
+         * This method only queues the message; the ingest workers parse and store it.
          *
          * @param message the message received from the server
          */
         @Override
         public void onMessage(String message) {
-            try {
-                String[] parts = message.split(",");
-                if (parts.length == 4) {
-                    int patientId = Integer.parseInt(parts[0]);
-                    long timestamp = Long.parseLong(parts[1]);
-                    String recordType = parts[2];
-                    double measurementValue = Double.parseDouble(parts[3]);
-
-                    dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
-                } else {
-                    System.err.println("Invalid message format: " + message);
-                }
-            } catch (NumberFormatException e) {
-                System.err.println("Error parsing numeric values in message: " + message);
-                e.printStackTrace();
-            } catch (Exception e) {
-                System.err.println("Error processing message: " + message);
-                e.printStackTrace();
-            }
+            reader.enqueue(message);
+        }
+
+        /**
+         * Called when a binary message is received from the WebSocket server.
+         * The client allocates a buffer per message, so it is queued without copying.
+         *
+         * @param bytes the message received from the server
+         */
+        @Override
+        public void onMessage(ByteBuffer bytes) {
+            reader.enqueue(bytes);
         }
 
         /**
@@ -0,0 +1,536 @@
+package com.data_management;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The client side of one WebSocket connection (RFC 6455) driven by a selector
+ * of a {@link MultiEndpointWebSocketReader}, so that many endpoints share a few
+ * I/O threads instead of taking a blocking client with its own threads each.
+ *
+ * <p>The endpoint connects without blocking, sends the opening handshake and
+ * checks the server's accept key. It then decodes the server's frames from a
+ * direct receive buffer, reassembles fragmented messages, answers pings and
+ * close frames, and hands every text and binary message to an
+ * {@link IngestPipeline}. No extensions or subprotocols are negotiated.</p>
+ *
+ * <p>A failed connection attempt, a lost connection, a protocol error or a
+ * handshake that does not complete within {@link #HANDSHAKE_TIMEOUT_SECONDS}
+ * schedules a reconnection. The delay doubles with every consecutive failure,
+ * from the initial to the maximum backoff, and is randomised by up to half so
+ * that endpoints failing together do not reconnect in lockstep. A completed
+ * handshake resets it.</p>
+ *
+ * <p>An endpoint is used by the thread of its selector only; its
+ * {@link EndpointStats} may be read by any thread.</p>
+ */
+final class WebSocketEndpoint {
+    /** Initial size in bytes of the receive buffer; it grows for larger frames and shrinks back after them. */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Largest message accepted, after reassembling its fragments. */
+    static final int MAX_MESSAGE_BYTES = 16 << 20;
+
+    /** Time allowed to connect and complete the opening handshake. */
+    static final int HANDSHAKE_TIMEOUT_SECONDS = 10;
+
+    private static final int MAX_HANDSHAKE_BYTES = 8192;
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final int OPCODE_CONTINUATION = 0x0;
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_BINARY = 0x2;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    private static final int CLOSE_GOING_AWAY = 1001;
+    private static final int CLOSE_PROTOCOL_ERROR = 1002;
+
+    private enum State { WAITING, CONNECTING, HANDSHAKING, OPEN, CLOSED }
+
+    private final String url;
+    private final String host;
+    private final int port;
+    private final String requestTarget;
+    private final IngestPipeline pipeline;
+    private final EndpointStats stats;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+
+    private State state = State.WAITING;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+    private String expectedAccept;
+    private long deadline; // when connecting or handshaking must have finished
+    private long reconnectAt; // when waiting, the time of the next attempt
+    private int consecutiveFailures;
+    private ByteBuffer message; // the fragments of an unfinished message, or null
+    private int messageOpcode;
+
+    /**
+     * Constructs an endpoint. It connects on the first call to
+     * {@link #onTimer(Selector, long)}.
+     *
+     * @param url            the URL of the WebSocket server, e.g., {@code ws://host:8080}
+     * @param pipeline       the pipeline receiving the messages
+     * @param initialBackoff the delay in nanoseconds before reconnecting after a first failure
+     * @param maxBackoff     the longest delay in nanoseconds before reconnecting
+     * @throws IllegalArgumentException if the URL is not a valid {@code ws://} URL
+     */
+    WebSocketEndpoint(String url, IngestPipeline pipeline, long initialBackoff, long maxBackoff) {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid WebSocket URI: " + url, e);
+        }
+        if (!"ws".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            throw new IllegalArgumentException("Only ws:// URLs with a host are supported: " + url);
+        }
+        this.url = url;
+        this.host = uri.getHost();
+        this.port = uri.getPort() != -1 ? uri.getPort() : 80;
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        this.requestTarget = uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+        this.pipeline = pipeline;
+        this.stats = new EndpointStats(url);
+        this.initialBackoffNanos = initialBackoff;
+        this.maxBackoffNanos = maxBackoff;
+        this.reconnectAt = System.nanoTime();
+    }
+
+    /**
+     * Returns the connection state and counters of the endpoint.
+     *
+     * @return the endpoint's stats
+     */
+    EndpointStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns when the endpoint next needs {@link #onTimer(Selector, long)}: the
+     * time of its reconnection or the deadline of its handshake.
+     *
+     * @return a {@link System#nanoTime()} value, or {@link Long#MAX_VALUE} if the
+     *         endpoint is connected or closed
+     */
+    long nextTimer() {
+        switch (state) {
+            case WAITING:
+                return reconnectAt;
+            case OPEN:
+            case CLOSED:
+                return Long.MAX_VALUE;
+            default:
+                return deadline;
+        }
+    }
+
+    /**
+     * Reconnects the endpoint or gives up on its handshake if it is due.
+     *
+     * @param selector the selector to register the connection with
+     * @param now      the current {@link System#nanoTime()}
+     */
+    void onTimer(Selector selector, long now) {
+        if (state == State.WAITING && now - reconnectAt >= 0) {
+            connect(selector, now);
+        } else if ((state == State.CONNECTING || state == State.HANDSHAKING) && now - deadline >= 0) {
+            fail("handshake timed out after " + HANDSHAKE_TIMEOUT_SECONDS + " seconds");
+        }
+    }
+
+    /**
+     * Handles a selected key of the endpoint's connection.
+     *
+     * @param selected the key, whose attachment is this endpoint
+     */
+    void onReady(SelectionKey selected) {
+        try {
+            if (selected.isConnectable()) {
+                finishConnect();
+            }
+            if (selected.isValid() && selected.isWritable()) {
+                flushOutput();
+            }
+            if (selected.isValid() && selected.isReadable()) {
+                read();
+            }
+        } catch (ProtocolException e) {
+            sendClose(CLOSE_PROTOCOL_ERROR);
+            fail("protocol error: " + e.getMessage());
+        } catch (IOException | UnresolvedAddressException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the connection, telling the server the client is going away, for
+     * good.
+     */
+    void close() {
+        if (state == State.OPEN) {
+            sendClose(CLOSE_GOING_AWAY);
+        }
+        closeChannel();
+        state = State.CLOSED;
+        stats.recordClosed();
+    }
+
+    private void connect(Selector selector, long now) {
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            state = State.CONNECTING;
+            deadline = now + TimeUnit.SECONDS.toNanos(HANDSHAKE_TIMEOUT_SECONDS);
+            boolean connected = channel.connect(new InetSocketAddress(host, port));
+            key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+            if (connected) {
+                finishConnect();
+            }
+        } catch (IOException | UnresolvedAddressException e) {
+            fail("connection failed: " + e);
+        }
+    }
+
+    private void finishConnect() throws IOException {
+        if (!channel.finishConnect()) {
+            return;
+        }
+        state = State.HANDSHAKING;
+        byte[] nonce = new byte[16];
+        RANDOM.nextBytes(nonce);
+        String requestKey = Base64.getEncoder().encodeToString(nonce);
+        expectedAccept = acceptKey(requestKey);
+        String request = "GET " + requestTarget + " HTTP/1.1\r\n"
+                + "Host: " + host + ":" + port + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + requestKey + "\r\n"
+                + "Sec-WebSocket-Version: 13\r\n\r\n";
+        key.interestOps(SelectionKey.OP_READ);
+        send(ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    private void read() throws IOException {
+        if (channel.read(in) < 0) {
+            throw new EOFException("closed by the server");
+        }
+        in.flip();
+        if (state == State.HANDSHAKING && !readHandshake()) {
+            in.compact();
+            return;
+        }
+        readFrames();
+        in.compact();
+    }
+
+    /** Reads the server's handshake response; false if it is not complete yet. */
+    private boolean readHandshake() throws IOException {
+        int end = -1;
+        for (int i = in.position(); i + 3 < in.limit(); i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            if (in.remaining() >= MAX_HANDSHAKE_BYTES) {
+                throw new ProtocolException("handshake response longer than " + MAX_HANDSHAKE_BYTES + " bytes");
+            }
+            return false;
+        }
+        byte[] header = new byte[end - in.position()];
+        in.get(header);
+        in.position(end + 4);
+        String[] lines = new String(header, StandardCharsets.ISO_8859_1).split("\r\n");
+        if (!lines[0].startsWith("HTTP/1.1 101")) {
+            throw new ProtocolException("handshake rejected: " + lines[0]);
+        }
+        String accept = null;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                String name = lines[i].substring(0, colon).trim();
+                String value = lines[i].substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("Sec-WebSocket-Accept")) {
+                    accept = value;
+                } else if (name.equalsIgnoreCase("Sec-WebSocket-Extensions") && !value.isEmpty()) {
+                    throw new ProtocolException("extension not requested: " + value);
+                }
+            }
+        }
+        if (!expectedAccept.equals(accept)) {
+            throw new ProtocolException("invalid Sec-WebSocket-Accept: " + accept);
+        }
+        state = State.OPEN;
+        consecutiveFailures = 0;
+        stats.recordConnected();
+        System.out.println("Connected to WebSocket server " + url);
+        return true;
+    }
+
+    /** Decodes every complete frame between the position and the limit of the receive buffer. */
+    private void readFrames() throws IOException {
+        while (in.remaining() >= 2) {
+            int start = in.position();
+            int available = in.remaining();
+            int b0 = in.get(start) & 0xFF;
+            int b1 = in.get(start + 1) & 0xFF;
+            if ((b0 & 0x70) != 0) {
+                throw new ProtocolException("reserved bits set");
+            }
+            if ((b1 & 0x80) != 0) {
+                throw new ProtocolException("masked frame from the server");
+            }
+            boolean fin = (b0 & 0x80) != 0;
+            int opcode = b0 & 0x0F;
+            long length = b1 & 0x7F;
+            int header = 2;
+            if (length == 126) {
+                if (available < 4) {
+                    break;
+                }
+                length = in.getShort(start + 2) & 0xFFFF;
+                header = 4;
+            } else if (length == 127) {
+                if (available < 10) {
+                    break;
+                }
+                length = in.getLong(start + 2);
+                header = 10;
+            }
+            if (opcode >= OPCODE_CLOSE && (length > 125 || !fin)) {
+                throw new ProtocolException("invalid control frame");
+            }
+            if (length < 0 || length > MAX_MESSAGE_BYTES) {
+                throw new ProtocolException("frame of " + length + " bytes exceeds the limit");
+            }
+            int frameBytes = header + (int) length;
+            if (available < frameBytes) {
+                fitCapacity(frameBytes);
+                return;
+            }
+            int payloadStart = start + header;
+            in.position(start + frameBytes);
+            onFrame(opcode, fin, payloadStart, start + frameBytes);
+        }
+        fitCapacity(in.remaining()); // at most the start of a header is left
+    }
+
+    private void onFrame(int opcode, boolean fin, int from, int to) throws IOException {
+        switch (opcode) {
+            case OPCODE_TEXT:
+            case OPCODE_BINARY:
+                if (message != null) {
+                    throw new ProtocolException("new message before the previous one ended");
+                }
+                if (fin) {
+                    deliver(opcode, payload(from, to));
+                } else {
+                    messageOpcode = opcode;
+                    message = ByteBuffer.allocate(Math.max(to - from, 1024));
+                    message.put(payload(from, to));
+                }
+                break;
+            case OPCODE_CONTINUATION:
+                if (message == null) {
+                    throw new ProtocolException("continuation without a message");
+                }
+                appendFragment(from, to);
+                if (fin) {
+                    byte[] bytes = new byte[message.position()];
+                    message.flip();
+                    message.get(bytes);
+                    message = null;
+                    deliver(messageOpcode, bytes);
+                }
+                break;
+            case OPCODE_PING:
+                send(frame(OPCODE_PONG, payload(from, to)));
+                break;
+            case OPCODE_PONG:
+                break;
+            case OPCODE_CLOSE:
+                int code = to - from >= 2 ? in.getShort(from) & 0xFFFF : 1005;
+                sendClose(code == 1005 ? -1 : code);
+                throw new EOFException("closed by the server (code " + code + ")");
+            default:
+                throw new ProtocolException("unknown opcode " + opcode);
+        }
+    }
+
+    private void deliver(int opcode, byte[] payload) {
+        stats.recordMessage(payload.length);
+        if (opcode == OPCODE_TEXT) {
+            pipeline.enqueue(new String(payload, StandardCharsets.UTF_8));
+        } else {
+            pipeline.enqueue(ByteBuffer.wrap(payload));
+        }
+    }
+
+    private byte[] payload(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        ByteBuffer view = in.duplicate();
+        view.limit(to).position(from);
+        view.get(bytes);
+        return bytes;
+    }
+
+    private void appendFragment(int from, int to) throws ProtocolException {
+        int needed = message.position() + (to - from);
+        if (needed > MAX_MESSAGE_BYTES) {
+            throw new ProtocolException("message exceeds " + MAX_MESSAGE_BYTES + " bytes");
+        }
+        if (needed > message.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(Math.max(needed, message.capacity() * 2),
+                    MAX_MESSAGE_BYTES));
+            message.flip();
+            message = larger.put(message);
+        }
+        message.put(payload(from, to));
+    }
+
+    /**
+     * Sizes the receive buffer, which is in read mode, for the frame at its
+     * head: grows it to hold a larger frame, and shrinks it back to
+     * {@link #BUFFER_SIZE} once such a frame is consumed, so that a connection
+     * does not keep up to {@link #MAX_MESSAGE_BYTES} after one large frame.
+     */
+    private void fitCapacity(int frameBytes) {
+        int capacity;
+        if (frameBytes > in.capacity()) {
+            capacity = Math.max(frameBytes, in.capacity() * 2);
+        } else if (in.capacity() > BUFFER_SIZE && frameBytes <= BUFFER_SIZE) {
+            capacity = BUFFER_SIZE;
+        } else {
+            return;
+        }
+        ByteBuffer resized = ByteBuffer.allocateDirect(capacity);
+        resized.put(in);
+        resized.flip();
+        in = resized;
+    }
+
+    private void send(ByteBuffer frame) throws IOException {
+        out.add(frame);
+        flushOutput();
+    }
+
+    private void flushOutput() throws IOException {
+        while (!out.isEmpty()) {
+            ByteBuffer next = out.peek();
+            channel.write(next);
+            if (next.hasRemaining()) {
+                break;
+            }
+            out.poll();
+        }
+        key.interestOps(out.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /** Sends a close frame with a status code, or without one if it is negative; best effort. */
+    private void sendClose(int code) {
+        if (channel == null || state != State.OPEN) {
+            return;
+        }
+        byte[] payload = code < 0 ? new byte[0] : new byte[] { (byte) (code >> 8), (byte) code };
+        try {
+            send(frame(OPCODE_CLOSE, payload));
+        } catch (IOException e) {
+            // The connection is being dropped anyway
+        }
+    }
+
+    /** Encodes a masked control frame, as a client must send them. */
+    private static ByteBuffer frame(int opcode, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(2 + 4 + payload.length);
+        frame.put((byte) (0x80 | opcode));
+        frame.put((byte) (0x80 | payload.length));
+        byte[] mask = new byte[4];
+        RANDOM.nextBytes(mask);
+        frame.put(mask);
+        for (int i = 0; i < payload.length; i++) {
+            frame.put((byte) (payload[i] ^ mask[i & 3]));
+        }
+        frame.flip();
+        return frame;
+    }
+
+    private void fail(String reason) {
+        closeChannel();
+        consecutiveFailures++;
+        long backoff = initialBackoffNanos;
+        for (int i = 1; i < consecutiveFailures && backoff < maxBackoffNanos; i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoffNanos);
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        state = State.WAITING;
+        reconnectAt = System.nanoTime() + delay;
+        long delayMillis = TimeUnit.NANOSECONDS.toMillis(delay);
+        stats.recordFailure(reason, delayMillis);
+        System.err.println("WebSocket endpoint " + url + " failed (" + reason + "), reconnecting in "
+                + delayMillis + " ms");
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close(); // also cancels the key
+            } catch (IOException e) {
+                System.err.println("Error closing connection to " + url + ": " + e.getMessage());
+            }
+        }
+        channel = null;
+        key = null;
+        if (in.capacity() > BUFFER_SIZE) {
+            in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        in.clear();
+        out.clear();
+        message = null;
+    }
+
+    private static String acceptKey(String requestKey) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((requestKey + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    /** A violation of the WebSocket protocol by the server. */
+    private static final class ProtocolException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+}
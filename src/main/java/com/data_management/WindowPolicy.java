@@ -0,0 +1,89 @@
+package com.data_management;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Configures the sliding windows over which a {@link DataStorage} maintains
+ * running statistics, e.g., the mean heart rate over the last 5 minutes or the
+ * noise floor of the ECG over the last 10 seconds.
+ *
+ * <p>For every configured window, each patient keeps the count, mean, variance,
+ * minimum and maximum of the measurements of that record type within the
+ * window, updated in amortised O(1) on insert. Windows end at the newest
+ * measurement of the same type of the same patient, so, as with the
+ * {@link RetentionPolicy}, replayed or late data is judged by data time rather
+ * than wall-clock time.</p>
+ *
+ * <p>Windows may be added while data is being ingested. A patient fills a new
+ * window from its retained history on the next insert of that record type.</p>
+ */
+public class WindowPolicy {
+    private static final long[] NO_WINDOWS = new long[0];
+
+    private volatile long[][] windowMillisByCode = new long[0][];
+
+    /**
+     * Adds a sliding window over a record type.
+     *
+     * @param recordType the record type, e.g., "HeartRate"
+     * @param window     the length of the window
+     */
+    public synchronized void addWindow(String recordType, Duration window) {
+        long millis = window.toMillis();
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        int code = RecordTypeRegistry.getInstance().codeFor(recordType);
+        long[] current = getWindowMillis(code);
+        if (Arrays.binarySearch(current, millis) >= 0) {
+            return;
+        }
+        long[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = millis;
+        Arrays.sort(updated);
+        replace(code, updated);
+    }
+
+    /**
+     * Removes a sliding window over a record type. Patients drop its statistics
+     * on the next insert of that record type.
+     *
+     * @param recordType the record type, e.g., "HeartRate"
+     * @param window     the length of the window
+     */
+    public synchronized void removeWindow(String recordType, Duration window) {
+        int code = RecordTypeRegistry.getInstance().lookup(recordType);
+        long[] current = getWindowMillis(code);
+        int index = Arrays.binarySearch(current, window.toMillis());
+        if (index < 0) {
+            return;
+        }
+        long[] updated = new long[current.length - 1];
+        System.arraycopy(current, 0, updated, 0, index);
+        System.arraycopy(current, index + 1, updated, index, updated.length - index);
+        replace(code, updated);
+    }
+
+    /**
+     * Returns the lengths of the windows configured for a record type. The
+     * returned array is replaced, never modified, when the configuration of that
+     * type changes, so callers can detect a change by identity.
+     *
+     * @param recordTypeCode the registry code of the record type
+     * @return the window lengths in milliseconds, in ascending order
+     */
+    long[] getWindowMillis(int recordTypeCode) {
+        long[][] byCode = windowMillisByCode;
+        if (recordTypeCode < 0 || recordTypeCode >= byCode.length || byCode[recordTypeCode] == null) {
+            return NO_WINDOWS;
+        }
+        return byCode[recordTypeCode];
+    }
+
+    private void replace(int recordTypeCode, long[] windowMillis) {
+        long[][] updated = Arrays.copyOf(windowMillisByCode, Math.max(windowMillisByCode.length, recordTypeCode + 1));
+        updated[recordTypeCode] = windowMillis;
+        windowMillisByCode = updated;
+    }
+}
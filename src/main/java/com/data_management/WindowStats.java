@@ -0,0 +1,116 @@
+package com.data_management;
+
+/**
+ * Running statistics of one record type of one patient over a sliding window:
+ * the number of measurements in the window, their mean, variance, minimum and
+ * maximum. Returned by {@link DataStorage#getWindowStats} for questions such as
+ * the mean heart rate over the last 5 minutes, without reading the raw
+ * measurements.
+ */
+public class WindowStats {
+    private final long windowMillis;
+    private final long endTime;
+    private final int count;
+    private final double mean;
+    private final double variance;
+    private final double min;
+    private final double max;
+
+    /**
+     * Constructs window statistics.
+     *
+     * @param windowMillis the length of the window in milliseconds
+     * @param endTime      the timestamp of the newest measurement, which ends
+     *                     the window
+     * @param count        the number of measurements in the window
+     * @param mean         the mean of the measurement values
+     * @param variance     the population variance of the measurement values
+     * @param min          the smallest measurement value
+     * @param max          the largest measurement value
+     */
+    public WindowStats(long windowMillis, long endTime, int count, double mean, double variance, double min,
+            double max) {
+        this.windowMillis = windowMillis;
+        this.endTime = endTime;
+        this.count = count;
+        this.mean = mean;
+        this.variance = variance;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Returns the length of the window.
+     *
+     * @return the window length in milliseconds
+     */
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Returns the timestamp of the newest measurement. The window covers the
+     * measurements after {@code endTime - windowMillis} up to and including
+     * {@code endTime}.
+     *
+     * @return the end of the window, in milliseconds since the Unix epoch
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Returns the number of measurements in the window.
+     *
+     * @return the measurement count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the measurement values in the window.
+     *
+     * @return the mean value, or NaN if the window is empty
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : mean;
+    }
+
+    /**
+     * Returns the population variance of the measurement values in the window.
+     *
+     * @return the variance, or NaN if the window is empty
+     */
+    public double getVariance() {
+        return count == 0 ? Double.NaN : variance;
+    }
+
+    /**
+     * Returns the population standard deviation of the measurement values in the
+     * window, e.g., the noise floor of an ECG signal.
+     *
+     * @return the standard deviation, or NaN if the window is empty
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the smallest measurement value in the window.
+     *
+     * @return the minimum value, or NaN if the window is empty
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Returns the largest measurement value in the window.
+     *
+     * @return the maximum value, or NaN if the window is empty
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+}
@@ -0,0 +1,340 @@
+package com.data_management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only binary log of every measurement added to a {@link DataStorage}.
+ *
+ * <p>The log is split into segment files named {@code wal-<firstLsn>.log}. Each
+ * measurement gets a log sequence number (LSN) that is implicit in its position:
+ * the n-th measurement of a segment has LSN {@code firstLsn + n}. A segment
+ * contains two kinds of entries:</p>
+ * <ul>
+ *   <li>{@code RECORD}: tag byte, int patient ID, int record type code, long
+ *   timestamp, double value ({@value #RECORD_BYTES} bytes);</li>
+ *   <li>{@code RECORD_TYPE}: tag byte, int code, short length and the UTF-8 name,
+ *   written before the first measurement of a type in each segment so that every
+ *   segment can be decoded on its own.</li>
+ * </ul>
+ *
+ * <p>Appends only copy the entry into an in-memory buffer. A background flusher
+ * writes and forces the buffer to disk every few milliseconds, so the cost of
+ * an fsync is shared by every measurement of the interval (group commit). A
+ * crash can therefore lose at most the last flush interval of data.</p>
+ */
+public class WriteAheadLog implements Closeable {
+    static final byte RECORD = 1;
+    static final byte RECORD_TYPE = 2;
+    static final int RECORD_BYTES = 1 + Integer.BYTES + Integer.BYTES + Long.BYTES + Double.BYTES;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object();
+
+    // Guarded by this: the buffer appends go to and the state of the segment it belongs to
+    private ByteBuffer active = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private long nextLsn;
+    private long currentSegmentBytes;
+    private BitSet typesInSegment = new BitSet();
+    private boolean rollRequested;
+
+    // Guarded by flushLock: the segment being written
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private FileChannel channel;
+    private volatile boolean closed;
+
+    /**
+     * Opens a log in the given directory. New measurements are appended to a new
+     * segment starting at {@code nextLsn}.
+     *
+     * @param directory           the directory holding the segments
+     * @param nextLsn             the LSN of the next measurement
+     * @param segmentBytes        the size after which a new segment is started
+     * @param flushIntervalMillis the group commit interval
+     * @throws IOException if the segment cannot be created
+     */
+    public WriteAheadLog(Path directory, long nextLsn, long segmentBytes, long flushIntervalMillis)
+            throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.nextLsn = nextLsn;
+        Files.createDirectories(directory);
+        // A segment already named after nextLsn holds no complete measurement, only a crashed tail
+        this.channel = FileChannel.open(segmentPath(directory, nextLsn), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends a measurement to the log buffer and returns its LSN. The
+     * measurement becomes durable with the next group commit.
+     *
+     * @param patientId      the unique identifier of the patient
+     * @param recordTypeCode the registry code of the record type
+     * @param timestamp      the time of the measurement
+     * @param value          the measurement value
+     * @return the LSN assigned to the measurement
+     */
+    public synchronized long append(int patientId, int recordTypeCode, long timestamp, double value) {
+        if (!typesInSegment.get(recordTypeCode)) {
+            byte[] name = RecordTypeRegistry.getInstance().nameOf(recordTypeCode).getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(1 + Integer.BYTES + Short.BYTES + name.length);
+            active.put(RECORD_TYPE).putInt(recordTypeCode).putShort((short) name.length).put(name);
+            currentSegmentBytes += 1 + Integer.BYTES + Short.BYTES + name.length;
+            typesInSegment.set(recordTypeCode);
+        }
+        ensureCapacity(RECORD_BYTES);
+        active.put(RECORD).putInt(patientId).putInt(recordTypeCode).putLong(timestamp).putDouble(value);
+        currentSegmentBytes += RECORD_BYTES;
+        return nextLsn++;
+    }
+
+    /**
+     * Appends a run of measurements of one patient from a batch to the log
+     * buffer, holding the log's lock once for the whole run.
+     *
+     * @param patientId the unique identifier of the patient
+     * @param batch     the batch holding the measurements
+     * @param order     positions in the batch, see {@link MeasurementBatch#orderByPatient()}
+     * @param from      the first position in {@code order} to append, inclusive
+     * @param to        the last position in {@code order} to append, exclusive
+     * @return the LSN assigned to the last measurement of the run
+     */
+    synchronized long append(int patientId, MeasurementBatch batch, int[] order, int from, int to) {
+        long lsn = nextLsn - 1;
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            lsn = append(patientId, batch.recordTypeCodes[i], batch.timestamps[i], batch.values[i]);
+        }
+        return lsn;
+    }
+
+    /**
+     * Returns the LSN that the next appended measurement will get.
+     *
+     * @return the next LSN
+     */
+    public synchronized long getNextLsn() {
+        return nextLsn;
+    }
+
+    /**
+     * Makes the next {@link #flush()} start a new segment for the measurements
+     * appended after it. Called before a snapshot so that older segments can be
+     * deleted once the snapshot is complete.
+     */
+    public synchronized void rollSegment() {
+        rollRequested = true;
+    }
+
+    /**
+     * Writes every buffered entry to disk and forces it to stable storage.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public void flush() throws IOException {
+        synchronized (flushLock) {
+            long newSegmentLsn;
+            synchronized (this) {
+                ByteBuffer full = active;
+                active = flushing;
+                flushing = full;
+                newSegmentLsn = -1;
+                if (rollRequested || currentSegmentBytes >= segmentBytes) {
+                    // Entries buffered from now on belong to a new segment
+                    newSegmentLsn = nextLsn;
+                    currentSegmentBytes = 0;
+                    typesInSegment = new BitSet();
+                    rollRequested = false;
+                }
+            }
+            flushing.flip();
+            while (flushing.hasRemaining()) {
+                channel.write(flushing);
+            }
+            flushing.clear();
+            channel.force(false);
+            if (newSegmentLsn >= 0) {
+                channel.close();
+                channel = openSegment(newSegmentLsn);
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments that only contain measurements below the given LSN.
+     *
+     * @param lsn the first LSN that must be kept
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void deleteSegmentsBefore(long lsn) throws IOException {
+        List<Long> segments = listSegments(directory);
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (segments.get(i + 1) <= lsn) {
+                Files.deleteIfExists(segmentPath(directory, segments.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Flushes the remaining entries and closes the log.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (flushLock) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the segments of a log directory in LSN order and passes every
+     * measurement with an LSN of at least {@code fromLsn} to the visitor. A
+     * truncated entry at the end of the last segment, left by a crash during a
+     * write, ends the replay.
+     *
+     * @param directory the directory holding the segments
+     * @param fromLsn   the first LSN to replay
+     * @param visitor   receives the replayed measurements
+     * @return the LSN following the last measurement in the log
+     * @throws IOException if a segment cannot be read
+     */
+    public static long replay(Path directory, long fromLsn, ReplayVisitor visitor) throws IOException {
+        List<Long> segments = listSegments(directory);
+        long lsn = fromLsn;
+        RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && segments.get(i + 1) <= fromLsn) {
+                continue; // every measurement of this segment is older than requested
+            }
+            lsn = segments.get(i);
+            int[] codes = new int[0];
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(directory, segments.get(i))));
+            while (buffer.hasRemaining()) {
+                byte tag = buffer.get();
+                if (tag == RECORD_TYPE && buffer.remaining() >= Integer.BYTES + Short.BYTES) {
+                    int loggedCode = buffer.getInt();
+                    int length = buffer.getShort();
+                    if (buffer.remaining() < length) {
+                        break;
+                    }
+                    byte[] name = new byte[length];
+                    buffer.get(name);
+                    if (loggedCode >= codes.length) {
+                        codes = Arrays.copyOf(codes, loggedCode + 1);
+                    }
+                    codes[loggedCode] = registry.codeFor(new String(name, StandardCharsets.UTF_8));
+                } else if (tag == RECORD && buffer.remaining() >= RECORD_BYTES - 1) {
+                    int patientId = buffer.getInt();
+                    int loggedCode = buffer.getInt();
+                    long timestamp = buffer.getLong();
+                    double value = buffer.getDouble();
+                    if (lsn >= fromLsn) {
+                        visitor.visit(lsn, patientId, codes[loggedCode], timestamp, value);
+                    }
+                    lsn++;
+                } else {
+                    break; // truncated tail
+                }
+            }
+        }
+        return Math.max(lsn, fromLsn);
+    }
+
+    /**
+     * Receives the measurements read back from the log.
+     */
+    public interface ReplayVisitor {
+        /**
+         * Called for every replayed measurement, in LSN order.
+         *
+         * @param lsn            the LSN of the measurement
+         * @param patientId      the unique identifier of the patient
+         * @param recordTypeCode the registry code of the record type in this process
+         * @param timestamp      the time of the measurement
+         * @param value          the measurement value
+         */
+        void visit(long lsn, int patientId, int recordTypeCode, long timestamp, double value);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (active.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(active.capacity() * 2, active.position() + bytes));
+            active.flip();
+            grown.put(active);
+            active = grown;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Error flushing write-ahead log: " + e.getMessage());
+        }
+    }
+
+    private FileChannel openSegment(long firstLsn) throws IOException {
+        return FileChannel.open(segmentPath(directory, firstLsn), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static Path segmentPath(Path directory, long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                segments.add(Long.parseLong(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+}
@@ -0,0 +1,42 @@
+package com.data_management;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how parallel aggregation scales with the number of workers on a
+ * 10k-patient dataset. Run with
+ * {@code java -cp target/classes:target/test-classes com.data_management.AggregationBenchmark}.
+ */
+public class AggregationBenchmark {
+    private static final int PATIENTS = 10_000;
+    private static final int RECORDS = 3_600; // one hour at 1 Hz
+
+    public static void main(String[] args) {
+        DataStorage storage = new DataStorage();
+        for (int p = 0; p < PATIENTS; p++) {
+            for (int i = 0; i < RECORDS; i++) {
+                storage.addPatientData(p, 90 + (p * 31 + i) % 10, "Saturation", 1000L * i);
+            }
+        }
+        Patient[] patients = storage.patients().toArray(new Patient[0]);
+        int code = RecordTypeRegistry.getInstance().lookup("Saturation");
+        int cores = Runtime.getRuntime().availableProcessors();
+        double serial = 0;
+        for (int workers = 1; workers <= cores; workers *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            ParallelAggregation aggregation = new ParallelAggregation(pool, patients, code, 0, Long.MAX_VALUE);
+            double best = Double.MAX_VALUE;
+            for (int round = 0; round < 10; round++) {
+                long start = System.nanoTime();
+                aggregation.summarise(null);
+                best = Math.min(best, (System.nanoTime() - start) / 1e6);
+            }
+            if (workers == 1) {
+                serial = best;
+            }
+            System.out.printf("%2d workers: mean over %,d measurements in %.1f ms (%.1fx, %.0fM measurements/s)%n",
+                    workers, (long) PATIENTS * RECORDS, best, serial / best, PATIENTS * RECORDS / best / 1e3);
+            pool.shutdown();
+        }
+    }
+}
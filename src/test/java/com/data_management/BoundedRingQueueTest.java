@@ -0,0 +1,76 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class BoundedRingQueueTest {
+    @Test
+    void testFifoAndCapacity() {
+        BoundedRingQueue<Integer> queue = new BoundedRingQueue<>(5);
+        assertEquals(8, queue.capacity());
+        assertNull(queue.poll());
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 8; i++) {
+                assertTrue(queue.offer(i));
+            }
+            assertFalse(queue.offer(8));
+            assertEquals(8, queue.size());
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i, queue.poll());
+            }
+            assertNull(queue.poll());
+            assertEquals(0, queue.size());
+        }
+    }
+
+    @Test
+    void testConcurrentProducersAndConsumersLoseNothing() throws Exception {
+        int producers = 3;
+        int consumers = 3;
+        int perProducer = 100_000;
+        BoundedRingQueue<Integer> queue = new BoundedRingQueue<>(64);
+        AtomicIntegerArray seen = new AtomicIntegerArray(producers * perProducer);
+        AtomicInteger consumed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!queue.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            futures.add(pool.submit(() -> {
+                while (consumed.get() < producers * perProducer) {
+                    Integer value = queue.poll();
+                    if (value == null) {
+                        Thread.yield();
+                    } else {
+                        seen.incrementAndGet(value);
+                        consumed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+        for (int i = 0; i < seen.length(); i++) {
+            assertEquals(1, seen.get(i), "element " + i);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+public class ChunkCodecTest {
+    @Test
+    void testRoundTripOfIrregularData() {
+        Random random = new Random(42);
+        int count = TimeSeries.CHUNK_CAPACITY;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        long time = -1_000_000L;
+        for (int i = 0; i < count; i++) {
+            // Mix of repeated timestamps, jitter and very large jumps
+            time += i % 97 == 0 ? (1L << 40) : random.nextInt(5000);
+            timestamps[i] = time;
+            values[i] = i % 5 == 0 ? values[Math.max(0, i - 1)] : random.nextGaussian() * 100;
+        }
+        values[7] = Double.NaN;
+        values[8] = Double.NEGATIVE_INFINITY;
+        values[9] = -0.0;
+
+        long[] encoded = ChunkCodec.encode(timestamps, values, count);
+        long[] decodedTimestamps = new long[count];
+        double[] decodedValues = new double[count];
+        assertEquals(count, ChunkCodec.decode(encoded, count, Long.MAX_VALUE, decodedTimestamps, decodedValues));
+        assertArrayEquals(timestamps, decodedTimestamps);
+        for (int i = 0; i < count; i++) {
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decodedValues[i]));
+        }
+
+        // Decoding stops after the last measurement within the bound
+        int bounded = ChunkCodec.decode(encoded, count, timestamps[100], decodedTimestamps, decodedValues);
+        assertTrue(bounded > 100);
+        assertTrue(bounded == count || timestamps[bounded] > timestamps[100]);
+    }
+
+    @Test
+    void testRegularDataCompressesWell() {
+        int count = TimeSeries.CHUNK_CAPACITY;
+        long[] timestamps = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = 1_700_000_000_000L + 1000L * i;
+            values[i] = i < count / 2 ? 98.0 : 97.0;
+        }
+        long[] encoded = ChunkCodec.encode(timestamps, values, count);
+        // Raw storage is 16 bytes per measurement
+        assertTrue(encoded.length * Long.BYTES * 20 < count * 16, "encoded words: " + encoded.length);
+    }
+
+    @Test
+    void testSealedChunksAreReadAndModified() {
+        Patient patient = new Patient(1);
+        int count = TimeSeries.CHUNK_CAPACITY * 6;
+        for (int i = 0; i < count; i++) {
+            patient.addRecord(i % 3, "Saturation", 10L * i);
+        }
+        TimeSeries.Chunk[] chunks = patient.getSeries(RecordTypeRegistry.getInstance().lookup("Saturation")).chunks();
+        assertEquals(6, chunks.length);
+        assertTrue(chunks[0].isSealed());
+        assertTrue(chunks[3].isSealed());
+        assertFalse(chunks[4].isSealed());
+        assertFalse(chunks[5].isSealed());
+
+        // A range crossing sealed and raw chunks, starting and ending mid-chunk
+        List<PatientRecord> records = patient.getRecords(10L * 1500, 10L * 4500);
+        assertEquals(3001, records.size());
+        assertEquals(1500 % 3, records.get(0).getMeasurementValue());
+        assertEquals(10L * 4500, records.get(3000).getTimestamp());
+
+        // A late measurement inside a full sealed chunk splits it; both halves stay sealed
+        patient.addRecord(-1.0, "Saturation", 10L * 100 + 5);
+        chunks = patient.getSeries(RecordTypeRegistry.getInstance().lookup("Saturation")).chunks();
+        assertEquals(7, chunks.length);
+        assertTrue(chunks[0].isSealed());
+        assertTrue(chunks[1].isSealed());
+        records = patient.getRecords(10L * 100, 10L * 101);
+        assertEquals(3, records.size());
+        assertEquals(-1.0, records.get(1).getMeasurementValue());
+        assertEquals(count + 1, patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE).size());
+    }
+}
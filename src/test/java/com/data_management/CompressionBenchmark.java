@@ -0,0 +1,101 @@
+package com.data_management;
+
+import java.util.Random;
+
+/**
+ * Measures the heap used per patient with sealed chunks and the latency of
+ * range queries over recent and over old data. Run with
+ * {@code java -cp target/classes:target/test-classes com.data_management.CompressionBenchmark}.
+ */
+public class CompressionBenchmark {
+    private static final int PATIENTS = 200;
+    private static final int RECORDS_PER_TYPE = 20_000;
+    private static final long INTERVAL = 1000L;
+    private static final long START = 1_700_000_000_000L;
+
+    public static void main(String[] args) {
+        long before = usedHeap();
+        Patient[] patients = new Patient[PATIENTS];
+        Random random = new Random(1);
+        for (int p = 0; p < PATIENTS; p++) {
+            Patient patient = new Patient(p);
+            double heartRate = 70;
+            for (int i = 0; i < RECORDS_PER_TYPE; i++) {
+                long time = START + i * INTERVAL;
+                heartRate = Math.max(50, Math.min(110, heartRate + random.nextInt(3) - 1));
+                patient.addRecord(heartRate, "HeartRate", time);
+                patient.addRecord(random.nextInt(20) == 0 ? 97.0 : 98.0, "Saturation", time);
+                patient.addRecord(120 + random.nextInt(3), "SystolicPressure", time);
+                // Jittered timestamps and noisy values, the least compressible case
+                patient.addRecord(random.nextGaussian(), "ECG", time + random.nextInt(50));
+            }
+            patients[p] = patient;
+        }
+        long records = (long) PATIENTS * RECORDS_PER_TYPE * 4;
+        long used = usedHeap() - before;
+        long raw = records * RetentionPolicy.BYTES_PER_MEASUREMENT;
+        System.out.printf("heap: %.1f KiB/patient, %.2f bytes/record (raw columns %.1f KiB/patient, %.1fx)%n",
+                used / 1024.0 / PATIENTS, (double) used / records, raw / 1024.0 / PATIENTS, (double) raw / used);
+
+        String[] types = { "HeartRate", "Saturation", "SystolicPressure", "ECG" };
+        for (String type : types) {
+            int code = RecordTypeRegistry.getInstance().lookup(type);
+            long stored = 0;
+            for (Patient patient : patients) {
+                stored += columnBytes(patient.getSeries(code));
+            }
+            long typeRaw = (long) PATIENTS * RECORDS_PER_TYPE * RetentionPolicy.BYTES_PER_MEASUREMENT;
+            System.out.printf("%-17s %.2f bytes/record in chunks (%.1fx smaller than raw)%n", type,
+                    (double) stored / PATIENTS / RECORDS_PER_TYPE, (double) typeRaw / stored);
+        }
+
+        long end = START + (RECORDS_PER_TYPE - 1) * INTERVAL;
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("last minute (raw tail): %.1f us/query%n", query(patients, end - 60_000L, end));
+            System.out.printf("one hour of old data (sealed): %.1f us/query%n",
+                    query(patients, START + 3_600_000L, START + 7_200_000L));
+        }
+    }
+
+    private static double query(Patient[] patients, long from, long to) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < 10; r++) {
+            for (Patient patient : patients) {
+                RecordCursor cursor = patient.getCursor(from, to);
+                while (cursor.next()) {
+                    checksum += cursor.getTimestamp();
+                }
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / (10.0 * patients.length);
+        if (checksum == 42) {
+            System.out.println();
+        }
+        return micros;
+    }
+
+    /**
+     * Approximates the heap held by the chunks of a series: array payloads plus
+     * object and array headers.
+     */
+    private static long columnBytes(TimeSeries series) {
+        long bytes = 0;
+        for (TimeSeries.Chunk chunk : series.chunks()) {
+            if (chunk.isSealed()) {
+                bytes += 40 + 16 + (long) chunk.encoded.length * Long.BYTES;
+            } else {
+                bytes += 40 + 32 + (long) chunk.timestamps.length * RetentionPolicy.BYTES_PER_MEASUREMENT;
+            }
+        }
+        return bytes;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
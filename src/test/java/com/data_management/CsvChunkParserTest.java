@@ -0,0 +1,106 @@
+package com.data_management;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class CsvChunkParserTest {
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("chunked_patient_data", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testChunkedReadMatchesLineByLineRead() throws IOException {
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(17);
+        String[] types = { "HeartRate", "Saturation", "SystolicPressure", "DiastolicPressure", "Alert" };
+        for (int i = 0; i < 20_000; i++) {
+            int patientId = random.nextInt(50);
+            double value = Math.round(random.nextDouble() * 200_000) / 1000.0;
+            content.append(patientId).append(',').append(value).append(',')
+                    .append(types[random.nextInt(types.length)]).append(',').append(1_700_000_000_000L + i)
+                    .append('\n');
+        }
+        // Lines outside the fast path, which must be handled like the line-by-line reader does
+        content.append(" 7 , 98.6 , HeartRate , 1700000100000 \r\n");
+        content.append("7,1e2,HeartRate,1700000100001\n");
+        content.append("+8,-0.5,Saturation,1700000100002\n");
+        content.append("\n   \n");
+        content.append("9,12345678901234567890.5,HeartRate,1700000100003\n");
+        content.append("10,0.1,HeartRate,12345678901234567890\n");
+        content.append("11,0.1,,1700000100004\n");
+        content.append("12,0.1,HeartRate,1700000100005,\n");
+        content.append("13,NaN,HeartRate,1700000100006\n");
+        content.append("not,a,valid,line\n");
+        content.append("14,72,HeartRate,1700000100007"); // no final newline
+        Files.write(file, content.toString().getBytes());
+
+        DataStorage lineByLine = new DataStorage();
+        FileDataReader.readLines(new BufferedReader(new StringReader(content.toString())), lineByLine);
+        for (int chunkSize : new int[] { 1, 100, 4096, 1 << 20 }) {
+            DataStorage chunked = new DataStorage();
+            new FileDataReader(file.toString(), chunkSize).readData(chunked);
+            assertEquals(keys(lineByLine), keys(chunked), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void testDecimalsAreDecodedExactly() throws IOException {
+        Random random = new Random(3);
+        List<String> values = new ArrayList<>();
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < 10_000; i++) {
+                String value = Long.toString(random.nextLong() % 10_000_000_000_000L) + "."
+                        + Integer.toString(random.nextInt(1_000_000));
+                values.add(value);
+                writer.write("1," + value + ",Cholesterol," + i + "\n");
+            }
+        }
+        DataStorage storage = new DataStorage();
+        new FileDataReader(file.toString(), 64 << 10).readData(storage);
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(values.size(), records.size());
+        for (PatientRecord record : records) {
+            assertEquals(Double.parseDouble(values.get((int) record.getTimestamp())), record.getMeasurementValue());
+        }
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        DataStorage storage = new DataStorage();
+        new FileDataReader(file.toString()).readData(storage);
+        assertTrue(storage.getAllPatients().isEmpty());
+    }
+
+    private static List<String> keys(DataStorage storage) {
+        List<String> keys = new ArrayList<>();
+        for (Patient patient : storage.getAllPatients()) {
+            for (PatientRecord record : patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE)) {
+                keys.add(record.getPatientId() + "/" + record.getRecordType() + "/" + record.getTimestamp() + "/"
+                        + record.getMeasurementValue());
+            }
+        }
+        keys.sort(Comparator.naturalOrder());
+        return keys;
+    }
+}
@@ -0,0 +1,76 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class DataStorageConcurrencyTest {
+    private static final int FIRST_PATIENT = 50_000; // keeps clear of ids used by other tests on the singleton
+    private static final int PATIENTS = 16;
+    private static final int WRITERS = 8;
+    private static final int RECORDS_PER_WRITER = 20_000;
+
+    @Test
+    void testConcurrentIngestLosesNoRecords() throws Exception {
+        DataStorage storage = DataStorage.getInstance();
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 2);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < RECORDS_PER_WRITER; i++) {
+                    int patientId = FIRST_PATIENT + (i + writer) % PATIENTS;
+                    // Every fifth record is late so the out-of-order path is exercised too
+                    long timestamp = i % 5 == 0 ? i / 2 : i;
+                    String type = i % 3 == 0 ? "HeartRate" : "ECG";
+                    storage.addPatientData(patientId, writer, type, timestamp);
+                }
+                return null;
+            }));
+        }
+        for (int r = 0; r < 2; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (int p = 0; p < PATIENTS; p++) {
+                        List<PatientRecord> records = storage.getRecords(FIRST_PATIENT + p, 0, Long.MAX_VALUE);
+                        for (int i = 1; i < records.size(); i++) {
+                            assertTrue(records.get(i - 1).getTimestamp() <= records.get(i).getTimestamp(),
+                                    "Snapshot should be ordered by timestamp");
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        int total = 0;
+        for (int p = 0; p < PATIENTS; p++) {
+            total += storage.getRecords(FIRST_PATIENT + p, 0, Long.MAX_VALUE).size();
+        }
+        assertEquals(WRITERS * RECORDS_PER_WRITER, total, "No record should be lost under concurrent ingest");
+    }
+}
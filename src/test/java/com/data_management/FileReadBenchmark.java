@@ -0,0 +1,93 @@
+package com.data_management;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares the line-by-line reader with the memory-mapped parallel reader on a
+ * generated CSV export, in GB/s. "parse only" hands the measurements to a
+ * storage that discards them, to show the throughput of the readers themselves;
+ * "ingest" stores them. Run with
+ * {@code java -Xmx6g -cp target/classes:target/test-classes com.data_management.FileReadBenchmark [megabytes]}.
+ */
+public class FileReadBenchmark {
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 512;
+        Path file = Files.createTempFile("file_read_benchmark", ".csv");
+        try {
+            generate(file, megabytes << 20);
+            double gigabytes = Files.size(file) / 1e9;
+            System.out.printf("%.2f GB, %d cores%n", gigabytes, Runtime.getRuntime().availableProcessors());
+            for (int round = 0; round < 3; round++) {
+                report("parse only", gigabytes, () -> readLines(file, new DiscardingStorage()),
+                        () -> new FileDataReader(file.toString()).readData(new DiscardingStorage()));
+            }
+            for (int round = 0; round < 2; round++) {
+                report("ingest", gigabytes, () -> readLines(file, new DataStorage()),
+                        () -> new FileDataReader(file.toString()).readData(new DataStorage()));
+            }
+        } finally {
+            Files.delete(file);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static void report(String label, double gigabytes, Read lineByLine, Read mapped) throws IOException {
+        double lineSeconds = time(lineByLine);
+        double mappedSeconds = time(mapped);
+        System.out.printf("%-10s line by line %6.3f GB/s, mapped %6.3f GB/s (%.1fx)%n", label,
+                gigabytes / lineSeconds, gigabytes / mappedSeconds, lineSeconds / mappedSeconds);
+    }
+
+    /** The reader before memory mapping: one thread, one string per line. */
+    private static void readLines(Path file, DataStorage storage) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file.toFile()))) {
+            FileDataReader.readLines(reader, storage);
+        }
+    }
+
+    private static void generate(Path file, long bytes) throws IOException {
+        Random random = new Random(1);
+        String[] types = { "HeartRate", "Saturation", "SystolicPressure", "DiastolicPressure", "ECG" };
+        long timestamp = 1_700_000_000_000L;
+        long written = 0;
+        StringBuilder line = new StringBuilder();
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            while (written < bytes) {
+                line.setLength(0);
+                line.append(random.nextInt(10_000)).append(',').append(random.nextInt(20_000) / 100.0).append(',')
+                        .append(types[random.nextInt(types.length)]).append(',').append(timestamp++).append('\n');
+                writer.append(line);
+                written += line.length();
+            }
+        }
+    }
+
+    private static double time(Read read) throws IOException {
+        System.gc(); // do not charge the previous run's storage to this one
+        long start = System.nanoTime();
+        read.run();
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private interface Read {
+        void run() throws IOException;
+    }
+
+    /** A storage that only counts what it is given. */
+    private static final class DiscardingStorage extends DataStorage {
+        @Override
+        public void addPatientData(int patientId, double measurementValue, int recordTypeCode, long timestamp) {
+            sink += patientId + recordTypeCode + timestamp;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.data_management;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+public class LabelFileDataReaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReadsOutputOfFileOutputStrategy() throws IOException {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString());
+        Random random = new Random(7);
+        double[] ecg = new double[200];
+        for (int t = 0; t < 200; t++) {
+            ecg[t] = random.nextGaussian() * (t % 2 == 0 ? 1 : 1e-5); // long decimals and exponents
+            output.output(t % 4, t, "ECG", Double.toString(ecg[t]));
+            output.output(t % 4, t, "Saturation", (90 + t % 10) + ".0%");
+            output.output(t % 4, t, "Cholesterol", Double.toString(180.5 + t));
+        }
+        output.output(1, 5, "Alert", "triggered");
+        output.output(1, 9, "Alert", "resolved");
+
+        for (int chunkSize : new int[] { 64, 1000, FileDataReader.DEFAULT_CHUNK_SIZE }) {
+            DataStorage storage = new DataStorage();
+            new LabelFileDataReader(directory.toString(), chunkSize).readData(storage);
+            for (int p = 0; p < 4; p++) {
+                assertEquals(150, storage.getRecords(p, 0, Long.MAX_VALUE).size(), "patient " + p);
+            }
+            List<PatientRecord> records = storage.getRecords(3, 7, 7);
+            assertEquals(3, records.size());
+            for (PatientRecord record : records) {
+                switch (record.getRecordType()) {
+                    case "ECG":
+                        assertEquals(ecg[7], record.getMeasurementValue());
+                        break;
+                    case "Saturation":
+                        assertEquals(97.0, record.getMeasurementValue());
+                        break;
+                    default:
+                        assertEquals("Cholesterol", record.getRecordType());
+                        assertEquals(187.5, record.getMeasurementValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSkipsMalformedLinesAndOtherFiles() throws IOException {
+        Files.write(directory.resolve("HeartRate.txt"), String.join("\n",
+                "Patient ID: 1, Timestamp: 100, Label: HeartRate, Data: 72.0",
+                "",
+                "Patient ID: x, Timestamp: 101, Label: HeartRate, Data: 73.0",
+                "Patient: 1, Timestamp: 102, Label: HeartRate, Data: 74.0",
+                "Patient ID: 1, Timestamp: 103, Label: HeartRate",
+                "Patient ID: 1, Timestamp: 104, Label: HeartRate, Data: 75.5\r",
+                "Patient ID: -2, Timestamp: 105, Label: Heart Rate, Data:  76 ").getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("notes.csv"), "1,1.0,HeartRate,1\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE);
+
+        DataStorage storage = new DataStorage();
+        new LabelFileDataReader(directory.toString()).readData(storage);
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(2, records.size());
+        assertEquals(72.0, records.get(0).getMeasurementValue());
+        assertEquals(104, records.get(1).getTimestamp());
+        assertEquals(75.5, records.get(1).getMeasurementValue());
+        List<PatientRecord> other = storage.getRecords(-2, 0, Long.MAX_VALUE);
+        assertEquals(1, other.size());
+        assertEquals("Heart Rate", other.get(0).getRecordType());
+        assertEquals(76.0, other.get(0).getMeasurementValue());
+    }
+}
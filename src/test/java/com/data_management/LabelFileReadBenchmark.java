@@ -0,0 +1,96 @@
+package com.data_management;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares loading a generated {@code FileOutputStrategy} directory with a
+ * sequential reader that matches each line with a regular expression against
+ * the {@link LabelFileDataReader}, in GB/s. Run with
+ * {@code java -Xmx6g -cp target/classes:target/test-classes com.data_management.LabelFileReadBenchmark [megabytes]}.
+ */
+public class LabelFileReadBenchmark {
+    private static final String[] LABELS = { "HeartRate", "Saturation", "SystolicPressure", "DiastolicPressure",
+            "ECG", "Cholesterol" };
+    private static final Pattern LINE = Pattern.compile(
+            "Patient ID: (-?\\d+), Timestamp: (-?\\d+), Label: (.*), Data: (.*?)%?");
+
+    public static void main(String[] args) throws IOException {
+        long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 512;
+        Path directory = Files.createTempDirectory("label_file_benchmark");
+        try {
+            long bytes = generate(directory, (megabytes << 20) / LABELS.length);
+            double gigabytes = bytes / 1e9;
+            System.out.printf("%.2f GB in %d files, %d cores%n", gigabytes, LABELS.length,
+                    Runtime.getRuntime().availableProcessors());
+            for (int round = 0; round < 3; round++) {
+                System.gc();
+                long start = System.nanoTime();
+                readWithRegex(directory, new DataStorage());
+                double regexSeconds = (System.nanoTime() - start) / 1e9;
+                System.gc();
+                start = System.nanoTime();
+                new LabelFileDataReader(directory.toString()).readData(new DataStorage());
+                double parallelSeconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("regex %6.3f GB/s, label file reader %6.3f GB/s (%.1fx)%n",
+                        gigabytes / regexSeconds, gigabytes / parallelSeconds, regexSeconds / parallelSeconds);
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /** A straightforward reader: one file after another, one string and one match per line. */
+    private static void readWithRegex(Path directory, DataStorage storage) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.txt")) {
+            for (Path file : files) {
+                try (BufferedReader reader = Files.newBufferedReader(file)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        Matcher matcher = LINE.matcher(line);
+                        if (matcher.matches()) {
+                            storage.addPatientData(Integer.parseInt(matcher.group(1)),
+                                    Double.parseDouble(matcher.group(4)), matcher.group(3),
+                                    Long.parseLong(matcher.group(2)));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static long generate(Path directory, long bytesPerFile) throws IOException {
+        Random random = new Random(1);
+        long total = 0;
+        for (String label : LABELS) {
+            Path file = directory.resolve(label + ".txt");
+            try (Writer out = Files.newBufferedWriter(file)) {
+                long timestamp = 1_700_000_000_000L;
+                long written = 0;
+                while (written < bytesPerFile) {
+                    String data = label.equals("Saturation") ? (90 + random.nextInt(10)) + ".0%"
+                            : label.equals("ECG") ? Double.toString(random.nextGaussian())
+                            : Double.toString(Math.round(random.nextDouble() * 2000) / 10.0);
+                    String line = "Patient ID: " + random.nextInt(1000) + ", Timestamp: " + timestamp++
+                            + ", Label: " + label + ", Data: " + data + "\n";
+                    out.write(line);
+                    written += line.length();
+                }
+                total += written;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,56 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatestValueIndexTest {
+    @Test
+    void testLatestRecordIgnoresLateMeasurements() {
+        DataStorage storage = new DataStorage();
+        storage.addPatientData(1, 70.0, "HeartRate", 1000L);
+        storage.addPatientData(1, 72.0, "HeartRate", 3000L);
+        storage.addPatientData(1, 71.0, "HeartRate", 2000L); // late
+        storage.addPatientData(1, 98.0, "Saturation", 500L);
+
+        PatientRecord latest = storage.getLatestRecord(1, "HeartRate");
+        assertEquals(72.0, latest.getMeasurementValue());
+        assertEquals(3000L, latest.getTimestamp());
+        assertEquals("HeartRate", latest.getRecordType());
+        assertEquals(1, latest.getPatientId());
+
+        storage.addPatientData(1, 75.0, "HeartRate", 3000L); // same timestamp, later arrival wins
+        assertEquals(75.0, storage.getLatestRecord(1, "HeartRate").getMeasurementValue());
+
+        assertNull(storage.getLatestRecord(1, "Temperature"));
+        assertNull(storage.getLatestRecord(2, "HeartRate"));
+        assertNull(storage.getLatestRecord(1, "NoSuchType"));
+    }
+
+    @Test
+    void testLatestVitalsSnapshot() {
+        DataStorage storage = new DataStorage();
+        for (int p = 0; p < 100; p++) {
+            for (int i = 0; i < 10; i++) {
+                storage.addPatientData(p, p + i, "HeartRate", 1000L * i);
+                if (p % 2 == 0) {
+                    storage.addPatientData(p, 90 + i, "Saturation", 1000L * i + 1);
+                }
+            }
+        }
+        LatestVitals vitals = storage.getLatestVitals("HeartRate", "Saturation", "NoSuchType");
+        assertEquals(100, vitals.getPatientCount());
+        assertArrayEquals(new String[] { "HeartRate", "Saturation", "NoSuchType" }, vitals.getRecordTypes());
+        for (int row = 0; row < vitals.getPatientCount(); row++) {
+            int patientId = vitals.getPatientId(row);
+            assertEquals(patientId + 9, vitals.getValue(row, 0));
+            assertEquals(9000L, vitals.getTimestamp(row, 0));
+            assertEquals(patientId % 2 == 0, vitals.hasValue(row, 1));
+            if (patientId % 2 == 0) {
+                assertEquals(99.0, vitals.getValue(row, 1));
+            } else {
+                assertTrue(Double.isNaN(vitals.getValue(row, 1)));
+            }
+            assertFalse(vitals.hasValue(row, 2));
+        }
+    }
+}
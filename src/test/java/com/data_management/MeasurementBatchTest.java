@@ -0,0 +1,112 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class MeasurementBatchTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testOrderByPatientIsStable() {
+        MeasurementBatch batch = new MeasurementBatch(8);
+        int[] ids = { 3, -1, 3, 0, -1, 3 };
+        for (int i = 0; i < ids.length; i++) {
+            batch.add(ids[i], i, 0, 100 - i);
+        }
+        assertArrayEquals(new int[] { 1, 4, 3, 0, 2, 5 }, batch.orderByPatient());
+        assertEquals(6, batch.size());
+        assertFalse(batch.isFull());
+        assertEquals(-1, batch.getPatientId(4));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.getTimestamp(6));
+        batch.clear();
+        assertEquals(0, batch.orderByPatient().length);
+    }
+
+    @Test
+    void testBatchMatchesSingleAdds() {
+        DataStorage single = new DataStorage();
+        DataStorage batched = new DataStorage();
+        batched.enableQueryCache(10_000);
+        batched.getRecords(7, 0, Long.MAX_VALUE); // cached, must be extended by the batch
+        MeasurementBatch batch = new MeasurementBatch(1000);
+        Random random = new Random(4);
+        int heartRate = RecordTypeRegistry.getInstance().codeFor("HeartRate");
+        int saturation = RecordTypeRegistry.getInstance().codeFor("Saturation");
+        for (int i = 0; i < 5000; i++) {
+            int patientId = random.nextInt(20);
+            int code = random.nextBoolean() ? heartRate : saturation;
+            long timestamp = i + (random.nextInt(10) == 0 ? -random.nextInt(100) : 0);
+            single.addPatientData(patientId, i, code, timestamp);
+            batch.add(patientId, i, code, timestamp);
+            if (batch.isFull()) {
+                batched.addPatientData(batch);
+                batch.clear();
+            }
+        }
+        batched.addPatientData(batch);
+
+        assertEquals(single.getAllPatients().size(), batched.getAllPatients().size());
+        for (Patient patient : single.getAllPatients()) {
+            int id = patient.getPatientId();
+            assertEquals(keys(single.getRecords(id, 0, Long.MAX_VALUE)), keys(batched.getRecords(id, 0, Long.MAX_VALUE)));
+            assertEquals(single.getLatestRecord(id, "HeartRate").getMeasurementValue(),
+                    batched.getLatestRecord(id, "HeartRate").getMeasurementValue());
+        }
+    }
+
+    @Test
+    void testBatchesAreLoggedAndRecovered() throws IOException {
+        DataStorage storage = new DataStorage();
+        storage.enablePersistence(directory, null);
+        MeasurementBatch batch = new MeasurementBatch(100);
+        int code = RecordTypeRegistry.getInstance().codeFor("HeartRate");
+        for (int i = 0; i < 100; i++) {
+            batch.add(i % 3, i, code, i);
+        }
+        storage.addPatientData(batch);
+        storage.disablePersistence();
+
+        DataStorage recovered = new DataStorage();
+        recovered.enablePersistence(directory, null);
+        assertEquals(34, recovered.getRecords(0, 0, Long.MAX_VALUE).size());
+        assertEquals(33, recovered.getRecords(2, 0, Long.MAX_VALUE).size());
+        recovered.disablePersistence();
+    }
+
+    @Test
+    void testShardedStorageQueuesBatches() throws Exception {
+        try (ShardedDataStorage storage = new ShardedDataStorage(3)) {
+            MeasurementBatch batch = new MeasurementBatch(StorageShard.BUFFER_CAPACITY);
+            int code = RecordTypeRegistry.getInstance().codeFor("Saturation");
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < StorageShard.BUFFER_CAPACITY; i++) {
+                    batch.add(i % 10, 95, code, round * StorageShard.BUFFER_CAPACITY + i);
+                }
+                storage.addPatientData(batch);
+                batch.clear();
+            }
+            storage.awaitIngested();
+            int total = 0;
+            for (int p = 0; p < 10; p++) {
+                total += storage.getRecords(p, 0, Long.MAX_VALUE).size();
+            }
+            assertEquals(5 * StorageShard.BUFFER_CAPACITY, total);
+        }
+    }
+
+    private static List<String> keys(List<PatientRecord> records) {
+        List<String> keys = new ArrayList<>();
+        for (PatientRecord record : records) {
+            keys.add(record.getRecordType() + "/" + record.getTimestamp() + "/" + record.getMeasurementValue());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,138 @@
+package com.data_management;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Compares receiving from many simulator instances with one
+ * {@link WebSocketDataReader} per instance against a single
+ * {@link MultiEndpointWebSocketReader}: the threads they add and the
+ * measurements per second stored in one {@link DataStorage}. Every instance is
+ * a local server broadcasting pre-encoded {@link BinaryMeasurementFrame}s. Run with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes com.data_management.MultiEndpointBenchmark [instances] [frames per instance]}.
+ */
+public class MultiEndpointBenchmark {
+    private static final int RECORDS_PER_FRAME = 512;
+
+    public static void main(String[] args) throws Exception {
+        int instances = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int framesPerInstance = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        byte[][] frames = new byte[instances][];
+        for (int i = 0; i < instances; i++) {
+            frames[i] = encode(i);
+        }
+        long total = (long) instances * framesPerInstance * RECORDS_PER_FRAME;
+        int port = 18_900;
+        for (int round = 0; round < 2; round++) {
+            for (boolean shared : new boolean[] { false, true }) {
+                System.gc();
+                run(port, shared, frames, framesPerInstance, total);
+                port += instances;
+            }
+        }
+        System.exit(0);
+    }
+
+    private static byte[] encode(int instance) {
+        BinaryMeasurementFrame frame = new BinaryMeasurementFrame(RECORDS_PER_FRAME);
+        for (int i = 0; i < RECORDS_PER_FRAME; i++) {
+            frame.add(instance * 100 + i % 100, 1_700_000_000_000L + i, i % 2 == 0 ? "HeartRate" : "ECG", 60 + i % 40);
+        }
+        return frame.encode();
+    }
+
+    private static void run(int firstPort, boolean shared, byte[][] frames, int framesPerInstance, long total)
+            throws Exception {
+        List<Server> servers = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < frames.length; i++) {
+            Server server = new Server(firstPort + i);
+            server.start();
+            servers.add(server);
+            urls.add("ws://localhost:" + (firstPort + i));
+        }
+        TimeUnit.MILLISECONDS.sleep(500); // Let the servers bind
+        DataStorage storage = new DataStorage();
+        int threadsBefore = Thread.activeCount();
+        List<WebSocketDataReader> readers = new ArrayList<>();
+        MultiEndpointWebSocketReader multi = null;
+        LongSupplier stored;
+        if (shared) {
+            multi = new MultiEndpointWebSocketReader(urls, storage);
+            multi.readData(storage);
+            stored = multi.getIngestStats()::getMeasurements;
+        } else {
+            for (String url : urls) {
+                WebSocketDataReader reader = new WebSocketDataReader(url, storage);
+                reader.readData(storage);
+                readers.add(reader);
+            }
+            stored = () -> readers.stream().mapToLong(r -> r.getIngestStats().getMeasurements()).sum();
+        }
+        for (Server server : servers) {
+            while (server.getConnections().isEmpty()) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+        }
+        int threads = Thread.activeCount() - threadsBefore;
+
+        long start = System.nanoTime();
+        for (int f = 0; f < framesPerInstance; f++) {
+            for (int i = 0; i < servers.size(); i++) {
+                servers.get(i).broadcast(frames[i]);
+            }
+        }
+        while (stored.getAsLong() < total) {
+            TimeUnit.MICROSECONDS.sleep(200);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d instances, %-32s %4d threads, %,10.0f measurements/s%n", frames.length,
+                shared ? "one multi-endpoint reader:" : "one reader per instance:", threads, total / seconds);
+
+        if (multi != null) {
+            multi.close();
+        }
+        for (WebSocketDataReader reader : readers) {
+            reader.stopReceivingData();
+        }
+        for (Server server : servers) {
+            server.stop();
+        }
+    }
+
+    /** A simulator instance; the benchmark broadcasts the frames itself. */
+    private static final class Server extends WebSocketServer {
+        Server(int port) {
+            super(new InetSocketAddress("localhost", port));
+            setReuseAddr(true);
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+            System.err.println("Server error: " + ex.getMessage());
+        }
+
+        @Override
+        public void onStart() {
+        }
+    }
+}
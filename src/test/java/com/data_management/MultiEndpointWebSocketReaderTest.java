@@ -0,0 +1,171 @@
+package com.data_management;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+public class MultiEndpointWebSocketReaderTest {
+    @Test
+    void testReceivesFromManyServersOnSharedThreads() throws Exception {
+        List<TestServer> servers = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                TestServer server = TestServer.start(freePort());
+                servers.add(server);
+                urls.add("ws://localhost:" + server.getPort() + "/feed?id=" + i);
+            }
+            DataStorage storage = new DataStorage();
+            try (MultiEndpointWebSocketReader reader = new MultiEndpointWebSocketReader(urls, storage)) {
+                reader.readData(storage);
+                awaitTrue(() -> reader.getConnectedEndpoints() == 5);
+                for (int i = 0; i < servers.size(); i++) {
+                    WebSocket conn = servers.get(i).connection();
+                    conn.sendPing();
+                    for (int t = 0; t < 100; t++) {
+                        conn.send(i + "," + t + ",Saturation," + (90 + t % 10) + "%");
+                    }
+                    BinaryMeasurementFrame frame = new BinaryMeasurementFrame(50);
+                    for (int t = 100; t < 150; t++) {
+                        frame.add(i, t, "HeartRate", 60 + t);
+                    }
+                    conn.send(frame.encode());
+                    // A message in fragments, the last ones larger than the initial receive buffer
+                    byte[] fragment = new byte[WebSocketEndpoint.BUFFER_SIZE + 100];
+                    Arrays.fill(fragment, (byte) ' ');
+                    byte[] head = (i + ",150,ECG,").getBytes(StandardCharsets.US_ASCII);
+                    conn.sendFragmentedFrame(Opcode.TEXT, ByteBuffer.wrap(head), false);
+                    conn.sendFragmentedFrame(Opcode.TEXT, ByteBuffer.wrap(fragment), false);
+                    byte[] tail = "0.5".getBytes(StandardCharsets.US_ASCII);
+                    conn.sendFragmentedFrame(Opcode.TEXT, ByteBuffer.wrap(tail), true);
+                }
+                awaitTrue(() -> reader.getIngestStats().getMeasurements() == 5 * 151);
+                for (int i = 0; i < servers.size(); i++) {
+                    List<PatientRecord> records = storage.getRecords(i, 0, Long.MAX_VALUE);
+                    assertEquals(151, records.size());
+                    assertEquals(0.5, records.get(150).getMeasurementValue());
+                    EndpointStats stats = reader.getEndpointStats().get(i);
+                    assertEquals(urls.get(i), stats.getUrl());
+                    assertEquals(102, stats.getMessages());
+                    assertEquals(1, stats.getConnections());
+                    assertEquals(0, stats.getFailures());
+                    assertTrue(stats.getBytes() > WebSocketEndpoint.BUFFER_SIZE);
+                }
+                long ioThreads = Thread.getAllStackTraces().keySet().stream()
+                        .filter(thread -> thread.getName().startsWith("websocket-io-")).count();
+                assertEquals(MultiEndpointWebSocketReader.DEFAULT_IO_THREADS, ioThreads);
+            }
+        } finally {
+            for (TestServer server : servers) {
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    void testUnreachableServerBacksOffAndConnectsLater() throws Exception {
+        int port = freePort();
+        DataStorage storage = new DataStorage();
+        List<String> urls = List.of("ws://localhost:" + port);
+        try (MultiEndpointWebSocketReader reader = new MultiEndpointWebSocketReader(urls, storage, 1, 1, 64,
+                OverflowPolicy.BLOCK, Duration.ofMillis(10), Duration.ofMillis(40))) {
+            reader.readData(storage);
+            EndpointStats stats = reader.getEndpointStats().get(0);
+            awaitTrue(() -> stats.getFailures() >= 4);
+            assertFalse(stats.isConnected());
+            assertNotNull(stats.getLastError());
+            assertTrue(stats.getBackoffMillis() <= 40);
+
+            TestServer server = TestServer.start(port);
+            try {
+                awaitTrue(stats::isConnected);
+                assertEquals(0, stats.getBackoffMillis());
+                server.connection().send("3,1,HeartRate,72.0");
+                awaitTrue(() -> storage.getRecords(3, 0, Long.MAX_VALUE).size() == 1);
+
+                // A lost connection is reconnected as well
+                server.connection().close();
+                awaitTrue(() -> stats.getConnections() == 2);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    @Test
+    void testRejectsUnsupportedUrls() {
+        DataStorage storage = new DataStorage();
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultiEndpointWebSocketReader(List.of("wss://localhost:8080"), storage));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultiEndpointWebSocketReader(List.of("ws://"), storage));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultiEndpointWebSocketReader(List.of(), storage));
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(2);
+        }
+    }
+
+    /** A server holding the connection of the reader. */
+    private static final class TestServer extends WebSocketServer {
+        TestServer(int port) {
+            super(new InetSocketAddress("localhost", port));
+            setReuseAddr(true);
+        }
+
+        static TestServer start(int port) {
+            TestServer server = new TestServer(port);
+            server.start();
+            return server;
+        }
+
+        WebSocket connection() throws InterruptedException {
+            awaitTrue(() -> getConnections().size() == 1);
+            return getConnections().iterator().next();
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+
+        @Override
+        public void onStart() {
+        }
+    }
+}
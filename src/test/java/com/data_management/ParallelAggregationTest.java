@@ -0,0 +1,47 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParallelAggregationTest {
+    @Test
+    void testAggregatesMatchSerialComputation() {
+        DataStorage storage = new DataStorage();
+        int patients = ParallelAggregation.PATIENTS_PER_TASK * 10 + 5;
+        for (int p = 0; p < patients; p++) {
+            for (int i = 0; i < 50; i++) {
+                storage.addPatientData(p, 90 + (p + i) % 10, "Saturation", 1000L * i);
+            }
+        }
+        double sum = 0;
+        long count = 0;
+        for (int p = 0; p < patients; p++) {
+            for (PatientRecord record : storage.getRecords(p, 10_000L, 19_000L)) {
+                sum += record.getMeasurementValue();
+                count++;
+            }
+        }
+
+        AggregateResult result = storage.aggregate("Saturation", 10_000L, 19_000L);
+        assertEquals(count, result.getCount());
+        assertEquals(patients, result.getPatientCount());
+        assertEquals(sum, result.getSum(), 1e-6);
+        assertEquals(sum / count, result.getMean(), 1e-9);
+        assertEquals(90.0, result.getMin());
+        assertEquals(99.0, result.getMax());
+
+        // Count-if: the ten measurements of each patient in the range cycle through 90..99 once
+        AggregateResult high = storage.aggregate("Saturation", 10_000L, 19_000L, value -> value >= 99);
+        assertEquals(patients, high.getPatientCount());
+        assertEquals(patients, high.getCount());
+        assertEquals(0, storage.aggregate("Saturation", 10_000L, 10_000L, value -> value > 99).getPatientCount());
+
+        assertEquals(90.0, storage.percentile("Saturation", 0, Long.MAX_VALUE, 0));
+        assertEquals(94.0, storage.percentile("Saturation", 0, Long.MAX_VALUE, 50));
+        assertEquals(99.0, storage.percentile("Saturation", 0, Long.MAX_VALUE, 100));
+
+        assertEquals(0, storage.aggregate("Unknown", 0, Long.MAX_VALUE).getCount());
+        assertTrue(Double.isNaN(storage.aggregate("Saturation", -10, -1).getMean()));
+        assertTrue(Double.isNaN(storage.percentile("Saturation", -10, -1, 50)));
+    }
+}
@@ -0,0 +1,88 @@
+package com.data_management;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compares patient lookups by ID in {@link PatientDirectory} with the boxed
+ * {@code HashMap<Integer, Patient>} and {@code ConcurrentHashMap<Integer, Patient>}
+ * at 1k, 100k and 1M patients. Run with
+ * {@code java -Xmx3g -cp target/classes:target/test-classes com.data_management.PatientDirectoryBenchmark}.
+ */
+public class PatientDirectoryBenchmark {
+    private static final int LOOKUPS = 20_000_000;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        for (int patients : new int[] { 1_000, 100_000, 1_000_000 }) {
+            Patient[] created = new Patient[patients];
+            int[] sparseIds = new int[patients];
+            Random random = new Random(7);
+            for (int i = 0; i < patients; i++) {
+                created[i] = new Patient(i + 1);
+                sparseIds[i] = random.nextInt() | 0x40000000; // outside the dense range
+            }
+            // Lookups follow the simulator: ids in a shuffled but repeating order
+            int[] order = new int[LOOKUPS];
+            for (int i = 0; i < LOOKUPS; i++) {
+                order[i] = random.nextInt(patients);
+            }
+
+            Map<Integer, Patient> hashMap = new HashMap<>();
+            Map<Integer, Patient> concurrentMap = new ConcurrentHashMap<>();
+            Map<Integer, Patient> sparseConcurrentMap = new ConcurrentHashMap<>();
+            PatientDirectory<Patient> dense = new PatientDirectory<>();
+            PatientDirectory<Patient> sparse = new PatientDirectory<>();
+            for (int i = 0; i < patients; i++) {
+                hashMap.put(i + 1, created[i]);
+                concurrentMap.put(i + 1, created[i]);
+                dense.computeIfAbsent(i + 1, id -> created[id - 1]);
+                Patient sparsePatient = new Patient(sparseIds[i]);
+                sparse.computeIfAbsent(sparseIds[i], id -> sparsePatient);
+                sparseConcurrentMap.put(sparseIds[i], sparsePatient);
+            }
+
+            System.out.printf("%,d patients%n", patients);
+            for (int round = 0; round < 2; round++) {
+                boolean report = round == 1;
+                time(report, "HashMap<Integer>", () -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        sink += hashMap.get(order[i] + 1).getPatientId();
+                    }
+                });
+                time(report, "ConcurrentHashMap<Integer>", () -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        sink += concurrentMap.get(order[i] + 1).getPatientId();
+                    }
+                });
+                time(report, "PatientDirectory (dense)", () -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        sink += dense.get(order[i] + 1).getPatientId();
+                    }
+                });
+                time(report, "ConcurrentHashMap (sparse)", () -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        sink += sparseConcurrentMap.get(sparseIds[order[i]]).getPatientId();
+                    }
+                });
+                time(report, "PatientDirectory (sparse)", () -> {
+                    for (int i = 0; i < LOOKUPS; i++) {
+                        sink += sparse.get(sparseIds[order[i]]).getPatientId();
+                    }
+                });
+            }
+        }
+    }
+
+    private static void time(boolean report, String label, Runnable lookups) {
+        long start = System.nanoTime();
+        lookups.run();
+        double nanos = (double) (System.nanoTime() - start) / LOOKUPS;
+        if (report) {
+            System.out.printf("  %-28s %6.2f ns/lookup%n", label, nanos);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PatientDirectoryTest {
+    @Test
+    void testDenseAndHashedIds() {
+        PatientDirectory<Patient> directory = new PatientDirectory<>();
+        int[] ids = { 0, 1, 15, 16, 1000, PatientDirectory.DENSE_LIMIT - 1, PatientDirectory.DENSE_LIMIT, -1,
+                Integer.MIN_VALUE, Integer.MAX_VALUE };
+        for (int id : ids) {
+            assertNull(directory.get(id));
+            Patient patient = directory.computeIfAbsent(id, Patient::new);
+            assertEquals(id, patient.getPatientId());
+            assertSame(patient, directory.computeIfAbsent(id, other -> fail("created twice")));
+        }
+        // Enough hashed IDs to force several resizes of the table
+        for (int i = 1; i <= 1000; i++) {
+            directory.computeIfAbsent(-i * 7919 - 2, Patient::new);
+        }
+        for (int id : ids) {
+            assertEquals(id, directory.get(id).getPatientId());
+        }
+        for (int i = 1; i <= 1000; i++) {
+            assertEquals(-i * 7919 - 2, directory.get(-i * 7919 - 2).getPatientId());
+        }
+        assertNull(directory.get(2));
+        assertNull(directory.get(-3));
+        assertEquals(ids.length + 1000, directory.size());
+
+        Set<Integer> seen = new HashSet<>();
+        for (Patient patient : directory.values()) {
+            assertTrue(seen.add(patient.getPatientId()));
+        }
+        assertEquals(ids.length + 1000, seen.size());
+    }
+
+    @Test
+    void testShardDirectoryIndexesByIdOverStride() {
+        PatientDirectory<Patient> directory = new PatientDirectory<>(4, 3);
+        for (int k = 0; k < 1000; k++) {
+            directory.computeIfAbsent(4 * k + 3, Patient::new);
+        }
+        directory.computeIfAbsent(8, Patient::new); // Another shard's ID is hashed
+        assertEquals(1024, directory.denseCapacity());
+        for (int k = 0; k < 1000; k++) {
+            assertEquals(4 * k + 3, directory.get(4 * k + 3).getPatientId());
+            assertNull(directory.get(4 * k + 1));
+        }
+        assertEquals(8, directory.get(8).getPatientId());
+        Set<Integer> seen = new HashSet<>();
+        for (Patient patient : directory.values()) {
+            assertTrue(seen.add(patient.getPatientId()));
+        }
+        assertEquals(1001, seen.size());
+    }
+
+    @Test
+    void testConcurrentInsertsCreateEachPatientOnce() throws Exception {
+        PatientDirectory<Patient> directory = new PatientDirectory<>();
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(pool.submit(() -> {
+                for (int id = 0; id < 20_000; id++) {
+                    int key = id % 2 == 0 ? id : -id;
+                    Patient patient = directory.computeIfAbsent(key, newId -> {
+                        created.incrementAndGet();
+                        return new Patient(newId);
+                    });
+                    assertEquals(key, patient.getPatientId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        assertEquals(20_000, created.get());
+        assertEquals(20_000, directory.size());
+    }
+}
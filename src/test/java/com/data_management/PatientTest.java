@@ -0,0 +1,102 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PatientTest {
+    @Test
+    void testRecordsSpanningSeveralChunks() {
+        Patient patient = new Patient(1);
+        int count = TimeSeries.CHUNK_CAPACITY * 3 + 7;
+        for (int i = 0; i < count; i++) {
+            patient.addRecord(i, "HeartRate", 1000L + i);
+        }
+
+        List<PatientRecord> records = patient.getRecords(0, Long.MAX_VALUE);
+        assertEquals(count, records.size());
+        assertEquals(count - 1, records.get(count - 1).getMeasurementValue());
+        assertEquals(1, records.get(0).getPatientId());
+    }
+
+    @Test
+    void testCursorFiltersByTypeAndTime() {
+        Patient patient = new Patient(1);
+        patient.addRecord(70.0, "HeartRate", 1000L);
+        patient.addRecord(120.0, "SystolicBP", 1500L);
+        patient.addRecord(75.0, "HeartRate", 2000L);
+        patient.addRecord(80.0, "HeartRate", 3000L);
+
+        RecordCursor cursor = patient.getCursor("HeartRate", 1500L, 3000L);
+        assertTrue(cursor.next());
+        assertEquals(75.0, cursor.getMeasurementValue());
+        assertEquals(2000L, cursor.getTimestamp());
+        assertEquals("HeartRate", cursor.getRecordType());
+        assertTrue(cursor.next());
+        assertEquals(80.0, cursor.getMeasurementValue());
+        assertFalse(cursor.next());
+
+        assertFalse(patient.getCursor("Temperature", 0, Long.MAX_VALUE).next());
+        assertEquals(4, patient.getRecords(0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testLateRecordsAreKeptInTimestampOrder() {
+        Patient patient = new Patient(1);
+        int count = TimeSeries.CHUNK_CAPACITY * 2;
+        for (int i = 0; i < count; i++) {
+            patient.addRecord(i, "ECG", 2L * i);
+        }
+        // Late arrivals landing inside full chunks, before the first record and at the end
+        patient.addRecord(-1.0, "ECG", 3L);
+        patient.addRecord(-2.0, "ECG", -5L);
+        patient.addRecord(-3.0, "ECG", 2L * TimeSeries.CHUNK_CAPACITY + 1);
+        patient.addRecord(50.0, "HeartRate", 4L);
+
+        List<PatientRecord> records = patient.getRecords(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(count + 4, records.size());
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).getTimestamp() <= records.get(i).getTimestamp());
+        }
+
+        List<PatientRecord> window = patient.getRecords(3L, 4L);
+        assertEquals(3, window.size());
+        assertEquals(-1.0, window.get(0).getMeasurementValue());
+        assertEquals(4L, window.get(1).getTimestamp());
+        assertEquals(4L, window.get(2).getTimestamp());
+
+        assertEquals(0, patient.getRecords(10L * count, 11L * count).size());
+        assertEquals(1, patient.getRecords(2L * count - 2, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testForEachRecordMatchesCursor() {
+        Patient patient = new Patient(1);
+        int count = TimeSeries.CHUNK_CAPACITY * 5 + 3;
+        for (int i = 0; i < count; i++) {
+            patient.addRecord(i % 7, "HeartRate", 5L * i);
+            patient.addRecord(1.0, "ECG", 5L * i);
+        }
+        int heartRate = RecordTypeRegistry.getInstance().lookup("HeartRate");
+        long[][] ranges = { { Long.MIN_VALUE, Long.MAX_VALUE }, { 5L * 100, 5L * 4000 + 2 }, { 5L * count, Long.MAX_VALUE },
+                { 5L * (count - 10), 5L * (count - 5) } };
+        for (long[] range : ranges) {
+            List<long[]> visited = new ArrayList<>();
+            int returned = patient.forEachRecord(heartRate, range[0], range[1],
+                    (timestamp, value) -> visited.add(new long[] { timestamp, (long) value }));
+            RecordCursor cursor = patient.getCursor(heartRate, range[0], range[1]);
+            int expected = 0;
+            while (cursor.next()) {
+                assertEquals(cursor.getTimestamp(), visited.get(expected)[0]);
+                assertEquals((long) cursor.getMeasurementValue(), visited.get(expected)[1]);
+                expected++;
+            }
+            assertEquals(expected, visited.size());
+            assertEquals(expected, returned);
+        }
+        assertEquals(0, patient.forEachRecord(RecordTypeRegistry.getInstance().codeFor("Temperature"), 0,
+                Long.MAX_VALUE, (timestamp, value) -> fail()));
+    }
+}
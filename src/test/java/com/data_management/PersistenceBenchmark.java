@@ -0,0 +1,65 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Measures the on-disk cost of persistence and the time a restart takes with and
+ * without a snapshot. Run with
+ * {@code java -cp target/classes:target/test-classes com.data_management.PersistenceBenchmark [records]}.
+ */
+public class PersistenceBenchmark {
+    private static final String[] TYPES = { "HeartRate", "SystolicPressure", "DiastolicPressure", "Saturation" };
+    private static final int PATIENTS = 100;
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Path directory = Files.createTempDirectory("persistence-bench");
+        try {
+            DataStorage storage = new DataStorage();
+            storage.enablePersistence(directory, null);
+            long start = System.nanoTime();
+            ingest(storage, records);
+            storage.disablePersistence();
+            long ingestNanos = System.nanoTime() - start;
+            long walBytes = directorySize(directory);
+            System.out.printf("ingest with WAL: %,d records in %d ms (%.0f records/s), WAL %.2f bytes/record%n",
+                    records, ingestNanos / 1_000_000, records * 1e9 / ingestNanos, (double) walBytes / records);
+
+            start = System.nanoTime();
+            DataStorage replayed = new DataStorage();
+            replayed.enablePersistence(directory, null);
+            System.out.printf("recovery from WAL only: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+
+            replayed.snapshot();
+            replayed.disablePersistence();
+            long snapshotBytes = directorySize(directory);
+            System.out.printf("snapshot: %.2f bytes/record%n", (double) snapshotBytes / records);
+
+            start = System.nanoTime();
+            DataStorage restored = new DataStorage();
+            restored.enablePersistence(directory, null);
+            System.out.printf("recovery from snapshot: %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            restored.disablePersistence();
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static void ingest(DataStorage storage, int records) {
+        for (int i = 0; i < records; i++) {
+            storage.addPatientData(i % PATIENTS, 60 + i % 40, TYPES[(i / PATIENTS) % TYPES.length], i);
+        }
+    }
+
+    private static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class PersistenceTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecoverFromSnapshotAndLogTail() throws IOException {
+        DataStorage storage = new DataStorage();
+        storage.enablePersistence(directory, null);
+        for (int t = 0; t < 3000; t++) {
+            storage.addPatientData(1, t, "HeartRate", t);
+        }
+        storage.snapshot();
+        for (int t = 3000; t < 3500; t++) {
+            storage.addPatientData(1, t, "HeartRate", t);
+            storage.addPatientData(2, t, "Saturation", t);
+        }
+        storage.disablePersistence();
+
+        DataStorage recovered = new DataStorage();
+        recovered.enablePersistence(directory, null);
+        List<PatientRecord> first = recovered.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(3500, first.size());
+        assertEquals(3499.0, first.get(3499).getMeasurementValue());
+        assertEquals(500, recovered.getRecords(2, 0, Long.MAX_VALUE).size());
+
+        // New measurements continue the log and survive another restart
+        recovered.addPatientData(2, 1.0, "Saturation", 10_000L);
+        recovered.disablePersistence();
+        DataStorage again = new DataStorage();
+        again.enablePersistence(directory, null);
+        assertEquals(501, again.getRecords(2, 0, Long.MAX_VALUE).size());
+        assertEquals(3500, again.getRecords(1, 0, Long.MAX_VALUE).size());
+        again.disablePersistence();
+    }
+
+    @Test
+    void testSnapshotDeletesCoveredSegments() throws IOException {
+        DataStorage storage = new DataStorage();
+        storage.enablePersistence(directory, null);
+        for (int t = 1; t <= 3; t++) {
+            storage.addPatientData(1, t, "HeartRate", t);
+            storage.snapshot();
+        }
+        storage.disablePersistence();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            // The latest two snapshots, the segment written between them and the current one
+            assertEquals(List.of("snapshot-00000000000000000002.bin", "snapshot-00000000000000000003.bin",
+                    "wal-00000000000000000002.log", "wal-00000000000000000003.log"),
+                    files.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void testFallsBackToPreviousSnapshotWhenLatestIsUnreadable() throws IOException {
+        DataStorage storage = new DataStorage();
+        storage.enablePersistence(directory, null);
+        for (int t = 0; t < 3000; t++) {
+            storage.addPatientData(1, t, "HeartRate", t);
+            if (t == 1000 || t == 2000) {
+                storage.snapshot();
+            }
+        }
+        storage.disablePersistence();
+
+        // A snapshot cut short, as after a power failure without the fsync
+        Path latest = directory.resolve("snapshot-00000000000000002001.bin");
+        byte[] bytes = Files.readAllBytes(latest);
+        Files.write(latest, Arrays.copyOf(bytes, bytes.length / 2));
+
+        DataStorage recovered = new DataStorage();
+        recovered.enablePersistence(directory, null);
+        List<PatientRecord> records = recovered.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(3000, records.size());
+        assertEquals(2999.0, records.get(2999).getMeasurementValue());
+        recovered.disablePersistence();
+    }
+
+    @Test
+    void testEnablePersistenceRejectsStorageWithData() {
+        DataStorage storage = new DataStorage();
+        storage.addPatientData(1, 1.0, "HeartRate", 1L);
+        assertThrows(IllegalStateException.class, () -> storage.enablePersistence(directory, null));
+    }
+
+    @Test
+    void testTruncatedLogTailIsIgnored() throws IOException {
+        DataStorage storage = new DataStorage();
+        storage.enablePersistence(directory, null);
+        storage.addPatientData(1, 1.0, "HeartRate", 1L);
+        storage.addPatientData(1, 2.0, "HeartRate", 2L);
+        storage.disablePersistence();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(p -> p.getFileName().toString().startsWith("wal-")).findFirst().get();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+
+        DataStorage recovered = new DataStorage();
+        recovered.enablePersistence(directory, null);
+        assertEquals(1, recovered.getRecords(1, 0, Long.MAX_VALUE).size());
+        recovered.disablePersistence();
+    }
+}
@@ -0,0 +1,69 @@
+package com.data_management;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Compares the heap allocated per query by {@link DataStorage#getRecords},
+ * {@link RecordCursor} and {@link DataStorage#forEachRecord}. Run with
+ * {@code java -cp target/classes:target/test-classes com.data_management.QueryAllocationBenchmark}.
+ */
+public class QueryAllocationBenchmark {
+    private static final int PATIENTS = 100;
+    private static final int RECORDS = 10_000;
+    private static final int QUERIES = 200_000;
+
+    private static double sink;
+
+    public static void main(String[] args) {
+        DataStorage storage = new DataStorage();
+        for (int p = 0; p < PATIENTS; p++) {
+            for (int i = 0; i < RECORDS; i++) {
+                storage.addPatientData(p, 90 + i % 10, "Saturation", 1000L * i);
+            }
+        }
+        int code = RecordTypeRegistry.getInstance().lookup("Saturation");
+        long end = 1000L * (RECORDS - 1);
+        MeasurementConsumer consumer = (timestamp, value) -> sink += value;
+        for (int round = 0; round < 2; round++) {
+            // 60 recent records from the raw tail, and 600 older records from sealed chunks
+            for (long window : new long[] { 60_000L, 600_000L }) {
+                long from = round == 0 ? end - window : 1_000_000L;
+                long to = from + window;
+                String label = round == 0 ? "recent" : "sealed";
+                measure("getRecords    " + label + " " + window / 1000 + "s", () -> {
+                    for (int q = 0; q < QUERIES; q++) {
+                        sink += storage.getRecords(q % PATIENTS, from, to).size();
+                    }
+                });
+                measure("RecordCursor  " + label + " " + window / 1000 + "s", () -> {
+                    for (Patient patient : storage.patients()) {
+                        for (int q = 0; q < QUERIES / PATIENTS; q++) {
+                            RecordCursor cursor = patient.getCursor(code, from, to);
+                            while (cursor.next()) {
+                                sink += cursor.getMeasurementValue();
+                            }
+                        }
+                    }
+                });
+                measure("forEachRecord " + label + " " + window / 1000 + "s", () -> {
+                    for (int q = 0; q < QUERIES; q++) {
+                        storage.forEachRecord(q % PATIENTS, code, from, to, consumer);
+                    }
+                });
+            }
+        }
+    }
+
+    private static void measure(String label, Runnable queries) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        queries.run(); // warm up
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        queries.run();
+        long nanos = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        System.out.printf("%-26s %8.1f bytes/query %8.2f us/query%n", label, (double) allocated / QUERIES,
+                nanos / 1e3 / QUERIES);
+    }
+}
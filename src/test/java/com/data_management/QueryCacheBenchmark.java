@@ -0,0 +1,70 @@
+package com.data_management;
+
+import java.util.Random;
+
+/**
+ * Simulates a dashboard polling the last hour of 100 patients, and the hourly
+ * heart rate aggregate, while measurements keep arriving, with and without the
+ * query cache. Run with
+ * {@code java -Xmx2g -cp target/classes:target/test-classes com.data_management.QueryCacheBenchmark}.
+ */
+public class QueryCacheBenchmark {
+    private static final int PATIENTS = 1_000;
+    private static final int WATCHED = 100;
+    private static final int HISTORY = 2_000;
+    private static final long INTERVAL = 1_000L;
+    private static final int POLLS = 20;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < 2; round++) {
+            double uncached = run(false);
+            double cached = run(true);
+            System.out.printf("uncached %8.1f us/poll, cached %8.1f us/poll (%.0fx)%n", uncached, cached,
+                    uncached / cached);
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /** Returns the average time of one dashboard poll, in microseconds. */
+    private static double run(boolean cache) {
+        DataStorage storage = new DataStorage();
+        Random random = new Random(5);
+        for (int i = 0; i < HISTORY; i++) {
+            for (int p = 0; p < PATIENTS; p++) {
+                storage.addPatientData(p, 60 + random.nextInt(40), "HeartRate", i * INTERVAL);
+            }
+        }
+        if (cache) {
+            storage.enableQueryCache(10_000_000L);
+        }
+        long now = HISTORY * INTERVAL;
+        long elapsed = 0;
+        int polls = 0;
+        for (int second = 0; second < 60; second++) {
+            // One new measurement per patient per second, then a burst of polls
+            for (int p = 0; p < PATIENTS; p++) {
+                storage.addPatientData(p, 60 + random.nextInt(40), "HeartRate", now);
+            }
+            long start = System.nanoTime();
+            for (int poll = 0; poll < POLLS; poll++) {
+                for (int p = 0; p < WATCHED; p++) {
+                    sink += storage.getRecords(p, now - 3_600_000L, Long.MAX_VALUE).size();
+                }
+                sink += storage.aggregate("HeartRate", 0, now - 60_000L).getCount();
+            }
+            elapsed += System.nanoTime() - start;
+            polls += POLLS;
+            now += INTERVAL;
+        }
+        if (cache) {
+            QueryCacheStats stats = storage.getQueryCacheStats();
+            System.out.printf("  hit rate %.3f, extensions %d, invalidations %d%n", stats.getHitRate(),
+                    stats.getExtensions(), stats.getInvalidations());
+        }
+        return elapsed / 1e3 / polls;
+    }
+}
@@ -0,0 +1,167 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class QueryCacheTest {
+    @Test
+    void testRepeatedQueriesHitTheCache() {
+        DataStorage storage = new DataStorage();
+        storage.enableQueryCache(10_000);
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(1, 70 + i % 5, "HeartRate", 1000L * i);
+        }
+        List<PatientRecord> first = storage.getRecords(1, 10_000L, 50_000L);
+        List<PatientRecord> second = storage.getRecords(1, 10_000L, 50_000L);
+        assertEquals(41, first.size());
+        assertEquals(keys(first), keys(second));
+        assertNotSame(first, second, "Callers get their own list");
+
+        QueryCacheStats stats = storage.getQueryCacheStats();
+        assertEquals(1, stats.getMisses());
+        assertEquals(1, stats.getHits());
+        assertEquals(0.5, stats.getHitRate());
+    }
+
+    @Test
+    void testAppendsExtendAndLateWritesInvalidate() {
+        DataStorage storage = new DataStorage();
+        storage.enableQueryCache(10_000);
+        for (int i = 0; i < 10; i++) {
+            storage.addPatientData(1, i, "HeartRate", 1000L * i);
+        }
+        storage.getRecords(1, 0, 100_000L);
+        storage.getRecords(1, 0, 5_000L);
+
+        storage.addPatientData(1, 10, "Saturation", 10_000L); // newest within the first range
+        storage.addPatientData(1, 11, "HeartRate", 200_000L); // outside both ranges
+        QueryCacheStats stats = storage.getQueryCacheStats();
+        assertEquals(1, stats.getExtensions());
+        assertEquals(0, stats.getInvalidations());
+        assertEquals(11, storage.getRecords(1, 0, 100_000L).size());
+        assertEquals(1, stats.getHits(), "The extended result is served from the cache");
+
+        storage.addPatientData(1, 12, "HeartRate", 2_500L); // late, inside both ranges
+        assertEquals(2, stats.getInvalidations());
+        assertEquals(keys(fresh(storage, 1, 0, 100_000L)), keys(storage.getRecords(1, 0, 100_000L)));
+        assertEquals(7, storage.getRecords(1, 0, 5_000L).size());
+    }
+
+    @Test
+    void testAggregatesAreInvalidatedByTheirRecordType() {
+        DataStorage storage = new DataStorage();
+        storage.enableQueryCache(10_000);
+        for (int p = 0; p < 10; p++) {
+            storage.addPatientData(p, 90 + p, "Saturation", 1000L);
+        }
+        assertEquals(10, storage.aggregate("Saturation", 0, 10_000L).getCount());
+        assertEquals(94.0, storage.percentile("Saturation", 0, 10_000L, 50));
+        storage.addPatientData(3, 70, "HeartRate", 2000L); // other type
+        storage.addPatientData(3, 99, "Saturation", 20_000L); // outside the range
+        assertEquals(10, storage.aggregate("Saturation", 0, 10_000L).getCount());
+        assertEquals(94.0, storage.percentile("Saturation", 0, 10_000L, 50));
+        assertEquals(2, storage.getQueryCacheStats().getHits());
+
+        storage.addPatientData(3, 50, "Saturation", 2000L);
+        assertEquals(11, storage.aggregate("Saturation", 0, 10_000L).getCount());
+        assertEquals(50.0, storage.aggregate("Saturation", 0, 10_000L).getMin());
+        assertEquals(2, storage.getQueryCacheStats().getInvalidations());
+    }
+
+    @Test
+    void testLeastRecentlyUsedResultsAreEvicted() {
+        DataStorage storage = new DataStorage();
+        storage.enableQueryCache(100);
+        for (int i = 0; i < 60; i++) {
+            storage.addPatientData(1, i, "HeartRate", i);
+            storage.addPatientData(2, i, "HeartRate", i);
+        }
+        storage.getRecords(1, 0, 59); // 61 records with the entry itself
+        storage.getRecords(2, 0, 29);
+        storage.getRecords(2, 30, 59); // over the bound: drops patient 1
+        QueryCacheStats stats = storage.getQueryCacheStats();
+        assertEquals(1, stats.getEvictions());
+        storage.getRecords(2, 0, 29);
+        assertEquals(1, stats.getHits());
+        storage.getRecords(1, 0, 59);
+        assertEquals(4, stats.getMisses());
+    }
+
+    @Test
+    void testEvictionWhileExtendingKeepsTheSizeBound() {
+        DataStorage storage = new DataStorage();
+        for (int i = 1; i <= 5; i++) {
+            storage.addPatientData(1, i, "HeartRate", 1000L * i);
+        }
+        Patient patient = storage.getPatient(1);
+        QueryCache cache = new QueryCache(12);
+        cache.getRecords(patient, 0, 100_000L); // 5 records, weight 6
+        cache.getRecords(patient, 0, 50_000L);
+        cache.getRecords(patient, 0, 100_000L); // now the second range is the least recently used
+
+        // Extending the first range evicts the second before the write reaches it
+        storage.addPatientData(1, 6, "HeartRate", 6000L);
+        cache.afterWrite(patient, RecordTypeRegistry.getInstance().codeFor("HeartRate"), 6000L, 6);
+        assertEquals(1, cache.size());
+        assertEquals(7, cache.cachedRecords());
+        assertEquals(6, cache.getRecords(patient, 0, 100_000L).size());
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(1, cache.getStats().getExtensions());
+    }
+
+    @Test
+    void testConcurrentWritesNeverLeaveStaleResults() throws Exception {
+        DataStorage storage = new DataStorage();
+        storage.enableQueryCache(1_000_000);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Future<?> writer = pool.submit(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                // Mostly appends, every tenth measurement late
+                long timestamp = i % 10 == 0 ? i / 2 : i;
+                storage.addPatientData(1, i, "HeartRate", timestamp);
+            }
+            writing.set(false);
+            return null;
+        });
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(pool.submit(() -> {
+                while (writing.get()) {
+                    storage.getRecords(1, 0, 10_000L);
+                    storage.aggregate("HeartRate", 5_000L, 15_000L);
+                }
+                return null;
+            }));
+        }
+        writer.get(60, TimeUnit.SECONDS);
+        for (Future<?> reader : readers) {
+            reader.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(keys(fresh(storage, 1, 0, 10_000L)), keys(storage.getRecords(1, 0, 10_000L)));
+        long expected = fresh(storage, 1, 5_000L, 15_000L).size();
+        assertEquals(expected, storage.aggregate("HeartRate", 5_000L, 15_000L).getCount());
+    }
+
+    private static List<PatientRecord> fresh(DataStorage storage, int patientId, long start, long end) {
+        return storage.getPatient(patientId).getRecords(start, end);
+    }
+
+    private static List<String> keys(List<PatientRecord> records) {
+        List<String> keys = new ArrayList<>();
+        for (PatientRecord record : records) {
+            keys.add(record.getRecordType() + "/" + record.getTimestamp() + "/" + record.getMeasurementValue());
+        }
+        return keys;
+    }
+}
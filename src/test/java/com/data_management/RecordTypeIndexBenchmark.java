@@ -0,0 +1,77 @@
+package com.data_management;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares a cross-patient query on one record type through the record type
+ * index with walking every patient and filtering its records, on 10k patients
+ * with a mixed dataset: every patient has heart rate, saturation and blood
+ * pressure, 5% also have sparse Cholesterol measurements. Run with
+ * {@code java -Xmx3g -cp target/classes:target/test-classes com.data_management.RecordTypeIndexBenchmark}.
+ */
+public class RecordTypeIndexBenchmark {
+    private static final int PATIENTS = 10_000;
+    private static final int RECORDS_PER_TYPE = 200;
+    private static final long INTERVAL = 60_000L;
+    private static final long START = 1_700_000_000_000L;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        DataStorage storage = new DataStorage();
+        Random random = new Random(9);
+        for (int p = 0; p < PATIENTS; p++) {
+            // Admissions are staggered over a week, so time ranges prune patients too
+            long admitted = START + random.nextInt(7 * 24 * 60) * INTERVAL;
+            for (int i = 0; i < RECORDS_PER_TYPE; i++) {
+                long time = admitted + i * INTERVAL;
+                storage.addPatientData(p, 60 + random.nextInt(40), "HeartRate", time);
+                storage.addPatientData(p, 94 + random.nextInt(6), "Saturation", time);
+                storage.addPatientData(p, 110 + random.nextInt(30), "SystolicPressure", time);
+                if (p % 20 == 0 && i % 25 == 0) {
+                    storage.addPatientData(p, 150 + random.nextInt(100), "Cholesterol", time);
+                }
+            }
+        }
+        long day = 24 * 60 * INTERVAL;
+        long[][] ranges = { { START, START + 8 * day }, { START + 3 * day, START + 3 * day + 3_600_000L } };
+        String[] labels = { "whole week", "one hour" };
+        for (int round = 0; round < 3; round++) {
+            for (String type : new String[] { "Cholesterol", "HeartRate" }) {
+                for (int r = 0; r < ranges.length; r++) {
+                    long from = ranges[r][0];
+                    long to = ranges[r][1];
+                    double scan = time(() -> scan(storage, type, from, to));
+                    double indexed = time(() -> sink += storage.getRecordsByType(type, from, to).size());
+                    System.out.printf("%-11s %-10s full scan %9.1f us, index %8.1f us (%.0fx)%n", type, labels[r],
+                            scan, indexed, scan / indexed);
+                }
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    /** The query without the index: every patient's records, filtered by type. */
+    private static void scan(DataStorage storage, String type, long from, long to) {
+        for (Patient patient : storage.patients()) {
+            List<PatientRecord> records = patient.getRecords(from, to);
+            for (PatientRecord record : records) {
+                if (record.getRecordType().equals(type)) {
+                    sink++;
+                }
+            }
+        }
+    }
+
+    private static double time(Runnable query) {
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            query.run();
+        }
+        return (System.nanoTime() - start) / 1e3 / runs;
+    }
+}
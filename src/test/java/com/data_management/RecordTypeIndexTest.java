@@ -0,0 +1,89 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class RecordTypeIndexTest {
+    @Test
+    void testRecordsByTypeMatchFullScan() {
+        DataStorage storage = new DataStorage();
+        Random random = new Random(11);
+        for (int p = 0; p < 300; p++) {
+            long start = random.nextInt(1_000) * 1000L;
+            for (int i = 0; i < 200; i++) {
+                long time = start + i * 1000L;
+                storage.addPatientData(p, 70 + i % 7, "HeartRate", time);
+                if (p % 10 == 0 && i % 20 == 0) {
+                    storage.addPatientData(p, 180 + i, "Cholesterol", time);
+                }
+            }
+        }
+
+        for (long[] range : new long[][] { { 0, Long.MAX_VALUE }, { 400_000, 600_000 }, { 1_500_000, 2_000_000 } }) {
+            List<PatientRecord> indexed = storage.getRecordsByType("Cholesterol", range[0], range[1]);
+            List<PatientRecord> scanned = new ArrayList<>();
+            for (Patient patient : storage.getAllPatients()) {
+                for (PatientRecord record : patient.getRecords(range[0], range[1])) {
+                    if (record.getRecordType().equals("Cholesterol")) {
+                        scanned.add(record);
+                    }
+                }
+            }
+            assertEquals(keys(scanned), keys(indexed));
+        }
+        assertTrue(storage.getRecordsByType("Cholesterol", 0, Long.MAX_VALUE).size() > 0);
+        assertTrue(storage.getRecordsByType("NoSuchType", 0, Long.MAX_VALUE).isEmpty());
+        assertEquals(30, storage.typeIndex().patientCount(RecordTypeRegistry.getInstance().lookup("Cholesterol")));
+    }
+
+    @Test
+    void testTimeRangePrunesPatients() {
+        DataStorage storage = new DataStorage();
+        storage.addPatientData(1, 200, "Cholesterol", 1_000L);
+        storage.addPatientData(1, 210, "Cholesterol", 2_000L);
+        storage.addPatientData(2, 190, "Cholesterol", 5_000L);
+        storage.addPatientData(3, 70, "HeartRate", 1_500L);
+        int code = RecordTypeRegistry.getInstance().lookup("Cholesterol");
+
+        assertEquals(2, storage.typeIndex().patients(code, 0, Long.MAX_VALUE).length);
+        Patient[] early = storage.typeIndex().patients(code, 0, 3_000L);
+        assertEquals(1, early.length);
+        assertEquals(1, early[0].getPatientId());
+        assertEquals(0, storage.typeIndex().patients(code, 2_001L, 4_999L).length);
+
+        long[] visited = new long[1];
+        int count = storage.forEachRecordByType("Cholesterol", 1_500L, 6_000L, (patientId, timestamp, value) -> {
+            visited[0] += patientId;
+        });
+        assertEquals(2, count);
+        assertEquals(3, visited[0]);
+
+        assertEquals(2, storage.aggregate("Cholesterol", 0, Long.MAX_VALUE).getPatientCount());
+    }
+
+    @Test
+    void testShardedStorageSharesOneIndex() throws Exception {
+        try (ShardedDataStorage storage = new ShardedDataStorage(4)) {
+            for (int p = 0; p < 40; p++) {
+                storage.addPatientData(p, 200 + p, "Cholesterol", 1_000L * p);
+            }
+            storage.awaitIngested();
+            assertEquals(40, storage.getRecordsByType("Cholesterol", 0, Long.MAX_VALUE).size());
+            assertEquals(10, storage.getRecordsByType("Cholesterol", 10_000L, 19_000L).size());
+        }
+    }
+
+    private static List<String> keys(List<PatientRecord> records) {
+        List<String> keys = new ArrayList<>();
+        for (PatientRecord record : records) {
+            keys.add(record.getPatientId() + "/" + record.getTimestamp() + "/" + record.getMeasurementValue());
+        }
+        keys.sort(Comparator.naturalOrder());
+        return keys;
+    }
+}
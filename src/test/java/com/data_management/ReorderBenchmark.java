@@ -0,0 +1,80 @@
+package com.data_management;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures storing a stream whose measurements arrive up to a second out of
+ * order, with one in a hundred sent twice: straight into a {@link DataStorage},
+ * whose series insert late measurements on their slow path and keep the
+ * duplicates, against going through a {@link ReorderBuffer} first. Run with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes com.data_management.ReorderBenchmark [patients] [measurements per patient]}.
+ */
+public class ReorderBenchmark {
+    public static void main(String[] args) {
+        int patients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int perPatient = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        MeasurementBatch[] batches = generate(patients, perPatient);
+        int heartRate = RecordTypeRegistry.getInstance().codeFor("HeartRate");
+        long sent = 0;
+        for (MeasurementBatch batch : batches) {
+            sent += batch.size();
+        }
+        for (int round = 0; round < 3; round++) {
+            System.gc();
+            DataStorage direct = new DataStorage();
+            long start = System.nanoTime();
+            for (MeasurementBatch batch : batches) {
+                direct.addPatientData(batch);
+            }
+            double directSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.gc();
+            DataStorage ordered = new DataStorage();
+            ReorderBuffer reorder = new ReorderBuffer(ordered, Duration.ofSeconds(2));
+            start = System.nanoTime();
+            for (MeasurementBatch batch : batches) {
+                reorder.add(batch);
+            }
+            reorder.flush();
+            double reorderSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("direct %,10.0f/s (%,d stored), reorder buffer %,10.0f/s (%,d stored, %,d duplicates)%n",
+                    sent / directSeconds, count(direct, patients, heartRate), sent / reorderSeconds,
+                    count(ordered, patients, heartRate), reorder.getDuplicates());
+        }
+    }
+
+    /** One-second ticks of every patient, each measurement jittered by up to a second. */
+    private static MeasurementBatch[] generate(int patients, int perPatient) {
+        Random random = new Random(42);
+        int heartRate = RecordTypeRegistry.getInstance().codeFor("HeartRate");
+        int capacity = IngestPipeline.BATCH_SIZE;
+        long total = (long) patients * perPatient * 101 / 100 + capacity;
+        MeasurementBatch[] batches = new MeasurementBatch[(int) (total / capacity) + 1];
+        int count = 0;
+        MeasurementBatch batch = batches[count++] = new MeasurementBatch(capacity);
+        for (int t = 0; t < perPatient; t++) {
+            for (int patient = 0; patient < patients; patient++) {
+                long timestamp = 1_700_000_000_000L + t * 1000L - random.nextInt(1000);
+                double value = 60 + random.nextInt(400) / 10.0;
+                int copies = random.nextInt(100) == 0 ? 2 : 1;
+                for (int c = 0; c < copies; c++) {
+                    if (batch.isFull()) {
+                        batch = batches[count++] = new MeasurementBatch(capacity);
+                    }
+                    batch.add(patient, value, heartRate, timestamp);
+                }
+            }
+        }
+        return Arrays.copyOf(batches, count);
+    }
+
+    private static long count(DataStorage storage, int patients, int heartRate) {
+        long stored = 0;
+        for (int patient = 0; patient < patients; patient++) {
+            stored += storage.forEachRecord(patient, heartRate, 0, Long.MAX_VALUE, (timestamp, value) -> { });
+        }
+        return stored;
+    }
+}
@@ -0,0 +1,186 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ReorderBufferTest {
+    private static final int HEART_RATE = RecordTypeRegistry.getInstance().codeFor("HeartRate");
+    private static final int ECG = RecordTypeRegistry.getInstance().codeFor("ECG");
+
+    @Test
+    void testStoresInTimestampOrderUpToWatermark() {
+        RecordingStorage storage = new RecordingStorage();
+        ReorderBuffer reorder = new ReorderBuffer(storage, Duration.ofMillis(100));
+        List<long[]> watermarks = new ArrayList<>();
+        reorder.addWatermarkListener((patientId, watermark) -> {
+            // Everything up to the watermark is stored when the listener runs
+            assertEquals(storage.getRecords(patientId, 0, watermark).size(), storage.arrivals(patientId).size());
+            watermarks.add(new long[] { patientId, watermark });
+        });
+
+        for (long timestamp : new long[] { 1000, 950, 1020, 990, 1100 }) {
+            reorder.add(1, timestamp / 10.0, HEART_RATE, timestamp);
+        }
+        assertEquals(List.of(950L, 990L, 1000L), storage.arrivals(1));
+        assertEquals(1000, reorder.getWatermark(1));
+        assertEquals(2, reorder.getBuffered());
+
+        reorder.add(1, 120.0, HEART_RATE, 1200);
+        assertEquals(List.of(950L, 990L, 1000L, 1020L, 1100L), storage.arrivals(1));
+        assertEquals(1100, reorder.getWatermark(1));
+        assertEquals(Long.MIN_VALUE, reorder.getWatermark(2));
+        assertEquals(1000, watermarks.get(watermarks.size() - 2)[1]);
+        assertEquals(1100, watermarks.get(watermarks.size() - 1)[1]);
+
+        reorder.flush();
+        assertEquals(List.of(950L, 990L, 1000L, 1020L, 1100L, 1200L), storage.arrivals(1));
+        assertEquals(1200, reorder.getWatermark(1));
+        assertEquals(0, reorder.getBuffered());
+        assertEquals(6, reorder.getStored());
+        assertEquals(0, reorder.getLate());
+    }
+
+    @Test
+    void testDropsExactDuplicates() {
+        RecordingStorage storage = new RecordingStorage();
+        ReorderBuffer reorder = new ReorderBuffer(storage, Duration.ofMillis(100));
+        MeasurementBatch batch = new MeasurementBatch(16);
+        batch.add(1, 70.0, HEART_RATE, 1000);
+        batch.add(1, 70.0, HEART_RATE, 1000); // Duplicate while held
+        batch.add(1, 71.0, HEART_RATE, 1000); // Same time, other value
+        batch.add(1, 70.0, ECG, 1000); // Same time and value, other type
+        batch.add(2, 70.0, HEART_RATE, 1000); // Other patient
+        batch.add(1, 72.0, HEART_RATE, 1200);
+        reorder.add(batch);
+        assertEquals(3, storage.arrivals(1).size());
+        assertEquals(1, reorder.getDuplicates());
+
+        reorder.add(1, 70.0, HEART_RATE, 1000); // Late duplicate of a stored measurement
+        reorder.add(1, 69.0, HEART_RATE, 990); // Late, not a duplicate
+        assertEquals(2, reorder.getDuplicates());
+        assertEquals(2, reorder.getLate());
+        assertEquals(List.of(1000L, 1000L, 1000L, 990L), storage.arrivals(1));
+
+        reorder.flush();
+        assertEquals(5, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(1, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testDropsLateDuplicatesTheStorageDoesNotShowYet() {
+        // Like a sharded storage whose ingest threads have not applied anything yet
+        RecordingStorage storage = new RecordingStorage() {
+            @Override
+            public Patient getPatient(int patientId) {
+                return null;
+            }
+        };
+        ReorderBuffer reorder = new ReorderBuffer(storage, Duration.ofMillis(100));
+        for (long timestamp = 1000; timestamp <= 1500; timestamp += 100) {
+            reorder.add(1, 70.0, HEART_RATE, timestamp);
+        }
+        assertEquals(1400, reorder.getWatermark(1));
+
+        reorder.add(1, 70.0, HEART_RATE, 1300); // Remembered down to 1300
+        assertEquals(1, reorder.getDuplicates());
+        reorder.add(1, 70.0, HEART_RATE, 1200); // Too far behind to be checked
+        reorder.add(1, 70.0, HEART_RATE, 1350); // Late, not a duplicate
+        reorder.add(1, 70.0, HEART_RATE, 1350); // Late duplicate of a late one
+        assertEquals(2, reorder.getDuplicates());
+        assertEquals(4, reorder.getLate());
+        assertEquals(List.of(1000L, 1100L, 1200L, 1300L, 1400L, 1200L, 1350L), storage.arrivals(1));
+    }
+
+    @Test
+    void testFlushIdleReleasesQuietPatients() throws Exception {
+        RecordingStorage storage = new RecordingStorage();
+        ReorderBuffer reorder = new ReorderBuffer(storage, Duration.ofMinutes(1));
+        reorder.add(1, 70.0, HEART_RATE, 1000);
+        reorder.add(1, 71.0, HEART_RATE, 2000);
+        assertEquals(0, reorder.flushIdle(Duration.ofMinutes(1)));
+        assertTrue(storage.arrivals(1).isEmpty());
+
+        Thread.sleep(5);
+        assertEquals(2, reorder.flushIdle(Duration.ofMillis(1)));
+        assertEquals(List.of(1000L, 2000L), storage.arrivals(1));
+        assertEquals(2000, reorder.getWatermark(1));
+    }
+
+    @Test
+    void testConcurrentProducersKeepEachPatientOrdered() throws Exception {
+        RecordingStorage storage = new RecordingStorage();
+        ReorderBuffer reorder = new ReorderBuffer(storage, Duration.ofMillis(50));
+        int patients = 8;
+        int perPatient = 5000;
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            futures.add(producers.submit(() -> {
+                Random random = new Random(producer);
+                MeasurementBatch batch = new MeasurementBatch(64);
+                for (int t = 0; t < perPatient; t++) {
+                    for (int patient = producer; patient < patients; patient += 4) {
+                        // Jittered by up to 20 ms, and every measurement sent twice
+                        long timestamp = Math.max(0, t + random.nextInt(41) - 20);
+                        for (int copy = 0; copy < 2; copy++) {
+                            batch.add(patient, timestamp, HEART_RATE, timestamp);
+                            if (batch.isFull()) {
+                                reorder.add(batch);
+                                batch.clear();
+                            }
+                        }
+                    }
+                }
+                reorder.add(batch);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        producers.shutdown();
+        reorder.flush();
+
+        for (int patient = 0; patient < patients; patient++) {
+            List<Long> arrivals = storage.arrivals(patient);
+            List<Long> sorted = new ArrayList<>(arrivals);
+            Collections.sort(sorted);
+            assertEquals(sorted, arrivals);
+            for (int i = 1; i < arrivals.size(); i++) {
+                assertTrue(arrivals.get(i) > arrivals.get(i - 1), "duplicate at " + arrivals.get(i));
+            }
+        }
+        assertEquals(0, reorder.getLate());
+        assertTrue(reorder.getDuplicates() >= (long) patients * perPatient);
+        assertEquals(2L * patients * perPatient, reorder.getStored() + reorder.getDuplicates());
+    }
+
+    /** A storage remembering the order in which each patient's measurements arrived. */
+    private static class RecordingStorage extends DataStorage {
+        private final Map<Integer, List<Long>> arrivals = new ConcurrentHashMap<>();
+
+        @Override
+        public void addPatientData(MeasurementBatch batch) {
+            for (int i = 0; i < batch.size(); i++) {
+                arrivals.computeIfAbsent(batch.getPatientId(i), id -> Collections.synchronizedList(new ArrayList<>()))
+                        .add(batch.getTimestamp(i));
+            }
+            super.addPatientData(batch);
+        }
+
+        List<Long> arrivals(int patientId) {
+            return arrivals.getOrDefault(patientId, Collections.emptyList());
+        }
+    }
+}
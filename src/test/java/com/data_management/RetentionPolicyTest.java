@@ -0,0 +1,66 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RetentionPolicyTest {
+    @Test
+    void testChunksOlderThanMaxAgeAreEvicted() {
+        RetentionPolicy policy = new RetentionPolicy();
+        policy.setMaxAge("ECG", Duration.ofSeconds(10));
+        EvictionStats stats = new EvictionStats();
+        Patient patient = new Patient(1, policy, stats);
+
+        int count = TimeSeries.CHUNK_CAPACITY * 5;
+        for (int i = 0; i < count; i++) {
+            patient.addRecord(i, "ECG", i * 100L); // 10 records per second
+            patient.addRecord(i, "SystolicBP", i * 100L); // no limit for this type
+        }
+
+        List<PatientRecord> ecg = patientRecords(patient, "ECG");
+        long newest = (count - 1) * 100L;
+        assertTrue(ecg.size() < count, "Expired ECG chunks should have been evicted");
+        assertEquals(count - ecg.size(), stats.getRecordsEvictedByAge());
+        assertTrue(newest - ecg.get(0).getTimestamp() <= 10_000 + TimeSeries.CHUNK_CAPACITY * 100L,
+                "At most one chunk beyond the age limit may remain");
+        assertEquals(newest, ecg.get(ecg.size() - 1).getTimestamp());
+        assertEquals(count, patientRecords(patient, "SystolicBP").size());
+        assertEquals(0, stats.getRecordsEvictedByCapacity());
+    }
+
+    @Test
+    void testMemoryCapEvictsOldestDataAcrossTypes() {
+        RetentionPolicy policy = new RetentionPolicy();
+        policy.setMaxBytesPerPatient(3L * TimeSeries.CHUNK_CAPACITY * RetentionPolicy.BYTES_PER_MEASUREMENT);
+        EvictionStats stats = new EvictionStats();
+        Patient patient = new Patient(1, policy, stats);
+
+        for (int i = 0; i < TimeSeries.CHUNK_CAPACITY * 2; i++) {
+            patient.addRecord(i, "HeartRate", i);
+        }
+        for (int i = 0; i < TimeSeries.CHUNK_CAPACITY * 2; i++) {
+            patient.addRecord(i, "Temperature", 1_000_000L + i);
+        }
+
+        int retained = patient.getRecords(0, Long.MAX_VALUE).size();
+        assertTrue(retained <= 3 * TimeSeries.CHUNK_CAPACITY);
+        assertEquals(4 * TimeSeries.CHUNK_CAPACITY - retained, stats.getRecordsEvictedByCapacity());
+        // The oldest data belongs to HeartRate, so it is evicted before any Temperature chunk
+        assertEquals(2 * TimeSeries.CHUNK_CAPACITY, patientRecords(patient, "Temperature").size());
+        assertEquals(stats.getRecordsEvicted() * RetentionPolicy.BYTES_PER_MEASUREMENT, stats.getBytesEvicted());
+    }
+
+    private static List<PatientRecord> patientRecords(Patient patient, String type) {
+        List<PatientRecord> records = new ArrayList<>();
+        RecordCursor cursor = patient.getCursor(type, Long.MIN_VALUE, Long.MAX_VALUE);
+        while (cursor.next()) {
+            records.add(new PatientRecord(patient.getPatientId(), cursor.getMeasurementValue(),
+                    cursor.getRecordType(), cursor.getTimestamp()));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,103 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+public class RollupsTest {
+    private static final int SATURATION = RecordTypeRegistry.getInstance().codeFor("Saturation");
+
+    @Test
+    void testCoarsestSatisfyingTierIsUsed() {
+        Patient patient = new Patient(1);
+        // Two hours at 10 Hz, value equal to the second within the minute
+        for (long t = 0; t < 2 * 3_600_000L; t += 100) {
+            patient.addRecord((t / 1000) % 60, SATURATION, t);
+        }
+
+        List<RollupBucket> minutes = patient.getRollups(SATURATION, 0, 2 * 3_600_000L - 1, 60_000L);
+        assertEquals(120, minutes.size());
+        RollupBucket first = minutes.get(0);
+        assertEquals(0, first.getStartTime());
+        assertEquals(60_000L, first.getEndTime());
+        assertEquals(600, first.getCount());
+        assertEquals(0.0, first.getMin());
+        assertEquals(59.0, first.getMax());
+        assertEquals(29.5, first.getMean(), 1e-9);
+
+        List<RollupBucket> hours = patient.getRollups(SATURATION, 0, Long.MAX_VALUE, 24 * 3_600_000L);
+        assertEquals(2, hours.size());
+        assertEquals(36_000, hours.get(1).getCount());
+
+        // A range starting inside a bucket still returns that bucket
+        assertEquals(2, patient.getRollups(SATURATION, 59_999L, 60_000L, 60_000L).size());
+    }
+
+    @Test
+    void testLateMeasurementUpdatesItsBucket() {
+        Patient patient = new Patient(1);
+        patient.addRecord(10.0, SATURATION, 1_000L);
+        patient.addRecord(20.0, SATURATION, 5_000L);
+        patient.addRecord(30.0, SATURATION, 1_500L);
+        patient.addRecord(40.0, SATURATION, 3_000L);
+
+        List<RollupBucket> seconds = patient.getRollups(SATURATION, 0, 10_000L, 1_000L);
+        assertEquals(3, seconds.size());
+        assertEquals(1_000L, seconds.get(0).getStartTime());
+        assertEquals(2, seconds.get(0).getCount());
+        assertEquals(40.0, seconds.get(0).getSum());
+        assertEquals(3_000L, seconds.get(1).getStartTime());
+        assertEquals(5_000L, seconds.get(2).getStartTime());
+    }
+
+    @Test
+    void testSubSecondResolutionSummarisesRawData() {
+        Patient patient = new Patient(1);
+        for (long t = 0; t < 1_000L; t += 10) {
+            patient.addRecord(t, SATURATION, t);
+        }
+        List<RollupBucket> buckets = patient.getRollups(SATURATION, 0, 999L, 250L);
+        assertEquals(4, buckets.size());
+        assertEquals(25, buckets.get(3).getCount());
+        assertEquals(750.0, buckets.get(3).getMin());
+        assertEquals(990.0, buckets.get(3).getMax());
+    }
+
+    @Test
+    void testTiersAreBuiltOnFirstQuery() {
+        Patient patient = new Patient(1);
+        for (long t = 0; t < 10_000L; t += 100) {
+            patient.addRecord(1.0, SATURATION, t);
+        }
+        Rollups rollups = patient.getSeries(SATURATION).rollups();
+        assertFalse(rollups.isEnabled(0));
+
+        assertEquals(10, patient.getRollups(SATURATION, 0, Long.MAX_VALUE, 1_000L).size());
+        assertTrue(rollups.isEnabled(0));
+        assertFalse(rollups.isEnabled(1));
+        // Once built, the tier follows new measurements
+        patient.addRecord(1.0, SATURATION, 10_500L);
+        List<RollupBucket> seconds = patient.getRollups(SATURATION, 0, Long.MAX_VALUE, 1_000L);
+        assertEquals(11, seconds.size());
+        assertEquals(10, seconds.get(0).getCount());
+    }
+
+    @Test
+    void testEvictionDropsBucketsOfEvictedData() {
+        RetentionPolicy policy = new RetentionPolicy();
+        policy.setMaxAge("Saturation", java.time.Duration.ofMinutes(10));
+        Patient patient = new Patient(1, policy, new EvictionStats());
+        patient.addRecord(1.0, SATURATION, 0);
+        assertEquals(1, patient.getRollups(SATURATION, 0, Long.MAX_VALUE, 1_000L).size());
+
+        // Two hours at 1 Hz: the 1 s tier would keep an hour, retention keeps ten minutes
+        for (long t = 1_000L; t < 2 * 3_600_000L; t += 1_000L) {
+            patient.addRecord(1.0, SATURATION, t);
+        }
+        List<RollupBucket> seconds = patient.getRollups(SATURATION, 0, Long.MAX_VALUE, 1_000L);
+        long oldestRetained = patient.getRecords(0, Long.MAX_VALUE).get(0).getTimestamp();
+        assertEquals(oldestRetained, seconds.get(0).getStartTime());
+        assertTrue(seconds.size() <= 10 * 60 + TimeSeries.CHUNK_CAPACITY, "kept " + seconds.size());
+    }
+}
@@ -0,0 +1,105 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.alerts.AlertGenerator;
+
+public class ShardedDataStorageTest {
+    private static final int SHARDS = 4;
+    private static final int PATIENTS = 64;
+    private static final int WRITERS = 4;
+    private static final int RECORDS_PER_WRITER = 20_000;
+
+    @Test
+    void testConcurrentIngestLosesNoRecords() throws Exception {
+        try (ShardedDataStorage storage = new ShardedDataStorage(SHARDS)) {
+            ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(pool.submit(() -> {
+                    for (int i = 0; i < RECORDS_PER_WRITER; i++) {
+                        int patientId = (i + writer) % PATIENTS;
+                        storage.addPatientData(patientId, writer, i % 2 == 0 ? "HeartRate" : "ECG", i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : writers) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            pool.shutdown();
+            storage.awaitIngested();
+
+            int total = 0;
+            for (int p = 0; p < PATIENTS; p++) {
+                total += storage.getRecords(p, 0, Long.MAX_VALUE).size();
+            }
+            assertEquals(WRITERS * RECORDS_PER_WRITER, total, "No record should be lost by the shards");
+            assertEquals(PATIENTS, storage.patients().size());
+            assertEquals(PATIENTS, storage.getAllPatients().size());
+        }
+    }
+
+    @Test
+    void testPatientsArePartitionedByShard() throws Exception {
+        try (ShardedDataStorage storage = new ShardedDataStorage(SHARDS)) {
+            for (int p = -8; p < 24; p++) {
+                storage.addPatientData(p, 70, "HeartRate", 1000L);
+            }
+            storage.addPatientData(Integer.MAX_VALUE, 70, "HeartRate", 1000L);
+            storage.awaitIngested();
+
+            Set<Integer> seen = new HashSet<>();
+            for (int shard = 0; shard < storage.getShardCount(); shard++) {
+                for (Patient patient : storage.getShardPatients(shard)) {
+                    assertEquals(shard, storage.shardOf(patient.getPatientId()),
+                            "A patient should only live in the shard that owns its ID");
+                    assertTrue(seen.add(patient.getPatientId()));
+                }
+            }
+            assertEquals(33, seen.size());
+            assertNotNull(storage.getPatient(-3));
+            assertNotNull(storage.getPatient(Integer.MAX_VALUE));
+            assertNull(storage.getPatient(100));
+        }
+    }
+
+    @Test
+    void testQueriesAndAlertsRouteToOwningShard() throws Exception {
+        try (ShardedDataStorage storage = new ShardedDataStorage(SHARDS)) {
+            storage.addPatientData(5, 120.0, "HeartRate", 1000L);
+            storage.addPatientData(5, 130.0, "HeartRate", 2000L);
+            storage.addPatientData(6, 98.0, "BloodSaturation", 1500L);
+            storage.awaitIngested();
+
+            assertEquals(2, storage.getRecords(5, 0, Long.MAX_VALUE).size());
+            assertEquals(130.0, storage.getLatestRecord(5, "HeartRate").getMeasurementValue());
+            assertEquals(2, storage.aggregate("HeartRate", 0, Long.MAX_VALUE).getCount());
+
+            AlertGenerator alertGenerator = new AlertGenerator(storage);
+            assertTrue(alertGenerator.evaluatePatient(6));
+            assertFalse(alertGenerator.evaluatePatient(7));
+        }
+    }
+
+    @Test
+    void testClosedStorageRejectsDataButKeepsQueries() throws Exception {
+        ShardedDataStorage storage = new ShardedDataStorage(2);
+        storage.addPatientData(1, 70, "HeartRate", 1000L);
+        storage.close();
+
+        assertEquals(1, storage.getRecords(1, 0, Long.MAX_VALUE).size(), "close() should store queued data");
+        assertThrows(IllegalStateException.class, () -> storage.addPatientData(1, 71, "HeartRate", 2000L));
+    }
+}
@@ -0,0 +1,56 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures ingest throughput of a single {@link DataStorage} and of a
+ * {@link ShardedDataStorage} with 1, 2, 4 and 8 shards, with one producer thread
+ * per core. Run with
+ * {@code java -cp target/classes:target/test-classes com.data_management.ShardedIngestBenchmark}.
+ */
+public class ShardedIngestBenchmark {
+    private static final int PATIENTS = 1_000;
+    private static final int RECORDS_PER_PRODUCER = 2_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int producers = Runtime.getRuntime().availableProcessors();
+        int code = RecordTypeRegistry.getInstance().codeFor("HeartRate");
+        System.out.printf("%d producers%n", producers);
+        for (int round = 0; round < 2; round++) {
+            report("DataStorage", producers, code, new DataStorage());
+            for (int shards : new int[] { 1, 2, 4, 8 }) {
+                try (ShardedDataStorage storage = new ShardedDataStorage(shards)) {
+                    report(shards + " shards", producers, code, storage);
+                }
+            }
+        }
+    }
+
+    private static void report(String name, int producers, int code, DataStorage storage) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < RECORDS_PER_PRODUCER; i++) {
+                    storage.addPatientData((i + producer * 7) % PATIENTS, i & 127, code, i);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        if (storage instanceof ShardedDataStorage) {
+            ((ShardedDataStorage) storage).awaitIngested();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        System.out.printf("%-12s %.1f M records/s%n", name, (double) producers * RECORDS_PER_PRODUCER / seconds / 1e6);
+    }
+}
@@ -0,0 +1,105 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class SlidingWindowsTest {
+    private static final long WINDOW = 60_000L;
+
+    @Test
+    void testWindowStatsMatchRecomputation() {
+        DataStorage storage = new DataStorage();
+        storage.getWindowPolicy().addWindow("HeartRate", Duration.ofMillis(WINDOW));
+        storage.getWindowPolicy().addWindow("HeartRate", Duration.ofMinutes(10));
+        Random random = new Random(3);
+        long time = 1_700_000_000_000L;
+        for (int i = 0; i < 20_000; i++) {
+            // Irregular gaps, with every 50th measurement arriving late
+            time += 100 + random.nextInt(2_000);
+            long timestamp = i % 50 == 0 ? time - random.nextInt(120_000) : time;
+            storage.addPatientData(1, 60 + random.nextGaussian() * 15 + 1e6 * (i / 5_000), "HeartRate", timestamp);
+            if (i % 97 == 0) {
+                assertMatches(storage, WINDOW);
+                assertMatches(storage, 600_000L);
+            }
+        }
+        assertMatches(storage, WINDOW);
+        assertNull(storage.getWindowStats(1, "HeartRate", Duration.ofMinutes(5)), "Window not configured");
+        assertNull(storage.getWindowStats(1, "Saturation", Duration.ofMillis(WINDOW)));
+        assertNull(storage.getWindowStats(2, "HeartRate", Duration.ofMillis(WINDOW)));
+    }
+
+    @Test
+    void testWindowAddedLaterIsFilledFromHistory() {
+        DataStorage storage = new DataStorage();
+        for (int i = 0; i < 100; i++) {
+            storage.addPatientData(1, i, "ECG", 1000L * i);
+        }
+        assertNull(storage.getWindowStats(1, "ECG", Duration.ofSeconds(10)));
+
+        storage.getWindowPolicy().addWindow("ECG", Duration.ofSeconds(10));
+        storage.addPatientData(1, 100, "ECG", 100_000L);
+        WindowStats stats = storage.getWindowStats(1, "ECG", Duration.ofSeconds(10));
+        assertEquals(10, stats.getCount(), "Window (90s, 100s] holds 10 measurements");
+        assertEquals(91, stats.getMin());
+        assertEquals(100, stats.getMax());
+        assertEquals(95.5, stats.getMean(), 1e-9);
+        assertEquals(8.25, stats.getVariance(), 1e-9);
+        assertEquals(100_000L, stats.getEndTime());
+
+        storage.getWindowPolicy().removeWindow("ECG", Duration.ofSeconds(10));
+        storage.addPatientData(1, 101, "ECG", 101_000L);
+        assertNull(storage.getWindowStats(1, "ECG", Duration.ofSeconds(10)));
+    }
+
+    @Test
+    void testNaNValuesAreNotCounted() {
+        DataStorage storage = new DataStorage();
+        storage.getWindowPolicy().addWindow("HeartRate", Duration.ofSeconds(10));
+        storage.addPatientData(1, 70, "HeartRate", 1000L);
+        storage.addPatientData(1, Double.NaN, "HeartRate", 2000L);
+        storage.addPatientData(1, 80, "HeartRate", 3000L);
+        WindowStats stats = storage.getWindowStats(1, "HeartRate", Duration.ofSeconds(10));
+        assertEquals(2, stats.getCount());
+        assertEquals(75, stats.getMean(), 1e-9);
+        assertEquals(70, stats.getMin());
+        assertEquals(80, stats.getMax());
+    }
+
+    private static void assertMatches(DataStorage storage, long windowMillis) {
+        WindowStats stats = storage.getWindowStats(1, "HeartRate", Duration.ofMillis(windowMillis));
+        List<PatientRecord> all = storage.getRecords(1, Long.MIN_VALUE, Long.MAX_VALUE);
+        long end = all.get(all.size() - 1).getTimestamp();
+        List<Double> values = new ArrayList<>();
+        for (PatientRecord record : all) {
+            if (record.getTimestamp() > end - windowMillis) {
+                values.add(record.getMeasurementValue());
+            }
+        }
+        double sum = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double mean = sum / values.size();
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        assertEquals(end, stats.getEndTime());
+        assertEquals(values.size(), stats.getCount());
+        double variance = squares / values.size();
+        assertEquals(mean, stats.getMean(), 1e-9 * Math.max(1, Math.abs(mean)));
+        assertEquals(variance, stats.getVariance(), 1e-6 * Math.max(1, variance));
+        assertEquals(min, stats.getMin());
+        assertEquals(max, stats.getMax());
+    }
+}
@@ -0,0 +1,63 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares refreshing a growing CSV feed by re-reading it with the
+ * {@link FileDataReader} against polling it with the
+ * {@link TailingFileDataReader}, for appends of a few thousand lines to files of
+ * increasing size. Run with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes com.data_management.TailBenchmark}.
+ */
+public class TailBenchmark {
+    private static final int APPENDED_LINES = 5000;
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("tail_benchmark");
+        Path file = directory.resolve("feed.csv");
+        Path checkpoint = directory.resolve("feed.checkpoint");
+        try (TailingFileDataReader tail = new TailingFileDataReader(file.toString(), checkpoint)) {
+            long timestamp = 0;
+            DataStorage tailed = new DataStorage();
+            for (int megabytes : new int[] { 16, 64, 256 }) {
+                timestamp = append(file, timestamp, (long) megabytes << 20);
+                tail.poll(tailed);
+                for (int round = 0; round < 3; round++) {
+                    timestamp = append(file, timestamp, 0);
+                    long start = System.nanoTime();
+                    new FileDataReader(file.toString()).readData(new DataStorage());
+                    double rereadMillis = (System.nanoTime() - start) / 1e6;
+                    start = System.nanoTime();
+                    long bytes = tail.poll(tailed);
+                    double tailMillis = (System.nanoTime() - start) / 1e6;
+                    System.out.printf("%4d MB file, %d new bytes: re-read %8.1f ms, tail %6.2f ms%n",
+                            Files.size(file) >> 20, bytes, rereadMillis, tailMillis);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(checkpoint);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /** Appends at least the given number of bytes, or {@link #APPENDED_LINES} lines if zero. */
+    private static long append(Path file, long timestamp, long bytes) throws IOException {
+        long written = 0;
+        int lines = 0;
+        try (Writer out = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (bytes > 0 ? written < bytes : lines < APPENDED_LINES) {
+                String line = (timestamp % 100) + "," + (60 + timestamp % 40) + ".5,HeartRate," + timestamp + "\n";
+                out.write(line);
+                written += line.length();
+                lines++;
+                timestamp++;
+            }
+        }
+        return timestamp;
+    }
+}
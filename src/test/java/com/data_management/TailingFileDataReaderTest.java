@@ -0,0 +1,168 @@
+package com.data_management;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+
+public class TailingFileDataReaderTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReadsOnlyAppendedCompleteLines() throws IOException {
+        Path file = directory.resolve("feed.csv");
+        Path checkpoint = directory.resolve("feed.checkpoint");
+        append(file, lines(1, 0, 3) + "1,99.0,Heart");
+        DataStorage storage = new DataStorage();
+        try (TailingFileDataReader reader = new TailingFileDataReader(file.toString(), checkpoint)) {
+            assertEquals(lines(1, 0, 3).length(), reader.poll(storage));
+            assertEquals(3, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+
+            append(file, "Rate,3\n" + lines(1, 4, 5));
+            reader.poll(storage);
+            assertEquals(5, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+            assertEquals(99.0, storage.getRecords(1, 3, 3).get(0).getMeasurementValue());
+            assertEquals(0, reader.poll(storage));
+            assertEquals(5, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void testRestartResumesFromCheckpoint() throws IOException {
+        Path file = directory.resolve("feed.csv");
+        Path checkpoint = directory.resolve("feed.checkpoint");
+        append(file, lines(1, 0, 100));
+        try (TailingFileDataReader reader = new TailingFileDataReader(file.toString(), checkpoint)) {
+            reader.poll(new DataStorage());
+        }
+        append(file, lines(1, 100, 110));
+
+        DataStorage storage = new DataStorage();
+        try (TailingFileDataReader reader = new TailingFileDataReader(file.toString(), checkpoint)) {
+            assertEquals(lines(1, 100, 110).length(), reader.poll(storage));
+        }
+        assertEquals(10, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(100, storage.getRecords(1, 0, Long.MAX_VALUE).get(0).getTimestamp());
+    }
+
+    @Test
+    void testTruncatedFileIsReadFromStart() throws IOException {
+        Path file = directory.resolve("feed.csv");
+        append(file, lines(1, 0, 10));
+        DataStorage storage = new DataStorage();
+        try (TailingFileDataReader reader = new TailingFileDataReader(file.toString(),
+                directory.resolve("feed.checkpoint"))) {
+            reader.poll(storage);
+            Files.write(file, lines(2, 0, 3).getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+            reader.poll(storage);
+            assertEquals(3, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+
+            // Rewritten in place beyond the old offset: caught by the checksum of the first bytes
+            Files.write(file, lines(3, 0, 20).getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+            reader.poll(storage);
+            assertEquals(20, storage.getRecords(3, 0, Long.MAX_VALUE).size());
+        }
+        assertEquals(10, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testRotatedFileIsFinishedBeforeItsSuccessor() throws IOException {
+        Path file = directory.resolve("feed.csv");
+        append(file, lines(1, 0, 10));
+        DataStorage storage = new DataStorage();
+        try (TailingFileDataReader reader = new TailingFileDataReader(file.toString(),
+                directory.resolve("feed.checkpoint"))) {
+            reader.poll(storage);
+            append(file, lines(1, 10, 15));
+            Files.move(file, directory.resolve("feed.csv.1"));
+            append(file, lines(1, 15, 20));
+            reader.poll(storage);
+        }
+        assertEquals(20, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testDirectoryKeepsCheckpointOfRenamedFile() throws IOException {
+        Path feeds = Files.createDirectory(directory.resolve("feeds"));
+        Path file = feeds.resolve("feed.csv");
+        append(file, lines(1, 0, 10));
+        append(feeds.resolve("other.csv"), lines(2, 0, 5));
+        DataStorage storage = new DataStorage();
+        // The checkpoint lives in the followed directory and must not be read as data
+        try (TailingFileDataReader reader = new TailingFileDataReader(feeds.toString(),
+                feeds.resolve("tail.checkpoint"))) {
+            reader.poll(storage);
+            append(file, lines(1, 10, 12));
+            Files.move(file, feeds.resolve("feed.csv.1"));
+            append(file, lines(1, 12, 15));
+            reader.poll(storage);
+            assertEquals(0, reader.poll(storage));
+        }
+        assertEquals(15, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(5, storage.getRecords(2, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testReadDataFollowsInBackground() throws Exception {
+        Path file = directory.resolve("feed.csv");
+        append(file, lines(1, 0, 5));
+        DataStorage storage = new DataStorage();
+        try (TailingFileDataReader reader = new TailingFileDataReader(file.toString(),
+                directory.resolve("feed.checkpoint"), Duration.ofMillis(10))) {
+            reader.readData(storage);
+            assertEquals(5, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+            append(file, lines(1, 5, 8));
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (storage.getRecords(1, 0, Long.MAX_VALUE).size() < 8 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+        assertEquals(8, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testFollowsSimulatorOutputDirectory() throws IOException {
+        Path output = directory.resolve("output");
+        FileOutputStrategy strategy = new FileOutputStrategy(output.toString());
+        strategy.output(1, 1000L, "HeartRate", "72.0");
+        strategy.output(1, 1000L, "Saturation", "97%");
+        strategy.output(1, 1000L, "Alert", "triggered");
+        DataStorage storage = new DataStorage();
+        try (TailingFileDataReader reader = new TailingFileDataReader(output.toString(),
+                directory.resolve("output.checkpoint"))) {
+            reader.poll(storage);
+            assertEquals(2, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+
+            strategy.output(1, 2000L, "HeartRate", "75.0");
+            strategy.output(2, 2000L, "Saturation", "95%");
+            reader.poll(storage);
+        }
+        List<PatientRecord> heartRate = storage.getRecords(1, 2000L, 2000L);
+        assertEquals(1, heartRate.size());
+        assertEquals("HeartRate", heartRate.get(0).getRecordType());
+        assertEquals(75.0, heartRate.get(0).getMeasurementValue());
+        assertEquals(95.0, storage.getRecords(2, 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+        assertEquals(3, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    private static String lines(int patientId, int from, int to) {
+        StringBuilder lines = new StringBuilder();
+        for (int t = from; t < to; t++) {
+            lines.append(patientId).append(',').append(60.0 + t).append(",HeartRate,").append(t).append('\n');
+        }
+        return lines.toString();
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+}
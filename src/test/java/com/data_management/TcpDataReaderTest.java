@@ -0,0 +1,129 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+public class TcpDataReaderTest {
+    @Test
+    void testFramesLinesAcrossReads() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            DataStorage storage = new DataStorage();
+            try (TcpDataReader reader = new TcpDataReader("localhost", server.getLocalPort())) {
+                reader.readData(storage);
+                try (Socket socket = server.accept()) {
+                    OutputStream out = socket.getOutputStream();
+                    StringBuilder text = new StringBuilder();
+                    for (int t = 0; t < 1000; t++) {
+                        text.append(t % 3).append(',').append(t).append(",HeartRate,").append(60.5 + t).append('\n');
+                    }
+                    text.append("7,5,Saturation,97.0%\r\n");
+                    text.append("7,6,Alert,triggered\n");
+                    text.append("not,a,measurement\n");
+                    char[] tooLong = new char[TcpDataReader.BUFFER_SIZE + 100];
+                    Arrays.fill(tooLong, '1');
+                    text.append(tooLong).append('\n');
+                    text.append("7,8,ECG,1.0E-4\n");
+                    byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+                    // Odd fragments, so lines and numbers are split between reads
+                    for (int from = 0; from < bytes.length; from += 997) {
+                        out.write(bytes, from, Math.min(997, bytes.length - from));
+                        out.flush();
+                        if (from % 13 == 0) {
+                            Thread.sleep(1);
+                        }
+                    }
+                    awaitTrue(() -> reader.getMeasurements() == 1002);
+                }
+                assertEquals(2, reader.getRejected()); // the malformed line and the alert
+                assertEquals(334, storage.getRecords(0, 0, Long.MAX_VALUE).size());
+                List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+                assertEquals(333, records.size());
+                assertEquals(61.5, records.get(0).getMeasurementValue());
+                List<PatientRecord> other = storage.getRecords(7, 0, Long.MAX_VALUE);
+                assertEquals(2, other.size());
+                assertEquals(97.0, other.get(0).getMeasurementValue());
+                assertEquals(1.0E-4, other.get(1).getMeasurementValue());
+            }
+        }
+    }
+
+    @Test
+    void testManyEndpointsAndReconnection() throws Exception {
+        List<ServerSocket> servers = new ArrayList<>();
+        List<InetSocketAddress> endpoints = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                ServerSocket server = new ServerSocket(0);
+                servers.add(server);
+                endpoints.add(new InetSocketAddress("localhost", server.getLocalPort()));
+            }
+            DataStorage storage = new DataStorage();
+            try (TcpDataReader reader = new TcpDataReader(endpoints, Duration.ofMillis(20))) {
+                reader.readData(storage);
+                for (int i = 0; i < servers.size(); i++) {
+                    send(servers.get(i), i, 0, 500);
+                }
+                // The first endpoint closed its connection after sending; it is reconnected
+                send(servers.get(0), 0, 500, 700);
+                awaitTrue(() -> reader.getMeasurements() == 2200);
+                assertEquals(700, storage.getRecords(0, 0, Long.MAX_VALUE).size());
+                for (int i = 1; i < servers.size(); i++) {
+                    assertEquals(500, storage.getRecords(i, 0, Long.MAX_VALUE).size());
+                }
+            }
+        } finally {
+            for (ServerSocket server : servers) {
+                server.close();
+            }
+        }
+    }
+
+    @Test
+    void testUnresolvableHostIsRetriedWithoutStoppingTheOthers() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            server.setSoTimeout(30_000); // fail rather than hang if the selector thread died
+            List<InetSocketAddress> endpoints = List.of(InetSocketAddress.createUnresolved("unresolvable.invalid", 1),
+                    new InetSocketAddress("localhost", server.getLocalPort()));
+            DataStorage storage = new DataStorage();
+            try (TcpDataReader reader = new TcpDataReader(endpoints, Duration.ofMillis(20))) {
+                reader.readData(storage);
+                send(server, 1, 0, 100);
+                // Reconnecting to the server needs the selector to wake up on time
+                send(server, 1, 100, 200);
+                awaitTrue(() -> reader.getMeasurements() == 200);
+                assertEquals(200, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+                assertTrue(reader.getConnectedEndpoints() <= 1);
+            }
+        }
+    }
+
+    private static void send(ServerSocket server, int patientId, int from, int to) throws IOException {
+        try (Socket socket = server.accept()) {
+            StringBuilder text = new StringBuilder();
+            for (int t = from; t < to; t++) {
+                text.append(patientId).append(',').append(t).append(",Saturation,").append(90 + t % 10).append("%\n");
+            }
+            socket.getOutputStream().write(text.toString().getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(2);
+        }
+    }
+}
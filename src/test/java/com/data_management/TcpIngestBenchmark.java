@@ -0,0 +1,149 @@
+package com.data_management;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many measurements per second one ingest node absorbs from many
+ * simulator feeds: a thread per connection reading strings with
+ * {@link BufferedReader#readLine()} and {@link String#split(String)}, against
+ * the single-threaded {@link TcpDataReader}. Every feed is a local server
+ * sending pre-encoded {@code patientId,timestamp,label,data} lines. Run with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes com.data_management.TcpIngestBenchmark [feeds] [measurements per feed]}.
+ */
+public class TcpIngestBenchmark {
+    private static final String[] LABELS = { "HeartRate", "Saturation", "SystolicPressure", "ECG" };
+
+    public static void main(String[] args) throws Exception {
+        int feeds = args.length > 0 ? Integer.parseInt(args[0]) : 24;
+        int perFeed = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        byte[][] streams = new byte[feeds][];
+        for (int f = 0; f < feeds; f++) {
+            streams[f] = encode(f, perFeed);
+        }
+        long total = (long) feeds * perFeed;
+        for (int round = 0; round < 3; round++) {
+            System.gc();
+            double threadSeconds = threadPerConnection(streams, total);
+            System.gc();
+            double selectorSeconds = selector(streams, total);
+            System.out.printf("%d feeds: thread per connection %,10.0f/s, selector %,10.0f/s (%.1fx)%n", feeds,
+                    total / threadSeconds, total / selectorSeconds, threadSeconds / selectorSeconds);
+        }
+    }
+
+    private static byte[] encode(int feed, int measurements) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < measurements; i++) {
+            String label = LABELS[i % LABELS.length];
+            String data = label.equals("Saturation") ? (90 + i % 10) + ".0%" : Double.toString(60 + (i % 400) / 10.0);
+            text.append(feed * 1000 + i % 100).append(',').append(1_700_000_000_000L + i).append(',')
+                    .append(label).append(',').append(data).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Starts a server per feed that sends its stream to the first client and closes. */
+    private static List<ServerSocket> serve(byte[][] streams) throws IOException {
+        List<ServerSocket> servers = new ArrayList<>();
+        for (byte[] stream : streams) {
+            ServerSocket server = new ServerSocket(0);
+            servers.add(server);
+            Thread sender = new Thread(() -> {
+                try (Socket socket = server.accept(); OutputStream out = socket.getOutputStream()) {
+                    out.write(stream);
+                } catch (IOException e) {
+                    System.err.println("Feed failed: " + e.getMessage());
+                }
+            });
+            sender.setDaemon(true);
+            sender.start();
+        }
+        return servers;
+    }
+
+    private static double threadPerConnection(byte[][] streams, long total) throws Exception {
+        List<ServerSocket> servers = serve(streams);
+        DataStorage storage = new DataStorage();
+        RecordTypeRegistry registry = RecordTypeRegistry.getInstance();
+        LongAdder stored = new LongAdder();
+        long start = System.nanoTime();
+        List<Thread> readers = new ArrayList<>();
+        for (ServerSocket server : servers) {
+            Thread reader = new Thread(() -> {
+                try (Socket socket = new Socket("localhost", server.getLocalPort());
+                        BufferedReader in = new BufferedReader(
+                                new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+                    MeasurementBatch batch = new MeasurementBatch(FileDataReader.BATCH_SIZE);
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        String[] parts = line.split(",");
+                        String data = parts[3].endsWith("%") ? parts[3].substring(0, parts[3].length() - 1) : parts[3];
+                        batch.add(Integer.parseInt(parts[0]), Double.parseDouble(data), registry.codeFor(parts[2]),
+                                Long.parseLong(parts[1]));
+                        if (batch.isFull()) {
+                            storage.addPatientData(batch);
+                            stored.add(batch.size());
+                            batch.clear();
+                        }
+                    }
+                    storage.addPatientData(batch);
+                    stored.add(batch.size());
+                } catch (IOException e) {
+                    System.err.println("Reader failed: " + e.getMessage());
+                }
+            });
+            readers.add(reader);
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        close(servers);
+        check(stored.sum(), total);
+        return seconds;
+    }
+
+    private static double selector(byte[][] streams, long total) throws Exception {
+        List<ServerSocket> servers = serve(streams);
+        List<InetSocketAddress> endpoints = new ArrayList<>();
+        for (ServerSocket server : servers) {
+            endpoints.add(new InetSocketAddress("localhost", server.getLocalPort()));
+        }
+        long start = System.nanoTime();
+        double seconds;
+        try (TcpDataReader reader = new TcpDataReader(endpoints)) {
+            reader.readData(new DataStorage());
+            while (reader.getMeasurements() < total) {
+                TimeUnit.MICROSECONDS.sleep(200);
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+            check(reader.getMeasurements(), total);
+        }
+        close(servers);
+        return seconds;
+    }
+
+    private static void check(long stored, long total) {
+        if (stored != total) {
+            throw new IllegalStateException("Stored " + stored + " of " + total + " measurements");
+        }
+    }
+
+    private static void close(List<ServerSocket> servers) throws IOException {
+        for (ServerSocket server : servers) {
+            server.close();
+        }
+    }
+}
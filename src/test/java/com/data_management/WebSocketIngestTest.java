@@ -0,0 +1,190 @@
+package com.data_management;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class WebSocketIngestTest {
+    private static final String URL = "ws://localhost:1";
+
+    @Test
+    void testDropNewestKeepsQueuedFrames() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 2, 16, OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 20; i++) {
+            reader.enqueue("1," + i + ",HeartRate," + (70 + i));
+        }
+        IngestStats stats = reader.getIngestStats();
+        assertEquals(16, stats.getQueueDepth());
+        assertEquals(4, stats.getDropped());
+
+        reader.startReceivingData();
+        reader.stopReceivingData();
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(16, records.size());
+        assertEquals(15, records.get(15).getTimestamp());
+        assertEquals(16, stats.getMeasurements());
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test
+    void testFramesAfterStopAreDropped() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 2, 16, OverflowPolicy.BLOCK);
+        reader.startReceivingData();
+        reader.stopReceivingData();
+        reader.enqueue("1,1,HeartRate,70");
+        IngestStats stats = reader.getIngestStats();
+        assertEquals(1, stats.getReceived());
+        assertEquals(1, stats.getDropped());
+        assertEquals(0, stats.getQueueDepth());
+        assertTrue(storage.getRecords(1, 0, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    void testFramesLeftBehindByWorkersAreStoredOnStop() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 2, 16, OverflowPolicy.BLOCK);
+        // Never started: as if queued after every worker had found the queue empty and exited
+        for (int i = 0; i < 3; i++) {
+            reader.enqueue("1," + i + ",HeartRate," + (70 + i));
+        }
+        reader.stopReceivingData();
+        IngestStats stats = reader.getIngestStats();
+        assertEquals(3, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+        assertEquals(3, stats.getMeasurements());
+        assertEquals(0, stats.getDropped());
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test
+    void testReorderingDropsDuplicatesAndFlushesOnStop() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 2, 64, OverflowPolicy.BLOCK);
+        ReorderBuffer reorder = reader.enableReordering(Duration.ofSeconds(10));
+        assertSame(reorder, reader.enableReordering(Duration.ofSeconds(1)));
+        for (int t : new int[] { 5, 3, 4, 3, 1, 2 }) {
+            reader.enqueue("1," + t + ",HeartRate," + (70 + t));
+        }
+        reader.startReceivingData();
+        reader.stopReceivingData();
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(5, records.size());
+        assertEquals(1, reorder.getDuplicates());
+        assertEquals(5, reorder.getWatermark(1));
+        assertEquals(0, reorder.getBuffered());
+    }
+
+    @Test
+    void testDropOldestKeepsFreshestFrames() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 1, 16, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 20; i++) {
+            reader.enqueue("1," + i + ",HeartRate," + (70 + i));
+        }
+        reader.startReceivingData();
+        reader.stopReceivingData();
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(16, records.size());
+        assertEquals(4, records.get(0).getTimestamp());
+        assertEquals(4, reader.getIngestStats().getDropped());
+    }
+
+    @Test
+    void testBlockingPolicyStoresEverything() throws Exception {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 3, 64, OverflowPolicy.BLOCK);
+        reader.startReceivingData();
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int patientId = p;
+            futures.add(producers.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    reader.enqueue(patientId + "," + i + ",Saturation," + (90 + i % 10));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        producers.shutdown();
+        reader.enqueue("not a measurement");
+        reader.stopReceivingData();
+
+        IngestStats stats = reader.getIngestStats();
+        assertEquals(40_001, stats.getReceived());
+        assertEquals(0, stats.getDropped());
+        assertEquals(40_000, stats.getMeasurements());
+        assertEquals(1, stats.getRejected());
+        for (int p = 0; p < 4; p++) {
+            assertEquals(10_000, storage.getRecords(p, 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    void testBinaryFramesAreDecoded() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 1, 16, OverflowPolicy.BLOCK);
+        BinaryMeasurementFrame frame = new BinaryMeasurementFrame(1000);
+        for (int i = 0; i < 1000; i++) {
+            frame.add(i % 2, i, i % 3 == 0 ? "Saturation" : "HeartRate", 90 + i % 10);
+        }
+        reader.enqueue(ByteBuffer.wrap(frame.encode()));
+        frame.clear();
+        assertTrue(frame.add(7, 42, "Saturation", "97%"));
+        assertFalse(frame.add(7, 43, "Alert", "triggered"));
+        reader.enqueue(ByteBuffer.wrap(frame.encode()));
+        reader.startReceivingData();
+        reader.stopReceivingData();
+
+        assertEquals(1001, reader.getIngestStats().getMeasurements());
+        assertEquals(500, storage.getRecords(0, 0, Long.MAX_VALUE).size());
+        List<PatientRecord> records = storage.getRecords(1, 0, Long.MAX_VALUE);
+        assertEquals(500, records.size());
+        assertEquals("HeartRate", records.get(0).getRecordType());
+        assertEquals(91, records.get(0).getMeasurementValue());
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(97, storage.getRecords(7, 0, Long.MAX_VALUE).get(0).getMeasurementValue());
+    }
+
+    @Test
+    void testInvalidBinaryFrameAddsNothing() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 1, 16, OverflowPolicy.BLOCK);
+        BinaryMeasurementFrame frame = new BinaryMeasurementFrame(4);
+        frame.add(1, 1, "HeartRate", 70);
+        frame.add(1, 2, "HeartRate", 71);
+        byte[] bytes = frame.encode();
+        reader.enqueue(ByteBuffer.wrap(bytes, 0, bytes.length - 1)); // truncated
+        byte[] badType = bytes.clone();
+        badType[bytes.length - Double.BYTES - 1] = 5; // type index beyond the label table
+        reader.enqueue(ByteBuffer.wrap(badType));
+        reader.startReceivingData();
+        reader.stopReceivingData();
+
+        assertEquals(2, reader.getIngestStats().getRejected());
+        assertEquals(0, storage.getRecords(1, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    void testTextFrameWithPercentValue() {
+        DataStorage storage = new DataStorage();
+        WebSocketDataReader reader = new WebSocketDataReader(URL, storage, 1, 16, OverflowPolicy.BLOCK);
+        reader.enqueue("3,100,Saturation,97.0%");
+        reader.startReceivingData();
+        reader.stopReceivingData();
+
+        List<PatientRecord> records = storage.getRecords(3, 0, Long.MAX_VALUE);
+        assertEquals(1, records.size());
+        assertEquals(97.0, records.get(0).getMeasurementValue());
+    }
+}
@@ -0,0 +1,72 @@
+package com.data_management;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares reading the 5-minute heart rate mean and variance from the sliding
+ * window statistics with recomputing them from {@code getRecords}, and measures
+ * what maintaining the window adds to ingestion. Run with
+ * {@code java -cp target/classes:target/test-classes com.data_management.WindowStatsBenchmark}.
+ */
+public class WindowStatsBenchmark {
+    private static final int PATIENTS = 100;
+    private static final int RECORDS = 20_000;
+    private static final long INTERVAL = 250L; // 1200 measurements per 5-minute window
+    private static final long START = 1_700_000_000_000L;
+    private static final Duration WINDOW = Duration.ofMinutes(5);
+
+    private static double sink;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < 2; round++) {
+            DataStorage plain = new DataStorage();
+            DataStorage windowed = new DataStorage();
+            windowed.getWindowPolicy().addWindow("HeartRate", WINDOW);
+            System.out.printf("ingest without window: %.1f ns/record%n", ingest(plain));
+            System.out.printf("ingest with window:    %.1f ns/record%n", ingest(windowed));
+
+            long end = START + (RECORDS - 1) * INTERVAL;
+            long start = System.nanoTime();
+            for (int r = 0; r < 100; r++) {
+                for (int p = 0; p < PATIENTS; p++) {
+                    List<PatientRecord> records = plain.getRecords(p, end - WINDOW.toMillis() + 1, end);
+                    double sum = 0;
+                    double squares = 0;
+                    for (PatientRecord record : records) {
+                        sum += record.getMeasurementValue();
+                        squares += record.getMeasurementValue() * record.getMeasurementValue();
+                    }
+                    sink += squares / records.size() - (sum / records.size()) * (sum / records.size());
+                }
+            }
+            System.out.printf("recompute from getRecords: %.2f us/query%n",
+                    (System.nanoTime() - start) / 1e3 / (100.0 * PATIENTS));
+
+            start = System.nanoTime();
+            for (int r = 0; r < 100; r++) {
+                for (int p = 0; p < PATIENTS; p++) {
+                    sink += windowed.getWindowStats(p, "HeartRate", WINDOW).getVariance();
+                }
+            }
+            System.out.printf("read window stats:         %.2f us/query%n",
+                    (System.nanoTime() - start) / 1e3 / (100.0 * PATIENTS));
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static double ingest(DataStorage storage) {
+        Random random = new Random(5);
+        int code = RecordTypeRegistry.getInstance().codeFor("HeartRate");
+        long start = System.nanoTime();
+        for (int i = 0; i < RECORDS; i++) {
+            for (int p = 0; p < PATIENTS; p++) {
+                storage.addPatientData(p, 70 + random.nextGaussian() * 5, code, START + i * INTERVAL);
+            }
+        }
+        return (System.nanoTime() - start) / (double) ((long) RECORDS * PATIENTS);
+    }
+}
@@ -0,0 +1,101 @@
+package com.data_management;
+
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the text and binary WebSocket wire formats: payload bytes per
+ * measurement, and measurements per second from a {@link WebSocketOutputStrategy}
+ * to a {@link WebSocketDataReader} over a local connection, stored in a
+ * {@link DataStorage}. Run with
+ * {@code java -Xmx4g -cp target/classes:target/test-classes com.data_management.WireFormatBenchmark [measurements]}.
+ */
+public class WireFormatBenchmark {
+    private static final String[] LABELS = { "HeartRate", "Saturation", "SystolicPressure", "DiastolicPressure", "ECG" };
+    private static final int PATIENTS = 1000;
+    private static final long START = 1_700_000_000_000L;
+
+    public static void main(String[] args) throws Exception {
+        int measurements = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        reportSize();
+        int port = 18_800;
+        for (int round = 0; round < 2; round++) {
+            for (boolean binary : new boolean[] { false, true }) {
+                double seconds = stream(port++, binary, measurements);
+                System.out.printf("%-6s %,10.0f measurements/s%n", binary ? "binary" : "text", measurements / seconds);
+            }
+        }
+        System.exit(0); // The output strategies' servers have no shutdown
+    }
+
+    private static void reportSize() {
+        int count = WebSocketOutputStrategy.RECORDS_PER_FRAME;
+        long textBytes = 0;
+        BinaryMeasurementFrame frame = new BinaryMeasurementFrame(count);
+        for (int i = 0; i < count; i++) {
+            String data = data(i);
+            textBytes += String.format("%d,%d,%s,%s", patientId(i), START + i, label(i), data)
+                    .getBytes(StandardCharsets.UTF_8).length;
+            frame.add(patientId(i), START + i, label(i), data);
+        }
+        System.out.printf("text   %6.1f bytes/measurement%n", (double) textBytes / count);
+        System.out.printf("binary %6.1f bytes/measurement (%d per frame)%n",
+                (double) frame.encode().length / count, count);
+    }
+
+    /** Streams measurements and returns the seconds until the last one is stored. */
+    private static double stream(int port, boolean binary, int measurements) throws Exception {
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(port, binary);
+        WebSocketDataReader reader = new WebSocketDataReader("ws://localhost:" + port, new DataStorage());
+        connect(reader);
+        System.gc();
+        long start = System.nanoTime();
+        for (int i = 0; i < measurements; i++) {
+            output.output(patientId(i), START + i, label(i), data(i));
+        }
+        IngestStats stats = reader.getIngestStats();
+        while (stats.getMeasurements() < measurements) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        reader.stopReceivingData();
+        return seconds;
+    }
+
+    private static void connect(WebSocketDataReader reader) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                reader.readData(null);
+                return;
+            } catch (IOException e) {
+                if (attempt == 50) {
+                    throw new IllegalStateException("Server did not start", e);
+                }
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+        }
+    }
+
+    private static int patientId(int i) {
+        return i % PATIENTS;
+    }
+
+    private static String label(int i) {
+        return LABELS[(i / PATIENTS) % LABELS.length];
+    }
+
+    /** Data as the generators print it, with saturation as a percentage. */
+    private static String data(int i) {
+        String label = label(i);
+        if (label.equals("Saturation")) {
+            return (90 + i % 10) + "%";
+        }
+        if (label.equals("ECG")) {
+            return Double.toString(Math.sin(i * 0.01));
+        }
+        return Double.toString(60 + i % 80);
+    }
+}